@@ -0,0 +1,55 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache;
+
+import java.io.Serializable;
+
+/**
+ * 记录不存在的标记. 一级缓存中保存此对象表示数据库中没有对应的记录, 避免不存在的主键每次都查询数据库.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public final class CacheNull implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final CacheNull INSTANCE = new CacheNull();
+
+	private CacheNull() {
+	}
+
+	/**
+	 * 判断缓存的值是否是记录不存在的标记.
+	 */
+	public static boolean isNull(Object value) {
+		return value instanceof CacheNull;
+	}
+
+	/**
+	 * 反序列化后仍然返回唯一的实例.
+	 */
+	private Object readResolve() {
+		return INSTANCE;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheNull";
+	}
+
+}
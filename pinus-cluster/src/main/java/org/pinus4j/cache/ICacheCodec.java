@@ -0,0 +1,47 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache;
+
+import java.io.IOException;
+
+/**
+ * 缓存编码. 负责缓存对象与字节之间的转换, 压缩由缓存实现负责. 实现类需要线程安全并且有无参构造方法.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public interface ICacheCodec {
+
+	/**
+	 * 编码.
+	 *
+	 * @param value
+	 *            缓存对象
+	 * @return 字节
+	 */
+	public byte[] encode(Object value) throws IOException;
+
+	/**
+	 * 解码.
+	 *
+	 * @param data
+	 *            字节
+	 * @return 缓存对象
+	 */
+	public Object decode(byte[] data) throws IOException;
+
+}
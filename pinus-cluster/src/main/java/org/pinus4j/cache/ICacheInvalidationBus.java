@@ -0,0 +1,65 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache;
+
+import java.util.Collection;
+
+/**
+ * 缓存失效通知. 一个节点修改数据后, 通过此接口通知集群中的其他节点删除进程内缓存的副本.
+ * 
+ * 通知的内容是缓存key, 包括一级缓存记录的key和二级缓存的版本key(sec.version.*). 通知会被合并后批量发送,
+ * 发送方自己不会收到自己发出的通知.
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public interface ICacheInvalidationBus {
+
+	/**
+	 * 发布失效的缓存key.
+	 * 
+	 * @param keys
+	 *            缓存key
+	 */
+	public void publish(Collection<String> keys);
+
+	/**
+	 * 订阅其他节点发布的失效通知.
+	 * 
+	 * @param listener
+	 *            监听器
+	 */
+	public void subscribe(Listener listener);
+
+	/**
+	 * 关闭, 未发送的通知会被立即发送.
+	 */
+	public void close();
+
+	/**
+	 * 失效通知监听器.
+	 */
+	public interface Listener {
+
+		/**
+		 * 收到其他节点发布的失效key.
+		 */
+		public void onInvalidate(Collection<String> keys);
+
+	}
+
+}
@@ -166,6 +166,32 @@ public interface IPrimaryCache extends ICache {
 	 */
 	public void removeGlobal(String clusterName, String tableName, List<? extends Number> ids);
 
+	/**
+	 * 记录不存在时保存一个标记, 标记的过期时间比普通记录短. 写入这条记录时需要删除缓存.
+	 * 
+	 * @param clusterName
+	 *            集群名
+	 * @param tableName
+	 *            表名
+	 * @param id
+	 *            主键
+	 */
+	public void putNullGlobal(String clusterName, String tableName, Number id);
+
+	/**
+	 * 获取记录, 与getGlobal不同的是记录不存在的标记会返回CacheNull.INSTANCE.
+	 * 
+	 * @param clusterName
+	 *            集群名
+	 * @param tableName
+	 *            表名
+	 * @param id
+	 *            主键
+	 * 
+	 * @return 记录, CacheNull.INSTANCE, 没有缓存时返回null
+	 */
+	public Object lookupGlobal(String clusterName, String tableName, Number id);
+
 	/**
 	 * 设置count数.
 	 * 
@@ -294,4 +320,26 @@ public interface IPrimaryCache extends ICache {
 	 */
 	public void remove(ShardingDBResource db, List<? extends Number> pks);
 
+	/**
+	 * 记录不存在时保存一个标记, 标记的过期时间比普通记录短. 写入这条记录时需要删除缓存.
+	 * 
+	 * @param db
+	 *            分库分表
+	 * @param id
+	 *            主键
+	 */
+	public void putNull(ShardingDBResource db, Number id);
+
+	/**
+	 * 获取记录, 与get不同的是记录不存在的标记会返回CacheNull.INSTANCE.
+	 * 
+	 * @param db
+	 *            分库分表
+	 * @param id
+	 *            主键
+	 * 
+	 * @return 记录, CacheNull.INSTANCE, 没有缓存时返回null
+	 */
+	public Object lookup(ShardingDBResource db, Number id);
+
 }
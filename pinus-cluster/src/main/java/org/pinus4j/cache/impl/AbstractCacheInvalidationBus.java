@@ -0,0 +1,148 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.pinus4j.cache.ICacheInvalidationBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 缓存失效通知的基础实现. 发布的key先放入待发送集合, 由后台线程按固定间隔合并后发送, 同一个key在一个间隔内只发送一次.
+ * 发送失败的key放回待发送集合, 在下一个间隔重新发送.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public abstract class AbstractCacheInvalidationBus implements ICacheInvalidationBus {
+
+	public static final Logger LOG = LoggerFactory.getLogger(AbstractCacheInvalidationBus.class);
+
+	/**
+	 * 一条通知最多包含的key数.
+	 */
+	private static final int MAX_BATCH_SIZE = 1000;
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private final Set<String> pending = new LinkedHashSet<String>();
+
+	protected final ScheduledExecutorService scheduler;
+
+	public AbstractCacheInvalidationBus(long flushInterval) {
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "pinus-cache-invalidation");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void publish(Collection<String> keys) {
+		if (keys == null || keys.isEmpty()) {
+			return;
+		}
+		synchronized (pending) {
+			pending.addAll(keys);
+		}
+	}
+
+	@Override
+	public void subscribe(Listener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void close() {
+		scheduler.shutdown();
+		flush();
+	}
+
+	/**
+	 * 立即发送待发送的通知.
+	 */
+	public void flush() {
+		List<String> batch;
+		synchronized (pending) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			batch = new ArrayList<String>(pending);
+			pending.clear();
+		}
+
+		int sent = 0;
+		try {
+			for (; sent < batch.size(); sent += MAX_BATCH_SIZE) {
+				_send(batch.subList(sent, Math.min(sent + MAX_BATCH_SIZE, batch.size())));
+			}
+		} catch (Exception e) {
+			LOG.warn("发送缓存失效通知失败, 下次重新发送:" + e.getMessage());
+			_requeue(batch.subList(sent, batch.size()));
+		}
+	}
+
+	/**
+	 * 发送失败的key放回待发送集合的最前面, 下次发送时重试.
+	 */
+	private void _requeue(List<String> keys) {
+		synchronized (pending) {
+			List<String> newer = new ArrayList<String>(pending);
+			pending.clear();
+			pending.addAll(keys);
+			pending.addAll(newer);
+		}
+	}
+
+	/**
+	 * 通知本节点的监听器.
+	 */
+	protected void _dispatch(Collection<String> keys) {
+		for (Listener listener : listeners) {
+			try {
+				listener.onInvalidate(keys);
+			} catch (Exception e) {
+				LOG.warn("处理缓存失效通知失败:" + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 发送一批失效key到其他节点.
+	 */
+	protected abstract void _send(List<String> keys) throws Exception;
+
+}
@@ -21,8 +21,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import net.spy.memcached.MemcachedClient;
+import net.spy.memcached.transcoders.Transcoder;
 
 import org.pinus4j.cache.ICache;
+import org.pinus4j.cache.ICacheCodec;
+import org.pinus4j.constant.Const;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +43,12 @@ public abstract class AbstractMemCachedCache implements ICache {
 
 	protected int expire = 30;
 
+	/**
+	 * 缓存数据的转码器. 计数和版本号不经过此转码器.
+	 */
+	protected Transcoder<Object> transcoder = new CodecTranscoder(new BinaryCacheCodec(),
+			Const.CACHE_COMPRESS_THRESHOLD);
+
 	public AbstractMemCachedCache(String address, int expire) {
 		this.expire = expire;
 
@@ -65,6 +74,13 @@ public abstract class AbstractMemCachedCache implements ICache {
 		}
 	}
 
+	/**
+	 * 设置缓存数据的编码.
+	 */
+	public void setCodec(ICacheCodec codec) {
+		this.transcoder = new CodecTranscoder(codec, Const.CACHE_COMPRESS_THRESHOLD);
+	}
+
 	@Override
 	public int getExpire() {
 		return this.expire;
@@ -0,0 +1,487 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.pinus4j.cache.CacheNull;
+import org.pinus4j.cache.ICacheCodec;
+import org.pinus4j.generator.annotations.Table;
+import org.pinus4j.utils.IOUtil;
+import org.pinus4j.utils.ReflectUtil;
+
+/**
+ * 按数据对象结构编码的缓存编码. 数据对象(@Table)只写入ReflectUtil.getFields返回的字段值, 不写入字段名和类描述,
+ * 基本类型和字符串按类型直接写入. List逐个元素编码, 其他对象使用java序列化.
+ *
+ * 编码中带有字段结构的hash, 数据对象的字段变化后旧的缓存解码失败, 由调用方当作没有命中处理.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class BinaryCacheCodec implements ICacheCodec {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	//
+	// 值类型
+	//
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_ENTITY = 1;
+	private static final byte TAG_LIST = 2;
+	private static final byte TAG_SERIALIZED = 3;
+	private static final byte TAG_CACHE_NULL = 4;
+	private static final byte TAG_STRING = 5;
+
+	//
+	// 字段类型
+	//
+	private static final int TYPE_OBJECT = 0;
+	private static final int TYPE_BOOLEAN = 1;
+	private static final int TYPE_BOOLEAN_OBJ = 2;
+	private static final int TYPE_BYTE = 3;
+	private static final int TYPE_BYTE_OBJ = 4;
+	private static final int TYPE_CHAR = 5;
+	private static final int TYPE_CHAR_OBJ = 6;
+	private static final int TYPE_SHORT = 7;
+	private static final int TYPE_SHORT_OBJ = 8;
+	private static final int TYPE_INT = 9;
+	private static final int TYPE_INT_OBJ = 10;
+	private static final int TYPE_LONG = 11;
+	private static final int TYPE_LONG_OBJ = 12;
+	private static final int TYPE_FLOAT = 13;
+	private static final int TYPE_FLOAT_OBJ = 14;
+	private static final int TYPE_DOUBLE = 15;
+	private static final int TYPE_DOUBLE_OBJ = 16;
+	private static final int TYPE_STRING = 17;
+	private static final int TYPE_DATE = 18;
+	private static final int TYPE_BYTES = 19;
+
+	/**
+	 * 对象字段值的写入方式.
+	 */
+	private static final byte VALUE_NULL = 0;
+	private static final byte VALUE_DIRECT = 1;
+	private static final byte VALUE_SERIALIZED = 2;
+
+	/**
+	 * 类名 -> 结构. 不是数据对象的类保存NOT_ENTITY.
+	 */
+	private final ConcurrentMap<String, Schema> schemas = new ConcurrentHashMap<String, Schema>();
+
+	private static final Schema NOT_ENTITY = new Schema();
+
+	@Override
+	public byte[] encode(Object value) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(baos);
+		_write(out, value);
+		out.flush();
+		return baos.toByteArray();
+	}
+
+	@Override
+	public Object decode(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		return _read(in);
+	}
+
+	private void _write(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(TAG_NULL);
+			return;
+		}
+		if (value instanceof CacheNull) {
+			out.writeByte(TAG_CACHE_NULL);
+			return;
+		}
+		if (value instanceof String) {
+			out.writeByte(TAG_STRING);
+			_writeString(out, (String) value);
+			return;
+		}
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			out.writeByte(TAG_LIST);
+			out.writeInt(list.size());
+			for (Object one : list) {
+				_write(out, one);
+			}
+			return;
+		}
+
+		Schema schema = _getSchema(value.getClass());
+		if (schema == NOT_ENTITY) {
+			out.writeByte(TAG_SERIALIZED);
+			_writeBytes(out, IOUtil.getBytes(value));
+			return;
+		}
+
+		out.writeByte(TAG_ENTITY);
+		out.writeUTF(schema.className);
+		out.writeInt(schema.hash);
+		try {
+			for (int i = 0; i < schema.fields.length; i++) {
+				_writeField(out, value, schema.fields[i], schema.types[i]);
+			}
+		} catch (IllegalAccessException e) {
+			throw new IOException("编码失败 " + schema.className, e);
+		}
+	}
+
+	private Object _read(DataInputStream in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_CACHE_NULL:
+			return CacheNull.INSTANCE;
+		case TAG_STRING:
+			return _readString(in);
+		case TAG_LIST:
+			int size = in.readInt();
+			List<Object> list = new ArrayList<Object>(size);
+			for (int i = 0; i < size; i++) {
+				list.add(_read(in));
+			}
+			return list;
+		case TAG_SERIALIZED:
+			return IOUtil.getObject(_readBytes(in), Object.class);
+		case TAG_ENTITY:
+			String className = in.readUTF();
+			Schema schema = schemas.get(className);
+			if (schema == null) {
+				try {
+					schema = _getSchema(Class.forName(className, true, _getClassLoader()));
+				} catch (ClassNotFoundException e) {
+					throw new IOException("找不到数据对象 " + className, e);
+				}
+			}
+			if (schema == NOT_ENTITY || schema.hash != in.readInt()) {
+				throw new IOException("数据对象结构已经变化 " + className);
+			}
+			try {
+				Object obj = schema.constructor.newInstance();
+				for (int i = 0; i < schema.fields.length; i++) {
+					_readField(in, obj, schema.fields[i], schema.types[i]);
+				}
+				return obj;
+			} catch (IOException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IOException("解码失败 " + className, e);
+			}
+		default:
+			throw new IOException("错误的缓存数据, tag=" + tag);
+		}
+	}
+
+	private void _writeField(DataOutputStream out, Object obj, Field f, int type) throws IOException,
+			IllegalAccessException {
+		switch (type) {
+		case TYPE_BOOLEAN:
+			out.writeBoolean(f.getBoolean(obj));
+			return;
+		case TYPE_BYTE:
+			out.writeByte(f.getByte(obj));
+			return;
+		case TYPE_CHAR:
+			out.writeChar(f.getChar(obj));
+			return;
+		case TYPE_SHORT:
+			out.writeShort(f.getShort(obj));
+			return;
+		case TYPE_INT:
+			out.writeInt(f.getInt(obj));
+			return;
+		case TYPE_LONG:
+			out.writeLong(f.getLong(obj));
+			return;
+		case TYPE_FLOAT:
+			out.writeFloat(f.getFloat(obj));
+			return;
+		case TYPE_DOUBLE:
+			out.writeDouble(f.getDouble(obj));
+			return;
+		}
+
+		Object value = f.get(obj);
+		if (value == null) {
+			out.writeByte(VALUE_NULL);
+			return;
+		}
+		// 字段值是声明类型的子类时(例如Date字段保存Timestamp)使用java序列化保证类型不变
+		if (type == TYPE_OBJECT || (type == TYPE_DATE && value.getClass() != Date.class)) {
+			out.writeByte(VALUE_SERIALIZED);
+			_writeBytes(out, IOUtil.getBytes(value));
+			return;
+		}
+
+		out.writeByte(VALUE_DIRECT);
+		switch (type) {
+		case TYPE_BOOLEAN_OBJ:
+			out.writeBoolean((Boolean) value);
+			break;
+		case TYPE_BYTE_OBJ:
+			out.writeByte((Byte) value);
+			break;
+		case TYPE_CHAR_OBJ:
+			out.writeChar((Character) value);
+			break;
+		case TYPE_SHORT_OBJ:
+			out.writeShort((Short) value);
+			break;
+		case TYPE_INT_OBJ:
+			out.writeInt((Integer) value);
+			break;
+		case TYPE_LONG_OBJ:
+			out.writeLong((Long) value);
+			break;
+		case TYPE_FLOAT_OBJ:
+			out.writeFloat((Float) value);
+			break;
+		case TYPE_DOUBLE_OBJ:
+			out.writeDouble((Double) value);
+			break;
+		case TYPE_STRING:
+			_writeString(out, (String) value);
+			break;
+		case TYPE_DATE:
+			out.writeLong(((Date) value).getTime());
+			break;
+		case TYPE_BYTES:
+			_writeBytes(out, (byte[]) value);
+			break;
+		default:
+			throw new IOException("不支持的字段类型 " + f);
+		}
+	}
+
+	private void _readField(DataInputStream in, Object obj, Field f, int type) throws IOException,
+			IllegalAccessException {
+		switch (type) {
+		case TYPE_BOOLEAN:
+			f.setBoolean(obj, in.readBoolean());
+			return;
+		case TYPE_BYTE:
+			f.setByte(obj, in.readByte());
+			return;
+		case TYPE_CHAR:
+			f.setChar(obj, in.readChar());
+			return;
+		case TYPE_SHORT:
+			f.setShort(obj, in.readShort());
+			return;
+		case TYPE_INT:
+			f.setInt(obj, in.readInt());
+			return;
+		case TYPE_LONG:
+			f.setLong(obj, in.readLong());
+			return;
+		case TYPE_FLOAT:
+			f.setFloat(obj, in.readFloat());
+			return;
+		case TYPE_DOUBLE:
+			f.setDouble(obj, in.readDouble());
+			return;
+		}
+
+		byte mode = in.readByte();
+		if (mode == VALUE_NULL) {
+			f.set(obj, null);
+			return;
+		}
+		if (mode == VALUE_SERIALIZED) {
+			f.set(obj, IOUtil.getObject(_readBytes(in), Object.class));
+			return;
+		}
+
+		switch (type) {
+		case TYPE_BOOLEAN_OBJ:
+			f.set(obj, in.readBoolean());
+			break;
+		case TYPE_BYTE_OBJ:
+			f.set(obj, in.readByte());
+			break;
+		case TYPE_CHAR_OBJ:
+			f.set(obj, in.readChar());
+			break;
+		case TYPE_SHORT_OBJ:
+			f.set(obj, in.readShort());
+			break;
+		case TYPE_INT_OBJ:
+			f.set(obj, in.readInt());
+			break;
+		case TYPE_LONG_OBJ:
+			f.set(obj, in.readLong());
+			break;
+		case TYPE_FLOAT_OBJ:
+			f.set(obj, in.readFloat());
+			break;
+		case TYPE_DOUBLE_OBJ:
+			f.set(obj, in.readDouble());
+			break;
+		case TYPE_STRING:
+			f.set(obj, _readString(in));
+			break;
+		case TYPE_DATE:
+			f.set(obj, new Date(in.readLong()));
+			break;
+		case TYPE_BYTES:
+			f.set(obj, _readBytes(in));
+			break;
+		default:
+			throw new IOException("不支持的字段类型 " + f);
+		}
+	}
+
+	private void _writeString(DataOutputStream out, String value) throws IOException {
+		_writeBytes(out, value.getBytes(UTF8));
+	}
+
+	private String _readString(DataInputStream in) throws IOException {
+		return new String(_readBytes(in), UTF8);
+	}
+
+	private void _writeBytes(DataOutputStream out, byte[] value) throws IOException {
+		out.writeInt(value.length);
+		out.write(value);
+	}
+
+	private byte[] _readBytes(DataInputStream in) throws IOException {
+		byte[] value = new byte[in.readInt()];
+		in.readFully(value);
+		return value;
+	}
+
+	/**
+	 * 获取数据对象的结构. 没有@Table注解或者没有无参构造方法的类返回NOT_ENTITY.
+	 */
+	private Schema _getSchema(Class<?> clazz) {
+		Schema schema = schemas.get(clazz.getName());
+		if (schema != null) {
+			return schema;
+		}
+
+		schema = NOT_ENTITY;
+		if (clazz.getAnnotation(Table.class) != null) {
+			try {
+				schema = new Schema(clazz);
+			} catch (Exception e) {
+				// 使用java序列化
+			}
+		}
+		schemas.put(clazz.getName(), schema);
+		return schema;
+	}
+
+	private ClassLoader _getClassLoader() {
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		return cl != null ? cl : BinaryCacheCodec.class.getClassLoader();
+	}
+
+	private static int _getType(Class<?> type) {
+		if (type == Boolean.TYPE)
+			return TYPE_BOOLEAN;
+		if (type == Boolean.class)
+			return TYPE_BOOLEAN_OBJ;
+		if (type == Byte.TYPE)
+			return TYPE_BYTE;
+		if (type == Byte.class)
+			return TYPE_BYTE_OBJ;
+		if (type == Character.TYPE)
+			return TYPE_CHAR;
+		if (type == Character.class)
+			return TYPE_CHAR_OBJ;
+		if (type == Short.TYPE)
+			return TYPE_SHORT;
+		if (type == Short.class)
+			return TYPE_SHORT_OBJ;
+		if (type == Integer.TYPE)
+			return TYPE_INT;
+		if (type == Integer.class)
+			return TYPE_INT_OBJ;
+		if (type == Long.TYPE)
+			return TYPE_LONG;
+		if (type == Long.class)
+			return TYPE_LONG_OBJ;
+		if (type == Float.TYPE)
+			return TYPE_FLOAT;
+		if (type == Float.class)
+			return TYPE_FLOAT_OBJ;
+		if (type == Double.TYPE)
+			return TYPE_DOUBLE;
+		if (type == Double.class)
+			return TYPE_DOUBLE_OBJ;
+		if (type == String.class)
+			return TYPE_STRING;
+		if (type == Date.class)
+			return TYPE_DATE;
+		if (type == byte[].class)
+			return TYPE_BYTES;
+		return TYPE_OBJECT;
+	}
+
+	/**
+	 * 数据对象结构.
+	 */
+	private static class Schema {
+		private final String className;
+		private final Constructor<?> constructor;
+		private final Field[] fields;
+		private final int[] types;
+		private final int hash;
+
+		Schema() {
+			this.className = null;
+			this.constructor = null;
+			this.fields = null;
+			this.types = null;
+			this.hash = 0;
+		}
+
+		Schema(Class<?> clazz) throws NoSuchMethodException {
+			this.className = clazz.getName();
+			this.constructor = clazz.getDeclaredConstructor();
+			this.constructor.setAccessible(true);
+			this.fields = ReflectUtil.getFields(clazz);
+			this.types = new int[fields.length];
+
+			int hash = 17;
+			for (int i = 0; i < fields.length; i++) {
+				fields[i].setAccessible(true);
+				types[i] = _getType(fields[i].getType());
+				hash = 31 * hash + fields[i].getName().hashCode();
+				hash = 31 * hash + fields[i].getType().getName().hashCode();
+			}
+			this.hash = hash;
+		}
+	}
+
+}
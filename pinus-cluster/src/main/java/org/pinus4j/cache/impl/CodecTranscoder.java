@@ -0,0 +1,161 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.spy.memcached.CachedData;
+import net.spy.memcached.transcoders.SerializingTranscoder;
+import net.spy.memcached.transcoders.Transcoder;
+
+import org.pinus4j.cache.ICacheCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 使用ICacheCodec编码的memcached转码器. 编码后超过压缩阈值的数据使用deflate压缩, 压缩后没有变小则保存原数据.
+ *
+ * 不是由此转码器写入的数据(例如升级前使用java序列化保存的数据)交给SerializingTranscoder解码. 解码失败时返回null,
+ * 当作缓存没有命中处理.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class CodecTranscoder implements Transcoder<Object> {
+
+	public static final Logger LOG = LoggerFactory.getLogger(CodecTranscoder.class);
+
+	/**
+	 * 使用codec编码的标记. 与SerializingTranscoder使用的标记位不重叠.
+	 */
+	static final int FLAG_CODEC = 0x1000;
+
+	/**
+	 * 数据经过压缩的标记.
+	 */
+	static final int FLAG_COMPRESSED = 0x2000;
+
+	private final ICacheCodec codec;
+
+	/**
+	 * 压缩阈值(字节).
+	 */
+	private final int compressThreshold;
+
+	private final SerializingTranscoder fallback = new SerializingTranscoder();
+
+	public CodecTranscoder(ICacheCodec codec, int compressThreshold) {
+		if (codec == null) {
+			throw new IllegalArgumentException("codec不能为空");
+		}
+		this.codec = codec;
+		this.compressThreshold = compressThreshold;
+	}
+
+	@Override
+	public boolean asyncDecode(CachedData d) {
+		return false;
+	}
+
+	@Override
+	public CachedData encode(Object o) {
+		byte[] data;
+		try {
+			data = codec.encode(o);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("缓存编码失败 " + o.getClass().getName(), e);
+		}
+
+		int flags = FLAG_CODEC;
+		if (compressThreshold > 0 && data.length > compressThreshold) {
+			byte[] compressed = compress(data);
+			if (compressed.length < data.length) {
+				data = compressed;
+				flags |= FLAG_COMPRESSED;
+			}
+		}
+
+		return new CachedData(flags, data, getMaxSize());
+	}
+
+	@Override
+	public Object decode(CachedData d) {
+		int flags = d.getFlags();
+		if ((flags & FLAG_CODEC) == 0) {
+			return fallback.decode(d);
+		}
+
+		try {
+			byte[] data = d.getData();
+			if ((flags & FLAG_COMPRESSED) != 0) {
+				data = decompress(data);
+			}
+			return codec.decode(data);
+		} catch (Exception e) {
+			LOG.warn("缓存解码失败, 当作没有命中处理 " + e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public int getMaxSize() {
+		return CachedData.MAX_SIZE;
+	}
+
+	static byte[] compress(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+			byte[] buf = new byte[4096];
+			while (!deflater.finished()) {
+				int len = deflater.deflate(buf);
+				out.write(buf, 0, len);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	static byte[] decompress(byte[] data) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+			byte[] buf = new byte[4096];
+			while (!inflater.finished()) {
+				int len = inflater.inflate(buf);
+				if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("压缩数据不完整");
+				}
+				out.write(buf, 0, len);
+			}
+			return out.toByteArray();
+		} catch (DataFormatException e) {
+			throw new IOException("解压失败", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+}
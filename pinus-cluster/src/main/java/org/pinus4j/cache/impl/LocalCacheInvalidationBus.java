@@ -0,0 +1,74 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.pinus4j.constant.Const;
+
+/**
+ * 进程内的缓存失效通知. 同一个频道的多个实例互相通知, 用于测试和单机环境下代替基于zookeeper的实现.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class LocalCacheInvalidationBus extends AbstractCacheInvalidationBus {
+
+	/**
+	 * 频道 -> 频道中的实例.
+	 */
+	private static final ConcurrentMap<String, List<LocalCacheInvalidationBus>> channels = new ConcurrentHashMap<String, List<LocalCacheInvalidationBus>>();
+
+	private final List<LocalCacheInvalidationBus> members;
+
+	public LocalCacheInvalidationBus(String channel) {
+		this(channel, Const.CACHE_INVALIDATION_FLUSH_INTERVAL);
+	}
+
+	public LocalCacheInvalidationBus(String channel, long flushInterval) {
+		super(flushInterval);
+
+		List<LocalCacheInvalidationBus> members = channels.get(channel);
+		if (members == null) {
+			channels.putIfAbsent(channel, new CopyOnWriteArrayList<LocalCacheInvalidationBus>());
+			members = channels.get(channel);
+		}
+		members.add(this);
+		this.members = members;
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		members.remove(this);
+	}
+
+	@Override
+	protected void _send(List<String> keys) {
+		List<String> message = new ArrayList<String>(keys);
+		for (LocalCacheInvalidationBus member : members) {
+			if (member != this) {
+				member._dispatch(message);
+			}
+		}
+	}
+
+}
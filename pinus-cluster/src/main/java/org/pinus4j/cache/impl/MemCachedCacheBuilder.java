@@ -22,6 +22,7 @@ import java.net.SocketAddress;
 import java.util.Collection;
 
 import org.pinus4j.cache.ICacheBuilder;
+import org.pinus4j.cache.ICacheCodec;
 import org.pinus4j.cache.IPrimaryCache;
 import org.pinus4j.cache.ISecondCache;
 import org.pinus4j.cluster.config.IClusterConfig;
@@ -46,6 +47,12 @@ public class MemCachedCacheBuilder implements ICacheBuilder {
 
 	private int primaryCacheExpire;
 
+	private int primaryNearCacheSize;
+
+	private int primaryNearCacheExpire;
+
+	private Class<ICacheCodec> cacheCodecClass;
+
 	private Class<ISecondCache> secondCacheClass;
 
 	private String secondCacheAddress;
@@ -63,11 +70,15 @@ public class MemCachedCacheBuilder implements ICacheBuilder {
 		builder.setPrimaryCacheClass(config.getPrimaryCacheClass());
 		builder.setPrimaryCacheAddress(config.getPrimaryCacheAddress());
 		builder.setPrimaryCacheExpire(config.getPrimaryCacheExpire());
+		builder.setPrimaryNearCacheSize(config.getPrimaryNearCacheSize());
+		builder.setPrimaryNearCacheExpire(config.getPrimaryNearCacheExpire());
 
 		builder.setSecondCacheClass(config.getSecondCacheClass());
 		builder.setSecondCacheAddress(config.getSecondCacheAddress());
 		builder.setSecondCacheExpire(config.getSecondCacheExpire());
 
+		builder.setCacheCodecClass(config.getCacheCodecClass());
+
 		return builder;
 	}
 
@@ -87,6 +98,7 @@ public class MemCachedCacheBuilder implements ICacheBuilder {
 		} catch (Exception e) {
 			throw new RuntimeException("create primary cache instance failure", e);
 		}
+		_setCodec(instance);
 
         _sleep(100);
 
@@ -103,6 +115,12 @@ public class MemCachedCacheBuilder implements ICacheBuilder {
 					+ memcachedAddressInfo.toString());
 		}
 
+		if (this.primaryNearCacheSize > 0) {
+			instance = new NearPrimaryCacheImpl(instance, this.primaryNearCacheSize, this.primaryNearCacheExpire);
+			LOG.info("find primary near cache, size " + this.primaryNearCacheSize + ", expire "
+					+ this.primaryNearCacheExpire + " seconds");
+		}
+
 		return instance;
 	}
 
@@ -122,6 +140,7 @@ public class MemCachedCacheBuilder implements ICacheBuilder {
 		} catch (Exception e) {
 			throw new RuntimeException("create second cache instance failure", e);
 		}
+		_setCodec(instance);
 
         _sleep(100);
 
@@ -141,6 +160,19 @@ public class MemCachedCacheBuilder implements ICacheBuilder {
 		return instance;
 	}
 
+	private void _setCodec(Object instance) {
+		if (this.cacheCodecClass == null || !(instance instanceof AbstractMemCachedCache)) {
+			return;
+		}
+
+		try {
+			((AbstractMemCachedCache) instance).setCodec(this.cacheCodecClass.newInstance());
+		} catch (Exception e) {
+			throw new RuntimeException("create cache codec instance failure", e);
+		}
+		LOG.info("find cache codec " + this.cacheCodecClass.getName());
+	}
+
     private void _sleep(int time) {
         try {
             Thread.sleep(time);
@@ -180,6 +212,30 @@ public class MemCachedCacheBuilder implements ICacheBuilder {
 		this.primaryCacheExpire = primaryCacheExpire;
 	}
 
+	public int getPrimaryNearCacheSize() {
+		return primaryNearCacheSize;
+	}
+
+	public void setPrimaryNearCacheSize(int primaryNearCacheSize) {
+		this.primaryNearCacheSize = primaryNearCacheSize;
+	}
+
+	public int getPrimaryNearCacheExpire() {
+		return primaryNearCacheExpire;
+	}
+
+	public Class<ICacheCodec> getCacheCodecClass() {
+		return cacheCodecClass;
+	}
+
+	public void setCacheCodecClass(Class<ICacheCodec> cacheCodecClass) {
+		this.cacheCodecClass = cacheCodecClass;
+	}
+
+	public void setPrimaryNearCacheExpire(int primaryNearCacheExpire) {
+		this.primaryNearCacheExpire = primaryNearCacheExpire;
+	}
+
 	public String getSecondCacheAddress() {
 		return secondCacheAddress;
 	}
@@ -25,8 +25,10 @@ import java.util.Map;
 import net.spy.memcached.MemcachedClient;
 import net.spy.memcached.internal.OperationFuture;
 
+import org.pinus4j.cache.CacheNull;
 import org.pinus4j.cache.IPrimaryCache;
 import org.pinus4j.cluster.resources.ShardingDBResource;
+import org.pinus4j.constant.Const;
 import org.pinus4j.utils.ReflectUtil;
 import org.pinus4j.utils.StringUtils;
 import org.slf4j.Logger;
@@ -44,6 +46,11 @@ public class MemCachedPrimaryCacheImpl extends AbstractMemCachedCache implements
 	 */
 	public static final Logger LOG = LoggerFactory.getLogger(MemCachedPrimaryCacheImpl.class);
 
+	/**
+	 * 记录不存在标记的过期时间(秒).
+	 */
+	private int nullExpire = Const.PRIMARY_CACHE_NULL_EXPIRE;
+
 	/**
 	 * 构造方法.
 	 * 
@@ -162,6 +169,18 @@ public class MemCachedPrimaryCacheImpl extends AbstractMemCachedCache implements
 		_remove(keys);
 	}
 
+	@Override
+	public void putNullGlobal(String clusterName, String tableName, Number id) {
+		String key = _buildGlobalKey(clusterName, tableName, id);
+		_putNull(key);
+	}
+
+	@Override
+	public Object lookupGlobal(String clusterName, String tableName, Number id) {
+		String key = _buildGlobalKey(clusterName, tableName, id);
+		return _lookup(key);
+	}
+
 	@Override
 	public void setCount(ShardingDBResource db, long count) {
 		String key = _buildCountKey(db);
@@ -260,6 +279,26 @@ public class MemCachedPrimaryCacheImpl extends AbstractMemCachedCache implements
 		_remove(keys);
 	}
 
+	@Override
+	public void putNull(ShardingDBResource db, Number id) {
+		String key = _buildKey(db, id);
+		_putNull(key);
+	}
+
+	@Override
+	public Object lookup(ShardingDBResource db, Number id) {
+		String key = _buildKey(db, id);
+		return _lookup(key);
+	}
+
+	public int getNullExpire() {
+		return nullExpire;
+	}
+
+	public void setNullExpire(int nullExpire) {
+		this.nullExpire = nullExpire;
+	}
+
 	private void _setCount(String key, long count) {
 		try {
 			_removeCount(key);
@@ -334,7 +373,7 @@ public class MemCachedPrimaryCacheImpl extends AbstractMemCachedCache implements
 
 	private void _put(String key, Object data) {
 		try {
-			OperationFuture<Boolean> rst = memClient.set(key, expire, data);
+			OperationFuture<Boolean> rst = memClient.set(key, expire, data, transcoder);
 			if (!rst.get()) {
 				LOG.warn("操作缓存失败");
 			} else {
@@ -350,7 +389,7 @@ public class MemCachedPrimaryCacheImpl extends AbstractMemCachedCache implements
 	private void _put(List<String> keys, List<? extends Object> data) {
 		try {
 			for (int i = 0; i < keys.size(); i++) {
-				memClient.set(keys.get(i), expire, data.get(i));
+				memClient.set(keys.get(i), expire, (Object) data.get(i), transcoder);
 			}
 		} catch (Exception e) {
 			LOG.warn("操作缓存失败:" + e.getMessage());
@@ -361,9 +400,28 @@ public class MemCachedPrimaryCacheImpl extends AbstractMemCachedCache implements
 		}
 	}
 
+	private void _putNull(String key) {
+		try {
+			memClient.set(key, nullExpire, (Object) CacheNull.INSTANCE, transcoder);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("[PRIMARY CACHE] - put null " + key);
+			}
+		} catch (Exception e) {
+			LOG.warn("操作缓存失败:" + e.getMessage());
+		}
+	}
+
 	private <T> T _get(String key) {
+		Object obj = _lookup(key);
+		if (CacheNull.isNull(obj)) {
+			return null;
+		}
+		return (T) obj;
+	}
+
+	private Object _lookup(String key) {
 		try {
-			T obj = (T) memClient.get(key);
+			Object obj = memClient.get(key, transcoder);
 			if (LOG.isDebugEnabled()) {
 				int hit = 0;
 				if (obj != null) {
@@ -382,12 +440,12 @@ public class MemCachedPrimaryCacheImpl extends AbstractMemCachedCache implements
 	private List<Object> _get(List<String> keys) {
 		List<Object> datas = new ArrayList<Object>();
 		try {
-			Map<String, Object> dataMap = memClient.getBulk(keys);
+			Map<String, Object> dataMap = memClient.getBulk(keys, transcoder);
 			if (dataMap != null) {
 				Object data = null;
 				for (String key : keys) {
 					data = dataMap.get(key);
-					if (data != null)
+					if (data != null && !CacheNull.isNull(data))
 						datas.add(data);
 				}
 			}
@@ -18,12 +18,17 @@ package org.pinus4j.cache.impl;
 
 import java.net.SocketAddress;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import net.spy.memcached.MemcachedClient;
 
+import org.pinus4j.cache.ICacheInvalidationBus;
 import org.pinus4j.cache.ISecondCache;
+import org.pinus4j.constant.Const;
 import org.pinus4j.cluster.resources.ShardingDBResource;
 import org.pinus4j.utils.SecurityUtil;
 import org.slf4j.Logger;
@@ -38,6 +43,18 @@ public class MemCachedSecondCacheImpl extends AbstractMemCachedCache implements
 
 	private static final Random r = new Random();
 
+	private static final String VERSION_PREFIX = "sec.version.";
+
+	/**
+	 * 缓存失效通知. 设置后版本号会在本地保存一段时间, 其他节点修改版本号时通过通知删除本地的版本号.
+	 */
+	private volatile ICacheInvalidationBus invalidationBus;
+
+	/**
+	 * 本地保存的版本号. [0]版本号, [1]过期时间.
+	 */
+	private final ConcurrentMap<String, long[]> localVersions = new ConcurrentHashMap<String, long[]>();
+
 	/**
 	 * 构造方法.
 	 * 
@@ -48,6 +65,23 @@ public class MemCachedSecondCacheImpl extends AbstractMemCachedCache implements
 		super(s, expire);
 	}
 
+	/**
+	 * 设置缓存失效通知.
+	 */
+	public void setInvalidationBus(ICacheInvalidationBus invalidationBus) {
+		invalidationBus.subscribe(new ICacheInvalidationBus.Listener() {
+			@Override
+			public void onInvalidate(Collection<String> keys) {
+				for (String key : keys) {
+					if (key.startsWith(VERSION_PREFIX)) {
+						localVersions.remove(key);
+					}
+				}
+			}
+		});
+		this.invalidationBus = invalidationBus;
+	}
+
 	@Override
 	public Collection<SocketAddress> getAvailableServers() {
 		if (this.memClient == null) {
@@ -60,15 +94,14 @@ public class MemCachedSecondCacheImpl extends AbstractMemCachedCache implements
 	public void putGlobal(String whereSql, String clusterName, String tableName, List data) {
 		try {
 			String versionKey = _buildGlobalVersion(clusterName, tableName);
-			int version = r.nextInt(10000);
-			if (!_exists(versionKey)) {
+			Integer version = _getVersion(versionKey);
+			if (version == null) {
+				version = r.nextInt(10000);
 				this.memClient.incr(versionKey, 0, version);
-			} else {
-				version = Integer.parseInt((String) this.memClient.get(versionKey));
 			}
 
 			String cacheKey = _buildGlobalCacheKey(whereSql, clusterName, tableName, version);
-			this.memClient.set(cacheKey, expire, data);
+			this.memClient.set(cacheKey, expire, (Object) data, transcoder);
 
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("[SECOND CACHE] - put to cache done, key: " + cacheKey);
@@ -82,11 +115,11 @@ public class MemCachedSecondCacheImpl extends AbstractMemCachedCache implements
 	public List getGlobal(String whereSql, String clusterName, String tableName) {
 		try {
 			String versionKey = _buildGlobalVersion(clusterName, tableName);
-			if (_exists(versionKey)) {
-				int version = Integer.parseInt((String) this.memClient.get(versionKey));
+			Integer version = _getVersion(versionKey);
+			if (version != null) {
 
 				String cacheKey = _buildGlobalCacheKey(whereSql, clusterName, tableName, version);
-				List data = (List) this.memClient.get(cacheKey);
+				List data = (List) this.memClient.get(cacheKey, transcoder);
 
 				if (LOG.isDebugEnabled() && data != null) {
 					LOG.debug("[SECOND CACHE] -  key " + cacheKey + " hit");
@@ -110,21 +143,21 @@ public class MemCachedSecondCacheImpl extends AbstractMemCachedCache implements
 				LOG.debug("[SECOND CACHE] - " + versionKey + " clean");
 			}
 		}
+		_invalidateVersion(versionKey);
 	}
 
 	@Override
 	public void put(String whereSql, ShardingDBResource db, List data) {
 		try {
 			String versionKey = _buildShardingVersion(db);
-			int version = r.nextInt(10000);
-			if (!_exists(versionKey)) {
+			Integer version = _getVersion(versionKey);
+			if (version == null) {
+				version = r.nextInt(10000);
 				this.memClient.incr(versionKey, 0, version);
-			} else {
-				version = Integer.parseInt((String) this.memClient.get(versionKey));
 			}
 
 			String cacheKey = _buildShardingCacheKey(whereSql, db, version);
-			this.memClient.set(cacheKey, expire, data);
+			this.memClient.set(cacheKey, expire, (Object) data, transcoder);
 
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("[SECOND CACHE] - put to cache done, key: " + cacheKey);
@@ -138,12 +171,11 @@ public class MemCachedSecondCacheImpl extends AbstractMemCachedCache implements
 	public List get(String whereSql, ShardingDBResource db) {
 		try {
 			String versionKey = _buildShardingVersion(db);
-
-			if (_exists(versionKey)) {
-				int version = Integer.parseInt((String) this.memClient.get(versionKey));
+			Integer version = _getVersion(versionKey);
+			if (version != null) {
 
 				String cacheKey = _buildShardingCacheKey(whereSql, db, version);
-				List data = (List) this.memClient.get(cacheKey);
+				List data = (List) this.memClient.get(cacheKey, transcoder);
 
 				if (LOG.isDebugEnabled() && data != null) {
 					LOG.debug("[SECOND CACHE] -  key " + cacheKey + " hit");
@@ -167,6 +199,43 @@ public class MemCachedSecondCacheImpl extends AbstractMemCachedCache implements
 				LOG.debug("[SECOND CACHE] - " + versionKey + " clean");
 			}
 		}
+		_invalidateVersion(versionKey);
+	}
+
+	/**
+	 * 获取版本号, 不存在返回null. 设置了缓存失效通知时优先读取本地保存的版本号.
+	 */
+	private Integer _getVersion(String versionKey) {
+		if (invalidationBus == null) {
+			Object version = this.memClient.get(versionKey);
+			return version != null ? Integer.valueOf((String) version) : null;
+		}
+
+		long now = System.currentTimeMillis();
+		long[] local = localVersions.get(versionKey);
+		if (local != null && local[1] > now) {
+			return (int) local[0];
+		}
+
+		Object version = this.memClient.get(versionKey);
+		if (version == null) {
+			localVersions.remove(versionKey);
+			return null;
+		}
+		int v = Integer.parseInt((String) version);
+		localVersions.put(versionKey, new long[] { v, now + Const.SECOND_CACHE_LOCAL_VERSION_EXPIRE });
+		return v;
+	}
+
+	/**
+	 * 删除本地保存的版本号并通知其他节点.
+	 */
+	private void _invalidateVersion(String versionKey) {
+		ICacheInvalidationBus bus = this.invalidationBus;
+		if (bus != null) {
+			localVersions.remove(versionKey);
+			bus.publish(Collections.singletonList(versionKey));
+		}
 	}
 
 	private boolean _exists(String key) {
@@ -174,14 +243,14 @@ public class MemCachedSecondCacheImpl extends AbstractMemCachedCache implements
 	}
 
 	private String _buildGlobalVersion(String clusterName, String tableName) {
-		StringBuilder versionKey = new StringBuilder("sec.version.");
+		StringBuilder versionKey = new StringBuilder(VERSION_PREFIX);
 		versionKey.append(clusterName).append(".");
 		versionKey.append(tableName);
 		return versionKey.toString();
 	}
 
 	public String _buildShardingVersion(ShardingDBResource shardingDBResource) {
-		StringBuilder versionKey = new StringBuilder("sec.version.");
+		StringBuilder versionKey = new StringBuilder(VERSION_PREFIX);
 		versionKey.append(shardingDBResource.getClusterName()).append(shardingDBResource.getDbName());
 		versionKey.append(".");
 		versionKey.append(shardingDBResource.getRegionCapacity());
@@ -0,0 +1,527 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache.impl;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pinus4j.cache.CacheNull;
+import org.pinus4j.cache.ICacheInvalidationBus;
+import org.pinus4j.cache.IPrimaryCache;
+import org.pinus4j.cluster.resources.ShardingDBResource;
+import org.pinus4j.utils.IOUtil;
+import org.pinus4j.utils.ReflectUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 进程内一级缓存. 包装远程的一级缓存, 对@Table(nearCache=true)的表在本地保存一份记录, 命中时不需要访问memcached.
+ * 本地缓存按容量和过期时间淘汰, 过期时间应该比远程缓存短, 用来限制其他进程修改数据后本地读到旧数据的时间.
+ *
+ * 本地保存的是记录序列化后的字节, 每次读取返回新的对象, 调用方修改返回的对象不会影响缓存. count数据和记录不存在的标记只保存在远程缓存.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class NearPrimaryCacheImpl implements IPrimaryCache {
+
+	public static final Logger LOG = LoggerFactory.getLogger(NearPrimaryCacheImpl.class);
+
+	/**
+	 * 远程缓存.
+	 */
+	private final IPrimaryCache delegate;
+
+	private final TinyLfuCache localCache;
+
+	/**
+	 * 缓存失效通知. 删除记录时通知其他节点删除本地缓存.
+	 */
+	private volatile ICacheInvalidationBus invalidationBus;
+
+	/**
+	 * @param delegate
+	 *            远程缓存
+	 * @param maxSize
+	 *            本地缓存最大记录数
+	 * @param expire
+	 *            本地缓存过期时间(秒)
+	 */
+	public NearPrimaryCacheImpl(IPrimaryCache delegate, int maxSize, int expire) {
+		this.delegate = delegate;
+		this.localCache = new TinyLfuCache(maxSize, expire);
+	}
+
+	/**
+	 * 设置缓存失效通知.
+	 */
+	public void setInvalidationBus(ICacheInvalidationBus invalidationBus) {
+		invalidationBus.subscribe(new ICacheInvalidationBus.Listener() {
+			@Override
+			public void onInvalidate(Collection<String> keys) {
+				for (String key : keys) {
+					localCache.remove(key);
+				}
+			}
+		});
+		this.invalidationBus = invalidationBus;
+	}
+
+	@Override
+	public int getExpire() {
+		return delegate.getExpire();
+	}
+
+	@Override
+	public void close() {
+		localCache.clear();
+		delegate.close();
+	}
+
+	@Override
+	public Collection<SocketAddress> getAvailableServers() {
+		return delegate.getAvailableServers();
+	}
+
+	@Override
+	public void setCountGlobal(String clusterName, String tableName, long count) {
+		delegate.setCountGlobal(clusterName, tableName, count);
+	}
+
+	@Override
+	public void removeCountGlobal(String clusterName, String tableName) {
+		delegate.removeCountGlobal(clusterName, tableName);
+	}
+
+	@Override
+	public long decrCountGlobal(String clusterName, String tableName, int delta) {
+		return delegate.decrCountGlobal(clusterName, tableName, delta);
+	}
+
+	@Override
+	public long incrCountGlobal(String clusterName, String tableName, int delta) {
+		return delegate.incrCountGlobal(clusterName, tableName, delta);
+	}
+
+	@Override
+	public long getCountGlobal(String clusterName, String tableName) {
+		return delegate.getCountGlobal(clusterName, tableName);
+	}
+
+	@Override
+	public void putGlobal(String clusterName, String tableName, Number id, Object data) {
+		delegate.putGlobal(clusterName, tableName, id, data);
+		if (data != null && ReflectUtil.isNearCache(clusterName, tableName)) {
+			_putLocal(_buildGlobalKey(clusterName, tableName, id), data);
+		}
+	}
+
+	@Override
+	public void putGlobal(String clusterName, String tableName, List<? extends Object> data) {
+		delegate.putGlobal(clusterName, tableName, data);
+		if (data != null && ReflectUtil.isNearCache(clusterName, tableName)) {
+			for (Object d : data) {
+				_putLocal(_buildGlobalKey(clusterName, tableName, ReflectUtil.getPkValue(d)), d);
+			}
+		}
+	}
+
+	@Override
+	public void putGlobal(String clusterName, String tableName, Map<Number, ? extends Object> data) {
+		delegate.putGlobal(clusterName, tableName, data);
+		if (data != null && ReflectUtil.isNearCache(clusterName, tableName)) {
+			for (Map.Entry<Number, ? extends Object> entry : data.entrySet()) {
+				_putLocal(_buildGlobalKey(clusterName, tableName, entry.getKey()), entry.getValue());
+			}
+		}
+	}
+
+	@Override
+	public <T> T getGlobal(String clusterName, String tableName, Number id) {
+		if (!ReflectUtil.isNearCache(clusterName, tableName)) {
+			return delegate.getGlobal(clusterName, tableName, id);
+		}
+
+		String key = _buildGlobalKey(clusterName, tableName, id);
+		T data = this.<T> _getLocal(key);
+		if (data == null) {
+			data = delegate.getGlobal(clusterName, tableName, id);
+			if (data != null) {
+				_putLocal(key, data);
+			}
+		}
+		return data;
+	}
+
+	@Override
+	public <T> List<T> getGlobal(String clusterName, String tableName, Number[] ids) {
+		if (!ReflectUtil.isNearCache(clusterName, tableName)) {
+			return delegate.getGlobal(clusterName, tableName, ids);
+		}
+
+		String[] keys = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			keys[i] = _buildGlobalKey(clusterName, tableName, ids[i]);
+		}
+		return _getLocal(keys, ids, new RemoteGetter() {
+			@Override
+			public <T> List<T> get(String clusterName, String tableName, Number[] ids) {
+				return delegate.getGlobal(clusterName, tableName, ids);
+			}
+		}, clusterName, tableName);
+	}
+
+	@Override
+	public void removeGlobal(String clusterName, String tableName, Number id) {
+		String key = _buildGlobalKey(clusterName, tableName, id);
+		// 先删除远程缓存, 否则删除期间本节点的读取会把旧值重新放入本地缓存
+		delegate.removeGlobal(clusterName, tableName, id);
+		localCache.remove(key);
+		if (ReflectUtil.isNearCache(clusterName, tableName)) {
+			_publish(Collections.singletonList(key));
+		}
+	}
+
+	@Override
+	public void removeGlobal(String clusterName, String tableName, List<? extends Number> ids) {
+		delegate.removeGlobal(clusterName, tableName, ids);
+		List<String> keys = new ArrayList<String>(ids.size());
+		for (Number id : ids) {
+			String key = _buildGlobalKey(clusterName, tableName, id);
+			localCache.remove(key);
+			keys.add(key);
+		}
+		if (ReflectUtil.isNearCache(clusterName, tableName)) {
+			_publish(keys);
+		}
+	}
+
+	@Override
+	public void putNullGlobal(String clusterName, String tableName, Number id) {
+		delegate.putNullGlobal(clusterName, tableName, id);
+	}
+
+	@Override
+	public Object lookupGlobal(String clusterName, String tableName, Number id) {
+		if (!ReflectUtil.isNearCache(clusterName, tableName)) {
+			return delegate.lookupGlobal(clusterName, tableName, id);
+		}
+
+		String key = _buildGlobalKey(clusterName, tableName, id);
+		Object data = _getLocal(key);
+		if (data == null) {
+			data = delegate.lookupGlobal(clusterName, tableName, id);
+			if (data != null && !CacheNull.isNull(data)) {
+				_putLocal(key, data);
+			}
+		}
+		return data;
+	}
+
+	@Override
+	public void setCount(ShardingDBResource db, long count) {
+		delegate.setCount(db, count);
+	}
+
+	@Override
+	public void removeCount(ShardingDBResource db) {
+		delegate.removeCount(db);
+	}
+
+	@Override
+	public long decrCount(ShardingDBResource db, long delta) {
+		return delegate.decrCount(db, delta);
+	}
+
+	@Override
+	public long incrCount(ShardingDBResource db, long delta) {
+		return delegate.incrCount(db, delta);
+	}
+
+	@Override
+	public long getCount(ShardingDBResource db) {
+		return delegate.getCount(db);
+	}
+
+	@Override
+	public void put(ShardingDBResource db, Number id, Object data) {
+		delegate.put(db, id, data);
+		if (data != null && _isNearCache(db)) {
+			_putLocal(_buildKey(db, id), data);
+		}
+	}
+
+	@Override
+	public void put(ShardingDBResource db, Number[] ids, List<? extends Object> data) {
+		delegate.put(db, ids, data);
+		if (data != null && _isNearCache(db)) {
+			// 数据不一定与ids一一对应, 使用数据自身的主键
+			for (Object d : data) {
+				_putLocal(_buildKey(db, ReflectUtil.getPkValue(d)), d);
+			}
+		}
+	}
+
+	@Override
+	public void put(ShardingDBResource db, Map<Number, ? extends Object> data) {
+		delegate.put(db, data);
+		if (data != null && _isNearCache(db)) {
+			for (Map.Entry<Number, ? extends Object> entry : data.entrySet()) {
+				_putLocal(_buildKey(db, entry.getKey()), entry.getValue());
+			}
+		}
+	}
+
+	@Override
+	public <T> T get(ShardingDBResource db, Number id) {
+		if (!_isNearCache(db)) {
+			return delegate.get(db, id);
+		}
+
+		String key = _buildKey(db, id);
+		T data = this.<T> _getLocal(key);
+		if (data == null) {
+			data = delegate.get(db, id);
+			if (data != null) {
+				_putLocal(key, data);
+			}
+		}
+		return data;
+	}
+
+	@Override
+	public <T> List<T> get(final ShardingDBResource db, Number... ids) {
+		if (!_isNearCache(db)) {
+			return delegate.get(db, ids);
+		}
+
+		String[] keys = new String[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			keys[i] = _buildKey(db, ids[i]);
+		}
+		return _getLocal(keys, ids, new RemoteGetter() {
+			@Override
+			public <T> List<T> get(String clusterName, String tableName, Number[] ids) {
+				return delegate.get(db, ids);
+			}
+		}, db.getClusterName(), db.getTableName());
+	}
+
+	@Override
+	public void remove(ShardingDBResource db, Number pk) {
+		String key = _buildKey(db, pk);
+		// 先删除远程缓存, 否则删除期间本节点的读取会把旧值重新放入本地缓存
+		delegate.remove(db, pk);
+		localCache.remove(key);
+		if (_isNearCache(db)) {
+			_publish(Collections.singletonList(key));
+		}
+	}
+
+	@Override
+	public void remove(ShardingDBResource db, List<? extends Number> pks) {
+		delegate.remove(db, pks);
+		List<String> keys = new ArrayList<String>(pks.size());
+		for (Number pk : pks) {
+			String key = _buildKey(db, pk);
+			localCache.remove(key);
+			keys.add(key);
+		}
+		if (_isNearCache(db)) {
+			_publish(keys);
+		}
+	}
+
+	@Override
+	public void putNull(ShardingDBResource db, Number id) {
+		delegate.putNull(db, id);
+	}
+
+	@Override
+	public Object lookup(ShardingDBResource db, Number id) {
+		if (!_isNearCache(db)) {
+			return delegate.lookup(db, id);
+		}
+
+		String key = _buildKey(db, id);
+		Object data = _getLocal(key);
+		if (data == null) {
+			data = delegate.lookup(db, id);
+			if (data != null && !CacheNull.isNull(data)) {
+				_putLocal(key, data);
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * 删除本地缓存中的一条记录, 不影响远程缓存.
+	 */
+	public void evictLocal(String key) {
+		localCache.remove(key);
+	}
+
+	/**
+	 * 清空本地缓存.
+	 */
+	public void clearLocal() {
+		localCache.clear();
+	}
+
+	public IPrimaryCache getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * 批量读取, 本地没有命中的记录从远程缓存读取后放入本地. 返回命中的记录, 保持ids的顺序.
+	 */
+	private <T> List<T> _getLocal(String[] keys, Number[] ids, RemoteGetter remote, String clusterName,
+			String tableName) {
+		Object[] hits = new Object[ids.length];
+		List<Number> missIds = new ArrayList<Number>();
+		for (int i = 0; i < ids.length; i++) {
+			hits[i] = _getLocal(keys[i]);
+			if (hits[i] == null) {
+				missIds.add(ids[i]);
+			}
+		}
+
+		if (!missIds.isEmpty()) {
+			List<T> remoteHits = remote.get(clusterName, tableName, missIds.toArray(new Number[missIds.size()]));
+			if (remoteHits != null && !remoteHits.isEmpty()) {
+				Map<Number, Object> remoteMap = new HashMap<Number, Object>(remoteHits.size());
+				for (Object data : remoteHits) {
+					remoteMap.put(ReflectUtil.getPkValue(data), data);
+				}
+				for (int i = 0; i < ids.length; i++) {
+					if (hits[i] == null) {
+						hits[i] = _findByPk(remoteMap, ids[i]);
+						if (hits[i] != null) {
+							_putLocal(keys[i], hits[i]);
+						}
+					}
+				}
+			}
+		}
+
+		List<T> result = new ArrayList<T>(ids.length);
+		for (Object hit : hits) {
+			if (hit != null) {
+				result.add((T) hit);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 主键的类型可能与数据对象中的不同, 例如Integer和Long.
+	 */
+	private Object _findByPk(Map<Number, Object> map, Number id) {
+		Object data = map.get(id);
+		if (data == null) {
+			for (Map.Entry<Number, Object> entry : map.entrySet()) {
+				if (entry.getKey().longValue() == id.longValue()) {
+					return entry.getValue();
+				}
+			}
+		}
+		return data;
+	}
+
+	private <T> T _getLocal(String key) {
+		byte[] data = (byte[]) localCache.get(key);
+		if (data == null) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("[NEAR CACHE] - get " + key + " hit=0");
+			}
+			return null;
+		}
+
+		try {
+			T obj = (T) IOUtil.getObject(data, Object.class);
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("[NEAR CACHE] - get " + key + " hit=1");
+			}
+			return obj;
+		} catch (Exception e) {
+			localCache.remove(key);
+			LOG.warn("操作本地缓存失败:" + e.getMessage());
+		}
+		return null;
+	}
+
+	private void _putLocal(String key, Object data) {
+		try {
+			localCache.put(key, IOUtil.getBytes(data));
+		} catch (Exception e) {
+			LOG.warn("操作本地缓存失败:" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 通知其他节点删除本地缓存. 只有开启本地缓存的表需要通知.
+	 */
+	private void _publish(List<String> keys) {
+		ICacheInvalidationBus bus = this.invalidationBus;
+		if (bus != null) {
+			bus.publish(keys);
+		}
+	}
+
+	private boolean _isNearCache(ShardingDBResource db) {
+		return ReflectUtil.isNearCache(db.getClusterName(), db.getTableName());
+	}
+
+	/**
+	 * 与远程缓存相同的key格式, 主键统一转换为long. [clusterName].[tableName].[id]
+	 */
+	private String _buildGlobalKey(String clusterName, String tableName, Number id) {
+		StringBuilder key = new StringBuilder();
+		key.append(clusterName).append(".").append(tableName).append(".");
+		key.append(id.longValue());
+		return key.toString();
+	}
+
+	/**
+	 * 与远程缓存相同的key格式, 主键统一转换为long. [clusterName + dbIndex].[start + end].[tableName +
+	 * tableIndex].[id]
+	 */
+	private String _buildKey(ShardingDBResource shardingDBResource, Number id) {
+		StringBuilder key = new StringBuilder();
+		key.append(shardingDBResource.getClusterName()).append(shardingDBResource.getDbName());
+		key.append(".");
+		key.append(shardingDBResource.getRegionCapacity());
+		key.append(".");
+		key.append(shardingDBResource.getTableName()).append(shardingDBResource.getTableIndex());
+		key.append(".");
+		key.append(id.longValue());
+		return key.toString();
+	}
+
+	/**
+	 * 从远程缓存批量读取.
+	 */
+	private interface RemoteGetter {
+		<T> List<T> get(String clusterName, String tableName, Number[] ids);
+	}
+
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内有界缓存. 按容量和过期时间淘汰, 淘汰时使用TinyLFU准入策略: 缓存满时只有访问频率高于LRU队尾记录的新记录才能进入缓存,
+ * 避免一次性的扫描访问把热点数据挤出缓存. 访问频率使用Count-Min Sketch近似统计, 累计一定次数后所有计数减半, 使频率随时间衰减.
+ *
+ * 为了减少锁竞争, 缓存按key的hash分段, 每段独立加锁.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class TinyLfuCache {
+
+	private static final int SEGMENT_NUM = 16;
+
+	private final Segment[] segments;
+
+	/**
+	 * 过期时间(毫秒).
+	 */
+	private final long expireMillis;
+
+	/**
+	 * @param maxSize
+	 *            最大记录数
+	 * @param expire
+	 *            过期时间(秒)
+	 */
+	public TinyLfuCache(int maxSize, int expire) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize必须大于0");
+		}
+		this.expireMillis = expire * 1000l;
+
+		int segmentNum = Math.min(SEGMENT_NUM, _ceilingPowerOfTwo(maxSize));
+		int capacity = (maxSize + segmentNum - 1) / segmentNum;
+		this.segments = new Segment[segmentNum];
+		for (int i = 0; i < segmentNum; i++) {
+			this.segments[i] = new Segment(capacity);
+		}
+	}
+
+	/**
+	 * 获取记录, 不存在或者已经过期返回null.
+	 */
+	public Object get(String key) {
+		int hash = _hash(key);
+		return _segmentFor(hash).get(key, hash, System.currentTimeMillis());
+	}
+
+	/**
+	 * 添加记录. 缓存已满并且新记录的访问频率不高于被淘汰记录时不会被加入.
+	 *
+	 * @return true:加入了缓存, false:被准入策略拒绝
+	 */
+	public boolean put(String key, Object value) {
+		int hash = _hash(key);
+		long now = System.currentTimeMillis();
+		return _segmentFor(hash).put(key, hash, value, now, now + expireMillis);
+	}
+
+	/**
+	 * 删除记录.
+	 */
+	public void remove(String key) {
+		int hash = _hash(key);
+		_segmentFor(hash).remove(key);
+	}
+
+	/**
+	 * 清空缓存.
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * 当前记录数, 包括已过期但还没有被清理的记录.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	private Segment _segmentFor(int hash) {
+		return segments[hash & (segments.length - 1)];
+	}
+
+	private static int _hash(String key) {
+		int h = key.hashCode();
+		h ^= (h >>> 20) ^ (h >>> 12);
+		return h ^ (h >>> 7) ^ (h >>> 4);
+	}
+
+	private static int _ceilingPowerOfTwo(int n) {
+		int p = 1;
+		while (p < n && p < (1 << 30)) {
+			p <<= 1;
+		}
+		return p;
+	}
+
+	/**
+	 * 缓存分段. LRU顺序由LinkedHashMap的访问顺序维护.
+	 */
+	private static class Segment {
+
+		private final int capacity;
+
+		private final LinkedHashMap<String, Entry> map;
+
+		private final FrequencySketch sketch;
+
+		Segment(int capacity) {
+			this.capacity = capacity;
+			this.map = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+			this.sketch = new FrequencySketch(capacity);
+		}
+
+		synchronized Object get(String key, int hash, long now) {
+			sketch.increment(hash);
+
+			Entry entry = map.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expireAt <= now) {
+				map.remove(key);
+				return null;
+			}
+			return entry.value;
+		}
+
+		synchronized boolean put(String key, int hash, Object value, long now, long expireAt) {
+			sketch.increment(hash);
+
+			Entry entry = map.get(key);
+			if (entry != null) {
+				entry.value = value;
+				entry.expireAt = expireAt;
+				return true;
+			}
+
+			if (map.size() >= capacity) {
+				Iterator<Map.Entry<String, Entry>> it = map.entrySet().iterator();
+				Map.Entry<String, Entry> eldest = it.next();
+				Entry victim = eldest.getValue();
+				// 过期的记录直接淘汰, 否则比较新旧记录的访问频率
+				if (victim.expireAt > now && sketch.frequency(hash) <= sketch.frequency(victim.hash)) {
+					return false;
+				}
+				it.remove();
+			}
+
+			map.put(key, new Entry(value, hash, expireAt));
+			return true;
+		}
+
+		synchronized void remove(String key) {
+			map.remove(key);
+		}
+
+		synchronized void clear() {
+			map.clear();
+		}
+
+		synchronized int size() {
+			return map.size();
+		}
+	}
+
+	private static class Entry {
+		private Object value;
+		private final int hash;
+		private long expireAt;
+
+		Entry(Object value, int hash, long expireAt) {
+			this.value = value;
+			this.hash = hash;
+			this.expireAt = expireAt;
+		}
+	}
+
+	/**
+	 * 访问频率统计. 4行Count-Min Sketch, 每个计数最大15, 统计次数达到容量的10倍时所有计数减半.
+	 */
+	static class FrequencySketch {
+
+		private static final int DEPTH = 4;
+
+		private static final int MAX_COUNT = 15;
+
+		/**
+		 * 每行的计数器个数是容量的倍数, 减少不同key之间的冲突.
+		 */
+		private static final int WIDTH_FACTOR = 4;
+
+		private static final int[] SEEDS = new int[] { 0x97cb3127, 0xb3c37c55, 0x5bd1e995, 0x1b873593 };
+
+		private final byte[][] table;
+
+		private final int mask;
+
+		private final int sampleSize;
+
+		private int additions;
+
+		FrequencySketch(int capacity) {
+			int width = _ceilingPowerOfTwo(Math.max(capacity, 16) * WIDTH_FACTOR);
+			this.table = new byte[DEPTH][width];
+			this.mask = width - 1;
+			this.sampleSize = Math.max(capacity, 16) * 10;
+		}
+
+		void increment(int hash) {
+			boolean added = false;
+			for (int i = 0; i < DEPTH; i++) {
+				int index = _indexOf(hash, i);
+				if (table[i][index] < MAX_COUNT) {
+					table[i][index]++;
+					added = true;
+				}
+			}
+			if (added && ++additions >= sampleSize) {
+				_reset();
+			}
+		}
+
+		int frequency(int hash) {
+			int frequency = MAX_COUNT;
+			for (int i = 0; i < DEPTH; i++) {
+				frequency = Math.min(frequency, table[i][_indexOf(hash, i)]);
+			}
+			return frequency;
+		}
+
+		private int _indexOf(int hash, int i) {
+			int h = hash * SEEDS[i];
+			h ^= h >>> 16;
+			return h & mask;
+		}
+
+		private void _reset() {
+			for (byte[] row : table) {
+				for (int i = 0; i < row.length; i++) {
+					row[i] = (byte) (row[i] >>> 1);
+				}
+			}
+			additions /= 2;
+		}
+	}
+
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cache.impl;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.pinus4j.constant.Const;
+
+/**
+ * 基于zookeeper的缓存失效通知. 每一批失效的key写为失效通知目录下的一个临时顺序节点, 节点内容的第一行是发送节点的标识, 其余每行一个key.
+ * 各节点通过watcher监听目录变化, 读取序号大于上次读取位置的通知, 并定期轮询以补偿丢失的watcher.
+ * 发送者负责删除超过保留时间的通知, 发送者宕机时临时节点随会话一起删除.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class ZkCacheInvalidationBus extends AbstractCacheInvalidationBus {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String MESSAGE_PREFIX = "msg-";
+
+	private final CuratorFramework curatorClient;
+
+	/**
+	 * 本节点标识, 用于忽略自己发送的通知.
+	 */
+	private final String nodeId = UUID.randomUUID().toString();
+
+	/**
+	 * 已经读取的最大序号.
+	 */
+	private long lastSeq = -1;
+
+	/**
+	 * 本节点发送的通知, 按发送时间排序. [0]节点路径, [1]发送时间.
+	 */
+	private final LinkedList<Object[]> sent = new LinkedList<Object[]>();
+
+	private final Watcher watcher = new Watcher() {
+		@Override
+		public void process(WatchedEvent event) {
+			try {
+				scheduler.execute(new Runnable() {
+					@Override
+					public void run() {
+						_receive();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// 已经关闭
+			}
+		}
+	};
+
+	public ZkCacheInvalidationBus(CuratorFramework curatorClient) {
+		super(Const.CACHE_INVALIDATION_FLUSH_INTERVAL);
+		this.curatorClient = curatorClient;
+
+		try {
+			ZooKeeper zkClient = _getZk();
+			if (zkClient.exists(Const.ZK_CACHE_INVALIDATION, false) == null) {
+				try {
+					zkClient.create(Const.ZK_CACHE_INVALIDATION, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE,
+							CreateMode.PERSISTENT);
+				} catch (KeeperException.NodeExistsException e) {
+					// 其他节点已经创建
+				}
+			}
+
+			// 只接收启动之后的通知
+			for (String child : zkClient.getChildren(Const.ZK_CACHE_INVALIDATION, watcher)) {
+				lastSeq = Math.max(lastSeq, _getSeq(child));
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("初始化缓存失效通知目录失败", e);
+		}
+
+		this.scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				_receive();
+			}
+		}, Const.CACHE_INVALIDATION_POLL_INTERVAL, Const.CACHE_INVALIDATION_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	protected void _send(List<String> keys) throws Exception {
+		StringBuilder data = new StringBuilder(nodeId);
+		for (String key : keys) {
+			data.append('\n').append(key);
+		}
+
+		ZooKeeper zkClient = _getZk();
+		String path = zkClient.create(Const.ZK_CACHE_INVALIDATION + "/" + MESSAGE_PREFIX,
+				data.toString().getBytes(UTF8), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL_SEQUENTIAL);
+
+		long now = System.currentTimeMillis();
+		synchronized (sent) {
+			sent.add(new Object[] { path, now });
+		}
+		_purge(zkClient, now);
+	}
+
+	/**
+	 * 读取新的失效通知并通知本节点的监听器.
+	 */
+	private synchronized void _receive() {
+		try {
+			ZooKeeper zkClient = _getZk();
+			List<String> children = new ArrayList<String>(zkClient.getChildren(Const.ZK_CACHE_INVALIDATION, watcher));
+			Collections.sort(children);
+
+			for (String child : children) {
+				long seq = _getSeq(child);
+				if (seq <= lastSeq) {
+					continue;
+				}
+				lastSeq = seq;
+
+				byte[] data;
+				try {
+					data = zkClient.getData(Const.ZK_CACHE_INVALIDATION + "/" + child, false, null);
+				} catch (KeeperException.NoNodeException e) {
+					// 已经被发送者删除
+					continue;
+				}
+				if (data == null) {
+					continue;
+				}
+
+				String[] lines = new String(data, UTF8).split("\n");
+				if (lines.length < 2 || nodeId.equals(lines[0])) {
+					continue;
+				}
+				_dispatch(Arrays.asList(lines).subList(1, lines.length));
+			}
+		} catch (Exception e) {
+			LOG.warn("读取缓存失效通知失败:" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 删除本节点发送的超过保留时间的通知.
+	 */
+	private void _purge(ZooKeeper zkClient, long now) {
+		while (true) {
+			String path;
+			synchronized (sent) {
+				Object[] first = sent.peek();
+				if (first == null || now - (Long) first[1] < Const.CACHE_INVALIDATION_TTL) {
+					return;
+				}
+				sent.poll();
+				path = (String) first[0];
+			}
+			try {
+				zkClient.delete(path, -1);
+			} catch (KeeperException.NoNodeException e) {
+				// ignore
+			} catch (Exception e) {
+				LOG.warn("删除缓存失效通知失败:" + path);
+			}
+		}
+	}
+
+	private ZooKeeper _getZk() throws Exception {
+		return curatorClient.getZookeeperClient().getZooKeeper();
+	}
+
+	/**
+	 * 顺序节点名称的后缀是10位序号.
+	 */
+	private static long _getSeq(String child) {
+		try {
+			return Long.parseLong(child.substring(child.length() - 10));
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.checkpoint;
+
+import java.util.Map;
+
+/**
+ * 任务进度存储. 长时间运行的数据处理任务定期保存每个遍历器的位置, 任务失败后可以从保存的位置继续执行.
+ * 
+ * 一个存储对象对应一次任务, 任务正常完成后需要调用{@link #clear()}删除保存的进度.
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public interface ICheckpointStore {
+
+	/**
+	 * 读取已经保存的全部进度.
+	 * 
+	 * @return key -> 进度, 没有保存过时返回空集合
+	 */
+	public Map<String, String> load();
+
+	/**
+	 * 保存一个进度, 覆盖已经保存的值.
+	 * 
+	 * @param key
+	 *            进度名, 不能包含"/"
+	 * @param value
+	 *            进度
+	 */
+	public void save(String key, String value);
+
+	/**
+	 * 删除保存的全部进度.
+	 */
+	public void clear();
+
+}
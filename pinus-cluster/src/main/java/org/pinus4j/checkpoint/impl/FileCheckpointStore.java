@@ -0,0 +1,111 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.checkpoint.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.pinus4j.checkpoint.ICheckpointStore;
+import org.pinus4j.exceptions.TaskException;
+
+/**
+ * 保存在本地文件中的任务进度, 用于没有zookeeper的环境. 每次保存时写入临时文件后替换原文件.
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class FileCheckpointStore implements ICheckpointStore {
+
+	private final File file;
+
+	private final Properties checkpoints = new Properties();
+
+	public FileCheckpointStore(File file) {
+		this.file = file;
+
+		if (file.exists()) {
+			InputStream in = null;
+			try {
+				in = new FileInputStream(file);
+				this.checkpoints.load(in);
+			} catch (IOException e) {
+				throw new TaskException("读取任务进度失败, file=" + file, e);
+			} finally {
+				_close(in);
+			}
+		}
+	}
+
+	@Override
+	public synchronized Map<String, String> load() {
+		Map<String, String> result = new HashMap<String, String>();
+		for (String key : this.checkpoints.stringPropertyNames()) {
+			result.put(key, this.checkpoints.getProperty(key));
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized void save(String key, String value) {
+		this.checkpoints.setProperty(key, value);
+
+		File tmp = new File(this.file.getPath() + ".tmp");
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(tmp);
+			this.checkpoints.store(out, null);
+		} catch (IOException e) {
+			throw new TaskException("保存任务进度失败, file=" + this.file, e);
+		} finally {
+			_close(out);
+		}
+		if (!tmp.renameTo(this.file)) {
+			// windows下不能覆盖已经存在的文件
+			this.file.delete();
+			if (!tmp.renameTo(this.file)) {
+				throw new TaskException("保存任务进度失败, file=" + this.file);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void clear() {
+		this.checkpoints.clear();
+		if (this.file.exists() && !this.file.delete()) {
+			throw new TaskException("删除任务进度失败, file=" + this.file);
+		}
+	}
+
+	private void _close(Closeable c) {
+		if (c != null) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+}
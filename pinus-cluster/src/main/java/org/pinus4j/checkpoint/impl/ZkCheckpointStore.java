@@ -0,0 +1,140 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.checkpoint.impl;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.pinus4j.checkpoint.ICheckpointStore;
+import org.pinus4j.constant.Const;
+import org.pinus4j.exceptions.TaskException;
+
+/**
+ * 保存在zookeeper中的任务进度. 每个进度保存为{@link Const#ZK_TASK_CHECKPOINT}/名称/key节点.
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class ZkCheckpointStore implements ICheckpointStore {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final CuratorFramework curatorClient;
+
+	private final String path;
+
+	public ZkCheckpointStore(CuratorFramework curatorClient, String name) {
+		if (name == null || name.length() == 0 || name.indexOf('/') != -1) {
+			throw new IllegalArgumentException("进度名称不能为空并且不能包含/, name=" + name);
+		}
+		this.curatorClient = curatorClient;
+		this.path = Const.ZK_TASK_CHECKPOINT + "/" + name;
+	}
+
+	@Override
+	public Map<String, String> load() {
+		Map<String, String> checkpoints = new HashMap<String, String>();
+		try {
+			ZooKeeper zk = _getZk();
+			List<String> children;
+			try {
+				children = zk.getChildren(this.path, false);
+			} catch (KeeperException.NoNodeException e) {
+				return checkpoints;
+			}
+			for (String child : children) {
+				try {
+					checkpoints.put(child, new String(zk.getData(this.path + "/" + child, false, null), UTF8));
+				} catch (KeeperException.NoNodeException e) {
+					// 已经被删除
+				}
+			}
+		} catch (Exception e) {
+			throw new TaskException("读取任务进度失败, path=" + this.path, e);
+		}
+		return checkpoints;
+	}
+
+	@Override
+	public void save(String key, String value) {
+		String nodePath = this.path + "/" + key;
+		byte[] data = value.getBytes(UTF8);
+		try {
+			ZooKeeper zk = _getZk();
+			try {
+				zk.setData(nodePath, data, -1);
+			} catch (KeeperException.NoNodeException e) {
+				_createIfAbsent(zk, Const.ZK_TASK_CHECKPOINT);
+				_createIfAbsent(zk, this.path);
+				try {
+					zk.create(nodePath, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+				} catch (KeeperException.NodeExistsException e1) {
+					zk.setData(nodePath, data, -1);
+				}
+			}
+		} catch (Exception e) {
+			throw new TaskException("保存任务进度失败, path=" + nodePath, e);
+		}
+	}
+
+	@Override
+	public void clear() {
+		try {
+			ZooKeeper zk = _getZk();
+			List<String> children;
+			try {
+				children = zk.getChildren(this.path, false);
+			} catch (KeeperException.NoNodeException e) {
+				return;
+			}
+			for (String child : children) {
+				try {
+					zk.delete(this.path + "/" + child, -1);
+				} catch (KeeperException.NoNodeException e) {
+					// 已经被删除
+				}
+			}
+			zk.delete(this.path, -1);
+		} catch (KeeperException.NoNodeException e) {
+			// 已经被删除
+		} catch (Exception e) {
+			throw new TaskException("删除任务进度失败, path=" + this.path, e);
+		}
+	}
+
+	private void _createIfAbsent(ZooKeeper zk, String path) throws Exception {
+		if (zk.exists(path, false) == null) {
+			try {
+				zk.create(path, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+			} catch (KeeperException.NodeExistsException e) {
+				// 其他节点已经创建
+			}
+		}
+	}
+
+	private ZooKeeper _getZk() throws Exception {
+		return this.curatorClient.getZookeeperClient().getZooKeeper();
+	}
+
+}
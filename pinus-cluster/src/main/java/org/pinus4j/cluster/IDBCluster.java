@@ -25,11 +25,14 @@ import javax.transaction.TransactionManager;
 
 import org.pinus4j.cache.IPrimaryCache;
 import org.pinus4j.cache.ISecondCache;
+import org.pinus4j.checkpoint.ICheckpointStore;
 import org.pinus4j.cluster.beans.DBClusterInfo;
 import org.pinus4j.cluster.beans.IShardingKey;
 import org.pinus4j.cluster.enums.EnumDBMasterSlave;
+import org.pinus4j.cluster.enums.EnumIdGenerator;
 import org.pinus4j.cluster.enums.EnumSyncAction;
 import org.pinus4j.cluster.resources.IDBResource;
+import org.pinus4j.cluster.router.RouteInfo;
 import org.pinus4j.exceptions.DBClusterException;
 import org.pinus4j.generator.IIdGenerator;
 import org.pinus4j.generator.beans.DBTable;
@@ -93,6 +96,15 @@ public interface IDBCluster {
 	 */
 	Lock createLock(String name);
 
+	/**
+	 * 创建保存在zookeeper中的任务进度存储.
+	 *
+	 * @param name
+	 *            任务名称, 相同名称的任务共享进度
+	 * @return 任务进度存储
+	 */
+	ICheckpointStore createCheckpointStore(String name);
+
 	/**
 	 * 设置此集群是否从zookeeper中加载分片信息.
 	 *
@@ -187,6 +199,28 @@ public interface IDBCluster {
 	 */
 	IDBResource selectDBResourceFromMaster(String tableName, IShardingKey<?> value) throws DBClusterException;
 
+	/**
+	 * 计算分库分表因子在主库集群中的路由. 只做路由计算, 不获取数据库连接.
+	 * 
+	 * @param tableName
+	 *            数据表名
+	 * @param value
+	 *            分库分表因子.
+	 * @return 路由信息
+	 */
+	RouteInfo selectRouteInfoFromMaster(String tableName, IShardingKey<?> value) throws DBClusterException;
+
+	/**
+	 * 根据路由信息获取主库集群中被操作的库表.
+	 * 
+	 * @param routeInfo
+	 *            路由信息, 通过{@link #selectRouteInfoFromMaster(String, IShardingKey)}获得
+	 * @param tableName
+	 *            数据表名
+	 * @return 被操作的库表
+	 */
+	IDBResource getMasterShardingDBResource(RouteInfo routeInfo, String tableName) throws DBClusterException;
+
 	/**
 	 * 从从库集群中获取被操作的库表.
 	 * 
@@ -246,6 +280,15 @@ public interface IDBCluster {
 	 */
 	IIdGenerator getIdGenerator();
 
+	/**
+	 * 获取指定方式的id生成器.
+	 * 
+	 * @param type
+	 *            主键生成方式
+	 * @return
+	 */
+	IIdGenerator getIdGenerator(EnumIdGenerator type);
+
 	/**
 	 * 设置需要扫描的实体对象包.
 	 * 
@@ -19,6 +19,7 @@ package org.pinus4j.cluster.beans;
 import java.util.Map;
 
 import org.pinus4j.cluster.enums.EnumDBMasterSlave;
+import org.pinus4j.cluster.enums.EnumDbConnectionPoolCatalog;
 import org.pinus4j.exceptions.LoadConfigException;
 import org.pinus4j.utils.StringUtils;
 
@@ -58,6 +59,11 @@ public class AppDBInfo extends DBInfo {
 	 */
 	private Map<String, Object> connPoolInfo;
 
+	/**
+	 * 数据库连接池类型, APP或者BUILTIN.
+	 */
+	private EnumDbConnectionPoolCatalog connPoolCatalog = EnumDbConnectionPoolCatalog.APP;
+
 	@Override
 	public String toString() {
 		return "AppDBConnectionInfo [username=" + username + ", clusterName=" + clusterName + ", masterSlave="
@@ -149,4 +155,12 @@ public class AppDBInfo extends DBInfo {
 	public Map<String, Object> getConnPoolInfo() {
 		return this.connPoolInfo;
 	}
+
+	public EnumDbConnectionPoolCatalog getConnPoolCatalog() {
+		return connPoolCatalog;
+	}
+
+	public void setConnPoolCatalog(EnumDbConnectionPoolCatalog connPoolCatalog) {
+		this.connPoolCatalog = connPoolCatalog;
+	}
 }
@@ -18,6 +18,7 @@ package org.pinus4j.cluster.config;
 
 import java.util.Collection;
 
+import org.pinus4j.cache.ICacheCodec;
 import org.pinus4j.cache.IPrimaryCache;
 import org.pinus4j.cache.ISecondCache;
 import org.pinus4j.cluster.beans.DBClusterInfo;
@@ -83,6 +84,21 @@ public interface IClusterConfig {
 	 */
 	public Class<IPrimaryCache> getPrimaryCacheClass();
 
+	/**
+	 * max size of near cache in front of primary cache, 0 is disabled.
+	 */
+	public int getPrimaryNearCacheSize();
+
+	/**
+	 * expire time of near cache in front of primary cache.
+	 */
+	public int getPrimaryNearCacheExpire();
+
+	/**
+	 * codec of cached data, null is default codec.
+	 */
+	public Class<ICacheCodec> getCacheCodecClass();
+
 	/**
 	 * 获取数据库连接方式.
 	 * 
@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.pinus4j.cache.ICacheCodec;
 import org.pinus4j.cache.IPrimaryCache;
 import org.pinus4j.cache.ISecondCache;
 import org.pinus4j.cluster.beans.AppDBInfo;
@@ -79,6 +80,9 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 	private static Class<IPrimaryCache> primaryCacheClass;
 	private static int primaryCacheExpire;
 	private static String primaryCacheAddress;
+	private static int primaryNearCacheSize;
+	private static int primaryNearCacheExpire;
+	private static Class<ICacheCodec> cacheCodecClass;
 
 	private static Class<ISecondCache> secondCacheClass;
 	private static int secondCacheExpire;
@@ -200,6 +204,12 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 			if (currentNode.getNodeName().equals(Const.PROP_MINEVICTABLEIDLETIMEMILLIS)) {
 				map.put(Const.PROP_MINEVICTABLEIDLETIMEMILLIS, Integer.parseInt(currentNode.getTextContent().trim()));
 			}
+			if (currentNode.getNodeName().equals(Const.PROP_POOLPREPAREDSTATEMENTS)) {
+				map.put(Const.PROP_POOLPREPAREDSTATEMENTS, Boolean.valueOf(currentNode.getTextContent().trim()));
+			}
+			if (currentNode.getNodeName().equals(Const.PROP_MAXOPENPREPAREDSTATEMENTS)) {
+				map.put(Const.PROP_MAXOPENPREPAREDSTATEMENTS, Integer.parseInt(currentNode.getTextContent().trim()));
+			}
 		}
 		return map;
 	}
@@ -240,8 +250,12 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 
 	/**
 	 * load db info.
+	 * 
+	 * @param clusterCpCatalog
+	 *            集群上配置的连接池类型, 为null时使用db-connection-pool的配置
 	 */
-	private DBInfo _getDBInfo(String clusterName, Node node, EnumDBMasterSlave masterSlave) throws LoadConfigException {
+	private DBInfo _getDBInfo(String clusterName, Node node, EnumDBMasterSlave masterSlave,
+			EnumDbConnectionPoolCatalog clusterCpCatalog) throws LoadConfigException {
 		DBInfo dbInfo = null;
 
 		Node root = xmlUtil.getRoot();
@@ -260,8 +274,21 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 			cpCatalog = cpCatalogNode.getTextContent();
 		}
 		enumCpCatalog = EnumDbConnectionPoolCatalog.getEnum(cpCatalog);
+		if (enumCpCatalog == null) {
+			throw new LoadConfigException("catalog attribute of db-connection-pool config error, catalog = "
+					+ cpCatalog + " you should be select in \"env\", \"app\" or \"builtin\"");
+		}
 
-		switch (enumCpCatalog) {
+		EnumDbConnectionPoolCatalog dbCpCatalog = enumCpCatalog;
+		if (clusterCpCatalog != null) {
+			if (enumCpCatalog == EnumDbConnectionPoolCatalog.ENV) {
+				throw new LoadConfigException("pool attribute of cluster can not be used with env db-connection-pool, cluster = "
+						+ clusterName);
+			}
+			dbCpCatalog = clusterCpCatalog;
+		}
+
+		switch (dbCpCatalog) {
 		case ENV:
 			dbInfo = new EnvDBInfo();
 			dbInfo.setClusterName(clusterName);
@@ -271,6 +298,7 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 			((EnvDBInfo) dbInfo).setEnvDsName(envDsName);
 			break;
 		case APP:
+		case BUILTIN:
 			dbInfo = new AppDBInfo();
 			dbInfo.setClusterName(clusterName);
 			dbInfo.setMasterSlave(masterSlave);
@@ -282,10 +310,11 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 			((AppDBInfo) dbInfo).setPassword(password);
 			((AppDBInfo) dbInfo).setUrl(url);
 			((AppDBInfo) dbInfo).setConnPoolInfo(_loadDbConnectInfo(connPoolNode));
+			((AppDBInfo) dbInfo).setConnPoolCatalog(dbCpCatalog);
 			break;
 		default:
 			throw new LoadConfigException("catalog attribute of db-connection-pool config error, catalog = "
-					+ cpCatalog + " you should be select in \"env\" or \"app\"");
+					+ cpCatalog + " you should be select in \"env\", \"app\" or \"builtin\"");
 		}
 
 		// set custom property
@@ -324,6 +353,17 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 		String catalog = xmlUtil.getAttributeValue(clusterNode, "catalog");
 		dbClusterInfo.setCatalog(EnumClusterCatalog.getEnum(catalog));
 
+		// 集群单独指定的连接池类型, 覆盖db-connection-pool的catalog
+		EnumDbConnectionPoolCatalog clusterCpCatalog = null;
+		String pool = xmlUtil.getAttributeValue(clusterNode, "pool");
+		if (StringUtils.isNotBlank(pool)) {
+			clusterCpCatalog = EnumDbConnectionPoolCatalog.getEnum(pool.trim());
+			if (clusterCpCatalog == null || clusterCpCatalog == EnumDbConnectionPoolCatalog.ENV) {
+				throw new LoadConfigException("pool attribute of cluster config error, pool = " + pool
+						+ " you should be select in \"app\" or \"builtin\"");
+			}
+		}
+
 		//
 		// load global
 		//
@@ -331,7 +371,8 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 		if (global != null) {
 			// load master global
 			Node masterGlobal = xmlUtil.getFirstChildByName(global, "master");
-			DBInfo masterGlobalConnection = _getDBInfo(clusterName, masterGlobal, EnumDBMasterSlave.MASTER);
+			DBInfo masterGlobalConnection = _getDBInfo(clusterName, masterGlobal, EnumDBMasterSlave.MASTER,
+					clusterCpCatalog);
 			dbClusterInfo.setMasterGlobalDBInfo(masterGlobalConnection);
 
 			// load slave global
@@ -342,7 +383,7 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 				int slaveIndex = 0;
 				for (Node slaveGlobal : slaveGlobalList) {
 					slaveGlobalConnection.add(_getDBInfo(clusterName, slaveGlobal,
-							EnumDBMasterSlave.getSlaveEnum(slaveIndex++)));
+							EnumDBMasterSlave.getSlaveEnum(slaveIndex++), clusterCpCatalog));
 				}
 
 				dbClusterInfo.setSlaveGlobalDBInfo(slaveGlobalConnection);
@@ -372,7 +413,8 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 			Node master = xmlUtil.getFirstChildByName(regionNode, "master");
 			List<Node> shardingNodeList = xmlUtil.getChildByName(master, "sharding");
 			for (Node shardingNode : shardingNodeList) {
-				regionMasterConnection.add(_getDBInfo(clusterName, shardingNode, EnumDBMasterSlave.MASTER));
+				regionMasterConnection.add(_getDBInfo(clusterName, shardingNode, EnumDBMasterSlave.MASTER,
+						clusterCpCatalog));
 			}
 			regionInfo.setMasterDBInfos(regionMasterConnection);
 
@@ -386,7 +428,7 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 				List<DBInfo> slaveConnections = new ArrayList<DBInfo>();
 				for (Node shardingNode : shardingNodeList) {
 					slaveConnections.add(_getDBInfo(clusterName, shardingNode,
-							EnumDBMasterSlave.getSlaveEnum(slaveIndex)));
+							EnumDBMasterSlave.getSlaveEnum(slaveIndex), clusterCpCatalog));
 				}
 
 				regionSlaveConnection.add(slaveConnections);
@@ -427,6 +469,11 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 			}
 
 			if (this.isCacheEnabled) {
+				String codecFullPath = xmlUtil.getAttributeValue(dbClusterCacheNode, Const.PROP_DB_CLUSTER_CACHE_CODEC);
+				if (StringUtils.isNotBlank(codecFullPath)) {
+					cacheCodecClass = (Class<ICacheCodec>) Class.forName(codecFullPath.trim());
+				}
+
 				Node primaryNode = xmlUtil.getFirstChildByName(dbClusterCacheNode, Const.PROP_DB_CLUSTER_CACHE_PRIMARY);
 				primaryCacheExpire = Integer.parseInt(xmlUtil.getAttributeValue(primaryNode, "expire"));
 				String classFullPath = xmlUtil.getAttributeValue(primaryNode, "class");
@@ -436,6 +483,11 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 				primaryCacheClass = (Class<IPrimaryCache>) Class.forName(classFullPath);
 				Node primaryAddressNode = xmlUtil.getFirstChildByName(primaryNode, Const.PROP_DB_CLUSTER_CACHE_ADDRESS);
 				primaryCacheAddress = primaryAddressNode.getTextContent().trim();
+				Node primaryNearNode = xmlUtil.getFirstChildByName(primaryNode, Const.PROP_DB_CLUSTER_CACHE_NEAR);
+				if (primaryNearNode != null) {
+					primaryNearCacheSize = Integer.parseInt(xmlUtil.getAttributeValue(primaryNearNode, "size"));
+					primaryNearCacheExpire = Integer.parseInt(xmlUtil.getAttributeValue(primaryNearNode, "expire"));
+				}
 
 				Node secondNode = xmlUtil.getFirstChildByName(dbClusterCacheNode, Const.PROP_DB_CLUSTER_CACHE_SECOND);
 				secondCacheExpire = Integer.parseInt(xmlUtil.getAttributeValue(secondNode, "expire"));
@@ -538,4 +590,19 @@ public class XmlClusterConfigImpl implements IClusterConfig {
 		return primaryCacheClass;
 	}
 
+	@Override
+	public int getPrimaryNearCacheSize() {
+		return primaryNearCacheSize;
+	}
+
+	@Override
+	public int getPrimaryNearCacheExpire() {
+		return primaryNearCacheExpire;
+	}
+
+	@Override
+	public Class<ICacheCodec> getCacheCodecClass() {
+		return cacheCodecClass;
+	}
+
 }
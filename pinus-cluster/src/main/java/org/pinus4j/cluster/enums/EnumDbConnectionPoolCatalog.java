@@ -34,7 +34,11 @@ public enum EnumDbConnectionPoolCatalog {
 	/**
 	 * app
 	 */
-	APP("app");
+	APP("app"),
+	/**
+	 * app, use built-in connection pool
+	 */
+	BUILTIN("builtin");
 
 	private static final Map<String, EnumDbConnectionPoolCatalog> map = new HashMap<String, EnumDbConnectionPoolCatalog>();
 
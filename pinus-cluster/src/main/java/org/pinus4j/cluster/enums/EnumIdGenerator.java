@@ -0,0 +1,36 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.enums;
+
+/**
+ * 数据对象主键的生成方式.
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public enum EnumIdGenerator {
+
+	/**
+	 * 通过zookeeper生成的递增序列, 主键可以是int或者long型.
+	 */
+	SEQUENCE,
+	/**
+	 * snowflake方式生成的随时间递增的id, 不需要访问zookeeper, 主键需要是long型.
+	 */
+	SNOWFLAKE;
+
+}
@@ -88,7 +88,19 @@ public enum HashAlgoEnum {
 	/**
 	 * min hash
 	 */
-	MIX("mix");
+	MIX("mix"),
+	/**
+	 * MurmurHash3 x64_128, 64位
+	 */
+	MURMUR3("murmur3"),
+	/**
+	 * xxHash64
+	 */
+	XXHASH64("xxhash64"),
+	/**
+	 * CityHash64
+	 */
+	CITYHASH64("cityhash64");
 
 	private String value;
 
@@ -96,9 +108,20 @@ public enum HashAlgoEnum {
 		this.value = value;
 	}
 
+	/**
+	 * 计算字符串的hash值.
+	 * 
+	 * @return 非负的hash值
+	 */
 	public long hash(String key) {
 		long hashValue = -1;
 		switch (this) {
+		case MURMUR3:
+			return HashUtil.murmur3(key) & Long.MAX_VALUE;
+		case XXHASH64:
+			return HashUtil.xxHash64(key) & Long.MAX_VALUE;
+		case CITYHASH64:
+			return HashUtil.cityHash64(key) & Long.MAX_VALUE;
 		case ADDITIVE:
 			hashValue = HashUtil.additiveHash(key);
 			break;
@@ -148,7 +171,15 @@ public enum HashAlgoEnum {
 			hashValue = HashUtil.SDBMHash(key);
 			break;
 		}
-		return Math.abs(hashValue);
+		// Math.abs(Long.MIN_VALUE)仍然是负数
+		return Math.abs(hashValue) & Long.MAX_VALUE;
+	}
+
+	/**
+	 * 是否是64位的hash算法. 64位算法的hash值直接在long上取模, 其它算法保持之前的路由方式, 截断为int之后再取模.
+	 */
+	public boolean is64Bit() {
+		return this == MURMUR3 || this == XXHASH64 || this == CITYHASH64;
 	}
 
 	public String getValue() {
@@ -20,7 +20,9 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.locks.Lock;
 
@@ -37,9 +39,15 @@ import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.Stat;
 import org.pinus4j.cache.ICacheBuilder;
+import org.pinus4j.cache.ICacheInvalidationBus;
 import org.pinus4j.cache.IPrimaryCache;
 import org.pinus4j.cache.ISecondCache;
 import org.pinus4j.cache.impl.MemCachedCacheBuilder;
+import org.pinus4j.cache.impl.MemCachedSecondCacheImpl;
+import org.pinus4j.cache.impl.NearPrimaryCacheImpl;
+import org.pinus4j.cache.impl.ZkCacheInvalidationBus;
+import org.pinus4j.checkpoint.ICheckpointStore;
+import org.pinus4j.checkpoint.impl.ZkCheckpointStore;
 import org.pinus4j.cluster.DefaultContainerFactory;
 import org.pinus4j.cluster.DefaultContainerFactory.ContainerType;
 import org.pinus4j.cluster.IContainer;
@@ -54,7 +62,9 @@ import org.pinus4j.cluster.config.IClusterConfig;
 import org.pinus4j.cluster.config.impl.XmlClusterConfigImpl;
 import org.pinus4j.cluster.enums.EnumDB;
 import org.pinus4j.cluster.enums.EnumDBMasterSlave;
+import org.pinus4j.cluster.enums.EnumIdGenerator;
 import org.pinus4j.cluster.enums.EnumSyncAction;
+import org.pinus4j.cluster.resources.DBConnectionLease;
 import org.pinus4j.cluster.resources.DBResourceCache;
 import org.pinus4j.cluster.resources.GlobalDBResource;
 import org.pinus4j.cluster.resources.IDBResource;
@@ -74,6 +84,7 @@ import org.pinus4j.generator.IDBGeneratorBuilder;
 import org.pinus4j.generator.IIdGenerator;
 import org.pinus4j.generator.beans.DBTable;
 import org.pinus4j.generator.impl.DistributedSequenceIdGeneratorImpl;
+import org.pinus4j.generator.impl.SnowflakeIdGeneratorImpl;
 import org.pinus4j.transaction.impl.BestEffortsOnePCJtaTransactionManager;
 import org.pinus4j.utils.CuratorDistributeedLock;
 import org.pinus4j.utils.IOUtil;
@@ -128,6 +139,11 @@ public abstract class AbstractDBCluster implements IDBCluster {
 	 */
 	private IIdGenerator idGenerator;
 
+	/**
+	 * snowflake主键生成器. 第一次使用时租用节点号.
+	 */
+	private volatile SnowflakeIdGeneratorImpl snowflakeIdGenerator;
+
 	/**
 	 * 一级缓存.
 	 */
@@ -138,6 +154,11 @@ public abstract class AbstractDBCluster implements IDBCluster {
 	 */
 	private ISecondCache secondCache;
 
+	/**
+	 * 缓存失效通知. 只在开启本地缓存时创建.
+	 */
+	private ICacheInvalidationBus cacheInvalidationBus;
+
 	private TransactionManager txManager;
 
 	/**
@@ -238,6 +259,16 @@ public abstract class AbstractDBCluster implements IDBCluster {
 		// find second cache
 		this.secondCache = cacheBuilder.buildSecondCache();
 
+		// 开启了本地缓存时通过zookeeper通知其他节点删除本地缓存
+		if (this.primaryCache instanceof NearPrimaryCacheImpl) {
+			this.cacheInvalidationBus = new ZkCacheInvalidationBus(this.curatorClient);
+			((NearPrimaryCacheImpl) this.primaryCache).setInvalidationBus(this.cacheInvalidationBus);
+			if (this.secondCache instanceof MemCachedSecondCacheImpl) {
+				((MemCachedSecondCacheImpl) this.secondCache).setInvalidationBus(this.cacheInvalidationBus);
+			}
+			LOG.info("init cache invalidation bus done");
+		}
+
 		// init transaction manager
 		this.txManager = BestEffortsOnePCJtaTransactionManager.getInstance();
 
@@ -313,7 +344,13 @@ public abstract class AbstractDBCluster implements IDBCluster {
 	@Override
 	public void shutdown() throws DBClusterException {
 
+		// release snowflake worker id
+		if (this.snowflakeIdGenerator != null)
+			this.snowflakeIdGenerator.close();
+
 		// close cache connection
+		if (this.cacheInvalidationBus != null)
+			this.cacheInvalidationBus.close();
 		if (this.primaryCache != null)
 			this.primaryCache.close();
 		if (this.secondCache != null)
@@ -375,14 +412,7 @@ public abstract class AbstractDBCluster implements IDBCluster {
 			throw new DBClusterException("此集群没有配置全局主库, clustername=" + clusterName);
 		}
 
-		IDBResource masterDBResource;
-		try {
-			masterDBResource = GlobalDBResource.valueOf(masterDBInfo, tableName);
-		} catch (SQLException e) {
-			throw new DBClusterException(e);
-		}
-
-		return masterDBResource;
+		return GlobalDBResource.valueOf(masterDBInfo, tableName);
 	}
 
 	@Override
@@ -406,23 +436,18 @@ public abstract class AbstractDBCluster implements IDBCluster {
 			slaveDBInfo = slaveDbs.get(masterSlave.getValue());
 		}
 
-		IDBResource slaveDBResource;
-		try {
-			slaveDBResource = GlobalDBResource.valueOf(slaveDBInfo, tableName);
-		} catch (SQLException e) {
-			throw new DBClusterException(e);
-		}
-
-		return slaveDBResource;
+		return GlobalDBResource.valueOf(slaveDBInfo, tableName);
 	}
 
 	@Override
 	public ShardingDBResource selectDBResourceFromMaster(String tableName, IShardingKey<?> value)
 			throws DBClusterException {
+		RouteInfo routeInfo = selectRouteInfoFromMaster(tableName, value);
+		return getMasterShardingDBResource(routeInfo, tableName);
+	}
 
-		// 计算分库
-		// 计算路由信息
-		RouteInfo routeInfo = null;
+	@Override
+	public RouteInfo selectRouteInfoFromMaster(String tableName, IShardingKey<?> value) throws DBClusterException {
 		try {
 			String clusterName = value.getClusterName();
 
@@ -431,10 +456,15 @@ public abstract class AbstractDBCluster implements IDBCluster {
 				throw new IllegalStateException("can not found db router by " + clusterName);
 			}
 
-			routeInfo = router.select(EnumDBMasterSlave.MASTER, tableName, value);
+			return router.select(EnumDBMasterSlave.MASTER, tableName, value);
 		} catch (DBRouteException e) {
 			throw new DBClusterException(e);
 		}
+	}
+
+	@Override
+	public ShardingDBResource getMasterShardingDBResource(RouteInfo routeInfo, String tableName)
+			throws DBClusterException {
 		String clusterName = routeInfo.getClusterName();
 		DBInfo dbInfo = routeInfo.getDbInfo();
 		int tableIndex = routeInfo.getTableIndex();
@@ -442,22 +472,15 @@ public abstract class AbstractDBCluster implements IDBCluster {
 		// 获取连接信息
 		DBClusterInfo dbClusterInfo = this.dbClusterInfoC.find(clusterName);
 		if (dbClusterInfo == null) {
-			throw new DBClusterException("找不到数据库集群, shardingkey=" + value + ", tablename=" + tableName);
+			throw new DBClusterException("找不到数据库集群, cluster=" + clusterName + ", tablename=" + tableName);
 		}
 		DBRegionInfo regionInfo = dbClusterInfo.getDbRegions().get(routeInfo.getRegionIndex());
 		if (regionInfo == null) {
-			throw new DBClusterException("找不到数据库集群, shardingkey=" + value + ", tablename=" + tableName);
+			throw new DBClusterException("找不到数据库集群, cluster=" + clusterName + ", tablename=" + tableName);
 		}
 
 		// 返回分库分表信息
-		ShardingDBResource db;
-		try {
-			db = ShardingDBResource.valueOf(dbInfo, regionInfo, tableName, tableIndex);
-		} catch (SQLException e) {
-			throw new DBClusterException(e);
-		}
-
-		return db;
+		return ShardingDBResource.valueOf(dbInfo, regionInfo, tableName, tableIndex);
 	}
 
 	@Override
@@ -497,13 +520,7 @@ public abstract class AbstractDBCluster implements IDBCluster {
 		}
 
 		// 返回分库分表信息
-		ShardingDBResource db;
-		try {
-			db = ShardingDBResource.valueOf(dbInfo, regionInfo, tableName, tableIndex);
-		} catch (SQLException e) {
-			throw new DBClusterException(e);
-		}
-		return db;
+		return ShardingDBResource.valueOf(dbInfo, regionInfo, tableName, tableIndex);
 	}
 
 	@Override
@@ -536,13 +553,14 @@ public abstract class AbstractDBCluster implements IDBCluster {
 			throw new IllegalStateException("table number is 0");
 		}
 
-		IDBResource dbResource = null;
+		// 同一个库上的分表共享一个连接
+		Map<DBInfo, DBConnectionLease> leases = new HashMap<DBInfo, DBConnectionLease>();
 		DBClusterInfo dbClusterInfo = this.getDBClusterInfo(clusterName);
 		for (DBRegionInfo region : dbClusterInfo.getDbRegions()) {
 			for (DBInfo dbInfo : region.getMasterDBInfos()) {
+				DBConnectionLease lease = _getLease(leases, dbInfo);
 				for (int tableIndex = 0; tableIndex < tableNum; tableIndex++) {
-					dbResource = ShardingDBResource.valueOf(dbInfo, region, tableName, tableIndex);
-					dbResources.add(dbResource);
+					dbResources.add(ShardingDBResource.valueOf(dbInfo, region, tableName, tableIndex, lease));
 				}
 			}
 		}
@@ -563,7 +581,8 @@ public abstract class AbstractDBCluster implements IDBCluster {
 		String clusterName = ReflectUtil.getClusterName(clazz);
 		String tableName = ReflectUtil.getTableName(clazz);
 
-		IDBResource dbResource = null;
+		// 同一个库上的分表共享一个连接
+		Map<DBInfo, DBConnectionLease> leases = new HashMap<DBInfo, DBConnectionLease>();
 		DBClusterInfo dbClusterInfo = this.getDBClusterInfo(clusterName);
 		for (DBRegionInfo region : dbClusterInfo.getDbRegions()) {
 			List<DBInfo> slaveDBInfos = null;
@@ -580,9 +599,9 @@ public abstract class AbstractDBCluster implements IDBCluster {
 			}
 
 			for (DBInfo dbInfo : slaveDBInfos) {
+				DBConnectionLease lease = _getLease(leases, dbInfo);
 				for (int tableIndex = 0; tableIndex < tableNum; tableIndex++) {
-					dbResource = ShardingDBResource.valueOf(dbInfo, region, tableName, tableIndex);
-					dbResources.add(dbResource);
+					dbResources.add(ShardingDBResource.valueOf(dbInfo, region, tableName, tableIndex, lease));
 				}
 			}
 		}
@@ -590,6 +609,15 @@ public abstract class AbstractDBCluster implements IDBCluster {
 		return dbResources;
 	}
 
+	private DBConnectionLease _getLease(Map<DBInfo, DBConnectionLease> leases, DBInfo dbInfo) {
+		DBConnectionLease lease = leases.get(dbInfo);
+		if (lease == null) {
+			lease = new DBConnectionLease(dbInfo);
+			leases.put(dbInfo, lease);
+		}
+		return lease;
+	}
+
 	@Override
 	public boolean isGlobalSlaveExist(String clusterName) {
 		DBClusterInfo dbClusterInfo = this.dbClusterInfoC.find(clusterName);
@@ -634,6 +662,11 @@ public abstract class AbstractDBCluster implements IDBCluster {
 		return new CuratorDistributeedLock(curatorLock);
 	}
 
+	@Override
+	public ICheckpointStore createCheckpointStore(String name) {
+		return new ZkCheckpointStore(curatorClient, name);
+	}
+
 	@Override
 	public void setShardInfoFromZk(boolean value) {
 		this.isShardInfoFromZk = value;
@@ -887,6 +920,23 @@ public abstract class AbstractDBCluster implements IDBCluster {
 		return this.idGenerator;
 	}
 
+	@Override
+	public IIdGenerator getIdGenerator(EnumIdGenerator type) {
+		if (type != EnumIdGenerator.SNOWFLAKE) {
+			return this.idGenerator;
+		}
+
+		if (this.snowflakeIdGenerator == null) {
+			synchronized (this) {
+				if (this.snowflakeIdGenerator == null) {
+					this.snowflakeIdGenerator = new SnowflakeIdGeneratorImpl(this.curatorClient);
+					LOG.info("init snowflake id generator done");
+				}
+			}
+		}
+		return this.snowflakeIdGenerator;
+	}
+
 	@Override
 	public void setScanPackage(String scanPackage) {
 		this.scanPackage = scanPackage;
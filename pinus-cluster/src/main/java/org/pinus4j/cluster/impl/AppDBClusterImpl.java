@@ -19,17 +19,21 @@ package org.pinus4j.cluster.impl;
 import java.sql.SQLException;
 import java.util.Map;
 
+import javax.sql.DataSource;
+
 import org.apache.commons.dbcp.BasicDataSource;
 import org.pinus4j.cluster.beans.AppDBInfo;
 import org.pinus4j.cluster.beans.DBInfo;
 import org.pinus4j.cluster.enums.EnumDB;
+import org.pinus4j.cluster.enums.EnumDbConnectionPoolCatalog;
+import org.pinus4j.cluster.pool.PinusDataSource;
 import org.pinus4j.constant.Const;
 import org.pinus4j.exceptions.LoadConfigException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * 基于DBCP连接池的数据库集群实现.
+ * 基于应用内连接池的数据库集群实现. 默认使用DBCP连接池, 连接池类型为builtin时使用内置连接池.
  * 
  * @author duanbn
  */
@@ -54,6 +58,11 @@ public class AppDBClusterImpl extends AbstractDBCluster {
 		LOG.info(dbConnInfo.toString());
 
 		try {
+			if (appDbConnInfo.getConnPoolCatalog() == EnumDbConnectionPoolCatalog.BUILTIN) {
+				dbConnInfo.setDatasource(_buildBuiltinDataSource(appDbConnInfo));
+				return;
+			}
+
 			BasicDataSource ds = new BasicDataSource();
 			ds.setDriverClassName(enumDb.getDriverClass());
 			ds.setUsername(appDbConnInfo.getUsername());
@@ -74,16 +83,60 @@ public class AppDBClusterImpl extends AbstractDBCluster {
 			ds.setNumTestsPerEvictionRun((Integer) dbConnPoolInfo.get(Const.PROP_NUMTESTSPEREVICTIONRUN));
 			ds.setMinEvictableIdleTimeMillis((Integer) dbConnPoolInfo.get(Const.PROP_MINEVICTABLEIDLETIMEMILLIS));
 
+			// 每个连接缓存PreparedStatement, 相同的sql不需要重复解析
+			if (dbConnPoolInfo.get(Const.PROP_POOLPREPAREDSTATEMENTS) != null) {
+				ds.setPoolPreparedStatements((Boolean) dbConnPoolInfo.get(Const.PROP_POOLPREPAREDSTATEMENTS));
+			}
+			if (dbConnPoolInfo.get(Const.PROP_MAXOPENPREPAREDSTATEMENTS) != null) {
+				ds.setMaxOpenPreparedStatements((Integer) dbConnPoolInfo.get(Const.PROP_MAXOPENPREPAREDSTATEMENTS));
+			}
+
 			dbConnInfo.setDatasource(ds);
 		} catch (Exception e) {
 			throw new LoadConfigException(e);
 		}
 	}
 
+	/**
+	 * 创建内置连接池. 使用与dbcp相同的连接池配置, maxIdle, numTestsPerEvictionRun和PreparedStatement缓存不适用于内置连接池,
+	 * 会被忽略.
+	 */
+	private PinusDataSource _buildBuiltinDataSource(AppDBInfo appDbConnInfo) {
+		PinusDataSource ds = new PinusDataSource(enumDb.getDriverClass(), appDbConnInfo.getUrl(),
+				appDbConnInfo.getUsername(), appDbConnInfo.getPassword());
+
+		Map<String, Object> dbConnPoolInfo = appDbConnInfo.getConnPoolInfo();
+		ds.setValidationQuery("SELECT 1");
+		ds.setMaxActive((Integer) dbConnPoolInfo.get(Const.PROP_MAXACTIVE));
+		ds.setMinIdle((Integer) dbConnPoolInfo.get(Const.PROP_MINIDLE));
+		ds.setInitialSize((Integer) dbConnPoolInfo.get(Const.PROP_INITIALSIZE));
+		ds.setMaxWait((Integer) dbConnPoolInfo.get(Const.PROP_MAXWAIT));
+		// 内置连接池不会回收泄漏的连接, 只记录借出位置
+		if ((Boolean) dbConnPoolInfo.get(Const.PROP_REMOVEABANDONED)) {
+			ds.setLeakDetectionThreshold((Integer) dbConnPoolInfo.get(Const.PROP_REMOVEABANDONEDTIMEOUT) * 1000l);
+		}
+		int evictionPeriod = (Integer) dbConnPoolInfo.get(Const.PROP_TIMEBETWEENEVICTIONRUNSMILLIS);
+		if (evictionPeriod > 0) {
+			ds.setHousekeepingPeriod(evictionPeriod);
+		}
+		int idleTimeout = (Integer) dbConnPoolInfo.get(Const.PROP_MINEVICTABLEIDLETIMEMILLIS);
+		if (idleTimeout > 0) {
+			ds.setIdleTimeout(idleTimeout);
+		}
+
+		return ds;
+	}
+
 	@Override
 	public void closeDataSource(DBInfo dbConnInfo) {
+		DataSource ds = dbConnInfo.getDatasource();
+		if (ds instanceof PinusDataSource) {
+			((PinusDataSource) ds).close();
+			return;
+		}
+
 		try {
-			((BasicDataSource) dbConnInfo.getDatasource()).close();
+			((BasicDataSource) ds).close();
 		} catch (SQLException e) {
 			LOG.error(e.getMessage());
 		}
@@ -39,6 +39,7 @@ public class DefaultDBCluster implements IDBClusterBuilder {
 		// 初始化集群
 		switch (enumDbCpCatalog) {
 		case APP:
+		case BUILTIN:
 			dbCluster = new AppDBClusterImpl(enumDB);
 			break;
 		case ENV:
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.pool;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁的对象容器. 借出和归还只通过CAS修改对象的状态, 不使用全局锁.
+ * <ul>
+ * <li>每个线程记录自己归还过的对象, 借出时优先使用, 同一个线程反复借还基本不会与其他线程竞争.</li>
+ * <li>线程本地没有可用对象时扫描共享列表.</li>
+ * <li>仍然没有时在SynchronousQueue上等待, 其他线程归还对象时如果有等待者直接交给等待者.</li>
+ * </ul>
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class ConcurrentBag<T extends ConcurrentBag.IBagEntry> {
+
+	public static final int STATE_NOT_IN_USE = 0;
+	public static final int STATE_IN_USE = 1;
+	public static final int STATE_REMOVED = -1;
+	public static final int STATE_RESERVED = -2;
+
+	/**
+	 * 每个线程最多记录的对象数.
+	 */
+	private static final int THREAD_LOCAL_SIZE = 16;
+
+	private final CopyOnWriteArrayList<T> sharedList = new CopyOnWriteArrayList<T>();
+
+	private final ThreadLocal<List<WeakReference<T>>> threadList = new ThreadLocal<List<WeakReference<T>>>() {
+		@Override
+		protected List<WeakReference<T>> initialValue() {
+			return new ArrayList<WeakReference<T>>(THREAD_LOCAL_SIZE);
+		}
+	};
+
+	private final SynchronousQueue<T> handoffQueue = new SynchronousQueue<T>(true);
+
+	private final AtomicInteger waiters = new AtomicInteger();
+
+	/**
+	 * 借出一个空闲对象.
+	 * 
+	 * @param timeout
+	 *            最长等待时间, 0表示不等待
+	 * @return 没有空闲对象时返回null
+	 */
+	public T borrow(long timeout, TimeUnit unit) throws InterruptedException {
+		// 线程本地
+		List<WeakReference<T>> list = threadList.get();
+		for (int i = list.size() - 1; i >= 0; i--) {
+			T entry = list.remove(i).get();
+			if (entry != null && entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+				return entry;
+			}
+		}
+
+		waiters.incrementAndGet();
+		try {
+			for (T entry : sharedList) {
+				if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+					return entry;
+				}
+			}
+
+			long remain = unit.toNanos(timeout);
+			while (remain > 0) {
+				long start = System.nanoTime();
+				T entry = handoffQueue.poll(remain, TimeUnit.NANOSECONDS);
+				if (entry == null) {
+					return null;
+				}
+				if (entry.compareAndSet(STATE_NOT_IN_USE, STATE_IN_USE)) {
+					return entry;
+				}
+				remain -= System.nanoTime() - start;
+			}
+
+			return null;
+		} finally {
+			waiters.decrementAndGet();
+		}
+	}
+
+	/**
+	 * 归还对象. 有等待者时直接交给等待者, 否则记录到当前线程.
+	 */
+	public void requite(T entry) {
+		entry.setState(STATE_NOT_IN_USE);
+
+		for (int i = 0; waiters.get() > 0; i++) {
+			if (entry.getState() != STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+				return;
+			}
+			if ((i & 0xff) == 0xff) {
+				LockSupport.parkNanos(10 * 1000);
+			} else {
+				Thread.yield();
+			}
+		}
+
+		List<WeakReference<T>> list = threadList.get();
+		if (list.size() < THREAD_LOCAL_SIZE) {
+			list.add(new WeakReference<T>(entry));
+		}
+	}
+
+	/**
+	 * 添加一个对象. 有等待者时交给等待者.
+	 */
+	public void add(T entry) {
+		sharedList.add(entry);
+		_handoff(entry);
+	}
+
+	/**
+	 * 添加一个已经借出的对象.
+	 */
+	public void addInUse(T entry) {
+		entry.setState(STATE_IN_USE);
+		sharedList.add(entry);
+	}
+
+	/**
+	 * 删除一个已经借出或者已经预留的对象.
+	 * 
+	 * @return false:对象状态不正确
+	 */
+	public boolean remove(T entry) {
+		if (!entry.compareAndSet(STATE_IN_USE, STATE_REMOVED) && !entry.compareAndSet(STATE_RESERVED, STATE_REMOVED)) {
+			return false;
+		}
+		return sharedList.remove(entry);
+	}
+
+	/**
+	 * 预留一个空闲对象, 预留后不会被借出, 用于清理空闲对象.
+	 */
+	public boolean reserve(T entry) {
+		return entry.compareAndSet(STATE_NOT_IN_USE, STATE_RESERVED);
+	}
+
+	/**
+	 * 取消预留.
+	 */
+	public void unreserve(T entry) {
+		if (entry.compareAndSet(STATE_RESERVED, STATE_NOT_IN_USE)) {
+			_handoff(entry);
+		}
+	}
+
+	private void _handoff(T entry) {
+		while (waiters.get() > 0 && entry.getState() == STATE_NOT_IN_USE && !handoffQueue.offer(entry)) {
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * 所有对象的快照.
+	 */
+	public List<T> values() {
+		return new ArrayList<T>(sharedList);
+	}
+
+	/**
+	 * 指定状态的对象数.
+	 */
+	public int getCount(int state) {
+		int count = 0;
+		for (T entry : sharedList) {
+			if (entry.getState() == state) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int size() {
+		return sharedList.size();
+	}
+
+	/**
+	 * 等待借出的线程数.
+	 */
+	public int getWaitingCount() {
+		return waiters.get();
+	}
+
+	/**
+	 * 容器中的对象.
+	 */
+	public interface IBagEntry {
+
+		int getState();
+
+		void setState(int state);
+
+		boolean compareAndSet(int expect, int update);
+
+	}
+
+}
@@ -0,0 +1,749 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.pool;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 内置的数据库连接池. 借出和归还不使用全局锁, 连接保存在ConcurrentBag中, 同一个线程优先使用自己归还过的连接.
+ * <ul>
+ * <li>校验: 连接在validationInterval内使用过时不校验, 否则使用Connection.isValid或者validationQuery.</li>
+ * <li>泄漏检测: 连接借出超过leakDetectionThreshold没有归还时打印借出位置, 不会强制关闭.</li>
+ * <li>空闲回收: 空闲超过idleTimeout的连接被关闭, 保留minIdle个连接.</li>
+ * <li>统计: 借出次数, 等待时间, 超时次数等, 通过getter获取.</li>
+ * </ul>
+ * 
+ * 归还时未提交的事务会被回滚, 被修改的autoCommit, 事务隔离级别和只读属性会被恢复.
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class PinusDataSource implements DataSource {
+
+	public static final Logger LOG = LoggerFactory.getLogger(PinusDataSource.class);
+
+	/**
+	 * 等待空闲连接时每次等待的最长时间, 超过后重新检查是否可以创建新连接.
+	 */
+	private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private final String driverClassName;
+
+	private final String url;
+
+	private final String username;
+
+	private final String password;
+
+	//
+	// 连接池参数
+	//
+	private int maxActive = 8;
+	private int minIdle = 0;
+	private int initialSize = 0;
+	/**
+	 * 获取连接的最长等待时间(毫秒), 小于等于0时一直等待.
+	 */
+	private long maxWait = 30 * 1000;
+	/**
+	 * 校验语句, 为空时使用Connection.isValid.
+	 */
+	private String validationQuery;
+	/**
+	 * 校验超时时间(秒).
+	 */
+	private int validationTimeout = 3;
+	/**
+	 * 连接在此时间(毫秒)内使用过时借出不校验.
+	 */
+	private long validationInterval = 500;
+	/**
+	 * 连接借出超过此时间(毫秒)认为可能泄漏, 0表示不检测.
+	 */
+	private long leakDetectionThreshold = 0;
+	/**
+	 * 空闲连接的回收时间(毫秒).
+	 */
+	private long idleTimeout = 10 * 60 * 1000;
+	/**
+	 * 后台检查的间隔(毫秒).
+	 */
+	private long housekeepingPeriod = 30 * 1000;
+
+	private final ConcurrentBag<PoolEntry> bag = new ConcurrentBag<PoolEntry>();
+
+	/**
+	 * 连接总数, 包括正在创建的连接.
+	 */
+	private final AtomicInteger totalCount = new AtomicInteger();
+
+	//
+	// 统计
+	//
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong borrowWaitNanos = new AtomicLong();
+	private final AtomicLong createdCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong leakCount = new AtomicLong();
+	private final AtomicLong invalidCount = new AtomicLong();
+
+	private volatile boolean started;
+
+	private volatile boolean closed;
+
+	private ScheduledExecutorService housekeeper;
+
+	private PrintWriter logWriter;
+
+	private int loginTimeout;
+
+	public PinusDataSource(String driverClassName, String url, String username, String password) {
+		this.driverClassName = driverClassName;
+		this.url = url;
+		this.username = username;
+		this.password = password;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (this.closed) {
+			throw new SQLException("连接池已经关闭, url=" + this.url);
+		}
+		_startIfNecessary();
+
+		long start = System.nanoTime();
+		long deadline = this.maxWait > 0 ? start + TimeUnit.MILLISECONDS.toNanos(this.maxWait) : Long.MAX_VALUE;
+		try {
+			while (true) {
+				PoolEntry entry = this.bag.borrow(0, TimeUnit.NANOSECONDS);
+				if (entry == null) {
+					entry = _createIfAllowed(true);
+				}
+				if (entry == null) {
+					long remain = deadline - System.nanoTime();
+					if (remain <= 0) {
+						break;
+					}
+					entry = this.bag.borrow(Math.min(remain, WAIT_SLICE_NANOS), TimeUnit.NANOSECONDS);
+					if (entry == null) {
+						continue;
+					}
+				}
+
+				if (!_isAlive(entry)) {
+					this.invalidCount.incrementAndGet();
+					_closeEntry(entry, "validation failed");
+					continue;
+				}
+
+				long now = System.currentTimeMillis();
+				entry.borrowedAt = now;
+				entry.leakReported = false;
+				if (this.leakDetectionThreshold > 0) {
+					entry.borrowTrace = new Exception("连接借出位置");
+				}
+				this.borrowCount.incrementAndGet();
+				this.borrowWaitNanos.addAndGet(System.nanoTime() - start);
+
+				return ProxyConnectionHandler.newProxy(this, entry);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("获取数据库连接被中断", e);
+		}
+
+		this.timeoutCount.incrementAndGet();
+		throw new SQLException("获取数据库连接超时, maxWait=" + this.maxWait + "ms, " + this);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	/**
+	 * 关闭连接池. 空闲连接立即关闭, 使用中的连接在归还时关闭.
+	 */
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+
+		synchronized (this) {
+			if (this.housekeeper != null) {
+				this.housekeeper.shutdownNow();
+			}
+		}
+
+		for (PoolEntry entry : this.bag.values()) {
+			if (this.bag.reserve(entry)) {
+				_closeEntry(entry, "pool closed");
+			}
+		}
+
+		LOG.info("close connection pool " + this);
+	}
+
+	/**
+	 * 创建物理连接.
+	 */
+	protected Connection _createConnection() throws SQLException {
+		Properties props = new Properties();
+		if (this.username != null) {
+			props.put("user", this.username);
+		}
+		if (this.password != null) {
+			props.put("password", this.password);
+		}
+		return DriverManager.getConnection(this.url, props);
+	}
+
+	/**
+	 * 归还连接.
+	 */
+	void _release(PoolEntry entry, boolean isReusable) {
+		entry.borrowTrace = null;
+		if (!isReusable || entry.evict || this.closed) {
+			_closeEntry(entry, isReusable ? "pool closed" : "connection broken");
+			return;
+		}
+
+		entry.lastAccess = System.currentTimeMillis();
+		this.bag.requite(entry);
+	}
+
+	private void _startIfNecessary() throws SQLException {
+		if (this.started) {
+			return;
+		}
+
+		synchronized (this) {
+			if (this.started || this.closed) {
+				return;
+			}
+
+			if (this.driverClassName != null) {
+				try {
+					Class.forName(this.driverClassName);
+				} catch (ClassNotFoundException e) {
+					throw new SQLException("找不到数据库驱动 " + this.driverClassName, e);
+				}
+			}
+
+			_fillPool(Math.max(this.initialSize, this.minIdle));
+
+			this.housekeeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "pinus-pool-housekeeper");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			this.housekeeper.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						_housekeeping();
+					} catch (Exception e) {
+						LOG.warn("connection pool housekeeping failure " + e.getMessage());
+					}
+				}
+			}, this.housekeepingPeriod, this.housekeepingPeriod, TimeUnit.MILLISECONDS);
+
+			this.started = true;
+		}
+	}
+
+	/**
+	 * 连接数没有达到上限时创建一个新连接.
+	 * 
+	 * @param inUse
+	 *            true:创建后直接借出, false:放入连接池
+	 * @return 达到上限时返回null
+	 */
+	private PoolEntry _createIfAllowed(boolean inUse) throws SQLException {
+		for (;;) {
+			int count = this.totalCount.get();
+			if (count >= this.maxActive) {
+				return null;
+			}
+			if (this.totalCount.compareAndSet(count, count + 1)) {
+				break;
+			}
+		}
+
+		PoolEntry entry;
+		try {
+			Connection conn = _createConnection();
+			conn.setAutoCommit(true);
+			entry = new PoolEntry(conn, conn.getTransactionIsolation());
+		} catch (SQLException e) {
+			this.totalCount.decrementAndGet();
+			throw e;
+		} catch (RuntimeException e) {
+			this.totalCount.decrementAndGet();
+			throw e;
+		}
+		this.createdCount.incrementAndGet();
+
+		if (inUse) {
+			this.bag.addInUse(entry);
+		} else {
+			this.bag.add(entry);
+		}
+		return entry;
+	}
+
+	private void _fillPool(int size) {
+		while (!this.closed && this.totalCount.get() < size) {
+			try {
+				if (_createIfAllowed(false) == null) {
+					return;
+				}
+			} catch (SQLException e) {
+				LOG.warn("create connection failure, url=" + this.url + ", " + e.getMessage());
+				return;
+			}
+		}
+	}
+
+	private boolean _isAlive(PoolEntry entry) {
+		if (System.currentTimeMillis() - entry.lastAccess < this.validationInterval) {
+			return true;
+		}
+
+		Connection conn = entry.connection;
+		try {
+			if (this.validationQuery == null) {
+				return conn.isValid(this.validationTimeout);
+			}
+
+			Statement st = conn.createStatement();
+			try {
+				st.setQueryTimeout(this.validationTimeout);
+				st.execute(this.validationQuery);
+			} finally {
+				st.close();
+			}
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private void _closeEntry(PoolEntry entry, String reason) {
+		if (this.bag.remove(entry)) {
+			this.totalCount.decrementAndGet();
+		}
+
+		try {
+			entry.connection.close();
+		} catch (SQLException e) {
+			// ignore
+		}
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("close connection " + reason + ", url=" + this.url);
+		}
+	}
+
+	/**
+	 * 检查泄漏, 回收空闲连接, 补充最小空闲连接.
+	 */
+	private void _housekeeping() {
+		long now = System.currentTimeMillis();
+
+		if (this.leakDetectionThreshold > 0) {
+			for (PoolEntry entry : this.bag.values()) {
+				if (entry.getState() == ConcurrentBag.STATE_IN_USE && !entry.leakReported
+						&& now - entry.borrowedAt > this.leakDetectionThreshold) {
+					entry.leakReported = true;
+					this.leakCount.incrementAndGet();
+					LOG.warn("connection leak detection, borrowed " + (now - entry.borrowedAt) + "ms, url=" + this.url,
+							entry.borrowTrace);
+				}
+			}
+		}
+
+		int removable = this.totalCount.get() - this.minIdle;
+		for (PoolEntry entry : this.bag.values()) {
+			if (removable <= 0) {
+				break;
+			}
+			if (now - entry.lastAccess > this.idleTimeout && this.bag.reserve(entry)) {
+				_closeEntry(entry, "idle timeout");
+				removable--;
+			}
+		}
+
+		_fillPool(this.minIdle);
+	}
+
+	//
+	// 统计
+	//
+	/**
+	 * 借出中的连接数.
+	 */
+	public int getActiveCount() {
+		return this.bag.getCount(ConcurrentBag.STATE_IN_USE);
+	}
+
+	/**
+	 * 空闲连接数.
+	 */
+	public int getIdleCount() {
+		return this.bag.getCount(ConcurrentBag.STATE_NOT_IN_USE);
+	}
+
+	/**
+	 * 连接总数.
+	 */
+	public int getTotalCount() {
+		return this.totalCount.get();
+	}
+
+	/**
+	 * 等待连接的线程数.
+	 */
+	public int getWaitingCount() {
+		return this.bag.getWaitingCount();
+	}
+
+	/**
+	 * 累计借出次数.
+	 */
+	public long getBorrowCount() {
+		return this.borrowCount.get();
+	}
+
+	/**
+	 * 平均获取连接的时间(毫秒).
+	 */
+	public double getAverageBorrowMillis() {
+		long count = this.borrowCount.get();
+		return count == 0 ? 0 : this.borrowWaitNanos.get() / (double) count / 1000000;
+	}
+
+	/**
+	 * 累计创建的物理连接数.
+	 */
+	public long getCreatedCount() {
+		return this.createdCount.get();
+	}
+
+	/**
+	 * 获取连接超时的次数.
+	 */
+	public long getTimeoutCount() {
+		return this.timeoutCount.get();
+	}
+
+	/**
+	 * 检测到的连接泄漏次数.
+	 */
+	public long getLeakCount() {
+		return this.leakCount.get();
+	}
+
+	/**
+	 * 校验失败的次数.
+	 */
+	public long getInvalidCount() {
+		return this.invalidCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return "PinusDataSource [url=" + url + ", total=" + getTotalCount() + ", active=" + getActiveCount()
+				+ ", idle=" + getIdleCount() + ", waiting=" + getWaitingCount() + ", borrow=" + getBorrowCount()
+				+ ", created=" + getCreatedCount() + ", timeout=" + getTimeoutCount() + ", leak=" + getLeakCount()
+				+ ", invalid=" + getInvalidCount() + "]";
+	}
+
+	//
+	// 连接池参数
+	//
+	public int getMaxActive() {
+		return maxActive;
+	}
+
+	public void setMaxActive(int maxActive) {
+		if (maxActive <= 0) {
+			throw new IllegalArgumentException("maxActive必须大于0");
+		}
+		this.maxActive = maxActive;
+	}
+
+	public int getMinIdle() {
+		return minIdle;
+	}
+
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+
+	public int getInitialSize() {
+		return initialSize;
+	}
+
+	public void setInitialSize(int initialSize) {
+		this.initialSize = initialSize;
+	}
+
+	public long getMaxWait() {
+		return maxWait;
+	}
+
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public String getValidationQuery() {
+		return validationQuery;
+	}
+
+	public void setValidationQuery(String validationQuery) {
+		this.validationQuery = validationQuery;
+	}
+
+	public int getValidationTimeout() {
+		return validationTimeout;
+	}
+
+	public void setValidationTimeout(int validationTimeout) {
+		this.validationTimeout = validationTimeout;
+	}
+
+	public long getValidationInterval() {
+		return validationInterval;
+	}
+
+	public void setValidationInterval(long validationInterval) {
+		this.validationInterval = validationInterval;
+	}
+
+	public long getLeakDetectionThreshold() {
+		return leakDetectionThreshold;
+	}
+
+	public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+		this.leakDetectionThreshold = leakDetectionThreshold;
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public long getHousekeepingPeriod() {
+		return housekeepingPeriod;
+	}
+
+	public void setHousekeepingPeriod(long housekeepingPeriod) {
+		if (housekeepingPeriod <= 0) {
+			throw new IllegalArgumentException("housekeepingPeriod必须大于0");
+		}
+		this.housekeepingPeriod = housekeepingPeriod;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	//
+	// DataSource
+	//
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return this.logWriter;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		this.logWriter = out;
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		this.loginTimeout = seconds;
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return this.loginTimeout;
+	}
+
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		throw new SQLException("not a wrapper for " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	/**
+	 * 借出的连接. 关闭时归还连接池并恢复连接状态.
+	 */
+	private static class ProxyConnectionHandler implements InvocationHandler {
+
+		private final PinusDataSource pool;
+
+		private final PoolEntry entry;
+
+		private final Connection conn;
+
+		private boolean closed;
+
+		/**
+		 * 上次提交或回滚后是否执行过语句.
+		 */
+		private boolean dirty;
+
+		private boolean autoCommitChanged;
+
+		private boolean isolationChanged;
+
+		private boolean readOnlyChanged;
+
+		private ProxyConnectionHandler(PinusDataSource pool, PoolEntry entry) {
+			this.pool = pool;
+			this.entry = entry;
+			this.conn = entry.connection;
+		}
+
+		static Connection newProxy(PinusDataSource pool, PoolEntry entry) {
+			return (Connection) Proxy.newProxyInstance(PinusDataSource.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new ProxyConnectionHandler(pool, entry));
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if (name.equals("close")) {
+				_close();
+				return null;
+			}
+			if (name.equals("isClosed")) {
+				return this.closed;
+			}
+			if (name.equals("equals")) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			if (name.equals("toString")) {
+				return "PinusConnection [" + this.conn + "]";
+			}
+			if (this.closed) {
+				throw new SQLException("连接已经关闭");
+			}
+
+			if (name.equals("setAutoCommit")) {
+				this.autoCommitChanged = true;
+			} else if (name.equals("setTransactionIsolation")) {
+				this.isolationChanged = true;
+			} else if (name.equals("setReadOnly")) {
+				this.readOnlyChanged = true;
+			} else if (name.equals("commit") || name.equals("rollback")) {
+				this.dirty = false;
+			} else if (name.startsWith("prepare") || name.equals("createStatement")) {
+				this.dirty = true;
+			}
+
+			try {
+				return method.invoke(this.conn, args);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof SQLException) {
+					String sqlState = ((SQLException) cause).getSQLState();
+					// 08开头的错误码表示连接异常
+					if (sqlState != null && sqlState.startsWith("08")) {
+						this.entry.evict = true;
+					}
+				}
+				throw cause;
+			}
+		}
+
+		private void _close() {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+
+			boolean isReusable = true;
+			try {
+				if (this.dirty && !this.conn.getAutoCommit()) {
+					this.conn.rollback();
+				}
+				if (this.autoCommitChanged) {
+					this.conn.setAutoCommit(true);
+				}
+				if (this.isolationChanged) {
+					this.conn.setTransactionIsolation(this.entry.defaultIsolation);
+				}
+				if (this.readOnlyChanged) {
+					this.conn.setReadOnly(false);
+				}
+			} catch (SQLException e) {
+				isReusable = false;
+			}
+
+			this.pool._release(this.entry, isReusable);
+		}
+
+	}
+
+}
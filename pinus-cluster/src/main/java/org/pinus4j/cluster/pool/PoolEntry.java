@@ -0,0 +1,82 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.pool;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接池中的一个物理连接.
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+class PoolEntry implements ConcurrentBag.IBagEntry {
+
+	final Connection connection;
+
+	/**
+	 * 创建连接时的事务隔离级别, 归还时恢复.
+	 */
+	final int defaultIsolation;
+
+	private final AtomicInteger state = new AtomicInteger(ConcurrentBag.STATE_NOT_IN_USE);
+
+	/**
+	 * 最后一次归还的时间.
+	 */
+	volatile long lastAccess;
+
+	/**
+	 * 借出的时间.
+	 */
+	volatile long borrowedAt;
+
+	/**
+	 * 借出的位置, 只在开启泄漏检测时记录.
+	 */
+	volatile Throwable borrowTrace;
+
+	volatile boolean leakReported;
+
+	/**
+	 * 连接已经损坏, 归还时关闭.
+	 */
+	volatile boolean evict;
+
+	PoolEntry(Connection connection, int defaultIsolation) {
+		this.connection = connection;
+		this.defaultIsolation = defaultIsolation;
+		this.lastAccess = System.currentTimeMillis();
+	}
+
+	@Override
+	public int getState() {
+		return state.get();
+	}
+
+	@Override
+	public void setState(int state) {
+		this.state.set(state);
+	}
+
+	@Override
+	public boolean compareAndSet(int expect, int update) {
+		return state.compareAndSet(expect, update);
+	}
+
+}
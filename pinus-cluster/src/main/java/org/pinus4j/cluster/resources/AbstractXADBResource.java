@@ -16,18 +16,153 @@
 
 package org.pinus4j.cluster.resources;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.resources.DBResourceCache.DBMeta;
+import org.pinus4j.exceptions.DBOperationException;
+import org.pinus4j.transaction.enums.EnumTransactionIsolationLevel;
+
 /**
- * xa database resource.
+ * xa database resource. route info of resource is immutable, connection is taken from the lease when sql actually
+ * runs.
  * 
  * @author duanbn
  *
  */
 public abstract class AbstractXADBResource implements IDBResource, XAResource {
 
+	/**
+	 * connection lease, maybe shared with other resources on the same database.
+	 */
+	protected volatile DBConnectionLease lease;
+
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+	protected AbstractXADBResource(DBConnectionLease lease) {
+		this.lease = lease;
+		this.lease.retain();
+	}
+
+	public DBConnectionLease getLease() {
+		return this.lease;
+	}
+
+	/**
+	 * switch to the lease of a resource already enlisted in a transaction for the same table, so sql of both resources
+	 * runs on one connection and is committed together. must be called before sql runs on this resource.
+	 * 
+	 * @param enlisted
+	 *            resource enlisted in the transaction
+	 */
+	public synchronized void joinLease(AbstractXADBResource enlisted) {
+		DBConnectionLease old = this.lease;
+		if (enlisted.lease == old) {
+			return;
+		}
+		if (this.closed.get()) {
+			throw new IllegalStateException("resource is closed, " + getId());
+		}
+
+		enlisted.lease.retain();
+		this.lease = enlisted.lease;
+		try {
+			old.release();
+		} catch (SQLException e) {
+			throw new DBOperationException(e);
+		}
+	}
+
+	@Override
+	public void setTransactionIsolationLevel(EnumTransactionIsolationLevel txLevel) {
+		try {
+			this.lease.setTransactionIsolationLevel(txLevel);
+		} catch (SQLException e) {
+			throw new DBOperationException(e);
+		}
+	}
+
+	@Override
+	public Connection getConnection() {
+		try {
+			return this.lease.getConnection();
+		} catch (SQLException e) {
+			throw new DBOperationException(e);
+		}
+	}
+
+	@Override
+	public void commit() {
+		try {
+			this.lease.commit();
+		} catch (SQLException e) {
+			throw new DBOperationException(e);
+		}
+	}
+
+	@Override
+	public void rollback() {
+		try {
+			this.lease.rollback();
+		} catch (SQLException e) {
+			throw new DBOperationException(e);
+		}
+	}
+
+	/**
+	 * release the lease, connection is returned to pool when all resources sharing the lease are closed.
+	 */
+	@Override
+	public void close() {
+		if (!this.closed.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			this.lease.release();
+		} catch (SQLException e) {
+			throw new DBOperationException(e);
+		}
+	}
+
+	public String getDatabaseProductName() {
+		DBMeta dbMeta = _getDBMeta();
+		return dbMeta != null ? dbMeta.getDatabaseProductName() : null;
+	}
+
+	public String getHost() {
+		DBMeta dbMeta = _getDBMeta();
+		return dbMeta != null ? dbMeta.getHost() : null;
+	}
+
+	public String getCatalog() {
+		DBMeta dbMeta = _getDBMeta();
+		return dbMeta != null ? dbMeta.getCatalog() : null;
+	}
+
+	/**
+	 * database meta info is read once per database, a connection is acquired if it has not been read.
+	 */
+	private DBMeta _getDBMeta() {
+		DBInfo dbInfo = this.lease.getDbInfo();
+		DBMeta dbMeta = DBResourceCache.getDBMeta(dbInfo);
+		if (dbMeta == null) {
+			try {
+				this.lease.getConnection();
+			} catch (SQLException e) {
+				return null;
+			}
+			dbMeta = DBResourceCache.getDBMeta(dbInfo);
+		}
+		return dbMeta;
+	}
+
 	@Override
 	public void commit(Xid xid, boolean onePhase) throws XAException {
 		if (!onePhase) {
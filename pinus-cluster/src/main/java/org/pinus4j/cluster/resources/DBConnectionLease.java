@@ -0,0 +1,140 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.resources;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.transaction.enums.EnumTransactionIsolationLevel;
+import org.pinus4j.utils.JdbcUtil;
+
+/**
+ * 一个数据库上的连接租约. 第一次执行SQL时才从连接池获取连接, 同一个库上的多个分表资源可以共享一个租约,
+ * 所有资源都关闭后连接归还连接池.
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class DBConnectionLease {
+
+	private final DBInfo dbInfo;
+
+	private Connection connection;
+
+	/**
+	 * 持有此租约的资源数.
+	 */
+	private int refCount;
+
+	private boolean released;
+
+	/**
+	 * 获取连接之前设置的事务隔离级别, 获取连接时生效.
+	 */
+	private EnumTransactionIsolationLevel txLevel;
+
+	public DBConnectionLease(DBInfo dbInfo) {
+		this.dbInfo = dbInfo;
+	}
+
+	public DBInfo getDbInfo() {
+		return this.dbInfo;
+	}
+
+	/**
+	 * 获取连接, 第一次调用时从连接池获取.
+	 */
+	public synchronized Connection getConnection() throws SQLException {
+		if (this.released) {
+			throw new SQLException("数据库连接已经释放, db=" + this.dbInfo.getDbName());
+		}
+
+		if (this.connection == null) {
+			Connection conn = this.dbInfo.getDatasource().getConnection();
+			try {
+				conn.setAutoCommit(false);
+				if (this.txLevel != null) {
+					conn.setTransactionIsolation(this.txLevel.getLevel());
+				}
+				DBResourceCache.loadDBMeta(this.dbInfo, conn);
+			} catch (SQLException e) {
+				JdbcUtil.close(conn);
+				throw e;
+			}
+			this.connection = conn;
+		}
+
+		return this.connection;
+	}
+
+	/**
+	 * 是否已经获取了连接.
+	 */
+	public synchronized boolean isAcquired() {
+		return this.connection != null;
+	}
+
+	public synchronized void setTransactionIsolationLevel(EnumTransactionIsolationLevel txLevel) throws SQLException {
+		this.txLevel = txLevel;
+		if (this.connection != null && txLevel != null) {
+			this.connection.setTransactionIsolation(txLevel.getLevel());
+		}
+	}
+
+	/**
+	 * 提交. 没有获取过连接时什么也不做.
+	 */
+	public synchronized void commit() throws SQLException {
+		if (this.connection != null) {
+			this.connection.commit();
+		}
+	}
+
+	/**
+	 * 回滚. 没有获取过连接时什么也不做.
+	 */
+	public synchronized void rollback() throws SQLException {
+		if (this.connection != null) {
+			this.connection.rollback();
+		}
+	}
+
+	synchronized void retain() {
+		if (this.released) {
+			throw new IllegalStateException("数据库连接已经释放, db=" + this.dbInfo.getDbName());
+		}
+		this.refCount++;
+	}
+
+	/**
+	 * 释放一个资源的引用, 最后一个引用释放时关闭连接.
+	 */
+	synchronized void release() throws SQLException {
+		if (this.released || --this.refCount > 0) {
+			return;
+		}
+
+		this.released = true;
+		Connection conn = this.connection;
+		this.connection = null;
+		if (conn != null && !conn.isClosed()) {
+			conn.close();
+		}
+	}
+
+}
@@ -16,11 +16,16 @@
 
 package org.pinus4j.cluster.resources;
 
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.pinus4j.cluster.beans.DBInfo;
 
 /**
- * cache database resource.
+ * cache database meta info. database resources hold no shared state, only the meta info of each database is cached.
  * 
  * @author duanbn
  *
@@ -28,37 +33,78 @@ import java.util.WeakHashMap;
 public class DBResourceCache {
 
 	/**
-	 * global db resource cache container.
+	 * db info -> database meta info.
 	 */
-	private static final Map<IResourceId, IDBResource> globalDBResourceCache = new WeakHashMap<IResourceId, IDBResource>();
+	private static final ConcurrentMap<DBInfo, DBMeta> dbMetaCache = new ConcurrentHashMap<DBInfo, DBMeta>();
 
 	/**
-	 * sharding db resource cache container.
+	 * get database meta info, null if no connection of this database was ever acquired.
 	 */
-	private static final Map<IResourceId, IDBResource> shardingDBResourceCache = new WeakHashMap<IResourceId, IDBResource>();
-
-	public static IDBResource getGlobalDBResource(IResourceId resId) {
-		return globalDBResourceCache.get(resId);
+	public static DBMeta getDBMeta(DBInfo dbInfo) {
+		return dbMetaCache.get(dbInfo);
 	}
 
-	public static void putGlobalDBResource(IResourceId resId, IDBResource globalDBResource) {
-		globalDBResourceCache.put(resId, globalDBResource);
-	}
-
-	public static IDBResource getShardingDBResource(IResourceId resId) {
-		return shardingDBResourceCache.get(resId);
-	}
+	/**
+	 * read database meta info from connection if absent.
+	 */
+	public static DBMeta loadDBMeta(DBInfo dbInfo, Connection conn) throws SQLException {
+		DBMeta dbMeta = dbMetaCache.get(dbInfo);
+		if (dbMeta == null) {
+			DatabaseMetaData meta = conn.getMetaData();
+			String host = null;
+			String url = meta.getURL();
+			if (url != null && url.indexOf("//") != -1) {
+				host = url.substring(url.indexOf("//") + 2);
+				if (host.indexOf("/") != -1) {
+					host = host.substring(0, host.indexOf("/"));
+				}
+			}
+			dbMeta = new DBMeta(meta.getDatabaseProductName(), host, conn.getCatalog());
 
-	public static void putShardingDBResource(IResourceId resId, IDBResource shardingDBResource) {
-		shardingDBResourceCache.put(resId, shardingDBResource);
+			DBMeta old = dbMetaCache.putIfAbsent(dbInfo, dbMeta);
+			if (old != null) {
+				dbMeta = old;
+			}
+		}
+		return dbMeta;
 	}
 
 	/**
 	 * clean cache.
 	 */
 	public static void clear() {
-		globalDBResourceCache.clear();
-		shardingDBResourceCache.clear();
+		dbMetaCache.clear();
+	}
+
+	/**
+	 * database meta info.
+	 */
+	public static class DBMeta {
+
+		private final String databaseProductName;
+
+		private final String host;
+
+		private final String catalog;
+
+		public DBMeta(String databaseProductName, String host, String catalog) {
+			this.databaseProductName = databaseProductName;
+			this.host = host;
+			this.catalog = catalog;
+		}
+
+		public String getDatabaseProductName() {
+			return databaseProductName;
+		}
+
+		public String getHost() {
+			return host;
+		}
+
+		public String getCatalog() {
+			return catalog;
+		}
+
 	}
 
 }
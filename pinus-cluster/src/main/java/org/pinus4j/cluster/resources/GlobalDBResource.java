@@ -16,87 +16,42 @@
 
 package org.pinus4j.cluster.resources;
 
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.SQLException;
-
 import org.pinus4j.cluster.beans.DBInfo;
 import org.pinus4j.cluster.enums.EnumDBMasterSlave;
-import org.pinus4j.exceptions.DBOperationException;
-import org.pinus4j.transaction.enums.EnumTransactionIsolationLevel;
 
 /**
- * 全局数据资源.
+ * 全局数据资源. 数据库连接在第一次执行SQL时才获取.
  * 
  * @author duanbn
  * @since 1.1.0
  */
 public class GlobalDBResource extends AbstractXADBResource {
 
-	private IResourceId resId;
-
-	private Connection conn;
+	private final IResourceId resId;
 
-	private String clusterName;
+	private final String clusterName;
 
-	private String dbName;
+	private final String dbName;
 
-	private EnumDBMasterSlave masterSlave;
+	private final EnumDBMasterSlave masterSlave;
 
-	//
-	// database meta data.
-	//
-	private String databaseProductName;
-	private String host;
-	private String catalog;
+	private GlobalDBResource(DBInfo dbInfo, String tableName) {
+		super(new DBConnectionLease(dbInfo));
 
-	private GlobalDBResource() {
+		this.clusterName = dbInfo.getClusterName();
+		this.dbName = dbInfo.getDbName();
+		this.masterSlave = dbInfo.getMasterSlave();
+		this.resId = new DBResourceId(clusterName, dbName, tableName, masterSlave);
 	}
 
 	/**
-	 * singleton
+	 * 创建全局数据资源.
 	 * 
 	 * @param dbInfo
 	 * @return
 	 */
-	public static IDBResource valueOf(DBInfo dbInfo, String tableName) throws SQLException {
-		IResourceId resId = new DBResourceId(dbInfo.getClusterName(), dbInfo.getDbName(), tableName,
-				dbInfo.getMasterSlave());
-
-		GlobalDBResource instance = (GlobalDBResource) DBResourceCache.getGlobalDBResource(resId);
-
-		Connection conn = dbInfo.getDatasource().getConnection();
-		conn.setAutoCommit(false);
-
-		if (instance == null) {
-			instance = new GlobalDBResource();
-
-			instance.setId(resId);
-			instance.setClusterName(dbInfo.getClusterName());
-			instance.setDbName(dbInfo.getDbName());
-			instance.setMasterSlave(dbInfo.getMasterSlave());
-
-			// get database meta info.
-			DatabaseMetaData dbMeta = conn.getMetaData();
-			String databaseProductName = dbMeta.getDatabaseProductName();
-			String url = dbMeta.getURL().substring(13);
-			String host = url.substring(0, url.indexOf("/"));
-			String catalog = conn.getCatalog();
-
-			instance.setDatabaseProductName(databaseProductName);
-			instance.setHost(host);
-			instance.setCatalog(catalog);
-
-			DBResourceCache.putGlobalDBResource(resId, instance);
-		}
-
-		instance.setConnection(conn);
-
-		return instance;
-	}
-
-	public void setId(IResourceId resId) {
-		this.resId = resId;
+	public static IDBResource valueOf(DBInfo dbInfo, String tableName) {
+		return new GlobalDBResource(dbInfo, tableName);
 	}
 
 	@Override
@@ -104,49 +59,6 @@ public class GlobalDBResource extends AbstractXADBResource {
 		return this.resId;
 	}
 
-	@Override
-	public void setTransactionIsolationLevel(EnumTransactionIsolationLevel txLevel) {
-		try {
-			this.conn.setTransactionIsolation(txLevel.getLevel());
-		} catch (SQLException e) {
-			throw new DBOperationException(e);
-		}
-	}
-
-	@Override
-	public Connection getConnection() {
-		return this.conn;
-	}
-
-	@Override
-	public void commit() {
-		try {
-			this.conn.commit();
-		} catch (SQLException e) {
-			throw new DBOperationException(e);
-		}
-	}
-
-	@Override
-	public void rollback() {
-		try {
-			this.conn.rollback();
-		} catch (SQLException e) {
-			throw new DBOperationException(e);
-		}
-	}
-
-	@Override
-	public void close() {
-		try {
-			if (!this.conn.isClosed()) {
-				this.conn.close();
-			}
-		} catch (SQLException e) {
-			throw new DBOperationException(e);
-		}
-	}
-
 	@Override
 	public boolean isGlobal() {
 		return true;
@@ -162,48 +74,8 @@ public class GlobalDBResource extends AbstractXADBResource {
 		return clusterName;
 	}
 
-	public void setClusterName(String clusterName) {
-		this.clusterName = clusterName;
-	}
-
 	public String getDbName() {
 		return dbName;
 	}
 
-	public void setDbName(String dbName) {
-		this.dbName = dbName;
-	}
-
-	public String getDatabaseProductName() {
-		return databaseProductName;
-	}
-
-	public void setDatabaseProductName(String databaseProductName) {
-		this.databaseProductName = databaseProductName;
-	}
-
-	public String getHost() {
-		return host;
-	}
-
-	public void setHost(String host) {
-		this.host = host;
-	}
-
-	public String getCatalog() {
-		return catalog;
-	}
-
-	public void setCatalog(String catalog) {
-		this.catalog = catalog;
-	}
-
-	public void setConnection(Connection conn) {
-		this.conn = conn;
-	}
-
-	public void setMasterSlave(EnumDBMasterSlave masterSlave) {
-		this.masterSlave = masterSlave;
-	}
-
 }
@@ -16,158 +16,99 @@
 
 package org.pinus4j.cluster.resources;
 
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.SQLException;
-
-import org.pinus4j.cluster.beans.DBRegionInfo;
 import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.DBRegionInfo;
 import org.pinus4j.cluster.enums.EnumDBMasterSlave;
-import org.pinus4j.exceptions.DBOperationException;
-import org.pinus4j.transaction.enums.EnumTransactionIsolationLevel;
 
 /**
- * 表示一个数据分片资源.
+ * 表示一个数据分片资源. 分片的路由信息不可变, 数据库连接在第一次执行SQL时才获取. 同一个库上的多个分片资源可以共享一个连接租约.
  * 
  * @author duanbn
  */
 public class ShardingDBResource extends AbstractXADBResource {
 
-	private IResourceId resId;
-
-	/**
-	 * jdbc data source.
-	 */
-	private Connection connection;
+	private final IResourceId resId;
 
 	/**
 	 * cluster name.
 	 */
-	private String clusterName;
+	private final String clusterName;
 
 	/**
 	 * database name.
 	 */
-	private String dbName;
+	private final String dbName;
 
 	/**
 	 * table name without index.
 	 */
-	private String tableName;
+	private final String tableName;
 
 	/**
 	 * index of table
 	 */
-	private int tableIndex;
-
-	private String regionCapacity;
-
-	private EnumDBMasterSlave masterSlave;
-
-	//
-	// database meta data.
-	//
-	private String databaseProductName;
-	private String host;
-	private String catalog;
+	private final int tableIndex;
 
-	private ShardingDBResource() {
-	}
-
-	public static ShardingDBResource valueOf(DBInfo dbInfo, DBRegionInfo regionInfo, String tableName, int tableIndex)
-			throws SQLException {
-		IResourceId resId = new DBResourceId(dbInfo.getClusterName(), dbInfo.getDbName(), regionInfo.getCapacity(),
-				tableName, tableIndex, dbInfo.getMasterSlave());
-
-		ShardingDBResource instance = (ShardingDBResource) DBResourceCache.getShardingDBResource(resId);
-
-		Connection conn = dbInfo.getDatasource().getConnection();
-		conn.setAutoCommit(false);
-
-		if (instance == null) {
-			instance = new ShardingDBResource();
+	private final String regionCapacity;
 
-			instance.setId(resId);
-			instance.setClusterName(dbInfo.getClusterName());
-			instance.setDbName(dbInfo.getDbName());
-			instance.setRegionCapacity(regionInfo.getCapacity());
-			instance.setTableName(tableName);
-			instance.setTableIndex(tableIndex);
-			instance.setMasterSlave(dbInfo.getMasterSlave());
-
-			// get database meta info.
-			DatabaseMetaData dbMeta = conn.getMetaData();
-			String databaseProductName = dbMeta.getDatabaseProductName();
-			String url = dbMeta.getURL().substring(13);
-			String host = url.substring(0, url.indexOf("/"));
-			String catalog = conn.getCatalog();
-
-			instance.setDatabaseProductName(databaseProductName);
-			instance.setHost(host);
-			instance.setCatalog(catalog);
-
-			DBResourceCache.putShardingDBResource(resId, instance);
-		}
+	private final EnumDBMasterSlave masterSlave;
 
-		instance.setConnection(conn);
+	private ShardingDBResource(DBInfo dbInfo, DBRegionInfo regionInfo, String tableName, int tableIndex,
+			DBConnectionLease lease) {
+		super(lease);
 
-		return instance;
-	}
-
-	public void setId(IResourceId resId) {
-		this.resId = resId;
-	}
-
-	@Override
-	public IResourceId getId() {
-		return this.resId;
+		this.clusterName = dbInfo.getClusterName();
+		this.dbName = dbInfo.getDbName();
+		this.regionCapacity = regionInfo.getCapacity();
+		this.tableName = tableName;
+		this.tableIndex = tableIndex;
+		this.masterSlave = dbInfo.getMasterSlave();
+		this.resId = new DBResourceId(clusterName, dbName, regionCapacity, tableName, tableIndex, masterSlave);
 	}
 
-	@Override
-	public void setTransactionIsolationLevel(EnumTransactionIsolationLevel txLevel) {
-		try {
-			this.connection.setTransactionIsolation(txLevel.getLevel());
-		} catch (SQLException e) {
-			throw new DBOperationException(e);
-		}
-	}
+	/**
+	 * 创建一个使用独立连接的分片资源.
+	 */
+	private ShardingDBResource(ShardingDBResource src, DBConnectionLease lease) {
+		super(lease);
 
-	@Override
-	public Connection getConnection() {
-		return this.connection;
+		this.clusterName = src.clusterName;
+		this.dbName = src.dbName;
+		this.regionCapacity = src.regionCapacity;
+		this.tableName = src.tableName;
+		this.tableIndex = src.tableIndex;
+		this.masterSlave = src.masterSlave;
+		this.resId = src.resId;
 	}
 
-	public void setConnection(Connection conn) {
-		this.connection = conn;
+	public static ShardingDBResource valueOf(DBInfo dbInfo, DBRegionInfo regionInfo, String tableName, int tableIndex) {
+		return valueOf(dbInfo, regionInfo, tableName, tableIndex, new DBConnectionLease(dbInfo));
 	}
 
-	@Override
-	public void commit() {
-		try {
-			this.connection.commit();
-		} catch (SQLException e) {
-			throw new DBOperationException(e);
+	/**
+	 * 创建一个分片资源, 与使用同一个租约的资源共享数据库连接.
+	 * 
+	 * @param lease
+	 *            连接租约, 必须是dbInfo上的租约
+	 */
+	public static ShardingDBResource valueOf(DBInfo dbInfo, DBRegionInfo regionInfo, String tableName,
+			int tableIndex, DBConnectionLease lease) {
+		if (lease.getDbInfo() != dbInfo) {
+			throw new IllegalArgumentException("连接租约与分片不在同一个库上, db=" + dbInfo.getDbName());
 		}
+		return new ShardingDBResource(dbInfo, regionInfo, tableName, tableIndex, lease);
 	}
 
-	@Override
-	public void rollback() {
-		try {
-			this.connection.rollback();
-		} catch (SQLException e) {
-			throw new DBOperationException(e);
-		}
+	/**
+	 * 创建一个同一分表但是使用独立连接的资源, 用于在一个分表上并行查询. 使用完需要关闭.
+	 */
+	public ShardingDBResource fork() {
+		return new ShardingDBResource(this, new DBConnectionLease(this.lease.getDbInfo()));
 	}
 
 	@Override
-	public void close() {
-		try {
-			if (!this.connection.isClosed()) {
-				this.connection.close();
-			}
-		} catch (SQLException e) {
-			throw new DBOperationException(e);
-		}
+	public IResourceId getId() {
+		return this.resId;
 	}
 
 	@Override
@@ -189,71 +130,27 @@ public class ShardingDBResource extends AbstractXADBResource {
 		return dbName;
 	}
 
-	public void setDbName(String dbName) {
-		this.dbName = dbName;
-	}
-
 	public String getTableName() {
 		return tableName;
 	}
 
-	public void setTableName(String tableName) {
-		this.tableName = tableName;
-	}
-
 	public int getTableIndex() {
 		return tableIndex;
 	}
 
-	public void setTableIndex(int tableIndex) {
-		this.tableIndex = tableIndex;
-	}
-
-	public void setClusterName(String clusterName) {
-		this.clusterName = clusterName;
-	}
-
 	public String getRegionCapacity() {
 		return regionCapacity;
 	}
 
-	public void setRegionCapacity(String regionCapacity) {
-		this.regionCapacity = regionCapacity;
-	}
-
-	public String getDatabaseProductName() {
-		return databaseProductName;
-	}
-
-	public void setDatabaseProductName(String databaseProductName) {
-		this.databaseProductName = databaseProductName;
-	}
-
-	public String getHost() {
-		return host;
-	}
-
-	public void setHost(String host) {
-		this.host = host;
-	}
-
-	public String getCatalog() {
-		return catalog;
-	}
-
-	public void setCatalog(String catalog) {
-		this.catalog = catalog;
-	}
-
-	public void setMasterSlave(EnumDBMasterSlave masterSlave) {
-		this.masterSlave = masterSlave;
-	}
-
 	@Override
 	public String toString() {
+		// 只读取已经缓存的数据库信息, 不能为了打印获取连接
+		DBResourceCache.DBMeta dbMeta = DBResourceCache.getDBMeta(this.lease.getDbInfo());
 		return "ShardingDBResource [clusterName=" + clusterName + ", dbName=" + dbName + ", tableName=" + tableName
 				+ ", tableIndex=" + tableIndex + ", regionCapacity=" + regionCapacity + ", masterSlave=" + masterSlave
-				+ ", databaseProductName=" + databaseProductName + ", host=" + host + ", catalog=" + catalog + "]";
+				+ ", databaseProductName=" + (dbMeta != null ? dbMeta.getDatabaseProductName() : null) + ", host="
+				+ (dbMeta != null ? dbMeta.getHost() : null) + ", catalog="
+				+ (dbMeta != null ? dbMeta.getCatalog() : null) + "]";
 	}
 
 }
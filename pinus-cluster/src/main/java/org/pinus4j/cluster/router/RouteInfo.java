@@ -19,7 +19,7 @@ package org.pinus4j.cluster.router;
 import org.pinus4j.cluster.beans.DBInfo;
 
 /**
- * 表示一次路由操作的结果.
+ * 表示一次路由操作的结果. 不可变, 路由器会缓存并复用.
  * 
  * @author duanbn
  */
@@ -28,65 +28,59 @@ public class RouteInfo {
 	/**
 	 * cluster name.
 	 */
-	private String clusterName;
+	private final String clusterName;
 
 	/**
 	 * region index.
 	 */
-	private int regionIndex;
+	private final int regionIndex;
 
-    /**
-     * db info is selected.
-     */
-    private DBInfo dbInfo;
+	/**
+	 * db info is selected.
+	 */
+	private final DBInfo dbInfo;
 
 	/**
-	 *  table name.
+	 * table name.
 	 */
-	private String tableName;
+	private final String tableName;
 
 	/**
-	 *  index of table.
+	 * index of table.
 	 */
-	private int tableIndex;
-	
-	public String getClusterName() {
-		return clusterName;
-	}
+	private final int tableIndex;
 
-	public void setClusterName(String clusterName) {
+	public RouteInfo(String clusterName, int regionIndex, DBInfo dbInfo, String tableName, int tableIndex) {
 		this.clusterName = clusterName;
+		this.regionIndex = regionIndex;
+		this.dbInfo = dbInfo;
+		this.tableName = tableName;
+		this.tableIndex = tableIndex;
 	}
 
-	public int getRegionIndex() {
-		return regionIndex;
+	public String getClusterName() {
+		return clusterName;
 	}
 
-	public void setRegionIndex(int regionIndex) {
-		this.regionIndex = regionIndex;
+	public int getRegionIndex() {
+		return regionIndex;
 	}
 
 	public String getTableName() {
 		return tableName;
 	}
 
-	public void setTableName(String tableName) {
-		this.tableName = tableName;
-	}
-
 	public DBInfo getDbInfo() {
 		return dbInfo;
 	}
 
-	public void setDbInfo(DBInfo dbInfo) {
-		this.dbInfo = dbInfo;
-	}
-
 	public int getTableIndex() {
 		return tableIndex;
 	}
 
-	public void setTableIndex(int tableIndex) {
-		this.tableIndex = tableIndex;
+	@Override
+	public String toString() {
+		return "RouteInfo [clusterName=" + clusterName + ", regionIndex=" + regionIndex + ", tableName=" + tableName
+				+ ", tableIndex=" + tableIndex + "]";
 	}
 }
@@ -17,12 +17,17 @@
 package org.pinus4j.cluster.router.impl;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.pinus4j.cluster.IDBCluster;
 import org.pinus4j.cluster.ITableCluster;
+import org.pinus4j.cluster.beans.AppDBInfo;
 import org.pinus4j.cluster.beans.DBClusterInfo;
 import org.pinus4j.cluster.beans.DBRegionInfo;
 import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.EnvDBInfo;
 import org.pinus4j.cluster.beans.IShardingKey;
 import org.pinus4j.cluster.enums.EnumDBMasterSlave;
 import org.pinus4j.cluster.enums.HashAlgoEnum;
@@ -38,6 +43,11 @@ import org.pinus4j.exceptions.DBRouteException;
  */
 public abstract class AbstractClusterRouter implements IClusterRouter {
 
+	/**
+	 * sharding配置中指定节点名的属性.
+	 */
+	public static final String PROP_NODE_NAME = "node";
+
 	/**
 	 * hash 算法
 	 */
@@ -53,6 +63,11 @@ public abstract class AbstractClusterRouter implements IClusterRouter {
 	 */
 	private ITableCluster tableCluster;
 
+	/**
+	 * 每个集群编译后的路由表.
+	 */
+	private final ConcurrentMap<String, RouteTable> routeTables = new ConcurrentHashMap<String, RouteTable>();
+
 	@Override
 	public void setHashAlgo(HashAlgoEnum algoEnum) {
 		this.hashAlgo = algoEnum;
@@ -86,8 +101,6 @@ public abstract class AbstractClusterRouter implements IClusterRouter {
 	@Override
 	public RouteInfo select(EnumDBMasterSlave masterSlave, String tableName, IShardingKey<?> value)
 			throws DBRouteException {
-		RouteInfo dbRouteInfo = new RouteInfo();
-
 		long shardingValue = getShardingValue(value);
 		String clusterName = value.getClusterName();
 
@@ -103,19 +116,13 @@ public abstract class AbstractClusterRouter implements IClusterRouter {
 			throw new DBRouteException("查找集群失败, clustername=" + clusterName);
 		}
 
-		DBRegionInfo regionInfo = null;
-		int regionIndex = 0;
-		for (DBRegionInfo region : regionInfos) {
-			if (region.isMatch(shardingValue)) {
-				regionInfo = region;
-				break;
-			}
-			regionIndex++;
-		}
-		if (regionInfo == null) {
+		RouteTable routeTable = _getRouteTable(clusterName, regionInfos);
+		int regionIndex = routeTable.findRegion(shardingValue);
+		if (regionIndex == -1) {
 			throw new DBRouteException("find db cluster failure, over capacity, cluster name is " + clusterName
 					+ ", sharding value is " + shardingValue);
 		}
+		DBRegionInfo regionInfo = routeTable.getRegion(regionIndex);
 
 		// compute and find database instance.
 		List<DBInfo> dbInfos = null;
@@ -150,26 +157,32 @@ public abstract class AbstractClusterRouter implements IClusterRouter {
 
 		DBInfo dbInfo = doSelect(dbInfos, value);
 
-		dbRouteInfo.setDbInfo(dbInfo);
-		dbRouteInfo.setClusterName(clusterName);
-		dbRouteInfo.setRegionIndex(regionIndex);
-
 		// compute and find table
+		int tableNum;
 		try {
 			// get table number.
-			int tableNum = tableCluster.getTableNumber(clusterName, tableName);
-
-			// compute table index.
-			int tableIndex = (int) shardingValue % tableNum;
-
-			dbRouteInfo.setTableName(tableName);
-			dbRouteInfo.setTableIndex(tableIndex);
+			tableNum = tableCluster.getTableNumber(clusterName, tableName);
 		} catch (Exception e) {
-			throw new DBRouteException("find table failure, cluster name is " + dbRouteInfo.getClusterName()
-					+ "db name is " + dbRouteInfo.getDbInfo().getDbName() + ", table name is " + tableName);
+			throw new DBRouteException("find table failure, cluster name is " + clusterName + "db name is "
+					+ dbInfo.getDbName() + ", table name is " + tableName);
 		}
 
-		return dbRouteInfo;
+		// compute table index.
+		int tableIndex = mod(value, shardingValue, tableNum);
+
+		return routeTable.getRouteInfo(regionIndex, dbInfo, tableName, tableIndex, tableNum);
+	}
+
+	/**
+	 * 获取集群的路由表, 集群信息变化后重新编译.
+	 */
+	private RouteTable _getRouteTable(String clusterName, List<DBRegionInfo> regionInfos) {
+		RouteTable routeTable = this.routeTables.get(clusterName);
+		if (routeTable == null || !routeTable.isCompiledFrom(regionInfos)) {
+			routeTable = new RouteTable(clusterName, regionInfos);
+			this.routeTables.put(clusterName, routeTable);
+		}
+		return routeTable;
 	}
 
 	/**
@@ -184,7 +197,9 @@ public abstract class AbstractClusterRouter implements IClusterRouter {
 		Object shardingValue = value.getValue();
 
 		if (shardingValue instanceof String) {
-			return (int) this.hashAlgo.hash((String) shardingValue);
+			long hash = this.hashAlgo.hash((String) shardingValue);
+			// 之前的hash算法截断为int, 保证已有数据的路由不变
+			return this.hashAlgo.is64Bit() ? hash : (int) hash;
 		} else if (shardingValue instanceof Integer) {
 			return (Integer) shardingValue;
 		} else if (shardingValue instanceof Long) {
@@ -194,6 +209,56 @@ public abstract class AbstractClusterRouter implements IClusterRouter {
 		}
 	}
 
+	/**
+	 * sharding值对分库或者分表数取模. 只有64位hash算法得到的值在long上取模,
+	 * 数字和其它hash算法的值与之前一样先截断为int, 保证已有数据的路由不变.
+	 * 
+	 * @param value
+	 *            sharding key
+	 * @param shardingValue
+	 *            {@link #getShardingValue(IShardingKey)}的结果
+	 * @param num
+	 *            分库或者分表数
+	 */
+	protected int mod(IShardingKey<?> value, long shardingValue, int num) {
+		if (value.getValue() instanceof String && this.hashAlgo != null && this.hashAlgo.is64Bit()) {
+			return (int) (shardingValue % num);
+		}
+		return (int) shardingValue % num;
+	}
+
+	/**
+	 * 获取分库的节点名, 用于基于hash的路由算法计算分库的位置. 优先使用sharding配置的node属性, 没有配置时使用连接地址或者数据源名.
+	 * 
+	 * @return 无法获取时返回null
+	 */
+	protected static String getNodeName(DBInfo dbInfo) {
+		Map<String, String> props = dbInfo.getCustomProperties();
+		if (props != null && props.get(PROP_NODE_NAME) != null) {
+			return props.get(PROP_NODE_NAME);
+		}
+		if (dbInfo instanceof AppDBInfo) {
+			return ((AppDBInfo) dbInfo).getUrl();
+		}
+		if (dbInfo instanceof EnvDBInfo) {
+			return ((EnvDBInfo) dbInfo).getEnvDsName();
+		}
+		return dbInfo.getDbName();
+	}
+
+	/**
+	 * 打散64位的值, 相近的输入得到的结果也均匀分布. 使用murmur3的64位finalizer.
+	 */
+	protected static long mix(long value) {
+		long h = value;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
 	/**
 	 * select database instance.
 	 *
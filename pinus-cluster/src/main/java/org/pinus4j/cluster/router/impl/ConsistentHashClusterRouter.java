@@ -0,0 +1,187 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.router.impl;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.IShardingKey;
+import org.pinus4j.constant.Const;
+import org.pinus4j.exceptions.DBRouteException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 一致性hash路由实现. 每个分库在hash环上对应多个虚拟节点, 分片值落在顺时针方向的第一个虚拟节点所属的分库.
+ * 区块中增加一个分库时只有大约1/N的数据需要迁移, 取模路由则几乎所有数据都会改变分库.
+ *
+ * 虚拟节点的位置由分库的节点名计算(见{@link AbstractClusterRouter#getNodeName(DBInfo)}). 调整分库的配置顺序不影响路由结果,
+ * 但是修改节点名会改变路由, 迁移数据库时应该通过node属性保持节点名不变.
+ *
+ * 每个分库的虚拟节点数默认为160, 可以通过-Dstorage.router.vnodes修改. 使用方式:
+ *
+ * <pre>
+ * &lt;cluster name="pinus" catalog="mysql" router="org.pinus4j.cluster.router.impl.ConsistentHashClusterRouter"&gt;
+ * </pre>
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class ConsistentHashClusterRouter extends AbstractClusterRouter {
+
+	public static final Logger LOG = LoggerFactory.getLogger(ConsistentHashClusterRouter.class);
+
+	private int virtualNodeNum = _getDefaultVirtualNodeNum();
+
+	/**
+	 * 每组分库对应的hash环.
+	 */
+	private final DBListCache<Ring> rings = new DBListCache<Ring>() {
+		@Override
+		protected Ring create(List<DBInfo> dbInfos) throws DBRouteException {
+			return new Ring(dbInfos, virtualNodeNum);
+		}
+	};
+
+	@Override
+	public DBInfo doSelect(List<DBInfo> dbInfos, IShardingKey<?> value) throws DBRouteException {
+		long shardingValue = getShardingValue(value);
+
+		return dbInfos.get(this.rings.get(dbInfos).select(mix(shardingValue) >>> 32));
+	}
+
+	public int getVirtualNodeNum() {
+		return virtualNodeNum;
+	}
+
+	/**
+	 * 设置每个分库的虚拟节点数. 已经创建的hash环不受影响.
+	 */
+	public void setVirtualNodeNum(int virtualNodeNum) {
+		if (virtualNodeNum <= 0) {
+			throw new IllegalArgumentException("virtualNodeNum必须大于0");
+		}
+		this.virtualNodeNum = virtualNodeNum;
+	}
+
+	private static int _getDefaultVirtualNodeNum() {
+		String value = System.getProperty(Const.SYSTEM_PROPERTY_ROUTER_VNODES);
+		if (value != null) {
+			try {
+				int num = Integer.parseInt(value.trim());
+				if (num > 0) {
+					return num;
+				}
+			} catch (NumberFormatException e) {
+				// use default
+			}
+			LOG.warn("错误的" + Const.SYSTEM_PROPERTY_ROUTER_VNODES + "=" + value + ", 使用默认值");
+		}
+		return Const.ROUTER_VIRTUAL_NODE_NUM;
+	}
+
+	/**
+	 * hash环. 虚拟节点的位置按ketama方式计算, 每个md5摘要得到4个32位的位置.
+	 */
+	static class Ring {
+
+		/**
+		 * 虚拟节点在环上的位置, 升序, 取值范围[0, 2^32).
+		 */
+		private final long[] points;
+
+		/**
+		 * 虚拟节点所属分库在列表中的下标.
+		 */
+		private final int[] indexes;
+
+		Ring(List<DBInfo> dbInfos, int virtualNodeNum) throws DBRouteException {
+			int groupNum = (virtualNodeNum + 3) / 4;
+			long[][] nodes = new long[dbInfos.size() * groupNum * 4][];
+
+			MessageDigest md5;
+			try {
+				md5 = MessageDigest.getInstance("MD5");
+			} catch (NoSuchAlgorithmException e) {
+				throw new DBRouteException(e);
+			}
+
+			int n = 0;
+			for (int i = 0; i < dbInfos.size(); i++) {
+				String nodeName = getNodeName(dbInfos.get(i));
+				if (nodeName == null) {
+					throw new DBRouteException("can not get node name of db " + dbInfos.get(i));
+				}
+
+				for (int j = 0; j < groupNum; j++) {
+					byte[] digest;
+					try {
+						digest = md5.digest((nodeName + "-" + j).getBytes("UTF-8"));
+					} catch (UnsupportedEncodingException e) {
+						throw new DBRouteException(e);
+					}
+					for (int k = 0; k < 4; k++) {
+						long point = ((long) (digest[3 + k * 4] & 0xFF) << 24) | ((long) (digest[2 + k * 4] & 0xFF) << 16)
+								| ((long) (digest[1 + k * 4] & 0xFF) << 8) | (digest[k * 4] & 0xFF);
+						nodes[n++] = new long[] { point, i };
+					}
+				}
+			}
+
+			// 位置相同时按分库下标排序, 保证结果是确定的
+			Arrays.sort(nodes, new Comparator<long[]>() {
+				@Override
+				public int compare(long[] o1, long[] o2) {
+					if (o1[0] != o2[0]) {
+						return o1[0] < o2[0] ? -1 : 1;
+					}
+					return o1[1] < o2[1] ? -1 : (o1[1] == o2[1] ? 0 : 1);
+				}
+			});
+
+			this.points = new long[nodes.length];
+			this.indexes = new int[nodes.length];
+			for (int i = 0; i < nodes.length; i++) {
+				this.points[i] = nodes[i][0];
+				this.indexes[i] = (int) nodes[i][1];
+			}
+		}
+
+		/**
+		 * 查找hash值顺时针方向的第一个虚拟节点.
+		 *
+		 * @return 分库下标
+		 */
+		int select(long hash) {
+			int pos = Arrays.binarySearch(this.points, hash);
+			if (pos < 0) {
+				pos = -pos - 1;
+				if (pos == this.points.length) {
+					pos = 0;
+				}
+			}
+			return this.indexes[pos];
+		}
+
+	}
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.router.impl;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.exceptions.DBRouteException;
+
+/**
+ * 按分库列表缓存路由算法预先计算的数据. 分库列表在集群信息加载后不会改变, 因此按对象identity查找, 不需要计算列表的hashCode.
+ * 写时复制, 读取不加锁也不创建对象.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+abstract class DBListCache<V> {
+
+	/**
+	 * 缓存的个数上限, 集群信息反复重新加载时防止旧的分库列表一直被引用.
+	 */
+	private static final int MAX_SIZE = 256;
+
+	private volatile Map<List<DBInfo>, V> cache = new IdentityHashMap<List<DBInfo>, V>();
+
+	V get(List<DBInfo> dbInfos) throws DBRouteException {
+		V value = this.cache.get(dbInfos);
+		if (value == null) {
+			value = _create(dbInfos);
+		}
+		return value;
+	}
+
+	/**
+	 * 根据分库列表计算需要缓存的数据.
+	 */
+	protected abstract V create(List<DBInfo> dbInfos) throws DBRouteException;
+
+	private synchronized V _create(List<DBInfo> dbInfos) throws DBRouteException {
+		V value = this.cache.get(dbInfos);
+		if (value != null) {
+			return value;
+		}
+
+		value = create(dbInfos);
+
+		Map<List<DBInfo>, V> newCache = new IdentityHashMap<List<DBInfo>, V>();
+		if (this.cache.size() < MAX_SIZE) {
+			newCache.putAll(this.cache);
+		}
+		newCache.put(dbInfos, value);
+		this.cache = newCache;
+
+		return value;
+	}
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.router.impl;
+
+import java.util.List;
+
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.IShardingKey;
+import org.pinus4j.exceptions.DBRouteException;
+
+/**
+ * Jump Consistent Hash路由实现(Lamping &amp; Veach). 不需要额外的内存, 计算时间为O(log N). 分库个数从N增加到N+1时,
+ * 只有大约1/(N+1)的数据迁移到新增的分库.
+ *
+ * 分库由在列表中的下标确定, 因此新增的分库只能配置在区块的最后, 也只能从最后减少分库. 需要在中间增减分库时使用
+ * {@link ConsistentHashClusterRouter}或者{@link RendezvousHashClusterRouter}.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class JumpHashClusterRouter extends AbstractClusterRouter {
+
+	@Override
+	public DBInfo doSelect(List<DBInfo> dbInfos, IShardingKey<?> value) throws DBRouteException {
+		long shardingValue = getShardingValue(value);
+
+		return dbInfos.get(jump(mix(shardingValue), dbInfos.size()));
+	}
+
+	/**
+	 * 计算key所在的桶.
+	 *
+	 * @param key
+	 *            已经打散的key
+	 * @param bucketNum
+	 *            桶的个数
+	 * @return 桶的下标, [0, bucketNum)
+	 */
+	static int jump(long key, int bucketNum) {
+		long b = -1, j = 0;
+		while (j < bucketNum) {
+			b = j;
+			key = key * 2862933555777941757L + 1;
+			j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+		return (int) b;
+	}
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.router.impl;
+
+import java.util.List;
+import java.util.Map;
+
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.IShardingKey;
+import org.pinus4j.exceptions.DBRouteException;
+
+/**
+ * 带权重的Rendezvous Hash(HRW)路由实现. 每个分片值对每个分库计算一个分数, 选择分数最高的分库. 增加或者删除一个分库时,
+ * 只有属于这个分库的数据需要迁移, 与分库的配置位置无关. 计算时间为O(N), 适合分库较少的区块.
+ *
+ * 分库的权重通过sharding配置的weight属性设置, 默认为1, 分到的数据量与权重成正比. 分库由节点名确定(见
+ * {@link AbstractClusterRouter#getNodeName(DBInfo)}).
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class RendezvousHashClusterRouter extends AbstractClusterRouter {
+
+	/**
+	 * sharding配置中指定权重的属性.
+	 */
+	public static final String PROP_WEIGHT = "weight";
+
+	private final DBListCache<Nodes> nodesCache = new DBListCache<Nodes>() {
+		@Override
+		protected Nodes create(List<DBInfo> dbInfos) throws DBRouteException {
+			return new Nodes(dbInfos);
+		}
+	};
+
+	@Override
+	public DBInfo doSelect(List<DBInfo> dbInfos, IShardingKey<?> value) throws DBRouteException {
+		long shardingValue = getShardingValue(value);
+
+		return dbInfos.get(this.nodesCache.get(dbInfos).select(mix(shardingValue)));
+	}
+
+	/**
+	 * 一组分库的节点hash和权重.
+	 */
+	static class Nodes {
+
+		private final long[] seeds;
+
+		private final double[] weights;
+
+		Nodes(List<DBInfo> dbInfos) throws DBRouteException {
+			this.seeds = new long[dbInfos.size()];
+			this.weights = new double[dbInfos.size()];
+
+			for (int i = 0; i < dbInfos.size(); i++) {
+				DBInfo dbInfo = dbInfos.get(i);
+
+				String nodeName = getNodeName(dbInfo);
+				if (nodeName == null) {
+					throw new DBRouteException("can not get node name of db " + dbInfo);
+				}
+				this.seeds[i] = _hash(nodeName);
+
+				double weight = 1;
+				Map<String, String> props = dbInfo.getCustomProperties();
+				if (props != null && props.get(PROP_WEIGHT) != null) {
+					try {
+						weight = Double.parseDouble(props.get(PROP_WEIGHT).trim());
+					} catch (NumberFormatException e) {
+						throw new DBRouteException("weight of db is not a number, node=" + nodeName);
+					}
+					if (weight <= 0) {
+						throw new DBRouteException("weight of db must be greater than 0, node=" + nodeName);
+					}
+				}
+				this.weights[i] = weight;
+			}
+		}
+
+		/**
+		 * 选择分数最高的分库. 分数为-weight/ln(u), u是分片值和节点的hash映射到(0, 1)的值.
+		 *
+		 * @return 分库下标
+		 */
+		int select(long keyHash) {
+			int selected = 0;
+			double maxScore = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < this.seeds.length; i++) {
+				long h = mix(this.seeds[i] ^ keyHash);
+				double u = ((h >>> 11) + 0.5) / (1L << 53);
+				double score = -this.weights[i] / Math.log(u);
+				if (score > maxScore) {
+					maxScore = score;
+					selected = i;
+				}
+			}
+			return selected;
+		}
+
+		/**
+		 * 64位FNV-1a.
+		 */
+		private static long _hash(String s) {
+			long h = 0xcbf29ce484222325L;
+			for (int i = 0; i < s.length(); i++) {
+				h ^= s.charAt(i);
+				h *= 0x100000001b3L;
+			}
+			return mix(h);
+		}
+
+	}
+
+}
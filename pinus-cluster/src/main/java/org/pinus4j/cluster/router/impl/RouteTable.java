@@ -0,0 +1,211 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.cluster.router.impl;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.DBRegionInfo;
+import org.pinus4j.cluster.beans.DBRegionInfo.Value;
+import org.pinus4j.cluster.router.RouteInfo;
+
+/**
+ * 一个集群预先编译的路由表. 集群所有区块的容量区间在创建时合并为按起始值排序的不相交区间, 查找区块时使用二分查找;
+ * 路由结果按(分库, 表名, 分表下标)缓存, 重复路由到同一个分表时不再创建新的对象.
+ *
+ * 区块的容量区间有重叠时, 重叠部分属于配置在前面的区块, 与按顺序逐个匹配区块的结果一致.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+class RouteTable {
+
+	private final String clusterName;
+
+	/**
+	 * 编译时的区块信息, 集群信息重新加载后需要重新编译.
+	 */
+	private final List<DBRegionInfo> regions;
+
+	/**
+	 * 不相交区间的起始值, 升序.
+	 */
+	private final long[] starts;
+
+	/**
+	 * 不相交区间的结束值(包含).
+	 */
+	private final long[] ends;
+
+	/**
+	 * 区间所属区块的下标.
+	 */
+	private final int[] regionIndexes;
+
+	/**
+	 * 每个分库的路由结果缓存. 创建后只读, 按对象identity查找.
+	 */
+	private final Map<DBInfo, DBRoutes> dbRoutes = new IdentityHashMap<DBInfo, DBRoutes>();
+
+	RouteTable(String clusterName, List<DBRegionInfo> regions) {
+		this.clusterName = clusterName;
+		this.regions = regions;
+
+		// 按区块顺序加入区间, 只保留没有被前面的区块覆盖的部分
+		TreeMap<Long, long[]> intervals = new TreeMap<Long, long[]>();
+		for (int regionIndex = 0; regionIndex < regions.size(); regionIndex++) {
+			DBRegionInfo region = regions.get(regionIndex);
+			for (Value value : region.getValues()) {
+				_addInterval(intervals, value.start, value.end, regionIndex);
+			}
+
+			_addDBRoutes(region.getMasterDBInfos(), regionIndex);
+			if (region.getSlaveDBInfos() != null) {
+				for (List<DBInfo> slaveDBInfos : region.getSlaveDBInfos()) {
+					_addDBRoutes(slaveDBInfos, regionIndex);
+				}
+			}
+		}
+
+		int size = intervals.size();
+		this.starts = new long[size];
+		this.ends = new long[size];
+		this.regionIndexes = new int[size];
+		int i = 0;
+		for (Map.Entry<Long, long[]> entry : intervals.entrySet()) {
+			this.starts[i] = entry.getKey();
+			this.ends[i] = entry.getValue()[0];
+			this.regionIndexes[i] = (int) entry.getValue()[1];
+			i++;
+		}
+	}
+
+	/**
+	 * 路由表是否由给定的区块信息编译.
+	 */
+	boolean isCompiledFrom(List<DBRegionInfo> regions) {
+		return this.regions == regions;
+	}
+
+	/**
+	 * 查找分片值所在的区块.
+	 *
+	 * @return 区块下标, 超出容量时返回-1
+	 */
+	int findRegion(long shardingValue) {
+		int low = 0, high = this.starts.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (this.starts[mid] > shardingValue) {
+				high = mid - 1;
+			} else if (this.ends[mid] < shardingValue) {
+				low = mid + 1;
+			} else {
+				return this.regionIndexes[mid];
+			}
+		}
+		return -1;
+	}
+
+	DBRegionInfo getRegion(int regionIndex) {
+		return this.regions.get(regionIndex);
+	}
+
+	/**
+	 * 获取路由结果. 分库不属于此集群或者分表下标超出范围时不缓存.
+	 */
+	RouteInfo getRouteInfo(int regionIndex, DBInfo dbInfo, String tableName, int tableIndex, int tableNum) {
+		DBRoutes routes = this.dbRoutes.get(dbInfo);
+		if (routes == null || routes.regionIndex != regionIndex || tableIndex < 0 || tableIndex >= tableNum) {
+			return new RouteInfo(this.clusterName, regionIndex, dbInfo, tableName, tableIndex);
+		}
+
+		RouteInfo[] tables = routes.tables.get(tableName);
+		if (tables == null || tables.length != tableNum) {
+			tables = new RouteInfo[tableNum];
+			routes.tables.put(tableName, tables);
+		}
+
+		// RouteInfo不可变, 并发时重复创建也没有影响
+		RouteInfo routeInfo = tables[tableIndex];
+		if (routeInfo == null) {
+			routeInfo = new RouteInfo(this.clusterName, regionIndex, dbInfo, tableName, tableIndex);
+			tables[tableIndex] = routeInfo;
+		}
+		return routeInfo;
+	}
+
+	private void _addDBRoutes(List<DBInfo> dbInfos, int regionIndex) {
+		if (dbInfos == null) {
+			return;
+		}
+		for (DBInfo dbInfo : dbInfos) {
+			if (!this.dbRoutes.containsKey(dbInfo)) {
+				this.dbRoutes.put(dbInfo, new DBRoutes(regionIndex));
+			}
+		}
+	}
+
+	/**
+	 * 加入区间[start, end]中没有被已有区间覆盖的部分.
+	 */
+	private static void _addInterval(TreeMap<Long, long[]> intervals, long start, long end, int regionIndex) {
+		long from = start;
+
+		// 与前一个区间重叠时跳过重叠部分
+		Map.Entry<Long, long[]> floor = intervals.floorEntry(from);
+		if (floor != null && floor.getValue()[0] >= from) {
+			if (floor.getValue()[0] >= end) {
+				return;
+			}
+			from = floor.getValue()[0] + 1;
+		}
+
+		while (from <= end) {
+			Map.Entry<Long, long[]> next = intervals.ceilingEntry(from);
+			if (next == null || next.getKey() > end) {
+				intervals.put(from, new long[] { end, regionIndex });
+				return;
+			}
+			if (next.getKey() > from) {
+				intervals.put(from, new long[] { next.getKey() - 1, regionIndex });
+			}
+			if (next.getValue()[0] >= end) {
+				return;
+			}
+			from = next.getValue()[0] + 1;
+		}
+	}
+
+	/**
+	 * 一个分库的路由结果, key是表名, value按分表下标保存.
+	 */
+	private static class DBRoutes {
+		private final int regionIndex;
+		private final ConcurrentMap<String, RouteInfo[]> tables = new ConcurrentHashMap<String, RouteInfo[]>();
+
+		DBRoutes(int regionIndex) {
+			this.regionIndex = regionIndex;
+		}
+	}
+
+}
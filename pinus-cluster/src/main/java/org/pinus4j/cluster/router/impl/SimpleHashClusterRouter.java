@@ -37,7 +37,7 @@ public class SimpleHashClusterRouter extends AbstractClusterRouter {
 
 		int dbNum = dbInfos.size();
 
-		int dbIndex = (int) shardingValue % dbNum;
+		int dbIndex = mod(value, shardingValue, dbNum);
 
 		return dbInfos.get(dbIndex);
 	}
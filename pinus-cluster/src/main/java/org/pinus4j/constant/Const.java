@@ -40,11 +40,34 @@ public class Const {
 	 */
 	public static final String ZK_SEQUENCE = ZK_ROOT + "/sequence";
 
+	/**
+	 * snowflake id生成器目录.
+	 */
+	public static final String ZK_SNOWFLAKE = ZK_ROOT + "/snowflake";
+	/**
+	 * snowflake工作节点号租约. 每个进程在此目录下创建以节点号命名的临时节点.
+	 */
+	public static final String ZK_SNOWFLAKE_WORKER = ZK_SNOWFLAKE + "/worker";
+	/**
+	 * 每个节点号最后上报的时间, 用于启动时发现时钟回拨.
+	 */
+	public static final String ZK_SNOWFLAKE_TIME = ZK_SNOWFLAKE + "/time";
+
+	/**
+	 * 数据处理任务进度目录. 每个任务的进度保存在此目录下以任务名命名的目录中.
+	 */
+	public static final String ZK_TASK_CHECKPOINT = ZK_ROOT + "/checkpoint";
+
 	/**
 	 * 分布式锁目录
 	 */
 	public static final String ZK_LOCKS = ZK_ROOT + "/locks";
 
+	/**
+	 * 缓存失效通知目录. 每一批失效的key保存为此目录下的一个顺序节点.
+	 */
+	public static final String ZK_CACHE_INVALIDATION = ZK_ROOT + "/invalidation";
+
 	/**
 	 * 字符串超过此值则转换为Text
 	 */
@@ -78,6 +101,162 @@ public class Const {
 	 */
 	public static final int SLOWQUERY_PKS = 10;
 
+	//
+	// 跨分片并行查询相关
+	//
+	/**
+	 * 每个集群并行查询线程池的最大线程数
+	 */
+	public static final int SCATTER_GATHER_MAX_THREAD = Runtime.getRuntime().availableProcessors() * 4;
+	/**
+	 * 每个集群并行查询线程池的等待队列长度
+	 */
+	public static final int SCATTER_GATHER_QUEUE_SIZE = 1024;
+	/**
+	 * 一次跨分片查询的超时时间(毫秒)
+	 */
+	public static final long SCATTER_GATHER_TIMEOUT = 10 * 1000;
+	/**
+	 * 跨分片查询取消后等待任务线程退出的最长时间(毫秒)
+	 */
+	public static final long SCATTER_GATHER_CANCEL_TIMEOUT = 5 * 1000;
+
+	//
+	// 数据处理任务相关
+	//
+	/**
+	 * 按主键分页遍历时, 每个主键范围的期望记录数. 分表的记录数超过此值时拆分为多个主键范围并行遍历
+	 */
+	public static final long TASK_SCAN_SPLIT_SIZE = 100000;
+	/**
+	 * 一个分表最多拆分的主键范围数, 每个范围使用一个数据库连接
+	 */
+	public static final int TASK_SCAN_MAX_SPLIT = 4;
+	/**
+	 * 默认的读取线程数, 每个线程同时遍历一个分表
+	 */
+	public static final int TASK_READER_THREAD = Runtime.getRuntime().availableProcessors();
+	/**
+	 * 默认的处理线程数
+	 */
+	public static final int TASK_WORKER_THREAD = Runtime.getRuntime().availableProcessors() * 2;
+	/**
+	 * 默认每个分表已经读取但是没有处理完的最大批次数, 达到此值时读取线程阻塞等待
+	 */
+	public static final int TASK_INFLIGHT_BATCH = 2;
+	/**
+	 * 默认每处理完多少批记录保存一次任务进度
+	 */
+	public static final int TASK_CHECKPOINT_INTERVAL = 10;
+	/**
+	 * 默认通知任务进度监听器的最小间隔(毫秒)
+	 */
+	public static final long TASK_PROGRESS_INTERVAL = 1000;
+	/**
+	 * 流式查询每次从数据库读取的记录数. MySQL不使用此值, 设置为Integer.MIN_VALUE逐行读取
+	 */
+	public static final int STREAM_FETCH_SIZE = 1000;
+
+	//
+	// 路由相关
+	//
+	/**
+	 * 一致性hash路由中每个分库的默认虚拟节点数
+	 */
+	public static final int ROUTER_VIRTUAL_NODE_NUM = 160;
+
+	//
+	// id生成相关
+	//
+	/**
+	 * id号段已经使用的比例超过此值时预取下一个号段
+	 */
+	public static final double ID_SEGMENT_PREFETCH_RATIO = 0.1;
+	/**
+	 * 一个号段期望的使用时间(毫秒), 用于调整号段长度
+	 */
+	public static final long ID_SEGMENT_DURATION = 15 * 60 * 1000;
+	/**
+	 * 号段的最大长度
+	 */
+	public static final int ID_SEGMENT_MAX_STEP = 1000000;
+	/**
+	 * 号段用完时等待预取的超时时间(毫秒), 超时后同步获取
+	 */
+	public static final long ID_SEGMENT_WAIT_TIMEOUT = 3000;
+	/**
+	 * 预取号段的线程数
+	 */
+	public static final int ID_SEGMENT_LOADER_THREAD = 2;
+	/**
+	 * id生成器本地分段锁的个数
+	 */
+	public static final int ID_LOCAL_LOCK_STRIPES = 64;
+	/**
+	 * snowflake id的起始时间, 2014-01-01 00:00:00 UTC
+	 */
+	public static final long SNOWFLAKE_EPOCH = 1388534400000L;
+	/**
+	 * snowflake id生成器可以等待的时钟回拨时间(毫秒), 超过则生成失败
+	 */
+	public static final long SNOWFLAKE_MAX_BACKWARD = 5;
+	/**
+	 * snowflake id生成器上报时间并检查节点号租约的间隔(毫秒)
+	 */
+	public static final long SNOWFLAKE_REPORT_INTERVAL = 3000;
+
+	//
+	// 批量写入相关
+	//
+	/**
+	 * 一条批量写入语句的默认最大字节数, 需要小于MySQL的max_allowed_packet
+	 */
+	public static final int BATCH_MAX_PACKET_SIZE = 1024 * 1024;
+
+	//
+	// 缓存相关
+	//
+	/**
+	 * 一级缓存中记录不存在标记的过期时间(秒)
+	 */
+	public static final int PRIMARY_CACHE_NULL_EXPIRE = 30;
+	/**
+	 * 主键布隆过滤器的误判率
+	 */
+	public static final double PK_BLOOM_FILTER_FPP = 0.01;
+	/**
+	 * 主键布隆过滤器的最小容量
+	 */
+	public static final int PK_BLOOM_FILTER_MIN_SIZE = 10000;
+	/**
+	 * 加载主键布隆过滤器时每次读取的主键数
+	 */
+	public static final int PK_BLOOM_FILTER_LOAD_BATCH = 5000;
+	/**
+	 * 缓存数据超过此大小(字节)时压缩
+	 */
+	public static final int CACHE_COMPRESS_THRESHOLD = 2048;
+
+	//
+	// 缓存失效通知相关
+	//
+	/**
+	 * 合并发送失效通知的间隔(毫秒)
+	 */
+	public static final long CACHE_INVALIDATION_FLUSH_INTERVAL = 50;
+	/**
+	 * 失效通知的保留时间(毫秒), 超过此时间由发送者删除
+	 */
+	public static final long CACHE_INVALIDATION_TTL = 60 * 1000;
+	/**
+	 * 检查失效通知的间隔(毫秒), 作为zookeeper watcher丢失时的补偿
+	 */
+	public static final long CACHE_INVALIDATION_POLL_INTERVAL = 1000;
+	/**
+	 * 开启失效通知时二级缓存版本号在本地保存的时间(毫秒), 限制通知丢失时读到旧版本的时间
+	 */
+	public static final long SECOND_CACHE_LOCAL_VERSION_EXPIRE = 5 * 1000;
+
 	//
 	// 配置文件相关常量.
 	//
@@ -102,6 +281,8 @@ public class Const {
     public static final String PROP_DB_CLUSTER_CACHE_PRIMARY = "primary";
     public static final String PROP_DB_CLUSTER_CACHE_SECOND = "second";
     public static final String PROP_DB_CLUSTER_CACHE_ADDRESS = "address";
+    public static final String PROP_DB_CLUSTER_CACHE_NEAR = "near";
+    public static final String PROP_DB_CLUSTER_CACHE_CODEC = "codec";
 
 	// dbcp连接池
 	public static final String PROP_MAXACTIVE = "maxActive";
@@ -114,6 +295,8 @@ public class Const {
 	public static final String PROP_TIMEBETWEENEVICTIONRUNSMILLIS = "timeBetweenEvictionRunsMillis";
 	public static final String PROP_NUMTESTSPEREVICTIONRUN = "numTestsPerEvictionRun";
 	public static final String PROP_MINEVICTABLEIDLETIMEMILLIS = "minEvictableIdleTimeMillis";
+	public static final String PROP_POOLPREPAREDSTATEMENTS = "poolPreparedStatements";
+	public static final String PROP_MAXOPENPREPAREDSTATEMENTS = "maxOpenPreparedStatements";
 
 	//
 	// 系统变量相关常量.
@@ -122,6 +305,14 @@ public class Const {
 	 * zookeeper连接信息. -Dstorage.zkhost=
 	 */
 	public static final String SYSTEM_PROPERTY_ZKHOST = "storage.zkhost";
+	/**
+	 * 批量写入语句的最大字节数. -Dstorage.batch.maxpacket=
+	 */
+	public static final String SYSTEM_PROPERTY_BATCH_MAXPACKET = "storage.batch.maxpacket";
+	/**
+	 * 一致性hash路由中每个分库的虚拟节点数. -Dstorage.router.vnodes=
+	 */
+	public static final String SYSTEM_PROPERTY_ROUTER_VNODES = "storage.router.vnodes";
 
 	//
 	// 集群相关常量.
@@ -16,11 +16,11 @@
 
 package org.pinus4j.generator;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.zookeeper.CreateMode;
@@ -34,7 +34,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * 抽象的ID生成器.
+ * 抽象的ID生成器. 单个id从本地的号段中分配(见{@link SegmentIdAllocator}), 只有号段用完时才访问zookeeper.
+ * 
+ * 每个序列在本地记录zookeeper中当前值的下限(高水位), 校验的主键不大于高水位时不需要访问zookeeper.
+ * 高水位包含本地号段中还没有分配的id, 因此这种情况下仍然需要从本地号段中跳过此主键.
+ * 同一个序列在本进程内通过分段锁排队, 只有一个线程去获取分布式锁.
  * 
  * @author duanbn
  * 
@@ -47,15 +51,22 @@ public abstract class AbstractSequenceIdGenerator implements IIdGenerator {
 	public static final Logger LOG = LoggerFactory.getLogger(AbstractDBGenerator.class);
 
 	/**
-	 * 批量生成id缓冲
+	 * 本地号段
 	 */
-	private final Map<String, Queue<Long>> longIdBuffer = new HashMap<String, Queue<Long>>();
-	private int BUFFER_SIZE;
+	private final SegmentIdAllocator allocator;
 	private ZooKeeper zk;
 
-	public AbstractSequenceIdGenerator(CuratorFramework curatorClient, int bufferSize) {
-		BUFFER_SIZE = bufferSize;
+	/**
+	 * 每个序列在zookeeper中的值的下限. key: 序列的zookeeper节点
+	 */
+	private final ConcurrentMap<String, AtomicLong> highWaters = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * 本地分段锁.
+	 */
+	private final Lock[] localLocks = new Lock[Const.ID_LOCAL_LOCK_STRIPES];
 
+	public AbstractSequenceIdGenerator(CuratorFramework curatorClient, int bufferSize) {
 		// 创建一个与服务器的连接
 		try {
 			this.zk = curatorClient.getZookeeperClient().getZooKeeper();
@@ -67,26 +78,65 @@ public abstract class AbstractSequenceIdGenerator implements IIdGenerator {
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
-	}
 
-	private String getBufferKey(String clusterName, String name) {
-		return clusterName + name;
+		for (int i = 0; i < this.localLocks.length; i++) {
+			this.localLocks[i] = new ReentrantLock();
+		}
+
+		this.allocator = new SegmentIdAllocator(new SegmentIdAllocator.SegmentLoader() {
+			@Override
+			public long load(String clusterName, String name, int size, long seed) {
+				return _allocRange(clusterName, name, size, seed);
+			}
+		}, bufferSize);
 	}
 
 	@Override
 	public void checkAndSetPrimaryKey(long pk, String clusterName, String name) {
-		Lock lock = getLock(clusterName + name);
+		String pkNode = Const.ZK_PRIMARYKEY + "/" + clusterName + "/" + name;
+		String allocKey = Const.ZK_PRIMARYKEY + "/" + clusterName;
+		AtomicLong highWater = _getHighWater(pkNode);
+		if (pk <= highWater.get()) {
+			// zookeeper中的值已经不小于pk, 只需要保证本地号段不再分配pk
+			this.allocator.skip(allocKey, name, pk);
+			return;
+		}
+
+		long currentPk = 0;
+		Lock localLock = _getLocalLock(pkNode);
+		localLock.lock();
+		try {
+			// 等待期间其他线程已经设置, 只需要跳过本地号段
+			if (pk > highWater.get()) {
+				currentPk = _setPrimaryKey(pkNode, pk, name);
+			}
+		} finally {
+			localLock.unlock();
+		}
 
+		// 本地号段中不大于pk的id不能再使用. 号段切换时会持有号段的锁获取分段锁, 因此需要在释放分段锁之后调用
+		this.allocator.skip(allocKey, name, pk);
+
+		_raise(highWater, Math.max(pk, currentPk));
+	}
+
+	/**
+	 * zookeeper中的当前值小于pk时设置为pk.
+	 *
+	 * @return 设置前zookeeper中的值
+	 */
+	private long _setPrimaryKey(String pkNode, long pk, String name) {
+		long currentPk = 0;
+		Lock lock = getLock(name);
 		try {
 			lock.lock();
-			String pkNode = Const.ZK_PRIMARYKEY + "/" + clusterName + "/" + name;
 			Stat stat = zk.exists(pkNode, false);
 			if (stat == null) {
 				// 创建根节点
 				zk.create(pkNode, String.valueOf(pk).getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
 			} else {
 				byte[] data = zk.getData(pkNode, false, null);
-				long currentPk = Long.parseLong(new String(data));
+				currentPk = Long.parseLong(new String(data));
 				if (pk > currentPk) {
 					zk.setData(pkNode, String.valueOf(pk).getBytes(), -1);
 				}
@@ -96,6 +146,7 @@ public abstract class AbstractSequenceIdGenerator implements IIdGenerator {
 		} finally {
 			lock.unlock();
 		}
+		return currentPk;
 	}
 
 	@Override
@@ -105,28 +156,7 @@ public abstract class AbstractSequenceIdGenerator implements IIdGenerator {
 
 	@Override
 	public int genClusterUniqueIntId(String clusterName, String name, long seed) {
-		long id = _genId(clusterName, name, seed);
-
-		if (id == 0) {
-			int retry = 5;
-			while (retry-- == 0) {
-				id = _genId(clusterName, name, seed);
-				if (id > 0) {
-					break;
-				}
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					LOG.warn("生成id=0, 重新生成");
-				}
-			}
-		}
-
-		if (id == 0) {
-			throw new RuntimeException("生成id失败");
-		}
-
-		return new Long(id).intValue();
+		return (int) genClusterUniqueLongId(clusterName, name, seed);
 	}
 
 	@Override
@@ -136,51 +166,15 @@ public abstract class AbstractSequenceIdGenerator implements IIdGenerator {
 
 	@Override
 	public long genClusterUniqueLongId(String clusterName, String name, long seed) {
-		long id = _genId(clusterName, name, seed);
-
-		if (id == 0) {
-			int retry = 5;
-			while (retry-- == 0) {
-				id = _genId(clusterName, name, seed);
-				if (id > 0) {
-					break;
-				}
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					LOG.warn("生成id=0, 重新生成");
-				}
-			}
+		long id;
+		if (seed > 0) {
+			id = this.allocator.nextIds(clusterName, name, 1, seed)[0];
+		} else {
+			id = this.allocator.nextId(clusterName, name);
 		}
 
-		if (id == 0) {
-			throw new RuntimeException("生成id失败");
-		}
-
-		return id;
-	}
-
-	private long _genId(String clusterName, String name, long seed) {
-		Queue<Long> buffer = null;
-		synchronized (longIdBuffer) {
-			buffer = longIdBuffer.get(getBufferKey(clusterName, name));
-			if (buffer != null && !buffer.isEmpty()) {
-				long id = buffer.poll();
-				return id;
-			} else if (buffer == null || buffer.isEmpty()) {
-				buffer = new ConcurrentLinkedQueue<Long>();
-				long[] newIds = _genClusterUniqueLongIdBatch(clusterName, name, BUFFER_SIZE, seed);
-				for (long newId : newIds) {
-					buffer.offer(newId);
-				}
-				longIdBuffer.put(getBufferKey(clusterName, name), buffer);
-			}
-		}
-
-		Long id = buffer.poll();
-
-		if (id == 0) {
-			throw new RuntimeException("生成id失败");
+		if (id <= 0) {
+			throw new DBOperationException("生成id失败");
 		}
 
 		return id;
@@ -188,140 +182,113 @@ public abstract class AbstractSequenceIdGenerator implements IIdGenerator {
 
 	@Override
 	public int[] genClusterUniqueIntIdBatch(String clusterName, String name, int batchSize) {
-		int[] intIds = _genClusterUniqueIntIdBatch(clusterName, name, batchSize, 0);
-		return intIds;
+		return genClusterUniqueIntIdBatch(clusterName, name, batchSize, 0);
 	}
 
 	@Override
 	public int[] genClusterUniqueIntIdBatch(String clusterName, String name, int batchSize, long seed) {
-		int[] intIds = _genClusterUniqueIntIdBatch(clusterName, name, batchSize, seed);
+		long[] longIds = genClusterUniqueLongIdBatch(clusterName, name, batchSize, seed);
+
+		int[] intIds = new int[longIds.length];
+		for (int i = 0; i < longIds.length; i++) {
+			intIds[i] = (int) longIds[i];
+		}
 		return intIds;
 	}
 
 	@Override
 	public long[] genClusterUniqueLongIdBatch(String clusterName, String name, int batchSize) {
-		long[] longIds = _genClusterUniqueLongIdBatch(clusterName, name, batchSize, 0);
-		return longIds;
+		return genClusterUniqueLongIdBatch(clusterName, name, batchSize, 0);
 	}
 
 	@Override
 	public long[] genClusterUniqueLongIdBatch(String clusterName, String name, int batchSize, long seed) {
-		long[] longIds = _genClusterUniqueLongIdBatch(clusterName, name, batchSize, seed);
-		return longIds;
+		return this.allocator.nextIds(clusterName, name, batchSize, seed);
 	}
 
 	/**
-	 * 生成n个int型的数值
+	 * 在zookeeper中分配一段连续的id.
 	 * 
 	 * @param clusterName
 	 * @param name
-	 * @param batchSize
+	 * @param size
 	 * @param seed
 	 *            当seed大于当前值则使用seed作为起点
-	 * @return
+	 * @return 分配前的当前值, 分配的id为(返回值, 返回值 + size]
 	 */
-	private int[] _genClusterUniqueIntIdBatch(String clusterName, String name, int batchSize, long seed) {
-		if (batchSize <= 0) {
+	private long _allocRange(String clusterName, String name, int size, long seed) {
+		if (size <= 0) {
 			throw new IllegalArgumentException("参数错误, batchSize不能小于0");
 		}
 
+		String pkNode = clusterName + "/" + name;
+		Lock localLock = _getLocalLock(pkNode);
 		Lock lock = getLock(name);
 
-		int[] ids = new int[batchSize];
+		localLock.lock();
 		try {
-			lock.lock();
-
-			String clusterNode = clusterName;
-			Stat stat = zk.exists(clusterNode, false);
-			if (stat == null) {
-				// 创建根节点
-				zk.create(clusterNode, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
-			}
+			try {
+				lock.lock();
+
+				String clusterNode = clusterName;
+				Stat stat = zk.exists(clusterNode, false);
+				if (stat == null) {
+					// 创建根节点
+					zk.create(clusterNode, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+				}
 
-			long pk = 0;
-			long nodeValue = seed;
-			String pkNode = clusterNode + "/" + name;
-			stat = zk.exists(pkNode, false);
-			if (stat == null) {
-				// 创建根节点
-				zk.create(pkNode, String.valueOf(nodeValue + batchSize).getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE,
-						CreateMode.PERSISTENT);
-			} else {
-				pk = Long.parseLong(new String(zk.getData(pkNode, false, null)));
-				if (pk > nodeValue) {
-					nodeValue = pk;
+				long nodeValue = seed;
+				stat = zk.exists(pkNode, false);
+				if (stat == null) {
+					// 创建根节点
+					zk.create(pkNode, String.valueOf(nodeValue + size).getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE,
+							CreateMode.PERSISTENT);
+				} else {
+					long pk = Long.parseLong(new String(zk.getData(pkNode, false, null)));
+					if (pk > nodeValue) {
+						nodeValue = pk;
+					}
+					zk.setData(pkNode, String.valueOf(nodeValue + size).getBytes(), -1);
 				}
-			}
 
-			for (int i = 1; i <= batchSize; i++) {
-				ids[i - 1] = (int) (nodeValue + i);
-			}
+				_raise(_getHighWater(pkNode), nodeValue + size);
 
-			zk.setData(pkNode, String.valueOf(nodeValue += batchSize).getBytes(), -1);
-		} catch (Exception e) {
-			throw new DBOperationException("生成唯一id失败", e);
+				return nodeValue;
+			} catch (Exception e) {
+				throw new DBOperationException("生成唯一id失败", e);
+			} finally {
+				lock.unlock();
+			}
 		} finally {
-			lock.unlock();
+			localLock.unlock();
 		}
-
-		return ids;
 	}
 
-	/**
-	 * 生成n个long型的数值
-	 * 
-	 * @param clusterName
-	 * @param name
-	 * @param batchSize
-	 * @param seed
-	 *            当seed大于当前值则使用seed作为起点
-	 * @return
-	 */
-	private long[] _genClusterUniqueLongIdBatch(String clusterName, String name, int batchSize, long seed) {
-		if (batchSize <= 0) {
-			throw new IllegalArgumentException("参数错误, batchSize不能小于0");
-		}
-
-		Lock lock = getLock(name);
-
-		long[] ids = new long[batchSize];
-		try {
-			lock.lock();
-
-			String clusterNode = clusterName;
-			Stat stat = zk.exists(clusterNode, false);
-			if (stat == null) {
-				// 创建根节点
-				zk.create(clusterNode, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
-			}
-
-			long pk = 0;
-			long nodeValue = seed;
-			String pkNode = clusterNode + "/" + name;
-			stat = zk.exists(pkNode, false);
-			if (stat == null) {
-				// 创建根节点
-				zk.create(pkNode, String.valueOf(nodeValue + batchSize).getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE,
-						CreateMode.PERSISTENT);
-			} else {
-				pk = Long.parseLong(new String(zk.getData(pkNode, false, null)));
-				if (pk > nodeValue) {
-					nodeValue = pk;
-				}
+	private AtomicLong _getHighWater(String pkNode) {
+		AtomicLong highWater = this.highWaters.get(pkNode);
+		if (highWater == null) {
+			highWater = new AtomicLong();
+			AtomicLong exists = this.highWaters.putIfAbsent(pkNode, highWater);
+			if (exists != null) {
+				highWater = exists;
 			}
+		}
+		return highWater;
+	}
 
-			for (int i = 1; i <= batchSize; i++) {
-				ids[i - 1] = nodeValue + i;
+	private void _raise(AtomicLong highWater, long value) {
+		long current;
+		while ((current = highWater.get()) < value) {
+			if (highWater.compareAndSet(current, value)) {
+				break;
 			}
-
-			zk.setData(pkNode, String.valueOf(nodeValue += batchSize).getBytes(), -1);
-		} catch (Exception e) {
-			throw new DBOperationException("生成唯一id失败", e);
-		} finally {
-			lock.unlock();
 		}
+	}
 
-		return ids;
+	private Lock _getLocalLock(String pkNode) {
+		int h = pkNode.hashCode();
+		h ^= (h >>> 16);
+		return this.localLocks[(h & 0x7fffffff) % this.localLocks.length];
 	}
 
 	/**
@@ -0,0 +1,362 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.generator;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pinus4j.constant.Const;
+import org.pinus4j.exceptions.DBOperationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 号段方式的id分配器. 每个id序列在本地持有当前号段和下一个号段(双缓冲), 从当前号段分配id只需要一次CAS;
+ * 当前号段使用超过一定比例时在后台线程预先从zookeeper获取下一个号段, 当前号段用完时直接切换, 调用者几乎不会等待zookeeper.
+ *
+ * 号段的长度根据消耗速度调整: 一个号段在{@link Const#ID_SEGMENT_DURATION}内用完则下一个号段长度加倍,
+ * 超过两倍时间才用完则减半, 最小为配置的批量数, 最大为{@link Const#ID_SEGMENT_MAX_STEP}.
+ *
+ * 进程退出时没有用完的号段会被丢弃, 因此生成的id是唯一并且递增的, 但是不连续.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class SegmentIdAllocator {
+
+	public static final Logger LOG = LoggerFactory.getLogger(SegmentIdAllocator.class);
+
+	/**
+	 * 从zookeeper获取号段.
+	 */
+	public interface SegmentLoader {
+
+		/**
+		 * 分配size个id.
+		 *
+		 * @return 已经分配的最大id, 本次分配的id为(返回值, 返回值 + size]
+		 */
+		long load(String clusterName, String name, int size, long seed);
+
+	}
+
+	private final SegmentLoader loader;
+
+	/**
+	 * 最小号段长度.
+	 */
+	private final int minStep;
+
+	private final ConcurrentMap<String, SegmentBuffer> buffers = new ConcurrentHashMap<String, SegmentBuffer>();
+
+	/**
+	 * 预取号段的线程池. 每个序列同时最多一个预取任务.
+	 */
+	private final ThreadPoolExecutor prefetchExecutor;
+
+	public SegmentIdAllocator(SegmentLoader loader, int minStep) {
+		this.loader = loader;
+		this.minStep = Math.max(1, minStep);
+
+		final AtomicInteger threadNum = new AtomicInteger();
+		this.prefetchExecutor = new ThreadPoolExecutor(Const.ID_SEGMENT_LOADER_THREAD,
+				Const.ID_SEGMENT_LOADER_THREAD, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "pinus-id-segment-loader-" + threadNum.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		this.prefetchExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * 分配一个id.
+	 */
+	public long nextId(String clusterName, String name) {
+		SegmentBuffer buffer = _getBuffer(clusterName, name);
+
+		while (true) {
+			Segment segment = buffer.current;
+			long id = segment.cursor.getAndIncrement();
+			if (id <= segment.max) {
+				_prefetchIfNecessary(buffer, segment, id);
+				return id;
+			}
+			_switch(buffer, segment);
+		}
+	}
+
+	/**
+	 * 分配一批id. 一批id可能来自多个号段, 因此只保证递增.
+	 *
+	 * @param seed
+	 *            当seed大于当前值则使用seed作为起点
+	 */
+	public long[] nextIds(String clusterName, String name, int size, long seed) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("参数错误, batchSize不能小于0");
+		}
+
+		SegmentBuffer buffer = _getBuffer(clusterName, name);
+
+		// 超过号段长度或者需要从seed开始的批量直接从zookeeper分配
+		Segment current = buffer.current;
+		if (size > buffer.step || (seed > 0 && current.cursor.get() <= seed)) {
+			long start = this.loader.load(clusterName, name, size, seed);
+			long[] ids = new long[size];
+			for (int i = 0; i < size; i++) {
+				ids[i] = start + i + 1;
+			}
+			return ids;
+		}
+
+		long[] ids = new long[size];
+		int n = 0;
+		while (n < size) {
+			Segment segment = buffer.current;
+			long start = segment.cursor.getAndAdd(size - n);
+			if (start <= segment.max) {
+				long end = Math.min(segment.max, start + (size - n) - 1);
+				for (long id = start; id <= end; id++) {
+					ids[n++] = id;
+				}
+				_prefetchIfNecessary(buffer, segment, end);
+				if (n == size) {
+					break;
+				}
+			}
+			_switch(buffer, segment);
+		}
+		return ids;
+	}
+
+	/**
+	 * 保证之后分配的id都大于给定的值. 主键被直接设置后调用, 丢弃本地号段中不大于此值的部分.
+	 */
+	public void skip(String clusterName, String name, long id) {
+		SegmentBuffer buffer = this.buffers.get(clusterName + "/" + name);
+		if (buffer == null) {
+			return;
+		}
+
+		// 当前号段中已经分配过的id不需要加锁, 之后的号段都大于当前号段
+		Segment current = buffer.current;
+		if (id <= current.max && id < current.cursor.get()) {
+			return;
+		}
+
+		synchronized (buffer) {
+			if (id > buffer.floor) {
+				buffer.floor = id;
+			}
+			buffer.current.raise(id);
+			if (buffer.next != null) {
+				buffer.next.raise(id);
+			}
+		}
+	}
+
+	/**
+	 * 停止后台预取.
+	 */
+	public void close() {
+		this.prefetchExecutor.shutdownNow();
+	}
+
+	private SegmentBuffer _getBuffer(String clusterName, String name) {
+		String key = clusterName + "/" + name;
+		SegmentBuffer buffer = this.buffers.get(key);
+		if (buffer == null) {
+			buffer = new SegmentBuffer(clusterName, name, this.minStep);
+			SegmentBuffer exists = this.buffers.putIfAbsent(key, buffer);
+			if (exists != null) {
+				buffer = exists;
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * 当前号段剩余不足时后台获取下一个号段.
+	 */
+	private void _prefetchIfNecessary(final SegmentBuffer buffer, Segment segment, long id) {
+		if (buffer.next != null || segment != buffer.current
+				|| segment.max - id >= segment.size * (1 - Const.ID_SEGMENT_PREFETCH_RATIO)) {
+			return;
+		}
+		if (!buffer.loading.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			this.prefetchExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					Segment next = null;
+					try {
+						next = _load(buffer);
+					} catch (Exception e) {
+						LOG.warn("prefetch id segment failure, " + buffer.clusterName + "/" + buffer.name + ", "
+								+ e.getMessage());
+					} finally {
+						synchronized (buffer) {
+							if (next != null) {
+								next.raise(buffer.floor);
+								buffer.next = next;
+							}
+							buffer.loading.set(false);
+							buffer.notifyAll();
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			buffer.loading.set(false);
+		}
+	}
+
+	/**
+	 * 当前号段用完后切换到下一个号段. 下一个号段正在加载时等待加载完成, 没有加载时同步加载.
+	 */
+	private void _switch(SegmentBuffer buffer, Segment exhausted) {
+		synchronized (buffer) {
+			if (buffer.current != exhausted) {
+				// 已经被其他线程切换
+				return;
+			}
+
+			long deadline = System.currentTimeMillis() + Const.ID_SEGMENT_WAIT_TIMEOUT;
+			while (buffer.next == null && buffer.loading.get()) {
+				long remain = deadline - System.currentTimeMillis();
+				if (remain <= 0) {
+					break;
+				}
+				try {
+					buffer.wait(remain);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new DBOperationException("等待id号段被中断");
+				}
+			}
+
+			Segment next = buffer.next;
+			if (next == null) {
+				try {
+					next = _load(buffer);
+				} catch (Exception e) {
+					throw new DBOperationException("生成唯一id失败", e);
+				}
+			}
+			next.raise(buffer.floor);
+			buffer.next = null;
+			buffer.current = next;
+		}
+	}
+
+	/**
+	 * 从zookeeper获取一个号段并调整号段长度.
+	 */
+	private Segment _load(SegmentBuffer buffer) {
+		int step;
+		synchronized (buffer.stepLock) {
+			long now = System.currentTimeMillis();
+			if (buffer.lastLoadTime > 0) {
+				long duration = now - buffer.lastLoadTime;
+				if (duration < Const.ID_SEGMENT_DURATION && buffer.step <= Const.ID_SEGMENT_MAX_STEP / 2) {
+					buffer.step *= 2;
+				} else if (duration > Const.ID_SEGMENT_DURATION * 2) {
+					buffer.step = Math.max(this.minStep, buffer.step / 2);
+				}
+			}
+			buffer.lastLoadTime = now;
+			step = buffer.step;
+		}
+
+		long start = this.loader.load(buffer.clusterName, buffer.name, step, 0);
+		return new Segment(start + 1, start + step);
+	}
+
+	/**
+	 * 号段, id范围为[cursor初始值, max].
+	 */
+	static class Segment {
+		final AtomicLong cursor;
+		final long max;
+		final long size;
+
+		Segment(long min, long max) {
+			this.cursor = new AtomicLong(min);
+			this.max = max;
+			this.size = max - min + 1;
+		}
+
+		/**
+		 * 跳过不大于id的部分.
+		 */
+		void raise(long id) {
+			long c;
+			while ((c = this.cursor.get()) <= id) {
+				if (this.cursor.compareAndSet(c, id + 1)) {
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 一个id序列的双缓冲.
+	 */
+	static class SegmentBuffer {
+		final String clusterName;
+		final String name;
+
+		volatile Segment current;
+		/**
+		 * 预取的下一个号段, 修改时持有SegmentBuffer的锁.
+		 */
+		volatile Segment next;
+		final AtomicBoolean loading = new AtomicBoolean();
+		/**
+		 * 通过{@link SegmentIdAllocator#skip(String, String, long)}设置的下限, 修改时持有SegmentBuffer的锁.
+		 */
+		long floor;
+
+		final Object stepLock = new Object();
+		volatile int step;
+		long lastLoadTime;
+
+		SegmentBuffer(String clusterName, String name, int step) {
+			this.clusterName = clusterName;
+			this.name = name;
+			this.step = step;
+			// 初始为一个已经用完的号段, 第一次分配时加载
+			this.current = new Segment(1, 0);
+		}
+	}
+
+}
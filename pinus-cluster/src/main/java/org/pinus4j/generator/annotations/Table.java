@@ -23,6 +23,8 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import org.pinus4j.cluster.enums.EnumIdGenerator;
+
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
@@ -63,4 +65,24 @@ public @interface Table {
 	 */
 	boolean cache() default false;
 
+	/**
+	 * 是否在进程内缓存此表的数据. 只有cache为true并且配置了本地缓存时生效, 适合读多写少的配置表、字典表.
+	 * 
+	 * @return true:是， false:否
+	 */
+	boolean nearCache() default false;
+
+	/**
+	 * 是否为分片表的主键建立进程内布隆过滤器. 不指定分片因子根据主键查询时, 先查询可能包含此主键的分表.
+	 * 过滤器不包含其他进程保存的记录, 因此找不到的主键仍然会查询全部分表, 重复查询由记录不存在的标记拦截.
+	 * 
+	 * @return true:是， false:否
+	 */
+	boolean pkBloomFilter() default false;
+
+	/**
+	 * 主键的生成方式. 写入量大并且不需要连续主键的表可以使用{@link EnumIdGenerator#SNOWFLAKE}, 保存时不需要访问zookeeper.
+	 */
+	EnumIdGenerator idGenerator() default EnumIdGenerator.SEQUENCE;
+
 }
@@ -0,0 +1,431 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.generator.impl;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.pinus4j.constant.Const;
+import org.pinus4j.exceptions.DBOperationException;
+import org.pinus4j.generator.IIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * snowflake方式的id生成器. 64位id由41位毫秒时间戳、10位节点号和12位序号组成, 生成时不需要访问zookeeper, id随时间递增但不连续.
+ *
+ * 节点号在启动时通过zookeeper的临时节点租用, 并定期检查租约和上报当前时间. 启动时当前时间早于这个节点号最后上报的时间,
+ * 或者运行时时钟回拨超过{@link Const#SNOWFLAKE_MAX_BACKWARD}毫秒, 则拒绝生成id.
+ *
+ * 与zookeeper的连接断开时临时节点可能随会话过期被删除, 节点号可能被其他进程租用, 因此立即停止生成id, 重新确认租约之后才恢复.
+ *
+ * 每一毫秒的序号从一个随机值开始, 避免访问量低时id的低位总是相同, 导致按id取模的分片不均匀.
+ *
+ * 生成的id超出int的范围, 使用此生成器的数据对象主键需要为long型.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class SnowflakeIdGeneratorImpl implements IIdGenerator {
+
+	/**
+	 * 日志.
+	 */
+	public static final Logger LOG = LoggerFactory.getLogger(SnowflakeIdGeneratorImpl.class);
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	static final int WORKER_ID_BITS = 10;
+	static final int SEQUENCE_BITS = 12;
+	static final int MAX_WORKER_ID = (1 << WORKER_ID_BITS) - 1;
+	static final int MAX_SEQUENCE = (1 << SEQUENCE_BITS) - 1;
+
+	/**
+	 * 每一毫秒起始序号的随机范围.
+	 */
+	private static final int SEQUENCE_START_BOUND = 256;
+
+	private final CuratorFramework curatorClient;
+
+	/**
+	 * 本进程标识, 写在节点号的临时节点中.
+	 */
+	private final String nodeId = UUID.randomUUID().toString();
+
+	private final int workerId;
+
+	private volatile boolean leaseValid = true;
+
+	/**
+	 * 与zookeeper的连接断开后暂停生成id, 直到重新确认租约.
+	 */
+	private volatile boolean suspended;
+
+	/**
+	 * 每次连接断开时加1, 确认租约期间连接又断开时不能恢复.
+	 */
+	private int suspendCount;
+
+	private ConnectionStateListener connectionStateListener;
+
+	private ScheduledExecutorService reporter;
+
+	private final Random random = new Random();
+
+	private long lastTimestamp = -1;
+
+	private int sequence;
+
+	public SnowflakeIdGeneratorImpl(CuratorFramework curatorClient) {
+		this.curatorClient = curatorClient;
+
+		try {
+			this.workerId = _lease();
+		} catch (IllegalStateException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException("获取snowflake节点号失败", e);
+		}
+		LOG.info("snowflake worker id " + this.workerId);
+
+		this.connectionStateListener = new ConnectionStateListener() {
+			@Override
+			public void stateChanged(CuratorFramework client, ConnectionState newState) {
+				connectionStateChanged(newState);
+			}
+		};
+		curatorClient.getConnectionStateListenable().addListener(this.connectionStateListener);
+
+		this.reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "pinus-snowflake-reporter");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.reporter.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				_report();
+			}
+		}, Const.SNOWFLAKE_REPORT_INTERVAL, Const.SNOWFLAKE_REPORT_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 使用指定的节点号, 不访问zookeeper.
+	 */
+	SnowflakeIdGeneratorImpl(int workerId) {
+		if (workerId < 0 || workerId > MAX_WORKER_ID) {
+			throw new IllegalArgumentException("节点号需要在0到" + MAX_WORKER_ID + "之间");
+		}
+		this.curatorClient = null;
+		this.workerId = workerId;
+	}
+
+	public int getWorkerId() {
+		return this.workerId;
+	}
+
+	/**
+	 * 生成一个id.
+	 *
+	 * @throws DBOperationException
+	 *             时钟回拨或者节点号租约失效
+	 */
+	public synchronized long nextId() {
+		if (!this.leaseValid) {
+			throw new DBOperationException("snowflake节点号" + this.workerId + "的租约已经失效");
+		}
+		if (this.suspended) {
+			throw new DBOperationException("与zookeeper的连接断开, snowflake节点号" + this.workerId + "的租约还没有重新确认");
+		}
+
+		long now = currentTime();
+		if (now < this.lastTimestamp) {
+			long offset = this.lastTimestamp - now;
+			if (offset > Const.SNOWFLAKE_MAX_BACKWARD) {
+				throw new DBOperationException("时钟回拨" + offset + "ms, 拒绝生成id");
+			}
+			try {
+				wait(offset << 1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DBOperationException("等待时钟被中断");
+			}
+			now = currentTime();
+			if (now < this.lastTimestamp) {
+				throw new DBOperationException("时钟回拨" + (this.lastTimestamp - now) + "ms, 拒绝生成id");
+			}
+		}
+
+		if (now == this.lastTimestamp) {
+			if (++this.sequence > MAX_SEQUENCE) {
+				// 这一毫秒的序号用完
+				while ((now = currentTime()) <= this.lastTimestamp) {
+					Thread.yield();
+				}
+				this.sequence = this.random.nextInt(SEQUENCE_START_BOUND);
+			}
+		} else {
+			this.sequence = this.random.nextInt(SEQUENCE_START_BOUND);
+		}
+		this.lastTimestamp = now;
+
+		return ((now - Const.SNOWFLAKE_EPOCH) << (WORKER_ID_BITS + SEQUENCE_BITS))
+				| ((long) this.workerId << SEQUENCE_BITS) | this.sequence;
+	}
+
+	/**
+	 * 当前时间, 毫秒.
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * 停止上报并释放节点号.
+	 */
+	public void close() {
+		if (this.reporter == null) {
+			return;
+		}
+		this.reporter.shutdownNow();
+		this.curatorClient.getConnectionStateListenable().removeListener(this.connectionStateListener);
+
+		try {
+			ZooKeeper zk = _getZk();
+			String path = Const.ZK_SNOWFLAKE_WORKER + "/" + this.workerId;
+			if (Arrays.equals(this.nodeId.getBytes(UTF8), zk.getData(path, false, null))) {
+				zk.delete(path, -1);
+			}
+		} catch (Exception e) {
+			LOG.warn("release snowflake worker id failure, " + e.getMessage());
+		}
+	}
+
+	/**
+	 * id随时间递增, 不需要记录当前值.
+	 */
+	@Override
+	public void checkAndSetPrimaryKey(long pk, String clusterName, String name) {
+	}
+
+	@Override
+	public int genClusterUniqueIntId(String zkPath, String name) {
+		throw new DBOperationException("snowflake id超出int的范围, 主键需要使用long型");
+	}
+
+	@Override
+	public int genClusterUniqueIntId(String zkPath, String name, long seed) {
+		return genClusterUniqueIntId(zkPath, name);
+	}
+
+	@Override
+	public long genClusterUniqueLongId(String zkPath, String name) {
+		return nextId();
+	}
+
+	@Override
+	public long genClusterUniqueLongId(String zkPath, String name, long seed) {
+		return nextId();
+	}
+
+	@Override
+	public long[] genClusterUniqueLongIdBatch(String zkPath, String name, int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("参数错误, batchSize不能小于0");
+		}
+
+		long[] ids = new long[batchSize];
+		synchronized (this) {
+			for (int i = 0; i < batchSize; i++) {
+				ids[i] = nextId();
+			}
+		}
+		return ids;
+	}
+
+	@Override
+	public long[] genClusterUniqueLongIdBatch(String zkPath, String name, int batchSize, long seed) {
+		return genClusterUniqueLongIdBatch(zkPath, name, batchSize);
+	}
+
+	@Override
+	public int[] genClusterUniqueIntIdBatch(String zkPath, String name, int batchSize) {
+		throw new DBOperationException("snowflake id超出int的范围, 主键需要使用long型");
+	}
+
+	@Override
+	public int[] genClusterUniqueIntIdBatch(String zkPath, String name, int batchSize, long seed) {
+		return genClusterUniqueIntIdBatch(zkPath, name, batchSize);
+	}
+
+	/**
+	 * 从一个随机位置开始查找没有被使用的节点号, 并检查这个节点号最后上报的时间.
+	 */
+	private int _lease() throws Exception {
+		ZooKeeper zk = _getZk();
+		_createIfAbsent(zk, Const.ZK_SNOWFLAKE);
+		_createIfAbsent(zk, Const.ZK_SNOWFLAKE_WORKER);
+		_createIfAbsent(zk, Const.ZK_SNOWFLAKE_TIME);
+
+		int start = this.random.nextInt(MAX_WORKER_ID + 1);
+		for (int i = 0; i <= MAX_WORKER_ID; i++) {
+			int id = (start + i) & MAX_WORKER_ID;
+			String path = Const.ZK_SNOWFLAKE_WORKER + "/" + id;
+			try {
+				zk.create(path, this.nodeId.getBytes(UTF8), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL);
+			} catch (KeeperException.NodeExistsException e) {
+				continue;
+			}
+
+			String timePath = Const.ZK_SNOWFLAKE_TIME + "/" + id;
+			long now = currentTime();
+			if (zk.exists(timePath, false) != null) {
+				long last = Long.parseLong(new String(zk.getData(timePath, false, null), UTF8));
+				if (now < last) {
+					zk.delete(path, -1);
+					throw new IllegalStateException("时钟回拨" + (last - now) + "ms, 节点号" + id + "最后上报时间" + last);
+				}
+				zk.setData(timePath, String.valueOf(now).getBytes(UTF8), -1);
+			} else {
+				zk.create(timePath, String.valueOf(now).getBytes(UTF8), ZooDefs.Ids.OPEN_ACL_UNSAFE,
+						CreateMode.PERSISTENT);
+			}
+			return id;
+		}
+
+		throw new IllegalStateException("没有可以使用的snowflake节点号");
+	}
+
+	/**
+	 * zookeeper连接状态变化. 连接断开时暂停生成id, 重新连接后立即确认租约.
+	 */
+	void connectionStateChanged(ConnectionState newState) {
+		switch (newState) {
+		case SUSPENDED:
+		case LOST:
+			synchronized (this) {
+				this.suspendCount++;
+				if (!this.suspended) {
+					this.suspended = true;
+					LOG.warn("zookeeper connection " + newState + ", stop generating snowflake id");
+				}
+			}
+			break;
+		case CONNECTED:
+		case RECONNECTED:
+			if (this.reporter != null) {
+				this.reporter.execute(new Runnable() {
+					@Override
+					public void run() {
+						_report();
+					}
+				});
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * 检查节点号租约并上报当前时间. 会话过期导致临时节点被删除时重新创建, 已经被其他进程使用则租约失效.
+	 * 确认租约之后恢复生成id.
+	 */
+	private void _report() {
+		int count;
+		synchronized (this) {
+			count = this.suspendCount;
+		}
+		try {
+			ZooKeeper zk = _getZk();
+			String path = Const.ZK_SNOWFLAKE_WORKER + "/" + this.workerId;
+			byte[] data = this.nodeId.getBytes(UTF8);
+			try {
+				if (!Arrays.equals(data, zk.getData(path, false, null))) {
+					_invalidate();
+					return;
+				}
+			} catch (KeeperException.NoNodeException e) {
+				try {
+					zk.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL);
+				} catch (KeeperException.NodeExistsException e1) {
+					_invalidate();
+					return;
+				}
+			}
+			_resume(count);
+
+			long now = currentTime();
+			synchronized (this) {
+				if (now < this.lastTimestamp) {
+					return;
+				}
+			}
+			zk.setData(Const.ZK_SNOWFLAKE_TIME + "/" + this.workerId, String.valueOf(now).getBytes(UTF8), -1);
+		} catch (Exception e) {
+			LOG.warn("report snowflake worker time failure, " + e.getMessage());
+		}
+	}
+
+	/**
+	 * 确认租约期间连接没有再次断开时恢复生成id.
+	 */
+	private synchronized void _resume(int count) {
+		if (this.suspended && this.suspendCount == count) {
+			this.suspended = false;
+			LOG.info("snowflake worker id " + this.workerId + " lease confirmed, resume generating id");
+		}
+	}
+
+	private void _invalidate() {
+		if (this.leaseValid) {
+			this.leaseValid = false;
+			LOG.error("snowflake worker id " + this.workerId + " is used by other process");
+		}
+	}
+
+	private void _createIfAbsent(ZooKeeper zk, String path) throws Exception {
+		if (zk.exists(path, false) == null) {
+			try {
+				zk.create(path, new byte[0], ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+			} catch (KeeperException.NodeExistsException e) {
+				// 其他节点已经创建
+			}
+		}
+	}
+
+	private ZooKeeper _getZk() throws Exception {
+		return this.curatorClient.getZookeeperClient().getZooKeeper();
+	}
+
+}
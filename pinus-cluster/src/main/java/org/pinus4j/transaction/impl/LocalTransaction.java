@@ -16,7 +16,9 @@
 
 package org.pinus4j.transaction.impl;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -26,6 +28,7 @@ import javax.transaction.Synchronization;
 import javax.transaction.SystemException;
 import javax.transaction.xa.XAResource;
 
+import org.pinus4j.cluster.resources.AbstractXADBResource;
 import org.pinus4j.cluster.resources.IDBResource;
 import org.pinus4j.cluster.resources.IResourceId;
 import org.pinus4j.transaction.ITransaction;
@@ -44,6 +47,12 @@ public class LocalTransaction implements ITransaction {
 	 */
 	private Map<IResourceId, IDBResource> txRes = new LinkedHashMap<IResourceId, IDBResource>();
 
+	/**
+	 * resources created again for an enlisted table. they run sql on the connection of the enlisted resource and are
+	 * closed when transaction finished.
+	 */
+	private List<IDBResource> joinedRes = new ArrayList<IDBResource>();
+
 	/**
 	 * isolation level of transaction.
 	 */
@@ -63,9 +72,13 @@ public class LocalTransaction implements ITransaction {
 	public void commit() {
 		status.set(Status.STATUS_COMMITTING);
 		// do commit
-		for (IDBResource dbResource : txRes.values()) {
-			dbResource.commit();
-			dbResource.close();
+		try {
+			for (IDBResource dbResource : txRes.values()) {
+				dbResource.commit();
+				dbResource.close();
+			}
+		} finally {
+			_closeJoined();
 		}
 		status.set(Status.STATUS_NO_TRANSACTION);
 	}
@@ -77,9 +90,13 @@ public class LocalTransaction implements ITransaction {
 	public void rollback() {
 		status.set(Status.STATUS_ROLLING_BACK);
 		// do rollback.
-		for (IDBResource dbResource : txRes.values()) {
-			dbResource.rollback();
-			dbResource.close();
+		try {
+			for (IDBResource dbResource : txRes.values()) {
+				dbResource.rollback();
+				dbResource.close();
+			}
+		} finally {
+			_closeJoined();
 		}
 		status.set(Status.STATUS_NO_TRANSACTION);
 	}
@@ -100,18 +117,28 @@ public class LocalTransaction implements ITransaction {
 		IDBResource dbResource = (IDBResource) xaResource;
 		IResourceId resId = dbResource.getId();
 
-		if (txRes.get(resId) == null) {
-			synchronized (txRes) {
-				if (txRes.get(resId) == null) {
-					dbResource.setTransactionIsolationLevel(txLevel);
-					txRes.put(resId, dbResource);
-				}
+		synchronized (txRes) {
+			IDBResource enlisted = txRes.get(resId);
+			if (enlisted == null) {
+				dbResource.setTransactionIsolationLevel(txLevel);
+				txRes.put(resId, dbResource);
+			} else if (enlisted != dbResource && !joinedRes.contains(dbResource)) {
+				// same table in one transaction must use the same connection, otherwise it is never committed.
+				((AbstractXADBResource) dbResource).joinLease((AbstractXADBResource) enlisted);
+				joinedRes.add(dbResource);
 			}
 		}
 
 		return true;
 	}
 
+	private void _closeJoined() {
+		for (IDBResource dbResource : joinedRes) {
+			dbResource.close();
+		}
+		joinedRes.clear();
+	}
+
 	@Override
 	public int getStatus() throws SystemException {
 		return status.get();
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * long值的布隆过滤器. mightContain返回false时一定不存在, 返回true时可能存在. 线程安全.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class BloomFilter {
+
+	private final AtomicLongArray bits;
+
+	private final long bitSize;
+
+	private final int hashNum;
+
+	/**
+	 * @param expectedInsertions
+	 *            预计插入的个数
+	 * @param fpp
+	 *            误判率
+	 */
+	public BloomFilter(long expectedInsertions, double fpp) {
+		if (expectedInsertions <= 0) {
+			throw new IllegalArgumentException("expectedInsertions必须大于0");
+		}
+		if (fpp <= 0 || fpp >= 1) {
+			throw new IllegalArgumentException("fpp必须在0和1之间");
+		}
+
+		long bitSize = (long) (-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+		bitSize = Math.max(64, (bitSize + 63) / 64 * 64);
+		this.bits = new AtomicLongArray((int) (bitSize / 64));
+		this.bitSize = bitSize;
+		this.hashNum = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+	}
+
+	/**
+	 * 添加一个值.
+	 */
+	public void put(long value) {
+		long hash = _mix(value);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashNum; i++) {
+			_set(_index(h1 + i * h2));
+		}
+	}
+
+	/**
+	 * 判断值是否可能存在.
+	 */
+	public boolean mightContain(long value) {
+		long hash = _mix(value);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 1; i <= hashNum; i++) {
+			long index = _index(h1 + i * h2);
+			if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long getBitSize() {
+		return bitSize;
+	}
+
+	public int getHashNum() {
+		return hashNum;
+	}
+
+	private long _index(int combined) {
+		if (combined < 0) {
+			combined = ~combined;
+		}
+		return combined % bitSize;
+	}
+
+	private void _set(long index) {
+		int i = (int) (index >>> 6);
+		long mask = 1L << index;
+		while (true) {
+			long old = bits.get(i);
+			if ((old & mask) != 0 || bits.compareAndSet(i, old, old | mask)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * murmur3的64位混淆函数.
+	 */
+	private static long _mix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+}
@@ -327,4 +327,412 @@ public class HashUtil {
 		hash |= FNVHash1(str);
 		return hash;
 	}
+
+	//
+	// 64位hash算法. 字符串按UTF-8编码后计算, 编码使用线程本地的缓冲区, 不创建中间对象.
+	//
+
+	/**
+	 * 线程本地的UTF-8编码缓冲区, 超过此长度的字符串使用临时缓冲区, 避免线程长期持有大数组.
+	 */
+	private static final int MAX_LOCAL_BUFFER_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<byte[]> utf8Buffer = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[256];
+		}
+	};
+
+	/**
+	 * MurmurHash3 x64_128, 取128位结果的前64位, seed为0.
+	 * 
+	 * @return hash值
+	 */
+	public static long murmur3(String str) {
+		byte[] buf = _utf8Buffer(str);
+		return murmur3(buf, 0, _encodeUtf8(str, buf), 0);
+	}
+
+	/**
+	 * MurmurHash3 x64_128, 取128位结果的前64位.
+	 * 
+	 * @return hash值
+	 */
+	public static long murmur3(byte[] data, int off, int len, int seed) {
+		final long c1 = 0x87c37b91114253d5L;
+		final long c2 = 0x4cf5ad432745937fL;
+
+		long h1 = seed & 0xFFFFFFFFL;
+		long h2 = seed & 0xFFFFFFFFL;
+
+		int end = off + (len & ~15);
+		for (int i = off; i < end; i += 16) {
+			long k1 = _fetch64(data, i);
+			long k2 = _fetch64(data, i + 8);
+
+			k1 *= c1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= c2;
+			h1 ^= k1;
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+
+			k2 *= c2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= c1;
+			h2 ^= k2;
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+
+		int rem = len & 15;
+		if (rem > 0) {
+			long k1 = 0, k2 = 0;
+			for (int i = rem - 1; i >= 8; i--) {
+				k2 = (k2 << 8) | (data[end + i] & 0xFF);
+			}
+			for (int i = Math.min(rem, 8) - 1; i >= 0; i--) {
+				k1 = (k1 << 8) | (data[end + i] & 0xFF);
+			}
+			if (rem > 8) {
+				k2 *= c2;
+				k2 = Long.rotateLeft(k2, 33);
+				k2 *= c1;
+				h2 ^= k2;
+			}
+			k1 *= c1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= c2;
+			h1 ^= k1;
+		}
+
+		h1 ^= len;
+		h2 ^= len;
+		h1 += h2;
+		h2 += h1;
+		h1 = _fmix64(h1);
+		h2 = _fmix64(h2);
+		h1 += h2;
+		return h1;
+	}
+
+	/**
+	 * xxHash64, seed为0.
+	 * 
+	 * @return hash值
+	 */
+	public static long xxHash64(String str) {
+		byte[] buf = _utf8Buffer(str);
+		return xxHash64(buf, 0, _encodeUtf8(str, buf), 0);
+	}
+
+	private static final long XX_P1 = 0x9E3779B185EBCA87L;
+	private static final long XX_P2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long XX_P3 = 0x165667B19E3779F9L;
+	private static final long XX_P4 = 0x85EBCA77C2B2AE63L;
+	private static final long XX_P5 = 0x27D4EB2F165667C5L;
+
+	/**
+	 * xxHash64.
+	 * 
+	 * @return hash值
+	 */
+	public static long xxHash64(byte[] data, int off, int len, long seed) {
+		int p = off;
+		int end = off + len;
+		long h;
+
+		if (len >= 32) {
+			long v1 = seed + XX_P1 + XX_P2;
+			long v2 = seed + XX_P2;
+			long v3 = seed;
+			long v4 = seed - XX_P1;
+			int limit = end - 32;
+			do {
+				v1 = _xxRound(v1, _fetch64(data, p));
+				v2 = _xxRound(v2, _fetch64(data, p + 8));
+				v3 = _xxRound(v3, _fetch64(data, p + 16));
+				v4 = _xxRound(v4, _fetch64(data, p + 24));
+				p += 32;
+			} while (p <= limit);
+
+			h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			h = _xxMerge(h, v1);
+			h = _xxMerge(h, v2);
+			h = _xxMerge(h, v3);
+			h = _xxMerge(h, v4);
+		} else {
+			h = seed + XX_P5;
+		}
+
+		h += len;
+
+		while (p + 8 <= end) {
+			h ^= _xxRound(0, _fetch64(data, p));
+			h = Long.rotateLeft(h, 27) * XX_P1 + XX_P4;
+			p += 8;
+		}
+		if (p + 4 <= end) {
+			h ^= _fetch32(data, p) * XX_P1;
+			h = Long.rotateLeft(h, 23) * XX_P2 + XX_P3;
+			p += 4;
+		}
+		while (p < end) {
+			h ^= (data[p] & 0xFF) * XX_P5;
+			h = Long.rotateLeft(h, 11) * XX_P1;
+			p++;
+		}
+
+		h ^= h >>> 33;
+		h *= XX_P2;
+		h ^= h >>> 29;
+		h *= XX_P3;
+		h ^= h >>> 32;
+		return h;
+	}
+
+	private static long _xxRound(long acc, long input) {
+		acc += input * XX_P2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * XX_P1;
+	}
+
+	private static long _xxMerge(long acc, long val) {
+		acc ^= _xxRound(0, val);
+		return acc * XX_P1 + XX_P4;
+	}
+
+	/**
+	 * CityHash64(v1.1).
+	 * 
+	 * @return hash值
+	 */
+	public static long cityHash64(String str) {
+		byte[] buf = _utf8Buffer(str);
+		return cityHash64(buf, 0, _encodeUtf8(str, buf));
+	}
+
+	private static final long CITY_K0 = 0xc3a5c85c97cb3127L;
+	private static final long CITY_K1 = 0xb492b66fbe98f273L;
+	private static final long CITY_K2 = 0x9ae16a3b2f90404fL;
+
+	/**
+	 * CityHash64(v1.1).
+	 * 
+	 * @return hash值
+	 */
+	public static long cityHash64(byte[] data, int off, int len) {
+		if (len <= 32) {
+			if (len <= 16) {
+				return _cityLen0to16(data, off, len);
+			}
+			return _cityLen17to32(data, off, len);
+		}
+		if (len <= 64) {
+			return _cityLen33to64(data, off, len);
+		}
+
+		long x = _fetch64(data, off + len - 40);
+		long y = _fetch64(data, off + len - 16) + _fetch64(data, off + len - 56);
+		long z = _cityLen16(_fetch64(data, off + len - 48) + len, _fetch64(data, off + len - 24));
+		long v0 = _cityWeakFirst(data, off + len - 64, len);
+		long v1 = _cityWeakSecond(data, off + len - 64, len, z);
+		long w0 = _cityWeakFirst(data, off + len - 32, y + CITY_K1);
+		long w1 = _cityWeakSecond(data, off + len - 32, y + CITY_K1, x);
+		x = x * CITY_K1 + _fetch64(data, off);
+
+		int p = off;
+		int remain = (len - 1) & ~63;
+		do {
+			x = Long.rotateRight(x + y + v0 + _fetch64(data, p + 8), 37) * CITY_K1;
+			y = Long.rotateRight(y + v1 + _fetch64(data, p + 48), 42) * CITY_K1;
+			x ^= w1;
+			y += v0 + _fetch64(data, p + 40);
+			z = Long.rotateRight(z + w0, 33) * CITY_K1;
+			long a = v1 * CITY_K1;
+			v0 = _cityWeakFirst(data, p, a);
+			v1 = _cityWeakSecond(data, p, a, x + w0);
+			a = z + w1;
+			w0 = _cityWeakFirst(data, p + 32, a);
+			w1 = _cityWeakSecond(data, p + 32, a, y + _fetch64(data, p + 16));
+			long t = z;
+			z = x;
+			x = t;
+			p += 64;
+			remain -= 64;
+		} while (remain != 0);
+
+		return _cityLen16(_cityLen16(v0, w0) + _shiftMix(y) * CITY_K1 + z, _cityLen16(v1, w1) + x);
+	}
+
+	private static long _cityLen0to16(byte[] data, int off, int len) {
+		if (len >= 8) {
+			long mul = CITY_K2 + len * 2;
+			long a = _fetch64(data, off) + CITY_K2;
+			long b = _fetch64(data, off + len - 8);
+			long c = Long.rotateRight(b, 37) * mul + a;
+			long d = (Long.rotateRight(a, 25) + b) * mul;
+			return _cityLen16(c, d, mul);
+		}
+		if (len >= 4) {
+			long mul = CITY_K2 + len * 2;
+			long a = _fetch32(data, off);
+			return _cityLen16(len + (a << 3), _fetch32(data, off + len - 4), mul);
+		}
+		if (len > 0) {
+			int a = data[off] & 0xFF;
+			int b = data[off + (len >> 1)] & 0xFF;
+			int c = data[off + len - 1] & 0xFF;
+			int y = a + (b << 8);
+			int z = len + (c << 2);
+			return _shiftMix(y * CITY_K2 ^ z * CITY_K0) * CITY_K2;
+		}
+		return CITY_K2;
+	}
+
+	private static long _cityLen17to32(byte[] data, int off, int len) {
+		long mul = CITY_K2 + len * 2;
+		long a = _fetch64(data, off) * CITY_K1;
+		long b = _fetch64(data, off + 8);
+		long c = _fetch64(data, off + len - 8) * mul;
+		long d = _fetch64(data, off + len - 16) * CITY_K2;
+		return _cityLen16(Long.rotateRight(a + b, 43) + Long.rotateRight(c, 30) + d,
+				a + Long.rotateRight(b + CITY_K2, 18) + c, mul);
+	}
+
+	private static long _cityLen33to64(byte[] data, int off, int len) {
+		long mul = CITY_K2 + len * 2;
+		long a = _fetch64(data, off) * CITY_K2;
+		long b = _fetch64(data, off + 8);
+		long c = _fetch64(data, off + len - 24);
+		long d = _fetch64(data, off + len - 32);
+		long e = _fetch64(data, off + 16) * CITY_K2;
+		long f = _fetch64(data, off + 24) * 9;
+		long g = _fetch64(data, off + len - 8);
+		long h = _fetch64(data, off + len - 16) * mul;
+		long u = Long.rotateRight(a + g, 43) + (Long.rotateRight(b, 30) + c) * 9;
+		long v = ((a + g) ^ d) + f + 1;
+		long w = Long.reverseBytes((u + v) * mul) + h;
+		long x = Long.rotateRight(e + f, 42) + c;
+		long y = (Long.reverseBytes((v + w) * mul) + g) * mul;
+		long z = e + f + c;
+		a = Long.reverseBytes((x + z) * mul + y) + b;
+		b = _shiftMix((z + a) * mul + d + h) * mul;
+		return b + x;
+	}
+
+	/**
+	 * WeakHashLen32WithSeeds结果的第一个值.
+	 */
+	private static long _cityWeakFirst(byte[] data, int off, long a) {
+		return a + _fetch64(data, off) + _fetch64(data, off + 8) + _fetch64(data, off + 16) + _fetch64(data, off + 24);
+	}
+
+	/**
+	 * WeakHashLen32WithSeeds结果的第二个值.
+	 */
+	private static long _cityWeakSecond(byte[] data, int off, long a, long b) {
+		long w = _fetch64(data, off);
+		long z = _fetch64(data, off + 24);
+		a += w;
+		b = Long.rotateRight(b + a + z, 21);
+		long c = a;
+		a += _fetch64(data, off + 8) + _fetch64(data, off + 16);
+		b += Long.rotateRight(a, 44);
+		return b + c;
+	}
+
+	private static long _cityLen16(long u, long v) {
+		return _cityLen16(u, v, 0x9ddfea08eb382d69L);
+	}
+
+	private static long _cityLen16(long u, long v, long mul) {
+		long a = (u ^ v) * mul;
+		a ^= (a >>> 47);
+		long b = (v ^ a) * mul;
+		b ^= (b >>> 47);
+		b *= mul;
+		return b;
+	}
+
+	private static long _shiftMix(long val) {
+		return val ^ (val >>> 47);
+	}
+
+	private static long _fmix64(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * 读取小端序的64位整数.
+	 */
+	private static long _fetch64(byte[] data, int i) {
+		return (data[i] & 0xFFL) | ((data[i + 1] & 0xFFL) << 8) | ((data[i + 2] & 0xFFL) << 16)
+				| ((data[i + 3] & 0xFFL) << 24) | ((data[i + 4] & 0xFFL) << 32) | ((data[i + 5] & 0xFFL) << 40)
+				| ((data[i + 6] & 0xFFL) << 48) | ((data[i + 7] & 0xFFL) << 56);
+	}
+
+	/**
+	 * 读取小端序的无符号32位整数.
+	 */
+	private static long _fetch32(byte[] data, int i) {
+		return (data[i] & 0xFFL) | ((data[i + 1] & 0xFFL) << 8) | ((data[i + 2] & 0xFFL) << 16)
+				| ((data[i + 3] & 0xFFL) << 24);
+	}
+
+	/**
+	 * 获取足够容纳字符串UTF-8编码的缓冲区.
+	 */
+	private static byte[] _utf8Buffer(String str) {
+		int maxLen = str.length() * 3;
+		if (maxLen > MAX_LOCAL_BUFFER_SIZE) {
+			return new byte[maxLen];
+		}
+		byte[] buf = utf8Buffer.get();
+		if (buf.length < maxLen) {
+			buf = new byte[Math.max(maxLen, buf.length * 2)];
+			utf8Buffer.set(buf);
+		}
+		return buf;
+	}
+
+	/**
+	 * 将字符串按UTF-8编码写入缓冲区, 与String.getBytes("UTF-8")的结果一致, 不成对的代理字符编码为'?'.
+	 * 
+	 * @return 编码后的长度
+	 */
+	private static int _encodeUtf8(String str, byte[] buf) {
+		int n = 0;
+		int len = str.length();
+		for (int i = 0; i < len; i++) {
+			char c = str.charAt(i);
+			if (c < 0x80) {
+				buf[n++] = (byte) c;
+			} else if (c < 0x800) {
+				buf[n++] = (byte) (0xC0 | (c >> 6));
+				buf[n++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(str.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, str.charAt(++i));
+				buf[n++] = (byte) (0xF0 | (cp >> 18));
+				buf[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+				buf[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+				buf[n++] = (byte) (0x80 | (cp & 0x3F));
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				buf[n++] = '?';
+			} else {
+				buf[n++] = (byte) (0xE0 | (c >> 12));
+				buf[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buf[n++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return n;
+	}
 }
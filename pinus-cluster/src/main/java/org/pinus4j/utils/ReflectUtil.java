@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.pinus4j.cluster.enums.EnumIdGenerator;
 import org.pinus4j.constant.Const;
 import org.pinus4j.exceptions.DBOperationException;
 import org.pinus4j.generator.annotations.DateTime;
@@ -48,6 +49,21 @@ public class ReflectUtil {
 	 */
 	public static final Map<Class<?>, Boolean> _tableCachedCache = new ConcurrentHashMap<Class<?>, Boolean>();
 
+	/**
+	 * 需要进程内缓存的表. key: clusterName.tableName
+	 */
+	private static final Map<String, Boolean> _tableNearCachedCache = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * 需要主键布隆过滤器的表
+	 */
+	private static final Map<Class<?>, Boolean> _tablePkBloomFilterCache = new ConcurrentHashMap<Class<?>, Boolean>();
+
+	/**
+	 * 数据对象主键的生成方式.
+	 */
+	private static final Map<Class<?>, EnumIdGenerator> _idGeneratorCache = new ConcurrentHashMap<Class<?>, EnumIdGenerator>();
+
 	/**
 	 * 类属性缓存. 缓存反射结果
 	 */
@@ -295,6 +311,7 @@ public class ReflectUtil {
 		tableName = StringUtils.isBlank(annoTable.name()) ? clazz.getSimpleName() : annoTable.name();
 
 		tableName = tableName.toLowerCase();
+		_tableNearCachedCache.put(annoTable.cluster() + "." + tableName, annoTable.cache() && annoTable.nearCache());
 		_tableNameCache.put(clazz, tableName);
 
 		return tableName;
@@ -319,6 +336,58 @@ public class ReflectUtil {
 		return isCache;
 	}
 
+	/**
+	 * 判断表是否需要在进程内缓存. 数据表需要先通过{@link #getTableName(Class)}解析过.
+	 * 
+	 * @param clusterName
+	 *            集群名
+	 * @param tableName
+	 *            表名, 不带分表下标
+	 * @return true:是, false:否
+	 */
+	public static boolean isNearCache(String clusterName, String tableName) {
+		Boolean isNearCache = _tableNearCachedCache.get(clusterName + "." + tableName);
+		return isNearCache != null && isNearCache;
+	}
+
+	/**
+	 * 判断分片表是否使用主键布隆过滤器
+	 * 
+	 * @param clazz
+	 *            实体对象
+	 * @return true:是, false:否
+	 */
+	public static boolean isPkBloomFilter(Class<?> clazz) {
+		Boolean isPkBloomFilter = _tablePkBloomFilterCache.get(clazz);
+		if (isPkBloomFilter != null) {
+			return isPkBloomFilter;
+		}
+
+		isPkBloomFilter = clazz.getAnnotation(Table.class).pkBloomFilter();
+		_tablePkBloomFilterCache.put(clazz, isPkBloomFilter);
+
+		return isPkBloomFilter;
+	}
+
+	/**
+	 * 获取数据对象主键的生成方式
+	 * 
+	 * @param clazz
+	 *            实体对象
+	 * @return 主键生成方式
+	 */
+	public static EnumIdGenerator getIdGenerator(Class<?> clazz) {
+		EnumIdGenerator idGenerator = _idGeneratorCache.get(clazz);
+		if (idGenerator != null) {
+			return idGenerator;
+		}
+
+		idGenerator = clazz.getAnnotation(Table.class).idGenerator();
+		_idGeneratorCache.put(clazz, idGenerator);
+
+		return idGenerator;
+	}
+
 	/**
 	 * 通过反射获取对象的属性值.
 	 * 
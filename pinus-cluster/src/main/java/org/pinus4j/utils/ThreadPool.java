@@ -22,6 +22,12 @@ public class ThreadPool {
 				new ThreadPoolExecutor.CallerRunsPolicy());
 	}
 
+	private ThreadPool(String poolName, int threadNum) {
+		pool = new ThreadPoolExecutor(threadNum, threadNum, 0,
+				TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new NameThreadFactory(poolName));
+	}
+
 	public static ThreadPool newInstance(String poolName) {
 		int minThread = Runtime.getRuntime().availableProcessors() * 2;
 		int maxThread = minThread * 4;
@@ -35,6 +41,13 @@ public class ThreadPool {
 		return new ThreadPool(poolName, minThread, maxThread, waitTime);
 	}
 
+	/**
+	 * 创建固定线程数的线程池. 等待队列不限长度, 由调用者控制提交的任务数.
+	 */
+	public static ThreadPool newFixedInstance(String poolName, int threadNum) {
+		return new ThreadPool(poolName, threadNum);
+	}
+
 	public ThreadPoolExecutor getThreadPool() {
 		return pool;
 	}
@@ -0,0 +1,46 @@
+package org.pinus4j.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class AbstractCacheInvalidationBusTest {
+
+	@Test
+	public void testRequeueOnFailure() {
+		final List<String> sent = new ArrayList<String>();
+		final boolean[] down = { true };
+		AbstractCacheInvalidationBus bus = new AbstractCacheInvalidationBus(60 * 1000) {
+			@Override
+			protected void _send(List<String> keys) throws Exception {
+				if (down[0]) {
+					throw new IllegalStateException("zookeeper down");
+				}
+				sent.addAll(keys);
+			}
+		};
+
+		try {
+			bus.publish(Arrays.asList("sec.version.pinus.a", "sec.version.pinus.b"));
+			bus.flush();
+			Assert.assertTrue(sent.isEmpty());
+
+			// 发送失败的key在下一次发送时重试, 排在新发布的key之前
+			down[0] = false;
+			bus.publish(Arrays.asList("sec.version.pinus.c", "sec.version.pinus.a"));
+			bus.flush();
+			Assert.assertEquals(Arrays.asList("sec.version.pinus.a", "sec.version.pinus.b", "sec.version.pinus.c"), sent);
+
+			sent.clear();
+			bus.flush();
+			Assert.assertTrue(sent.isEmpty());
+		} finally {
+			bus.close();
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+package org.pinus4j.cache.impl;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+import net.spy.memcached.CachedData;
+
+import org.junit.Test;
+import org.pinus4j.cache.CacheNull;
+import org.pinus4j.generator.annotations.DateTime;
+import org.pinus4j.generator.annotations.Field;
+import org.pinus4j.generator.annotations.PrimaryKey;
+import org.pinus4j.generator.annotations.Table;
+import org.pinus4j.utils.IOUtil;
+
+public class BinaryCacheCodecTest {
+
+	private final BinaryCacheCodec codec = new BinaryCacheCodec();
+
+	@Test
+	public void testEntity() throws Exception {
+		CodecEntity entity = _createEntity(1);
+
+		byte[] data = codec.encode(entity);
+		Assert.assertTrue(data.length < IOUtil.getBytes(entity).length);
+
+		CodecEntity one = (CodecEntity) codec.decode(data);
+		_assertEntity(entity, one);
+
+		// 空值
+		CodecEntity empty = new CodecEntity();
+		CodecEntity two = (CodecEntity) codec.decode(codec.encode(empty));
+		Assert.assertNull(two.name);
+		Assert.assertNull(two.score);
+		Assert.assertNull(two.createTime);
+	}
+
+	@Test
+	public void testList() throws Exception {
+		List<Object> list = new ArrayList<Object>();
+		for (int i = 0; i < 10; i++) {
+			list.add(_createEntity(i));
+		}
+		list.add(null);
+
+		List<?> decoded = (List<?>) codec.decode(codec.encode(list));
+		Assert.assertEquals(list.size(), decoded.size());
+		for (int i = 0; i < 10; i++) {
+			_assertEntity((CodecEntity) list.get(i), (CodecEntity) decoded.get(i));
+		}
+		Assert.assertNull(decoded.get(10));
+	}
+
+	@Test
+	public void testOther() throws Exception {
+		Assert.assertSame(CacheNull.INSTANCE, codec.decode(codec.encode(CacheNull.INSTANCE)));
+		Assert.assertNull(codec.decode(codec.encode(null)));
+		Assert.assertEquals("中文", codec.decode(codec.encode("中文")));
+
+		// 不是数据对象时使用java序列化
+		Map<String, Integer> map = new HashMap<String, Integer>();
+		map.put("a", 1);
+		Assert.assertEquals(map, codec.decode(codec.encode(map)));
+	}
+
+	@Test
+	public void testTranscoder() throws Exception {
+		CodecTranscoder transcoder = new CodecTranscoder(codec, 256);
+
+		CodecEntity small = _createEntity(1);
+		CachedData data = transcoder.encode(small);
+		Assert.assertEquals(CodecTranscoder.FLAG_CODEC, data.getFlags());
+		_assertEntity(small, (CodecEntity) transcoder.decode(data));
+
+		CodecEntity large = _createEntity(2);
+		StringBuilder name = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			name.append("pinus");
+		}
+		large.name = name.toString();
+		data = transcoder.encode(large);
+		Assert.assertEquals(CodecTranscoder.FLAG_CODEC | CodecTranscoder.FLAG_COMPRESSED, data.getFlags());
+		Assert.assertTrue(data.getData().length < 256);
+		_assertEntity(large, (CodecEntity) transcoder.decode(data));
+
+		// 错误的数据当作没有命中
+		Assert.assertNull(transcoder.decode(new CachedData(CodecTranscoder.FLAG_CODEC, new byte[] { 9 },
+				CachedData.MAX_SIZE)));
+	}
+
+	@Test
+	public void testCompress() throws Exception {
+		byte[] data = new byte[10000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 7);
+		}
+		byte[] compressed = CodecTranscoder.compress(data);
+		Assert.assertTrue(compressed.length < data.length);
+
+		byte[] decompressed = CodecTranscoder.decompress(compressed);
+		Assert.assertEquals(data.length, decompressed.length);
+		for (int i = 0; i < data.length; i++) {
+			Assert.assertEquals(data[i], decompressed[i]);
+		}
+	}
+
+	private CodecEntity _createEntity(int id) {
+		CodecEntity entity = new CodecEntity();
+		entity.id = id;
+		entity.name = "name" + id;
+		entity.age = id * 10;
+		entity.score = id * 1.5d;
+		entity.flag = true;
+		entity.ch = 'c';
+		entity.data = new byte[] { 1, 2, 3 };
+		entity.createTime = new Date(1400000000000l + id);
+		entity.updateTime = new Timestamp(1400000000000l + id);
+		return entity;
+	}
+
+	private void _assertEntity(CodecEntity expected, CodecEntity actual) {
+		Assert.assertEquals(expected.id, actual.id);
+		Assert.assertEquals(expected.name, actual.name);
+		Assert.assertEquals(expected.age, actual.age);
+		Assert.assertEquals(expected.score, actual.score);
+		Assert.assertEquals(expected.flag, actual.flag);
+		Assert.assertEquals(expected.ch, actual.ch);
+		Assert.assertEquals(expected.data.length, actual.data.length);
+		Assert.assertEquals(expected.createTime, actual.createTime);
+		Assert.assertEquals(expected.updateTime, actual.updateTime);
+		Assert.assertEquals(Timestamp.class, actual.updateTime.getClass());
+	}
+
+	@Table(cluster = "pinus", cache = true)
+	public static class CodecEntity implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		@PrimaryKey
+		private long id;
+
+		@Field
+		private String name;
+
+		@Field
+		private int age;
+
+		@Field
+		private Double score;
+
+		@Field
+		private boolean flag;
+
+		@Field
+		private char ch;
+
+		@Field
+		private byte[] data;
+
+		@DateTime
+		private Date createTime;
+
+		@DateTime
+		private Date updateTime;
+	}
+
+}
@@ -0,0 +1,230 @@
+package org.pinus4j.cache.impl;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pinus4j.cache.CacheNull;
+import org.pinus4j.cache.IPrimaryCache;
+import org.pinus4j.cluster.beans.AppDBInfo;
+import org.pinus4j.cluster.beans.DBRegionInfo;
+import org.pinus4j.cluster.resources.ShardingDBResource;
+import org.pinus4j.generator.annotations.Field;
+import org.pinus4j.generator.annotations.PrimaryKey;
+import org.pinus4j.generator.annotations.Table;
+import org.pinus4j.utils.ReflectUtil;
+
+public class NearPrimaryCacheImplTest {
+
+	private static final String CLUSTER = "pinus";
+
+	/**
+	 * 远程缓存, 记录被调用的次数.
+	 */
+	private final Map<String, Object> remote = new HashMap<String, Object>();
+	private int remoteGets;
+
+	/**
+	 * 远程缓存删除之前执行, 模拟同时进行的读取.
+	 */
+	private Runnable beforeRemoteRemove;
+
+	@Test
+	public void testGetGlobal() {
+		IPrimaryCache cache = new NearPrimaryCacheImpl(_createRemote(), 100, 60);
+		String tableName = ReflectUtil.getTableName(NearEntity.class);
+
+		cache.putGlobal(CLUSTER, tableName, 1, new NearEntity(1, "a"));
+		remoteGets = 0;
+
+		NearEntity one = cache.getGlobal(CLUSTER, tableName, 1);
+		Assert.assertEquals("a", one.name);
+		Assert.assertEquals(0, remoteGets);
+
+		// 修改返回的对象不影响缓存
+		one.name = "b";
+		NearEntity two = cache.getGlobal(CLUSTER, tableName, 1l);
+		Assert.assertEquals("a", two.name);
+
+		// 删除时同时删除本地缓存
+		cache.removeGlobal(CLUSTER, tableName, 1);
+		Assert.assertNull(cache.getGlobal(CLUSTER, tableName, 1));
+		Assert.assertEquals(1, remoteGets);
+	}
+
+	@Test
+	public void testRemoveWithConcurrentRead() {
+		final IPrimaryCache cache = new NearPrimaryCacheImpl(_createRemote(), 100, 60);
+		final String tableName = ReflectUtil.getTableName(NearEntity.class);
+
+		cache.putGlobal(CLUSTER, tableName, 1, new NearEntity(1, "a"));
+		cache.putGlobal(CLUSTER, tableName, 2, new NearEntity(2, "b"));
+
+		// 删除过程中本节点的读取不会把旧值重新放入本地缓存
+		beforeRemoteRemove = new Runnable() {
+			@Override
+			public void run() {
+				cache.getGlobal(CLUSTER, tableName, 1);
+				cache.getGlobal(CLUSTER, tableName, 2);
+			}
+		};
+		cache.removeGlobal(CLUSTER, tableName, 1);
+		Assert.assertNull(cache.getGlobal(CLUSTER, tableName, 1));
+
+		List<Number> ids = new ArrayList<Number>();
+		ids.add(2);
+		cache.removeGlobal(CLUSTER, tableName, ids);
+		Assert.assertNull(cache.getGlobal(CLUSTER, tableName, 2));
+	}
+
+	@Test
+	public void testGetGlobalBatch() {
+		IPrimaryCache cache = new NearPrimaryCacheImpl(_createRemote(), 100, 60);
+		String tableName = ReflectUtil.getTableName(NearEntity.class);
+
+		cache.putGlobal(CLUSTER, tableName, 1, new NearEntity(1, "a"));
+		remote.put("3", new NearEntity(3, "c"));
+
+		List<NearEntity> hits = cache.getGlobal(CLUSTER, tableName, new Number[] { 3, 2, 1 });
+		Assert.assertEquals(2, hits.size());
+		Assert.assertEquals(3l, hits.get(0).id);
+		Assert.assertEquals(1l, hits.get(1).id);
+
+		// 从远程缓存读取的记录已经放入本地
+		remote.clear();
+		Assert.assertEquals("c", ((NearEntity) cache.getGlobal(CLUSTER, tableName, 3)).name);
+	}
+
+	@Test
+	public void testPutBatch() {
+		IPrimaryCache cache = new NearPrimaryCacheImpl(_createRemote(), 100, 60);
+		AppDBInfo dbInfo = new AppDBInfo();
+		dbInfo.setClusterName(CLUSTER);
+		dbInfo.setDbName("pinus1");
+		DBRegionInfo region = new DBRegionInfo();
+		region.setCapacity("1-30000000");
+		ShardingDBResource db = ShardingDBResource.valueOf(dbInfo, region, ReflectUtil.getTableName(NearEntity.class), 0);
+
+		// 数据的顺序与主键不一致, 并且缺少一条记录
+		List<NearEntity> data = new ArrayList<NearEntity>();
+		data.add(new NearEntity(1, "a"));
+		data.add(new NearEntity(3, "c"));
+		cache.put(db, new Number[] { 3, 2, 1 }, data);
+
+		Assert.assertEquals("a", ((NearEntity) cache.get(db, 1)).name);
+		Assert.assertEquals("c", ((NearEntity) cache.get(db, 3)).name);
+		Assert.assertNull(cache.get(db, 2));
+	}
+
+	@Test
+	public void testLookupNull() {
+		IPrimaryCache cache = new NearPrimaryCacheImpl(_createRemote(), 100, 60);
+		String tableName = ReflectUtil.getTableName(NearEntity.class);
+
+		cache.putNullGlobal(CLUSTER, tableName, 1);
+		Assert.assertTrue(CacheNull.isNull(cache.lookupGlobal(CLUSTER, tableName, 1)));
+
+		// 记录不存在的标记不保存在本地
+		cache.putGlobal(CLUSTER, tableName, 1, new NearEntity(1, "a"));
+		remoteGets = 0;
+		Assert.assertEquals("a", ((NearEntity) cache.lookupGlobal(CLUSTER, tableName, 1)).name);
+		Assert.assertEquals(0, remoteGets);
+	}
+
+	@Test
+	public void testInvalidationBus() {
+		IPrimaryCache remoteCache = _createRemote();
+		NearPrimaryCacheImpl one = new NearPrimaryCacheImpl(remoteCache, 100, 60);
+		NearPrimaryCacheImpl two = new NearPrimaryCacheImpl(remoteCache, 100, 60);
+		LocalCacheInvalidationBus busOne = new LocalCacheInvalidationBus("testInvalidationBus", 60 * 1000);
+		LocalCacheInvalidationBus busTwo = new LocalCacheInvalidationBus("testInvalidationBus", 60 * 1000);
+		one.setInvalidationBus(busOne);
+		two.setInvalidationBus(busTwo);
+		String tableName = ReflectUtil.getTableName(NearEntity.class);
+
+		try {
+			one.putGlobal(CLUSTER, tableName, 1, new NearEntity(1, "a"));
+			Assert.assertEquals("a", ((NearEntity) two.getGlobal(CLUSTER, tableName, 1)).name);
+
+			// 通知发送前另一个节点仍然读到本地缓存
+			one.removeGlobal(CLUSTER, tableName, 1);
+			Assert.assertEquals("a", ((NearEntity) two.getGlobal(CLUSTER, tableName, 1)).name);
+
+			busOne.flush();
+			Assert.assertNull(two.getGlobal(CLUSTER, tableName, 1));
+		} finally {
+			busOne.close();
+			busTwo.close();
+		}
+	}
+
+	private IPrimaryCache _createRemote() {
+		return (IPrimaryCache) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { IPrimaryCache.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.equals("putGlobal") && args[2] instanceof Number) {
+							remote.put(String.valueOf(args[2]), args[3]);
+						} else if (name.equals("removeGlobal")) {
+							if (beforeRemoteRemove != null) {
+								beforeRemoteRemove.run();
+							}
+							if (args[2] instanceof Number) {
+								remote.remove(String.valueOf(args[2]));
+							} else {
+								for (Object id : (List<?>) args[2]) {
+									remote.remove(String.valueOf(id));
+								}
+							}
+						} else if (name.equals("putNullGlobal")) {
+							remote.put(String.valueOf(args[2]), CacheNull.INSTANCE);
+						} else if (name.equals("lookupGlobal")) {
+							remoteGets++;
+							return remote.get(String.valueOf(args[2]));
+						} else if (name.equals("getGlobal") && args[2] instanceof Number) {
+							remoteGets++;
+							return remote.get(String.valueOf(args[2]));
+						} else if (name.equals("getGlobal")) {
+							remoteGets++;
+							List<Object> hits = new ArrayList<Object>();
+							for (Number id : (Number[]) args[2]) {
+								if (remote.get(String.valueOf(id)) != null) {
+									hits.add(remote.get(String.valueOf(id)));
+								}
+							}
+							return hits;
+						}
+						return null;
+					}
+				});
+	}
+
+	@Table(cluster = CLUSTER, cache = true, nearCache = true)
+	public static class NearEntity implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		@PrimaryKey
+		private long id;
+
+		@Field
+		private String name;
+
+		public NearEntity() {
+		}
+
+		public NearEntity(long id, String name) {
+			this.id = id;
+			this.name = name;
+		}
+	}
+
+}
@@ -0,0 +1,59 @@
+package org.pinus4j.cache.impl;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class TinyLfuCacheTest {
+
+	@Test
+	public void testGetPutRemove() {
+		TinyLfuCache cache = new TinyLfuCache(100, 60);
+		Assert.assertTrue(cache.put("a", "1"));
+		Assert.assertEquals("1", cache.get("a"));
+
+		cache.put("a", "2");
+		Assert.assertEquals("2", cache.get("a"));
+
+		cache.remove("a");
+		Assert.assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void testExpire() throws Exception {
+		TinyLfuCache cache = new TinyLfuCache(100, 0);
+		cache.put("a", "1");
+		Assert.assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void testAdmission() {
+		TinyLfuCache cache = new TinyLfuCache(256, 60);
+		// 热点数据
+		for (int i = 0; i < 128; i++) {
+			for (int j = 0; j < 5; j++) {
+				cache.get("hot" + i);
+			}
+			cache.put("hot" + i, i);
+		}
+
+		// 热点数据持续被访问时, 一次性扫描的数据不能把热点数据挤出缓存
+		for (int i = 0; i < 10000; i++) {
+			if (cache.get("hot" + (i % 128)) == null) {
+				cache.put("hot" + (i % 128), i);
+			}
+			cache.get("scan" + i);
+			cache.put("scan" + i, i);
+		}
+
+		Assert.assertTrue(cache.size() <= 256);
+		int hits = 0;
+		for (int i = 0; i < 128; i++) {
+			if (cache.get("hot" + i) != null) {
+				hits++;
+			}
+		}
+		Assert.assertTrue(hits == 128);
+	}
+
+}
@@ -0,0 +1,86 @@
+package org.pinus4j.cluster.enums;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * hash算法的性能和分布质量对比. 不是单元测试, 直接运行main方法.
+ *
+ * 分布质量使用卡方检验: 按路由的方式将hash值对分片数取模, 统计每个分片的key数, 卡方值/自由度接近1表示分布均匀, 明显大于1表示分布不均.
+ */
+public class HashAlgoBenchmark {
+
+	private static final int KEY_NUM = 200000;
+
+	private static final int ROUNDS = 5;
+
+	private static final int[] SHARD_NUMS = new int[] { 16, 64, 1000 };
+
+	public static void main(String[] args) {
+		Random r = new Random(1);
+		List<String> numbers = new ArrayList<String>();
+		List<String> emails = new ArrayList<String>();
+		List<String> uuids = new ArrayList<String>();
+		for (int i = 0; i < KEY_NUM; i++) {
+			numbers.add("user_" + i);
+			emails.add("u" + r.nextInt(10000000) + "@mail" + r.nextInt(20) + ".com");
+			uuids.add(UUID.randomUUID().toString());
+		}
+
+		_report("sequential keys(user_N)", numbers);
+		_report("email keys", emails);
+		_report("uuid keys", uuids);
+	}
+
+	private static void _report(String title, List<String> keys) {
+		System.out.println(title);
+		StringBuilder head = new StringBuilder(String.format("%-12s %10s", "algo", "ns/op"));
+		for (int shardNum : SHARD_NUMS) {
+			head.append(String.format(" %12s", "chi2/df@" + shardNum));
+		}
+		System.out.println(head);
+
+		for (HashAlgoEnum algo : HashAlgoEnum.values()) {
+			// 预热
+			_hashAll(algo, keys);
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < ROUNDS; i++) {
+				long start = System.nanoTime();
+				_hashAll(algo, keys);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+
+			StringBuilder line = new StringBuilder(String.format("%-12s %10.1f", algo.getValue(),
+					(double) best / keys.size()));
+			for (int shardNum : SHARD_NUMS) {
+				line.append(String.format(" %12.2f", _chiSquare(algo, keys, shardNum) / (shardNum - 1)));
+			}
+			System.out.println(line);
+		}
+		System.out.println();
+	}
+
+	private static double _chiSquare(HashAlgoEnum algo, List<String> keys, int shardNum) {
+		long[] counts = new long[shardNum];
+		for (String key : keys) {
+			counts[(int) (algo.hash(key) % shardNum)]++;
+		}
+		double expect = (double) keys.size() / shardNum;
+		double chi2 = 0;
+		for (long count : counts) {
+			chi2 += (count - expect) * (count - expect) / expect;
+		}
+		return chi2;
+	}
+
+	private static long _hashAll(HashAlgoEnum algo, List<String> keys) {
+		long h = 0;
+		for (String key : keys) {
+			h += algo.hash(key);
+		}
+		return h;
+	}
+
+}
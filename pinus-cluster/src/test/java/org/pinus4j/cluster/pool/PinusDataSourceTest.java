@@ -0,0 +1,169 @@
+package org.pinus4j.cluster.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class PinusDataSourceTest {
+
+	private final AtomicInteger opened = new AtomicInteger();
+
+	private final AtomicInteger closed = new AtomicInteger();
+
+	private final AtomicInteger rollbacks = new AtomicInteger();
+
+	@Test
+	public void testReuse() throws Exception {
+		PinusDataSource ds = _createDataSource(2);
+
+		Connection conn = ds.getConnection();
+		conn.close();
+		conn.close();
+		conn = ds.getConnection();
+		conn.close();
+
+		Assert.assertEquals(1, opened.get());
+		Assert.assertEquals(0, ds.getActiveCount());
+		Assert.assertEquals(1, ds.getIdleCount());
+		Assert.assertEquals(2, ds.getBorrowCount());
+		Assert.assertEquals(1, ds.getCreatedCount());
+
+		ds.close();
+		Assert.assertEquals(1, closed.get());
+		Assert.assertEquals(0, ds.getTotalCount());
+	}
+
+	@Test
+	public void testMaxWait() throws Exception {
+		PinusDataSource ds = _createDataSource(1);
+		ds.setMaxWait(100);
+
+		Connection conn = ds.getConnection();
+		try {
+			ds.getConnection();
+			Assert.fail();
+		} catch (SQLException e) {
+			// 超时
+		}
+		Assert.assertEquals(1, ds.getTimeoutCount());
+
+		conn.close();
+		ds.getConnection().close();
+		Assert.assertEquals(1, opened.get());
+
+		ds.close();
+	}
+
+	@Test
+	public void testResetOnClose() throws Exception {
+		PinusDataSource ds = _createDataSource(1);
+
+		Connection conn = ds.getConnection();
+		conn.setAutoCommit(false);
+		conn.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+		conn.prepareStatement("update t set a = 1");
+		conn.close();
+		Assert.assertEquals(1, rollbacks.get());
+
+		try {
+			conn.commit();
+			Assert.fail();
+		} catch (SQLException e) {
+			// 已经归还的连接不能再使用
+		}
+
+		conn = ds.getConnection();
+		Assert.assertTrue(conn.getAutoCommit());
+		Assert.assertEquals(Connection.TRANSACTION_READ_COMMITTED, conn.getTransactionIsolation());
+		conn.close();
+		Assert.assertEquals(1, rollbacks.get());
+
+		ds.close();
+	}
+
+	@Test
+	public void testConcurrentBorrow() throws Exception {
+		final PinusDataSource ds = _createDataSource(4);
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(16);
+
+		for (int i = 0; i < 16; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 200; j++) {
+							Connection conn = ds.getConnection();
+							conn.getAutoCommit();
+							conn.close();
+						}
+					} catch (SQLException e) {
+						failures.incrementAndGet();
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		done.await();
+
+		Assert.assertEquals(0, failures.get());
+		Assert.assertEquals(3200, ds.getBorrowCount());
+		Assert.assertEquals(0, ds.getActiveCount());
+		Assert.assertTrue(ds.getTotalCount() <= 4);
+		Assert.assertEquals(ds.getTotalCount(), opened.get());
+
+		ds.close();
+	}
+
+	private PinusDataSource _createDataSource(int maxActive) {
+		PinusDataSource ds = new PinusDataSource(null, "jdbc:test", "test", "test") {
+			@Override
+			protected Connection _createConnection() throws SQLException {
+				opened.incrementAndGet();
+				return _createConnectionProxy();
+			}
+		};
+		ds.setMaxActive(maxActive);
+		ds.setMaxWait(5000);
+		return ds;
+	}
+
+	private Connection _createConnectionProxy() {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				new InvocationHandler() {
+					private boolean autoCommit = true;
+					private int isolation = Connection.TRANSACTION_READ_COMMITTED;
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.equals("setAutoCommit")) {
+							autoCommit = (Boolean) args[0];
+						} else if (name.equals("getAutoCommit")) {
+							return autoCommit;
+						} else if (name.equals("setTransactionIsolation")) {
+							isolation = (Integer) args[0];
+						} else if (name.equals("getTransactionIsolation")) {
+							return isolation;
+						} else if (name.equals("rollback")) {
+							rollbacks.incrementAndGet();
+						} else if (name.equals("close")) {
+							closed.incrementAndGet();
+						} else if (name.equals("isValid")) {
+							return true;
+						}
+						return null;
+					}
+				});
+	}
+
+}
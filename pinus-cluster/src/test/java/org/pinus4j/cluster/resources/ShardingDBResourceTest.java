@@ -0,0 +1,201 @@
+package org.pinus4j.cluster.resources;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pinus4j.cluster.beans.AppDBInfo;
+import org.pinus4j.cluster.beans.DBRegionInfo;
+import org.pinus4j.cluster.enums.EnumDBMasterSlave;
+import org.pinus4j.transaction.impl.LocalTransaction;
+import org.pinus4j.transaction.enums.EnumTransactionIsolationLevel;
+
+public class ShardingDBResourceTest {
+
+	/**
+	 * 从连接池获取的连接数.
+	 */
+	private int opened;
+
+	/**
+	 * 归还连接池的连接数.
+	 */
+	private int closed;
+
+	private int commits;
+
+	private Integer isolation;
+
+	@Test
+	public void testLazyConnection() throws Exception {
+		AppDBInfo dbInfo = _createDBInfo("pinus1");
+		DBRegionInfo region = _createRegion();
+
+		ShardingDBResource db = ShardingDBResource.valueOf(dbInfo, region, "test_entity", 0);
+		Assert.assertEquals(0, opened);
+
+		db.setTransactionIsolationLevel(EnumTransactionIsolationLevel.READ_COMMITTED);
+		db.commit();
+		db.rollback();
+		// 打印日志不获取连接
+		db.toString();
+		Assert.assertEquals(0, opened);
+		Assert.assertEquals(0, commits);
+
+		db.getConnection();
+		db.getConnection();
+		Assert.assertEquals(1, opened);
+		Assert.assertEquals(EnumTransactionIsolationLevel.READ_COMMITTED.getLevel(), isolation.intValue());
+
+		db.commit();
+		Assert.assertEquals(1, commits);
+
+		db.close();
+		db.close();
+		Assert.assertEquals(1, closed);
+
+		// 没有执行SQL的资源不会获取连接
+		ShardingDBResource.valueOf(dbInfo, region, "test_entity", 1).close();
+		Assert.assertEquals(1, opened);
+		Assert.assertEquals(1, closed);
+	}
+
+	@Test
+	public void testSharedLease() throws Exception {
+		DBRegionInfo region = _createRegion();
+
+		List<ShardingDBResource> dbs = new ArrayList<ShardingDBResource>();
+		for (int i = 0; i < 4; i++) {
+			AppDBInfo dbInfo = _createDBInfo("pinus" + i);
+			DBConnectionLease lease = new DBConnectionLease(dbInfo);
+			for (int tableIndex = 0; tableIndex < 32; tableIndex++) {
+				dbs.add(ShardingDBResource.valueOf(dbInfo, region, "test_entity", tableIndex, lease));
+			}
+		}
+		Assert.assertEquals(0, opened);
+
+		for (ShardingDBResource db : dbs) {
+			Assert.assertNotNull(db.getConnection());
+		}
+		Assert.assertEquals(4, opened);
+		Assert.assertEquals("127.0.0.1:3306", dbs.get(0).getHost());
+		Assert.assertEquals("pinus0", dbs.get(0).getCatalog());
+
+		// 最后一个共享的资源关闭时才归还连接
+		for (int i = 0; i < 31; i++) {
+			dbs.get(i).close();
+		}
+		Assert.assertEquals(0, closed);
+		Assert.assertNotNull(dbs.get(31).getConnection());
+		dbs.get(31).close();
+		Assert.assertEquals(1, closed);
+
+		for (ShardingDBResource db : dbs) {
+			db.close();
+		}
+		Assert.assertEquals(4, closed);
+	}
+
+	@Test
+	public void testTransactionSameTable() throws Exception {
+		AppDBInfo dbInfo = _createDBInfo("pinus1");
+		DBRegionInfo region = _createRegion();
+
+		LocalTransaction tx = new LocalTransaction();
+		// 同一个事务中两次写入同一个分表
+		ShardingDBResource db1 = ShardingDBResource.valueOf(dbInfo, region, "test_entity", 0);
+		tx.enlistResource(db1);
+		Connection conn = db1.getConnection();
+		ShardingDBResource db2 = ShardingDBResource.valueOf(dbInfo, region, "test_entity", 0);
+		tx.enlistResource(db2);
+		Assert.assertSame(conn, db2.getConnection());
+		Assert.assertEquals(1, opened);
+
+		tx.commit();
+		Assert.assertEquals(1, commits);
+		Assert.assertEquals(1, closed);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testLeaseOfOtherDB() {
+		DBConnectionLease lease = new DBConnectionLease(_createDBInfo("pinus1"));
+		ShardingDBResource.valueOf(_createDBInfo("pinus2"), _createRegion(), "test_entity", 0, lease);
+	}
+
+	private DBRegionInfo _createRegion() {
+		DBRegionInfo region = new DBRegionInfo();
+		region.setCapacity("1-30000000");
+		return region;
+	}
+
+	private AppDBInfo _createDBInfo(final String dbName) {
+		AppDBInfo dbInfo = new AppDBInfo();
+		dbInfo.setClusterName("pinus");
+		dbInfo.setDbName(dbName);
+		dbInfo.setUrl("jdbc:mysql://127.0.0.1:3306/" + dbName);
+		dbInfo.setMasterSlave(EnumDBMasterSlave.MASTER);
+		dbInfo.setDatasource((DataSource) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { DataSource.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("getConnection")) {
+							opened++;
+							return _createConnection(dbName);
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				}));
+		return dbInfo;
+	}
+
+	private Connection _createConnection(final String dbName) {
+		final DatabaseMetaData meta = (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { DatabaseMetaData.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("getURL")) {
+							return "jdbc:mysql://127.0.0.1:3306/" + dbName;
+						}
+						if (method.getName().equals("getDatabaseProductName")) {
+							return "MySQL";
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				new InvocationHandler() {
+					private boolean isClosed;
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.equals("close")) {
+							isClosed = true;
+							closed++;
+						} else if (name.equals("isClosed")) {
+							return isClosed;
+						} else if (name.equals("commit")) {
+							commits++;
+						} else if (name.equals("setTransactionIsolation")) {
+							isolation = (Integer) args[0];
+						} else if (name.equals("getMetaData")) {
+							return meta;
+						} else if (name.equals("getCatalog")) {
+							return dbName;
+						}
+						return null;
+					}
+				});
+	}
+
+}
@@ -0,0 +1,97 @@
+package org.pinus4j.cluster.router.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pinus4j.cluster.beans.AppDBInfo;
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.ShardingKey;
+
+public class ConsistentHashClusterRouterTest {
+
+	private static final int KEY_NUM = 100000;
+
+	@Test
+	public void testBalance() throws Exception {
+		ConsistentHashClusterRouter router = new ConsistentHashClusterRouter();
+		List<DBInfo> dbInfos = _createDBInfos(4);
+
+		Map<DBInfo, Integer> counts = new HashMap<DBInfo, Integer>();
+		for (int i = 1; i <= KEY_NUM; i++) {
+			DBInfo dbInfo = router.doSelect(dbInfos, new ShardingKey<Integer>("pinus", i));
+			Integer count = counts.get(dbInfo);
+			counts.put(dbInfo, count == null ? 1 : count + 1);
+		}
+
+		Assert.assertEquals(4, counts.size());
+		for (Integer count : counts.values()) {
+			Assert.assertTrue("count=" + count, Math.abs(count - KEY_NUM / 4) < KEY_NUM / 4 * 0.2);
+		}
+	}
+
+	@Test
+	public void testAddNode() throws Exception {
+		ConsistentHashClusterRouter router = new ConsistentHashClusterRouter();
+		List<DBInfo> before = _createDBInfos(4);
+		List<DBInfo> after = new ArrayList<DBInfo>(before);
+		after.add(_createDBInfo(4));
+
+		int moved = 0;
+		for (int i = 1; i <= KEY_NUM; i++) {
+			ShardingKey<Integer> key = new ShardingKey<Integer>("pinus", i);
+			DBInfo from = router.doSelect(before, key);
+			DBInfo to = router.doSelect(after, key);
+			if (from != to) {
+				// 只会迁移到新增的分库
+				Assert.assertSame(after.get(4), to);
+				moved++;
+			}
+		}
+
+		Assert.assertTrue("moved=" + moved, moved > KEY_NUM / 5 * 0.7 && moved < KEY_NUM / 5 * 1.3);
+	}
+
+	@Test
+	public void testNodeName() throws Exception {
+		ConsistentHashClusterRouter router = new ConsistentHashClusterRouter();
+		List<DBInfo> dbInfos = _createDBInfos(3);
+
+		// 分库的配置顺序不影响路由结果
+		List<DBInfo> reversed = new ArrayList<DBInfo>();
+		for (int i = dbInfos.size() - 1; i >= 0; i--) {
+			reversed.add(dbInfos.get(i));
+		}
+		for (int i = 1; i <= 1000; i++) {
+			ShardingKey<Integer> key = new ShardingKey<Integer>("pinus", i);
+			Assert.assertSame(router.doSelect(dbInfos, key), router.doSelect(reversed, key));
+		}
+
+		Map<String, String> props = new HashMap<String, String>();
+		props.put(ConsistentHashClusterRouter.PROP_NODE_NAME, "db0");
+		dbInfos.get(0).setCustomProperties(props);
+		Assert.assertEquals("db0", ConsistentHashClusterRouter.getNodeName(dbInfos.get(0)));
+		Assert.assertEquals(((AppDBInfo) dbInfos.get(1)).getUrl(),
+				ConsistentHashClusterRouter.getNodeName(dbInfos.get(1)));
+	}
+
+	private List<DBInfo> _createDBInfos(int num) {
+		List<DBInfo> dbInfos = new ArrayList<DBInfo>();
+		for (int i = 0; i < num; i++) {
+			dbInfos.add(_createDBInfo(i));
+		}
+		return dbInfos;
+	}
+
+	private DBInfo _createDBInfo(int i) {
+		AppDBInfo dbInfo = new AppDBInfo();
+		dbInfo.setClusterName("pinus");
+		dbInfo.setUrl("jdbc:mysql://127.0.0.1:3306/pinus" + i);
+		return dbInfo;
+	}
+
+}
@@ -0,0 +1,59 @@
+package org.pinus4j.cluster.router.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pinus4j.cluster.beans.AppDBInfo;
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.ShardingKey;
+
+public class JumpHashClusterRouterTest {
+
+	private static final int KEY_NUM = 100000;
+
+	@Test
+	public void testJump() {
+		int[] counts = new int[5];
+		int moved = 0;
+		for (int i = 1; i <= KEY_NUM; i++) {
+			long key = AbstractClusterRouter.mix(i);
+			int before = JumpHashClusterRouter.jump(key, 4);
+			int after = JumpHashClusterRouter.jump(key, 5);
+			Assert.assertTrue(before >= 0 && before < 4);
+			if (before != after) {
+				// 只会迁移到新增的桶
+				Assert.assertEquals(4, after);
+				moved++;
+			}
+			counts[after]++;
+		}
+
+		Assert.assertTrue("moved=" + moved, moved > KEY_NUM / 5 * 0.9 && moved < KEY_NUM / 5 * 1.1);
+		for (int count : counts) {
+			Assert.assertTrue("count=" + count, Math.abs(count - KEY_NUM / 5) < KEY_NUM / 5 * 0.1);
+		}
+
+		Assert.assertEquals(0, JumpHashClusterRouter.jump(12345, 1));
+	}
+
+	@Test
+	public void testDoSelect() throws Exception {
+		JumpHashClusterRouter router = new JumpHashClusterRouter();
+		List<DBInfo> dbInfos = new ArrayList<DBInfo>();
+		for (int i = 0; i < 3; i++) {
+			AppDBInfo dbInfo = new AppDBInfo();
+			dbInfo.setUrl("jdbc:mysql://127.0.0.1:3306/pinus" + i);
+			dbInfos.add(dbInfo);
+		}
+
+		for (int i = 1; i <= 1000; i++) {
+			ShardingKey<Integer> key = new ShardingKey<Integer>("pinus", i);
+			DBInfo dbInfo = router.doSelect(dbInfos, key);
+			Assert.assertSame(dbInfos.get(JumpHashClusterRouter.jump(AbstractClusterRouter.mix(i), 3)), dbInfo);
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+package org.pinus4j.cluster.router.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pinus4j.cluster.beans.AppDBInfo;
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.ShardingKey;
+import org.pinus4j.exceptions.DBRouteException;
+
+public class RendezvousHashClusterRouterTest {
+
+	private static final int KEY_NUM = 100000;
+
+	@Test
+	public void testWeight() throws Exception {
+		RendezvousHashClusterRouter router = new RendezvousHashClusterRouter();
+		List<DBInfo> dbInfos = new ArrayList<DBInfo>();
+		dbInfos.add(_createDBInfo(0, null));
+		dbInfos.add(_createDBInfo(1, null));
+		dbInfos.add(_createDBInfo(2, "2"));
+
+		Map<DBInfo, Integer> counts = _count(router, dbInfos);
+		Assert.assertTrue(_near(counts.get(dbInfos.get(0)), KEY_NUM / 4));
+		Assert.assertTrue(_near(counts.get(dbInfos.get(1)), KEY_NUM / 4));
+		Assert.assertTrue(_near(counts.get(dbInfos.get(2)), KEY_NUM / 2));
+	}
+
+	@Test
+	public void testRemoveNode() throws Exception {
+		RendezvousHashClusterRouter router = new RendezvousHashClusterRouter();
+		List<DBInfo> before = new ArrayList<DBInfo>();
+		for (int i = 0; i < 5; i++) {
+			before.add(_createDBInfo(i, null));
+		}
+		// 删除中间的分库
+		List<DBInfo> after = new ArrayList<DBInfo>(before);
+		DBInfo removed = after.remove(2);
+
+		for (int i = 1; i <= KEY_NUM; i++) {
+			ShardingKey<Integer> key = new ShardingKey<Integer>("pinus", i);
+			DBInfo from = router.doSelect(before, key);
+			if (from != removed) {
+				Assert.assertSame(from, router.doSelect(after, key));
+			}
+		}
+	}
+
+	@Test(expected = DBRouteException.class)
+	public void testErrorWeight() throws Exception {
+		List<DBInfo> dbInfos = new ArrayList<DBInfo>();
+		dbInfos.add(_createDBInfo(0, "0"));
+		new RendezvousHashClusterRouter().doSelect(dbInfos, new ShardingKey<Integer>("pinus", 1));
+	}
+
+	private Map<DBInfo, Integer> _count(RendezvousHashClusterRouter router, List<DBInfo> dbInfos) throws Exception {
+		Map<DBInfo, Integer> counts = new HashMap<DBInfo, Integer>();
+		for (int i = 1; i <= KEY_NUM; i++) {
+			DBInfo dbInfo = router.doSelect(dbInfos, new ShardingKey<Integer>("pinus", i));
+			Integer count = counts.get(dbInfo);
+			counts.put(dbInfo, count == null ? 1 : count + 1);
+		}
+		return counts;
+	}
+
+	private boolean _near(int count, int expect) {
+		return Math.abs(count - expect) < expect * 0.05;
+	}
+
+	private DBInfo _createDBInfo(int i, String weight) {
+		AppDBInfo dbInfo = new AppDBInfo();
+		dbInfo.setUrl("jdbc:mysql://127.0.0.1:3306/pinus" + i);
+		if (weight != null) {
+			Map<String, String> props = new HashMap<String, String>();
+			props.put(RendezvousHashClusterRouter.PROP_WEIGHT, weight);
+			dbInfo.setCustomProperties(props);
+		}
+		return dbInfo;
+	}
+
+}
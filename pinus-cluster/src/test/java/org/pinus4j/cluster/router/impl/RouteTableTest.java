@@ -0,0 +1,106 @@
+package org.pinus4j.cluster.router.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pinus4j.cluster.beans.AppDBInfo;
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.DBRegionInfo;
+import org.pinus4j.cluster.beans.DBRegionInfo.Value;
+import org.pinus4j.cluster.router.RouteInfo;
+
+public class RouteTableTest {
+
+	@Test
+	public void testFindRegion() {
+		List<DBRegionInfo> regions = new ArrayList<DBRegionInfo>();
+		regions.add(_createRegion(1, 30000000, 60000001, 90000000));
+		regions.add(_createRegion(30000001, 60000000));
+		RouteTable routeTable = new RouteTable("pinus", regions);
+
+		Assert.assertEquals(-1, routeTable.findRegion(0));
+		Assert.assertEquals(0, routeTable.findRegion(1));
+		Assert.assertEquals(0, routeTable.findRegion(30000000));
+		Assert.assertEquals(1, routeTable.findRegion(30000001));
+		Assert.assertEquals(1, routeTable.findRegion(60000000));
+		Assert.assertEquals(0, routeTable.findRegion(60000001));
+		Assert.assertEquals(0, routeTable.findRegion(90000000));
+		Assert.assertEquals(-1, routeTable.findRegion(90000001));
+		Assert.assertEquals(-1, routeTable.findRegion(-5));
+	}
+
+	@Test
+	public void testOverlap() {
+		List<DBRegionInfo> regions = new ArrayList<DBRegionInfo>();
+		regions.add(_createRegion(100, 200));
+		regions.add(_createRegion(1, 300));
+		regions.add(_createRegion(250, 400));
+		RouteTable routeTable = new RouteTable("pinus", regions);
+
+		// 重叠部分属于前面的区块
+		for (long v = 0; v <= 401; v++) {
+			int expect = -1;
+			for (int i = 0; i < regions.size(); i++) {
+				if (regions.get(i).isMatch(v)) {
+					expect = i;
+					break;
+				}
+			}
+			Assert.assertEquals(expect, routeTable.findRegion(v));
+		}
+	}
+
+	@Test
+	public void testRouteInfoCache() {
+		List<DBRegionInfo> regions = new ArrayList<DBRegionInfo>();
+		DBRegionInfo region = _createRegion(1, 100);
+		regions.add(region);
+		RouteTable routeTable = new RouteTable("pinus", regions);
+		DBInfo dbInfo = region.getMasterDBInfos().get(1);
+
+		RouteInfo routeInfo = routeTable.getRouteInfo(0, dbInfo, "test_entity", 3, 4);
+		Assert.assertEquals("pinus", routeInfo.getClusterName());
+		Assert.assertEquals(0, routeInfo.getRegionIndex());
+		Assert.assertSame(dbInfo, routeInfo.getDbInfo());
+		Assert.assertEquals("test_entity", routeInfo.getTableName());
+		Assert.assertEquals(3, routeInfo.getTableIndex());
+
+		Assert.assertSame(routeInfo, routeTable.getRouteInfo(0, dbInfo, "test_entity", 3, 4));
+		Assert.assertNotSame(routeInfo, routeTable.getRouteInfo(0, dbInfo, "test_entity", 2, 4));
+		Assert.assertNotSame(routeInfo, routeTable.getRouteInfo(0, dbInfo, "test_entity1", 3, 4));
+
+		// 超出范围的下标不缓存
+		RouteInfo negative = routeTable.getRouteInfo(0, dbInfo, "test_entity", -1, 4);
+		Assert.assertEquals(-1, negative.getTableIndex());
+		Assert.assertNotSame(negative, routeTable.getRouteInfo(0, dbInfo, "test_entity", -1, 4));
+
+		Assert.assertTrue(routeTable.isCompiledFrom(regions));
+		Assert.assertFalse(routeTable.isCompiledFrom(new ArrayList<DBRegionInfo>(regions)));
+	}
+
+	private DBRegionInfo _createRegion(long... ranges) {
+		DBRegionInfo region = new DBRegionInfo();
+		List<Value> values = new ArrayList<Value>();
+		for (int i = 0; i < ranges.length; i += 2) {
+			Value value = new Value();
+			value.start = ranges[i];
+			value.end = ranges[i + 1];
+			values.add(value);
+		}
+		region.setValues(values);
+
+		List<DBInfo> masters = new ArrayList<DBInfo>();
+		for (int i = 0; i < 2; i++) {
+			AppDBInfo dbInfo = new AppDBInfo();
+			dbInfo.setClusterName("pinus");
+			dbInfo.setUrl("jdbc:mysql://127.0.0.1:3306/pinus" + i);
+			masters.add(dbInfo);
+		}
+		region.setMasterDBInfos(masters);
+		return region;
+	}
+
+}
@@ -0,0 +1,77 @@
+package org.pinus4j.cluster.router.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pinus4j.cluster.beans.AppDBInfo;
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.ShardingKey;
+
+/**
+ * 路由算法的性能和扩容时的数据迁移比例对比. 不是单元测试, 直接运行main方法.
+ */
+public class RouterBenchmark {
+
+	private static final int KEY_NUM = 1000000;
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		AbstractClusterRouter[] routers = new AbstractClusterRouter[] { new SimpleHashClusterRouter(),
+				new ConsistentHashClusterRouter(), new JumpHashClusterRouter(), new RendezvousHashClusterRouter() };
+
+		List<ShardingKey<Long>> keys = new ArrayList<ShardingKey<Long>>(KEY_NUM);
+		for (long i = 1; i <= KEY_NUM; i++) {
+			keys.add(new ShardingKey<Long>("pinus", i));
+		}
+
+		System.out.println(String.format("%-30s %6s %12s %10s", "router", "dbNum", "ns/op", "moved"));
+		for (int dbNum : new int[] { 4, 16, 64 }) {
+			List<DBInfo> before = _createDBInfos(dbNum);
+			List<DBInfo> after = new ArrayList<DBInfo>(before);
+			after.addAll(_createDBInfos(dbNum + 1).subList(dbNum, dbNum + 1));
+
+			for (AbstractClusterRouter router : routers) {
+				// 预热
+				_route(router, before, keys);
+
+				long best = Long.MAX_VALUE;
+				for (int i = 0; i < ROUNDS; i++) {
+					long start = System.nanoTime();
+					_route(router, before, keys);
+					best = Math.min(best, System.nanoTime() - start);
+				}
+
+				int moved = 0;
+				for (ShardingKey<Long> key : keys) {
+					if (router.doSelect(before, key) != router.doSelect(after, key)) {
+						moved++;
+					}
+				}
+
+				System.out.println(String.format("%-30s %6d %12.1f %9.1f%%", router.getClass().getSimpleName(), dbNum,
+						(double) best / KEY_NUM, moved * 100.0 / KEY_NUM));
+			}
+		}
+	}
+
+	private static int _route(AbstractClusterRouter router, List<DBInfo> dbInfos, List<ShardingKey<Long>> keys)
+			throws Exception {
+		int h = 0;
+		for (ShardingKey<Long> key : keys) {
+			h += router.doSelect(dbInfos, key).hashCode();
+		}
+		return h;
+	}
+
+	private static List<DBInfo> _createDBInfos(int num) {
+		List<DBInfo> dbInfos = new ArrayList<DBInfo>();
+		for (int i = 0; i < num; i++) {
+			AppDBInfo dbInfo = new AppDBInfo();
+			dbInfo.setUrl("jdbc:mysql://127.0.0.1:3306/pinus" + i);
+			dbInfos.add(dbInfo);
+		}
+		return dbInfos;
+	}
+
+}
@@ -0,0 +1,62 @@
+package org.pinus4j.cluster.router.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pinus4j.cluster.beans.AppDBInfo;
+import org.pinus4j.cluster.beans.DBInfo;
+import org.pinus4j.cluster.beans.ShardingKey;
+import org.pinus4j.cluster.enums.HashAlgoEnum;
+
+public class SimpleHashClusterRouterTest {
+
+	@Test
+	public void testLegacyRoute() throws Exception {
+		SimpleHashClusterRouter router = new SimpleHashClusterRouter();
+		router.setHashAlgo(HashAlgoEnum.MIX);
+		List<DBInfo> dbInfos = _createDBInfos(3);
+
+		// 大于int的Long先截断为int再取模
+		ShardingKey<Long> longKey = new ShardingKey<Long>("pinus", 4294967301L);
+		long shardingValue = router.getShardingValue(longKey);
+		Assert.assertEquals(4294967301L, shardingValue);
+		Assert.assertSame(dbInfos.get(2), router.doSelect(dbInfos, longKey));
+		Assert.assertEquals(5, router.mod(longKey, shardingValue, 10));
+
+		// 之前的hash算法的值截断为int
+		ShardingKey<String> stringKey = new ShardingKey<String>("pinus", "user@pinus4j.org");
+		shardingValue = router.getShardingValue(stringKey);
+		Assert.assertEquals(1988525707L, shardingValue);
+		Assert.assertSame(dbInfos.get(1), router.doSelect(dbInfos, stringKey));
+		Assert.assertEquals(7, router.mod(stringKey, shardingValue, 10));
+	}
+
+	@Test
+	public void test64BitHashRoute() throws Exception {
+		SimpleHashClusterRouter router = new SimpleHashClusterRouter();
+		router.setHashAlgo(HashAlgoEnum.MURMUR3);
+		List<DBInfo> dbInfos = _createDBInfos(3);
+
+		for (int i = 0; i < 1000; i++) {
+			ShardingKey<String> key = new ShardingKey<String>("pinus", "user" + i + "@pinus4j.org");
+			long shardingValue = router.getShardingValue(key);
+			Assert.assertEquals(HashAlgoEnum.MURMUR3.hash("user" + i + "@pinus4j.org"), shardingValue);
+			Assert.assertSame(dbInfos.get((int) (shardingValue % 3)), router.doSelect(dbInfos, key));
+			Assert.assertEquals((int) (shardingValue % 10), router.mod(key, shardingValue, 10));
+		}
+	}
+
+	private List<DBInfo> _createDBInfos(int num) {
+		List<DBInfo> dbInfos = new ArrayList<DBInfo>();
+		for (int i = 0; i < num; i++) {
+			AppDBInfo dbInfo = new AppDBInfo();
+			dbInfo.setUrl("jdbc:mysql://127.0.0.1:3306/pinus" + i);
+			dbInfos.add(dbInfo);
+		}
+		return dbInfos;
+	}
+
+}
@@ -0,0 +1,120 @@
+package org.pinus4j.generator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class SegmentIdAllocatorTest {
+
+	/**
+	 * 模拟zookeeper中的当前值.
+	 */
+	private static class MemoryLoader implements SegmentIdAllocator.SegmentLoader {
+		long value;
+		final List<Integer> sizes = new ArrayList<Integer>();
+		final AtomicInteger loadCount = new AtomicInteger();
+
+		@Override
+		public synchronized long load(String clusterName, String name, int size, long seed) {
+			this.loadCount.incrementAndGet();
+			this.sizes.add(size);
+			long start = Math.max(this.value, seed);
+			this.value = start + size;
+			return start;
+		}
+	}
+
+	@Test
+	public void testNextId() {
+		MemoryLoader loader = new MemoryLoader();
+		SegmentIdAllocator allocator = new SegmentIdAllocator(loader, 10);
+
+		for (long i = 1; i <= 1000; i++) {
+			Assert.assertEquals(i, allocator.nextId("pinus", "test_entity"));
+		}
+		// 号段长度逐渐增大, 访问次数远小于id个数
+		Assert.assertTrue("loadCount=" + loader.loadCount.get(), loader.loadCount.get() < 10);
+		Assert.assertEquals(20, loader.sizes.get(1).intValue());
+
+		// 不同的名字使用不同的号段
+		Assert.assertEquals(1001, allocator.nextId("pinus", "test_entity"));
+		Assert.assertTrue(allocator.nextId("pinus", "other") > 1001);
+
+		allocator.close();
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		MemoryLoader loader = new MemoryLoader();
+		final SegmentIdAllocator allocator = new SegmentIdAllocator(loader, 1);
+
+		final int threadNum = 8, idNum = 20000;
+		final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		final CountDownLatch cdl = new CountDownLatch(threadNum);
+		for (int i = 0; i < threadNum; i++) {
+			final int n = i;
+			new Thread() {
+				public void run() {
+					try {
+						for (int j = 0; j < idNum; j++) {
+							if (n % 2 == 0) {
+								Assert.assertTrue(ids.add(allocator.nextId("pinus", "test_entity")));
+							} else if (j % 10 == 0) {
+								for (long id : allocator.nextIds("pinus", "test_entity", 10, 0)) {
+									Assert.assertTrue(ids.add(id));
+								}
+							}
+						}
+					} finally {
+						cdl.countDown();
+					}
+				}
+			}.start();
+		}
+		cdl.await();
+
+		Assert.assertEquals(threadNum / 2 * idNum + threadNum / 2 * idNum, ids.size());
+		for (Long id : ids) {
+			Assert.assertTrue(id > 0 && id <= loader.value);
+		}
+
+		allocator.close();
+	}
+
+	@Test
+	public void testSeedAndSkip() {
+		MemoryLoader loader = new MemoryLoader();
+		SegmentIdAllocator allocator = new SegmentIdAllocator(loader, 100);
+
+		Assert.assertEquals(1, allocator.nextId("pinus", "test_entity"));
+
+		// seed大于当前值时从seed开始
+		long[] ids = allocator.nextIds("pinus", "test_entity", 3, 500);
+		Assert.assertEquals(501, ids[0]);
+		Assert.assertEquals(503, ids[2]);
+
+		// 主键被直接设置后跳过本地号段中较小的id
+		allocator.skip("pinus", "test_entity", 50);
+		Assert.assertEquals(51, allocator.nextId("pinus", "test_entity"));
+		// 号段中还没有分配的id
+		allocator.skip("pinus", "test_entity", 53);
+		Assert.assertEquals(54, allocator.nextId("pinus", "test_entity"));
+		// 已经分配过的id不影响之后的分配
+		allocator.skip("pinus", "test_entity", 52);
+		Assert.assertEquals(55, allocator.nextId("pinus", "test_entity"));
+		allocator.skip("pinus", "test_entity", 1000);
+		loader.value = 1000;
+		Assert.assertTrue(allocator.nextId("pinus", "test_entity") > 1000);
+
+		allocator.close();
+	}
+
+}
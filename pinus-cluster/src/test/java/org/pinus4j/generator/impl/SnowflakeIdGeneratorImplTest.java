@@ -0,0 +1,140 @@
+package org.pinus4j.generator.impl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.apache.curator.framework.state.ConnectionState;
+import org.junit.Test;
+import org.pinus4j.constant.Const;
+import org.pinus4j.exceptions.DBOperationException;
+
+public class SnowflakeIdGeneratorImplTest {
+
+	/**
+	 * 可以设置时间的生成器.
+	 */
+	private static class ClockIdGenerator extends SnowflakeIdGeneratorImpl {
+		volatile long time = System.currentTimeMillis();
+
+		ClockIdGenerator(int workerId) {
+			super(workerId);
+		}
+
+		@Override
+		protected long currentTime() {
+			return time;
+		}
+	}
+
+	@Test
+	public void testNextId() {
+		SnowflakeIdGeneratorImpl idGen = new SnowflakeIdGeneratorImpl(5);
+
+		Set<Long> ids = new HashSet<Long>();
+		long last = 0;
+		for (int i = 0; i < 100000; i++) {
+			long id = idGen.nextId();
+			Assert.assertTrue(id > last);
+			Assert.assertEquals(5, (id >>> SnowflakeIdGeneratorImpl.SEQUENCE_BITS) & SnowflakeIdGeneratorImpl.MAX_WORKER_ID);
+			Assert.assertTrue(ids.add(id));
+			last = id;
+		}
+
+		long timestamp = (last >>> (SnowflakeIdGeneratorImpl.WORKER_ID_BITS + SnowflakeIdGeneratorImpl.SEQUENCE_BITS))
+				+ Const.SNOWFLAKE_EPOCH;
+		Assert.assertTrue(Math.abs(System.currentTimeMillis() - timestamp) < 1000);
+	}
+
+	@Test
+	public void testSequenceOverflow() {
+		ClockIdGenerator idGen = new ClockIdGenerator(1);
+		long first = idGen.nextId();
+
+		// 同一毫秒内序号用完时等待下一毫秒
+		final ClockIdGenerator gen = idGen;
+		new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+				}
+				gen.time++;
+			}
+		}.start();
+		long last = first;
+		for (int i = 0; i <= SnowflakeIdGeneratorImpl.MAX_SEQUENCE; i++) {
+			long id = idGen.nextId();
+			Assert.assertTrue(id > last);
+			last = id;
+		}
+		Assert.assertEquals(gen.time - Const.SNOWFLAKE_EPOCH,
+				last >>> (SnowflakeIdGeneratorImpl.WORKER_ID_BITS + SnowflakeIdGeneratorImpl.SEQUENCE_BITS));
+	}
+
+	@Test
+	public void testClockBackward() {
+		ClockIdGenerator idGen = new ClockIdGenerator(1);
+		idGen.nextId();
+
+		idGen.time -= Const.SNOWFLAKE_MAX_BACKWARD + 1;
+		try {
+			idGen.nextId();
+			Assert.fail();
+		} catch (DBOperationException e) {
+		}
+
+		idGen.time += Const.SNOWFLAKE_MAX_BACKWARD + 1;
+		idGen.nextId();
+	}
+
+	@Test
+	public void testConnectionSuspended() {
+		SnowflakeIdGeneratorImpl idGen = new SnowflakeIdGeneratorImpl(1);
+		idGen.nextId();
+
+		// 连接断开后立即停止生成id
+		idGen.connectionStateChanged(ConnectionState.SUSPENDED);
+		try {
+			idGen.nextId();
+			Assert.fail();
+		} catch (DBOperationException e) {
+		}
+
+		// 重新连接但是还没有确认租约
+		idGen.connectionStateChanged(ConnectionState.RECONNECTED);
+		try {
+			idGen.nextId();
+			Assert.fail();
+		} catch (DBOperationException e) {
+		}
+	}
+
+	@Test
+	public void testShardingBalance() {
+		SnowflakeIdGeneratorImpl idGen = new SnowflakeIdGeneratorImpl(0);
+
+		// 每毫秒只生成一个id时低位也是分散的
+		int[] counts = new int[16];
+		for (int i = 0; i < 200; i++) {
+			counts[(int) (idGen.nextId() % 16)]++;
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+			}
+		}
+		int used = 0;
+		for (int count : counts) {
+			if (count > 0)
+				used++;
+		}
+		Assert.assertTrue("used=" + used, used > 8);
+	}
+
+	@Test(expected = DBOperationException.class)
+	public void testIntId() {
+		new SnowflakeIdGeneratorImpl(0).genClusterUniqueIntId("pinus", "test_entity");
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.pinus4j.api;
 
+import org.pinus4j.task.EnumTaskScanMode;
 import org.pinus4j.task.ITask;
 
 /**
@@ -31,4 +32,29 @@ public abstract class AbstractTask<T> implements ITask<T> {
 		return 0;
 	}
 
+	@Override
+	public int readerThread() {
+		return 0;
+	}
+
+	@Override
+	public int workerThread() {
+		return 0;
+	}
+
+	@Override
+	public int inflightBatch() {
+		return 0;
+	}
+
+	@Override
+	public int checkpointInterval() {
+		return 0;
+	}
+
+	@Override
+	public EnumTaskScanMode scanMode() {
+		return EnumTaskScanMode.PK_RANGE;
+	}
+
 }
@@ -26,6 +26,7 @@ import org.pinus4j.cluster.beans.IShardingKey;
 import org.pinus4j.cluster.enums.EnumDB;
 import org.pinus4j.cluster.enums.EnumDBMasterSlave;
 import org.pinus4j.cluster.enums.EnumSyncAction;
+import org.pinus4j.datalayer.IRecordCursor;
 import org.pinus4j.exceptions.DBOperationException;
 import org.pinus4j.exceptions.LoadConfigException;
 import org.pinus4j.generator.IIdGenerator;
@@ -81,6 +82,22 @@ public interface IShardingStorageClient {
 	 */
 	<T> TaskFuture submit(ITask<T> task, Class<T> clazz, IQuery query);
 
+	/**
+	 * 提交一个可以继续执行的数据处理任务. 处理过程中定期在zookeeper中保存每个分表的遍历位置,
+	 * 任务失败后使用相同的resumeToken再次提交时跳过已经处理完的记录, 任务完成后删除保存的进度.
+	 * 
+	 * @param task
+	 *            处理任务
+	 * @param clazz
+	 *            数据对象的Class
+	 * @param query
+	 *            查询条件, 可以为null
+	 * @param resumeToken
+	 *            任务进度名称, 不能包含"/"
+	 * @return
+	 */
+	<T> TaskFuture submit(ITask<T> task, Class<T> clazz, IQuery query, String resumeToken);
+
 	/**********************************************************
 	 * update相关
 	 *********************************************************/
@@ -195,6 +212,19 @@ public interface IShardingStorageClient {
 	 */
 	Number[] saveBatch(List<? extends Object> entities, IShardingKey<?> shardingKey);
 
+	/**
+	 * 批量保存数据. 数据可以属于不同的分片, 根据每个数据对象的分片字段路由后并行写入各个分片.
+	 * 
+	 * @param entities
+	 *            批量数据对象
+	 * 
+	 * @return 主键
+	 * 
+	 * @throws DBOperationException
+	 *             操作失败
+	 */
+	Number[] saveBatch(List<? extends Object> entities);
+
 	/**
 	 * 更新分库分表数据. 会忽略更新null值和默认值
 	 * 
@@ -380,6 +410,34 @@ public interface IShardingStorageClient {
 
 	List<Map<String, Object>> findBySql(SQL sql, IShardingKey<?> shardingKey, EnumDBMasterSlave masterSlave);
 
+	/**********************************************************
+	 * 流式查询相关
+	 *********************************************************/
+	/**
+	 * 流式查询符合条件的记录. 分片对象依次查询主库中的每个分表, 全局对象查询主库.
+	 * 结果集逐行读取并转换为数据对象, 不使用缓存, 不参与当前事务, 排序和分页只在每个分表内有效.
+	 * 
+	 * @param query
+	 *            查询条件
+	 * @param clazz
+	 *            数据对象的Class
+	 * @return 游标, 使用完必须关闭
+	 */
+	<T> IRecordCursor<T> stream(IQuery query, Class<T> clazz);
+
+	/**
+	 * 流式查询一个分表中符合条件的记录.
+	 * 
+	 * @param query
+	 *            查询条件
+	 * @param shardingKey
+	 *            路由因子
+	 * @param clazz
+	 *            数据对象的Class
+	 * @return 游标, 使用完必须关闭
+	 */
+	<T> IRecordCursor<T> stream(IQuery query, IShardingKey<?> shardingKey, Class<T> clazz);
+
 	/**********************************************************
 	 * other相关
 	 *********************************************************/
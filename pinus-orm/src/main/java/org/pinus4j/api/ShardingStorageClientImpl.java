@@ -16,6 +16,7 @@
 
 package org.pinus4j.api;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -33,9 +34,12 @@ import org.pinus4j.cluster.enums.EnumDB;
 import org.pinus4j.cluster.enums.EnumDBMasterSlave;
 import org.pinus4j.cluster.enums.EnumSyncAction;
 import org.pinus4j.cluster.impl.DefaultDBCluster;
+import org.pinus4j.cluster.resources.IDBResource;
 import org.pinus4j.constant.Const;
 import org.pinus4j.datalayer.IDataLayerBuilder;
+import org.pinus4j.datalayer.IRecordCursor;
 import org.pinus4j.datalayer.JdbcDataLayerBuilder;
+import org.pinus4j.datalayer.iterator.StreamRecordCursor;
 import org.pinus4j.datalayer.query.IGlobalQuery;
 import org.pinus4j.datalayer.query.IShardingQuery;
 import org.pinus4j.datalayer.update.IGlobalUpdate;
@@ -201,6 +205,12 @@ public class ShardingStorageClientImpl implements IShardingStorageClient {
 		return taskExecutor.execute(task, query);
 	}
 
+	@Override
+	public <T> TaskFuture submit(ITask<T> task, Class<T> clazz, IQuery query, String resumeToken) {
+		TaskExecutor<T> taskExecutor = new TaskExecutor<T>(clazz, this.dbCluster);
+		return taskExecutor.execute(task, query, this.dbCluster.createCheckpointStore(resumeToken));
+	}
+
 	// ////////////////////////////////////////////////////////
 	// update相关
 	// ////////////////////////////////////////////////////////
@@ -301,6 +311,16 @@ public class ShardingStorageClientImpl implements IShardingStorageClient {
 		return this.shardingUpdater.saveBatch(entities, shardingKey);
 	}
 
+	@Override
+	public Number[] saveBatch(List<? extends Object> entities) {
+		CheckUtil.checkEntityList(entities);
+		for (Object entity : entities) {
+			CheckUtil.checkShardingEntity(entity);
+		}
+
+		return this.shardingUpdater.saveBatch(entities);
+	}
+
 	@Override
 	public void updateBatch(List<? extends Object> entities, IShardingKey<?> shardingKey) {
 		CheckUtil.checkEntityList(entities);
@@ -747,6 +767,43 @@ public class ShardingStorageClientImpl implements IShardingStorageClient {
 		return this.shardingQuery.findBySql(sql, shardingKey, masterSlave);
 	}
 
+	@Override
+	public <T> IRecordCursor<T> stream(IQuery query, Class<T> clazz) {
+		CheckUtil.checkQuery(query);
+		CheckUtil.checkClass(clazz);
+
+		List<IDBResource> dbResources;
+		try {
+			if (ReflectUtil.isShardingEntity(clazz)) {
+				dbResources = this.dbCluster.getAllMasterShardingDBResource(clazz);
+			} else {
+				dbResources = new ArrayList<IDBResource>(1);
+				dbResources.add(this.dbCluster.getMasterGlobalDBResource(ReflectUtil.getClusterName(clazz),
+						ReflectUtil.getTableName(clazz)));
+			}
+		} catch (Exception e) {
+			throw new DBOperationException(e);
+		}
+
+		return new StreamRecordCursor<T>(dbResources, clazz, query);
+	}
+
+	@Override
+	public <T> IRecordCursor<T> stream(IQuery query, IShardingKey<?> shardingKey, Class<T> clazz) {
+		CheckUtil.checkQuery(query);
+		CheckUtil.checkShardingKey(shardingKey);
+		CheckUtil.checkClass(clazz);
+
+		List<IDBResource> dbResources = new ArrayList<IDBResource>(1);
+		try {
+			dbResources.add(this.dbCluster.selectDBResourceFromMaster(ReflectUtil.getTableName(clazz), shardingKey));
+		} catch (DBClusterException e) {
+			throw new DBOperationException(e);
+		}
+
+		return new StreamRecordCursor<T>(dbResources, clazz, query);
+	}
+
 	@Override
 	public IDBCluster getDBCluster() {
 		return this.dbCluster;
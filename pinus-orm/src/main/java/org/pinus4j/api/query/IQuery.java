@@ -16,6 +16,8 @@
 
 package org.pinus4j.api.query;
 
+import java.util.List;
+
 /**
  * 查询对象.
  * 
@@ -37,6 +39,13 @@ public interface IQuery {
 	 */
 	public int getLimit();
 
+	/**
+	 * 获取排序条件.
+	 * 
+	 * @return 排序条件, 没有排序条件时返回空列表
+	 */
+	public List<OrderBy> getOrderList();
+
 	/**
 	 * 判断是否有查询字段.
 	 */
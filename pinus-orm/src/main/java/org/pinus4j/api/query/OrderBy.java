@@ -0,0 +1,49 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.api.query;
+
+/**
+ * 排序条件.
+ * 
+ * @author duanbn
+ */
+public class OrderBy {
+
+	/**
+	 * 排序字段
+	 */
+	private String field;
+
+	/**
+	 * 升序降序
+	 */
+	private Order order;
+
+	public OrderBy(String field, Order order) {
+		this.field = field;
+		this.order = order;
+	}
+
+	public String getField() {
+		return field;
+	}
+
+	public Order getOrder() {
+		return order;
+	}
+
+}
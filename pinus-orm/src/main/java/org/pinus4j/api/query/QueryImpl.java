@@ -62,6 +62,11 @@ public class QueryImpl implements IQuery, Cloneable {
 		return this.limit;
 	}
 
+	@Override
+	public List<OrderBy> getOrderList() {
+		return this.orderList;
+	}
+
 	@Override
 	public boolean hasQueryFields() {
 		return this.fields != null && this.fields.length > 0;
@@ -200,26 +205,4 @@ public class QueryImpl implements IQuery, Cloneable {
 		this.limit = limit;
 	}
 
-	/**
-	 * 排序条件.
-	 */
-	private class OrderBy {
-		private String field;
-		private Order order;
-
-		public OrderBy(String field, Order order) {
-			this.field = field;
-			this.order = order;
-		}
-
-		public String getField() {
-			return field;
-		}
-
-		public Order getOrder() {
-			return order;
-		}
-
-	}
-
 }
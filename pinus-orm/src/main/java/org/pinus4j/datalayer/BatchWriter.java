@@ -0,0 +1,335 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.datalayer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.pinus4j.constant.Const;
+import org.pinus4j.utils.JdbcUtil;
+import org.pinus4j.utils.ReflectUtil;
+
+/**
+ * 批量写入. 将一批数据对象改写为少量的多行语句, 每条语句的估算大小不超过maxPacketSize.
+ * <ul>
+ * <li>插入: INSERT INTO t(a,b) VALUES (?,?),(?,?)...</li>
+ * <li>更新: UPDATE t SET a=CASE pk WHEN ? THEN ? ... END,... WHERE pk IN (?,...)</li>
+ * </ul>
+ * 默认值字段不会被写入, 因此先按需要写入的字段分组, 同一组的数据才能合并到一条语句中.
+ * 更新没有使用INSERT ... ON DUPLICATE KEY UPDATE, 因为它会把已经被删除的记录重新插入, 与逐条UPDATE的语义不一致.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class BatchWriter {
+
+	/**
+	 * 单条语句允许的最大参数个数(MySQL预编译语句的限制).
+	 */
+	private static final int MAX_PARAM_NUM = 65535;
+
+	/**
+	 * 非字符串参数的估算长度.
+	 */
+	private static final int DEFAULT_VALUE_SIZE = 24;
+
+	private static final BatchWriter defaultInstance = new BatchWriter(_getDefaultMaxPacketSize());
+
+	/**
+	 * 单条语句的最大字节数.
+	 */
+	private final int maxPacketSize;
+
+	public BatchWriter(int maxPacketSize) {
+		if (maxPacketSize <= 0) {
+			throw new IllegalArgumentException("maxPacketSize必须大于0");
+		}
+		this.maxPacketSize = maxPacketSize;
+	}
+
+	/**
+	 * 获取默认的批量写入. 最大语句长度可以通过-Dstorage.batch.maxpacket设置.
+	 */
+	public static BatchWriter getDefault() {
+		return defaultInstance;
+	}
+
+	/**
+	 * 批量插入.
+	 *
+	 * @param conn
+	 *            数据库连接
+	 * @param entities
+	 *            数据对象
+	 * @param tableIndex
+	 *            分表下标. 当-1时忽略下标
+	 */
+	public void insert(Connection conn, List<? extends Object> entities, int tableIndex) throws SQLException {
+		_execute(conn, buildInsert(entities, tableIndex));
+	}
+
+	/**
+	 * 批量更新.
+	 *
+	 * @param conn
+	 *            数据库连接
+	 * @param entities
+	 *            数据对象
+	 * @param tableIndex
+	 *            分表下标. 当-1时忽略下标
+	 */
+	public void update(Connection conn, List<? extends Object> entities, int tableIndex) throws SQLException {
+		_execute(conn, buildUpdate(entities, tableIndex));
+	}
+
+	/**
+	 * 创建批量插入语句.
+	 */
+	public List<BatchStatement> buildInsert(List<? extends Object> entities, int tableIndex) throws SQLException {
+		String tableName = ReflectUtil.getTableName(entities.get(0), tableIndex);
+
+		List<BatchStatement> statements = new ArrayList<BatchStatement>();
+		for (List<Map<String, Object>> rows : _groupByColumns(entities, false).values()) {
+			Set<String> columns = rows.get(0).keySet();
+
+			StringBuilder head = new StringBuilder("INSERT INTO ").append(tableName).append("(");
+			StringBuilder placeholder = new StringBuilder("(");
+			for (String column : columns) {
+				head.append(column).append(",");
+				placeholder.append("?,");
+			}
+			head.deleteCharAt(head.length() - 1).append(") VALUES ");
+			placeholder.setCharAt(placeholder.length() - 1, ')');
+
+			int headSize = head.length();
+			int rowSqlSize = placeholder.length() + 1;
+
+			List<Object> params = new ArrayList<Object>();
+			int rowNum = 0, size = headSize;
+			for (Map<String, Object> row : rows) {
+				int rowSize = rowSqlSize + _estimate(row.values());
+				if (rowNum > 0
+						&& (size + rowSize > maxPacketSize || params.size() + columns.size() > MAX_PARAM_NUM)) {
+					statements.add(_buildInsertStatement(head, placeholder, rowNum, params));
+					params = new ArrayList<Object>();
+					rowNum = 0;
+					size = headSize;
+				}
+				params.addAll(row.values());
+				rowNum++;
+				size += rowSize;
+			}
+			statements.add(_buildInsertStatement(head, placeholder, rowNum, params));
+		}
+
+		return statements;
+	}
+
+	/**
+	 * 创建批量更新语句.
+	 */
+	public List<BatchStatement> buildUpdate(List<? extends Object> entities, int tableIndex) throws SQLException {
+		String tableName = ReflectUtil.getTableName(entities.get(0), tableIndex);
+		String pkName = ReflectUtil.getPkName(entities.get(0).getClass());
+
+		List<BatchStatement> statements = new ArrayList<BatchStatement>();
+		for (List<Map<String, Object>> rows : _groupByColumns(entities, true).values()) {
+			List<String> columns = new ArrayList<String>(rows.get(0).keySet());
+			columns.remove(pkName);
+			if (columns.isEmpty()) {
+				// 除主键外没有需要更新的字段
+				continue;
+			}
+
+			int headSize = tableName.length() + 32 + columns.size() * (pkName.length() + 32);
+			int rowSqlSize = columns.size() * 12 + 2;
+
+			List<Map<String, Object>> chunk = new ArrayList<Map<String, Object>>();
+			Set<Object> pks = new HashSet<Object>();
+			int size = headSize;
+			for (Map<String, Object> row : rows) {
+				Object pk = row.get(pkName);
+				int rowSize = rowSqlSize + _estimate(row.values()) + columns.size() * _estimate(pk);
+				// 同一条语句中主键重复时只有第一个WHEN生效, 因此另起一条语句保证后面的更新覆盖前面的
+				if (!chunk.isEmpty()
+						&& (size + rowSize > maxPacketSize
+								|| (chunk.size() + 1) * (columns.size() * 2 + 1) > MAX_PARAM_NUM || pks.contains(pk))) {
+					statements.add(_buildUpdateStatement(tableName, pkName, columns, chunk));
+					chunk = new ArrayList<Map<String, Object>>();
+					pks.clear();
+					size = headSize;
+				}
+				chunk.add(row);
+				pks.add(pk);
+				size += rowSize;
+			}
+			statements.add(_buildUpdateStatement(tableName, pkName, columns, chunk));
+		}
+
+		return statements;
+	}
+
+	private BatchStatement _buildInsertStatement(StringBuilder head, StringBuilder placeholder, int rowNum,
+			List<Object> params) {
+		StringBuilder SQL = new StringBuilder(head.length() + rowNum * (placeholder.length() + 1));
+		SQL.append(head);
+		for (int i = 0; i < rowNum; i++) {
+			if (i > 0) {
+				SQL.append(",");
+			}
+			SQL.append(placeholder);
+		}
+		return new BatchStatement(SQL.toString(), params);
+	}
+
+	private BatchStatement _buildUpdateStatement(String tableName, String pkName, List<String> columns,
+			List<Map<String, Object>> rows) {
+		List<Object> params = new ArrayList<Object>(rows.size() * (columns.size() * 2 + 1));
+
+		StringBuilder SQL = new StringBuilder("UPDATE ").append(tableName).append(" SET ");
+		for (int i = 0; i < columns.size(); i++) {
+			String column = columns.get(i);
+			if (i > 0) {
+				SQL.append(",");
+			}
+			SQL.append(column).append("=CASE ").append(pkName);
+			for (Map<String, Object> row : rows) {
+				SQL.append(" WHEN ? THEN ?");
+				params.add(row.get(pkName));
+				params.add(row.get(column));
+			}
+			SQL.append(" END");
+		}
+		SQL.append(" WHERE ").append(pkName).append(" IN (");
+		for (int i = 0; i < rows.size(); i++) {
+			SQL.append(i > 0 ? ",?" : "?");
+			params.add(rows.get(i).get(pkName));
+		}
+		SQL.append(")");
+
+		return new BatchStatement(SQL.toString(), params);
+	}
+
+	/**
+	 * 按需要写入的字段分组, 保持数据对象原有的顺序.
+	 */
+	private Map<String, List<Map<String, Object>>> _groupByColumns(List<? extends Object> entities,
+			boolean isFilteUpdateTime) throws SQLException {
+		Map<String, List<Map<String, Object>>> groups = new LinkedHashMap<String, List<Map<String, Object>>>();
+		for (Object entity : entities) {
+			Map<String, Object> entityProperty;
+			try {
+				entityProperty = ReflectUtil.describe(entity, true, isFilteUpdateTime);
+			} catch (Exception e) {
+				throw new SQLException("解析实体对象失败", e);
+			}
+
+			StringBuilder key = new StringBuilder();
+			for (String column : entityProperty.keySet()) {
+				key.append(column).append(",");
+			}
+			List<Map<String, Object>> rows = groups.get(key.toString());
+			if (rows == null) {
+				rows = new ArrayList<Map<String, Object>>();
+				groups.put(key.toString(), rows);
+			}
+			rows.add(entityProperty);
+		}
+		return groups;
+	}
+
+	private void _execute(Connection conn, List<BatchStatement> statements) throws SQLException {
+		for (BatchStatement statement : statements) {
+			SQLBuilder.debugSQL(statement.getSql());
+
+			PreparedStatement ps = null;
+			try {
+				ps = ScatterGatherExecutor.track(conn.prepareStatement(statement.getSql()));
+				List<Object> params = statement.getParams();
+				for (int i = 0; i < params.size(); i++) {
+					SQLBuilder.setParam(ps, i + 1, params.get(i));
+				}
+				ps.executeUpdate();
+			} finally {
+				ScatterGatherExecutor.untrack(ps);
+				JdbcUtil.close(ps);
+			}
+		}
+	}
+
+	/**
+	 * 估算参数在语句中占用的字节数. 字符串按utf8最坏情况并考虑转义.
+	 */
+	private static int _estimate(Iterable<Object> values) {
+		int size = 0;
+		for (Object value : values) {
+			size += _estimate(value);
+		}
+		return size;
+	}
+
+	private static int _estimate(Object value) {
+		if (value instanceof String) {
+			return ((String) value).length() * 3 + 2;
+		}
+		if (value instanceof byte[]) {
+			return ((byte[]) value).length * 2 + 3;
+		}
+		return DEFAULT_VALUE_SIZE;
+	}
+
+	private static int _getDefaultMaxPacketSize() {
+		String value = System.getProperty(Const.SYSTEM_PROPERTY_BATCH_MAXPACKET);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				SQLBuilder.LOG.warn("错误的" + Const.SYSTEM_PROPERTY_BATCH_MAXPACKET + "=" + value + ", 使用默认值");
+			}
+		}
+		return Const.BATCH_MAX_PACKET_SIZE;
+	}
+
+	/**
+	 * 一条批量语句.
+	 */
+	public static class BatchStatement {
+		private final String sql;
+		private final List<Object> params;
+
+		BatchStatement(String sql, List<Object> params) {
+			this.sql = sql;
+			this.params = params;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public List<Object> getParams() {
+			return params;
+		}
+	}
+
+}
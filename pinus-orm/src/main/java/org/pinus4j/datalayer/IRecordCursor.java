@@ -0,0 +1,21 @@
+package org.pinus4j.datalayer;
+
+import java.util.Iterator;
+
+/**
+ * 流式查询游标. 结果集逐行读取并转换为数据对象, 内存中只保留当前行.
+ *
+ * 游标持有数据库连接, 使用完必须调用{@link #close()}. 遍历到结尾时自动关闭.
+ *
+ * @author duanbn
+ *
+ * @param <E>
+ */
+public interface IRecordCursor<E> extends Iterator<E> {
+
+	/**
+	 * 关闭游标并释放数据库连接, 可以重复调用.
+	 */
+	public void close();
+
+}
@@ -42,4 +42,18 @@ public interface IRecordIterator<E> extends Iterator<E> {
 	 */
 	public void setStep(int step);
 
+	/**
+	 * 当前遍历到的位置, 可以用于保存遍历进度.
+	 * 
+	 * @return
+	 */
+	public long getLatestId();
+
+	/**
+	 * 从{@link #getLatestId()}返回的位置继续遍历.
+	 * 
+	 * @param latestId
+	 */
+	public void setLatestId(long latestId);
+
 }
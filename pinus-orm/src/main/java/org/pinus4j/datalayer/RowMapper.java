@@ -0,0 +1,293 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.datalayer;
+
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.pinus4j.constant.Const;
+import org.pinus4j.utils.ReflectUtil;
+
+/**
+ * 结果集到数据对象的映射器. 每个(数据对象, 结果集列)组合只解析一次, 之后的每一行按列下标直接调用类型对应的rs.getXxx方法给字段赋值,
+ * 基本类型字段不会装箱, 结果集中多出的列在解析时就被忽略.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class RowMapper<T> {
+
+	//
+	// 字段类型
+	//
+	private static final int TYPE_OBJECT = 0;
+	private static final int TYPE_BOOLEAN = 1;
+	private static final int TYPE_BOOLEAN_OBJ = 2;
+	private static final int TYPE_BYTE = 3;
+	private static final int TYPE_BYTE_OBJ = 4;
+	private static final int TYPE_CHAR = 5;
+	private static final int TYPE_CHAR_OBJ = 6;
+	private static final int TYPE_SHORT = 7;
+	private static final int TYPE_SHORT_OBJ = 8;
+	private static final int TYPE_INT = 9;
+	private static final int TYPE_INT_OBJ = 10;
+	private static final int TYPE_LONG = 11;
+	private static final int TYPE_LONG_OBJ = 12;
+	private static final int TYPE_FLOAT = 13;
+	private static final int TYPE_FLOAT_OBJ = 14;
+	private static final int TYPE_DOUBLE = 15;
+	private static final int TYPE_DOUBLE_OBJ = 16;
+	private static final int TYPE_STRING = 17;
+
+	/**
+	 * 映射器缓存. key: 类名|列名,列名...
+	 */
+	private static final Map<String, RowMapper<?>> _mapperCache = new ConcurrentHashMap<String, RowMapper<?>>();
+
+	private final Class<T> clazz;
+
+	/**
+	 * 需要赋值的字段, 与columnIndexes和types一一对应.
+	 */
+	private final Field[] fields;
+	private final int[] columnIndexes;
+	private final int[] types;
+
+	/**
+	 * 主键所在的列, 结果集中没有主键时为-1.
+	 */
+	private final int pkColumnIndex;
+
+	private RowMapper(Class<T> clazz, ResultSetMetaData rsmd) throws SQLException {
+		this.clazz = clazz;
+
+		String pkName = ReflectUtil.getPkName(clazz);
+		int pkIndex = -1;
+
+		List<Field> fieldList = new ArrayList<Field>();
+		List<Integer> indexList = new ArrayList<Integer>();
+		for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+			String columnName = rsmd.getColumnName(i);
+			if (columnName.equals(pkName)) {
+				pkIndex = i;
+			}
+
+			Field f;
+			try {
+				f = clazz.getDeclaredField(columnName);
+			} catch (NoSuchFieldException e) {
+				continue;
+			}
+			f.setAccessible(true);
+			fieldList.add(f);
+			indexList.add(i);
+		}
+
+		this.fields = fieldList.toArray(new Field[fieldList.size()]);
+		this.columnIndexes = new int[indexList.size()];
+		this.types = new int[indexList.size()];
+		for (int i = 0; i < this.fields.length; i++) {
+			this.columnIndexes[i] = indexList.get(i);
+			this.types[i] = _getType(this.fields[i].getType());
+		}
+		this.pkColumnIndex = pkIndex;
+	}
+
+	/**
+	 * 获取数据对象和结果集对应的映射器.
+	 *
+	 * @param clazz
+	 *            数据对象
+	 * @param rsmd
+	 *            结果集元数据
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> RowMapper<T> getMapper(Class<T> clazz, ResultSetMetaData rsmd) throws SQLException {
+		StringBuilder key = new StringBuilder(clazz.getName()).append("|");
+		for (int i = 1; i <= rsmd.getColumnCount(); i++) {
+			key.append(rsmd.getColumnName(i)).append(",");
+		}
+
+		RowMapper<T> mapper = (RowMapper<T>) _mapperCache.get(key.toString());
+		if (mapper == null) {
+			mapper = new RowMapper<T>(clazz, rsmd);
+			_mapperCache.put(key.toString(), mapper);
+		}
+		return mapper;
+	}
+
+	/**
+	 * 将结果集的剩余行全部转换为数据对象.
+	 */
+	public List<T> mapAll(ResultSet rs) throws SQLException {
+		List<T> list = new ArrayList<T>();
+		while (rs.next()) {
+			list.add(mapRow(rs));
+		}
+		return list;
+	}
+
+	/**
+	 * 将结果集的剩余行全部转换为数据对象.
+	 *
+	 * @return {pkValue, Object}
+	 */
+	public Map<Number, T> mapAllAsMap(ResultSet rs) throws SQLException {
+		if (this.pkColumnIndex == -1) {
+			throw new SQLException("结果集中没有主键列, class=" + clazz.getName());
+		}
+
+		Map<Number, T> map = new HashMap<Number, T>();
+		while (rs.next()) {
+			map.put((Number) rs.getObject(this.pkColumnIndex), mapRow(rs));
+		}
+		return map;
+	}
+
+	/**
+	 * 转换结果集的当前行.
+	 */
+	public T mapRow(ResultSet rs) throws SQLException {
+		try {
+			T one = clazz.newInstance();
+			for (int i = 0; i < fields.length; i++) {
+				_setValue(rs, one, fields[i], columnIndexes[i], types[i]);
+			}
+			return one;
+		} catch (SQLException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new SQLException(e);
+		}
+	}
+
+	private static void _setValue(ResultSet rs, Object obj, Field f, int i, int type) throws SQLException,
+			IllegalAccessException {
+		String s;
+		switch (type) {
+		case TYPE_BOOLEAN:
+			s = rs.getString(i);
+			f.setBoolean(obj, Const.TRUE.equals(s));
+			break;
+		case TYPE_BOOLEAN_OBJ:
+			s = rs.getString(i);
+			f.set(obj, s == null ? null : Boolean.valueOf(Const.TRUE.equals(s)));
+			break;
+		case TYPE_BYTE:
+			f.setByte(obj, rs.getByte(i));
+			break;
+		case TYPE_BYTE_OBJ:
+			byte b = rs.getByte(i);
+			f.set(obj, rs.wasNull() ? null : Byte.valueOf(b));
+			break;
+		case TYPE_CHAR:
+			s = rs.getString(i);
+			f.setChar(obj, s != null && s.length() > 0 ? s.charAt(0) : '\u0000');
+			break;
+		case TYPE_CHAR_OBJ:
+			s = rs.getString(i);
+			f.set(obj, s == null ? null : Character.valueOf(s.length() > 0 ? s.charAt(0) : '\u0000'));
+			break;
+		case TYPE_SHORT:
+			f.setShort(obj, rs.getShort(i));
+			break;
+		case TYPE_SHORT_OBJ:
+			short sh = rs.getShort(i);
+			f.set(obj, rs.wasNull() ? null : Short.valueOf(sh));
+			break;
+		case TYPE_INT:
+			f.setInt(obj, rs.getInt(i));
+			break;
+		case TYPE_INT_OBJ:
+			int in = rs.getInt(i);
+			f.set(obj, rs.wasNull() ? null : Integer.valueOf(in));
+			break;
+		case TYPE_LONG:
+			f.setLong(obj, rs.getLong(i));
+			break;
+		case TYPE_LONG_OBJ:
+			long l = rs.getLong(i);
+			f.set(obj, rs.wasNull() ? null : Long.valueOf(l));
+			break;
+		case TYPE_FLOAT:
+			f.setFloat(obj, rs.getFloat(i));
+			break;
+		case TYPE_FLOAT_OBJ:
+			float fl = rs.getFloat(i);
+			f.set(obj, rs.wasNull() ? null : Float.valueOf(fl));
+			break;
+		case TYPE_DOUBLE:
+			f.setDouble(obj, rs.getDouble(i));
+			break;
+		case TYPE_DOUBLE_OBJ:
+			double d = rs.getDouble(i);
+			f.set(obj, rs.wasNull() ? null : Double.valueOf(d));
+			break;
+		case TYPE_STRING:
+			f.set(obj, rs.getString(i));
+			break;
+		default:
+			f.set(obj, rs.getObject(i));
+		}
+	}
+
+	private static int _getType(Class<?> type) {
+		if (type == Boolean.TYPE)
+			return TYPE_BOOLEAN;
+		if (type == Boolean.class)
+			return TYPE_BOOLEAN_OBJ;
+		if (type == Byte.TYPE)
+			return TYPE_BYTE;
+		if (type == Byte.class)
+			return TYPE_BYTE_OBJ;
+		if (type == Character.TYPE)
+			return TYPE_CHAR;
+		if (type == Character.class)
+			return TYPE_CHAR_OBJ;
+		if (type == Short.TYPE)
+			return TYPE_SHORT;
+		if (type == Short.class)
+			return TYPE_SHORT_OBJ;
+		if (type == Integer.TYPE)
+			return TYPE_INT;
+		if (type == Integer.class)
+			return TYPE_INT_OBJ;
+		if (type == Long.TYPE)
+			return TYPE_LONG;
+		if (type == Long.class)
+			return TYPE_LONG_OBJ;
+		if (type == Float.TYPE)
+			return TYPE_FLOAT;
+		if (type == Float.class)
+			return TYPE_FLOAT_OBJ;
+		if (type == Double.TYPE)
+			return TYPE_DOUBLE;
+		if (type == Double.class)
+			return TYPE_DOUBLE_OBJ;
+		if (type == String.class)
+			return TYPE_STRING;
+		return TYPE_OBJECT;
+	}
+
+}
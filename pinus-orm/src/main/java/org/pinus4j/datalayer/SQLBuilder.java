@@ -22,19 +22,17 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.pinus4j.api.SQL;
 import org.pinus4j.api.query.IQuery;
-import org.pinus4j.constant.Const;
 import org.pinus4j.utils.ReflectUtil;
 import org.pinus4j.utils.StringUtils;
 import org.slf4j.Logger;
@@ -54,6 +52,16 @@ public class SQLBuilder {
 	 */
 	private static final Map<String, String> _selectCountCache = new ConcurrentHashMap<String, String>();
 
+	/**
+	 * select by pk语句缓存.
+	 */
+	private static final Map<String, String> _selectByPkCache = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * select by pks语句缓存.
+	 */
+	private static final Map<String, String> _selectByPksCache = new ConcurrentHashMap<String, String>();
+
 	private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
 	/**
@@ -253,32 +261,7 @@ public class SQLBuilder {
 	 * @return 数据对象列表
 	 */
 	public static <T> List<T> buildResultObject(Class<T> clazz, ResultSet rs) throws SQLException {
-		List<T> list = new ArrayList<T>();
-
-		ResultSetMetaData rsmd = rs.getMetaData();
-		T one = null;
-		while (rs.next()) {
-			try {
-				one = (T) clazz.newInstance();
-				String fieldName = null;
-				Field f = null;
-				Object value = null;
-				for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-					fieldName = rsmd.getColumnName(i);
-					try {
-						f = clazz.getDeclaredField(fieldName);
-						value = _getRsValue(rs, f, i);
-						ReflectUtil.setProperty(one, fieldName, value);
-					} catch (NoSuchFieldException e) {
-					}
-				}
-				list.add(one);
-			} catch (Exception e) {
-				throw new SQLException(e);
-			}
-		}
-
-		return list;
+		return RowMapper.getMapper(clazz, rs.getMetaData()).mapAll(rs);
 	}
 
 	/**
@@ -292,77 +275,37 @@ public class SQLBuilder {
 	 * @throws SQLException
 	 */
 	public static <T> Map<Number, T> buildResultObjectAsMap(Class<T> clazz, ResultSet rs) throws SQLException {
-		Map<Number, T> map = new HashMap<Number, T>();
-
-		ResultSetMetaData rsmd = rs.getMetaData();
-		T one = null;
-		while (rs.next()) {
-			try {
-				one = (T) clazz.newInstance();
-				String fieldName = null;
-				String pkName = ReflectUtil.getPkName(clazz);
-				Field f = null;
-				Object value = null;
-				Number pkValue = null;
-
-				for (int i = 1; i <= rsmd.getColumnCount(); i++) {
-					fieldName = rsmd.getColumnName(i);
-					f = clazz.getDeclaredField(fieldName);
-					pkValue = (Number) rs.getObject(pkName);
-					value = _getRsValue(rs, f, i);
-					ReflectUtil.setProperty(one, fieldName, value);
-				}
-
-				map.put(pkValue, one);
-			} catch (Exception e) {
-				throw new SQLException(e);
-			}
-		}
-
-		return map;
-	}
-
-	private static Object _getRsValue(ResultSet rs, Field f, int i) throws SQLException {
-		Object value = rs.getObject(i);
-		if (f.getType() == Boolean.TYPE || f.getType() == Boolean.class) {
-			value = rs.getString(i).equals(Const.TRUE) ? true : false;
-		} else if (f.getType() == Byte.TYPE || f.getType() == Byte.class) {
-			value = rs.getByte(i);
-		} else if (f.getType() == Character.TYPE || f.getType() == Character.class) {
-			String s = rs.getString(i);
-			if (s.length() > 0)
-				value = rs.getString(i).charAt(0);
-			else
-				value = new Character('\u0000');
-		} else if (f.getType() == Short.TYPE || f.getType() == Short.class) {
-			value = rs.getShort(i);
-		}
-
-		return value;
+		return RowMapper.getMapper(clazz, rs.getMetaData()).mapAllAsMap(rs);
 	}
 
 	/**
-	 * 拼装select sql. SELECT field, field FROM tableName WHERE pk in (?, ?, ?)
+	 * 拼装select sql. SELECT field, field FROM tableName WHERE pk in (?, ?, ?) order by field(pk, ?, ?, ?)
+	 * 主键通过{@link #setPksParams(PreparedStatement, Number[])}绑定, 相同主键个数的sql文本只生成一次.
 	 * 
 	 * @param clazz
 	 *            数据对象
 	 * @param tableIndex
 	 *            表下标
-	 * @param pks
-	 *            主键
-	 * @param query
-	 *            保证in顺序
+	 * @param pkNum
+	 *            主键个数
 	 * 
 	 * @return sql语句
 	 */
-	public static String buildSelectByPks(Class<?> clazz, int tableIndex, Number[] pks) {
+	public static String buildSelectByPks(Class<?> clazz, int tableIndex, int pkNum) {
+		String cacheKey = clazz.getName() + tableIndex + "#" + pkNum;
+		String sql = _selectByPksCache.get(cacheKey);
+		if (sql != null) {
+			debugSQL(sql);
+			return sql;
+		}
+
 		Field[] fields = ReflectUtil.getFields(clazz);
 		String tableName = ReflectUtil.getTableName(clazz, tableIndex);
 		String pkName = ReflectUtil.getPkName(clazz);
 
 		StringBuilder sqlInValue = new StringBuilder();
-		for (Number pk : pks) {
-			sqlInValue.append(pk).append(",");
+		for (int i = 0; i < pkNum; i++) {
+			sqlInValue.append("?,");
 		}
 		sqlInValue.deleteCharAt(sqlInValue.length() - 1);
 
@@ -378,16 +321,27 @@ public class SQLBuilder {
 		SQL.append(pkName).append(",").append(sqlInValue.toString());
 		SQL.append(")");
 
-		debugSQL(SQL.toString());
+		sql = SQL.toString();
+		debugSQL(sql);
 
-		return SQL.toString();
+		_selectByPksCache.put(cacheKey, sql);
+
+		return sql;
+	}
+
+	/**
+	 * 绑定{@link #buildSelectByPks(Class, int, int)}的参数.
+	 */
+	public static void setPksParams(PreparedStatement ps, Number[] pks) throws SQLException {
+		for (int i = 0; i < pks.length; i++) {
+			ps.setLong(i + 1, pks[i].longValue());
+			ps.setLong(pks.length + i + 1, pks[i].longValue());
+		}
 	}
 
 	/**
 	 * 拼装select sql. SELECT field... FROM tableName WHERE pk = ?
 	 * 
-	 * @param pk
-	 *            主键
 	 * @param clazz
 	 *            数据对象class
 	 * @param tableIndex
@@ -395,7 +349,14 @@ public class SQLBuilder {
 	 * 
 	 * @return sql语句
 	 */
-	public static String buildSelectByPk(Number pk, Class<?> clazz, int tableIndex) throws SQLException {
+	public static String buildSelectByPk(Class<?> clazz, int tableIndex) {
+		String cacheKey = clazz.getName() + tableIndex;
+		String sql = _selectByPkCache.get(cacheKey);
+		if (sql != null) {
+			debugSQL(sql);
+			return sql;
+		}
+
 		Field[] fields = ReflectUtil.getFields(clazz);
 		String tableName = ReflectUtil.getTableName(clazz, tableIndex);
 		String pkName = ReflectUtil.getPkName(clazz);
@@ -406,11 +367,14 @@ public class SQLBuilder {
 		}
 		SQL.deleteCharAt(SQL.length() - 1);
 		SQL.append(" FROM ").append(tableName);
-		SQL.append(" WHERE ").append(pkName).append("=").append(pk.longValue());
+		SQL.append(" WHERE ").append(pkName).append("=?");
 
-		debugSQL(SQL.toString());
+		sql = SQL.toString();
+		debugSQL(sql);
 
-		return SQL.toString();
+		_selectByPkCache.put(cacheKey, sql);
+
+		return sql;
 	}
 
 	/**
@@ -437,115 +401,19 @@ public class SQLBuilder {
 	}
 
 	/**
-	 * 获取update PreparedStatement.
-	 * 
-	 * @param conn
-	 *            数据库连接
-	 * @param entities
-	 *            数据对象
-	 * @param tableIndex
-	 *            分表下标
-	 * 
-	 * @return PreparedStatement
-	 * @throws SQLException
-	 */
-	public static Statement getUpdate(Connection conn, List<? extends Object> entities, int tableIndex)
-			throws SQLException {
-		Object entity = entities.get(0);
-		Class<?> entityClass = entity.getClass();
-
-		// 获取表名.
-		String tableName = ReflectUtil.getTableName(entity, tableIndex);
-		// 获取主键名.
-		String pkName = ReflectUtil.getPkName(entityClass);
-
-		// 批量添加
-		Statement st = conn.createStatement();
-		Map<String, Object> entityProperty = null;
-		for (Object dbEntity : entities) {
-			try {
-				entityProperty = ReflectUtil.describeWithoutUpdateTime(dbEntity, true);
-			} catch (Exception e) {
-				throw new SQLException("解析实体对象失败", e);
-			}
-			// 将主键放在最后一个参数
-			Object pkValue = entityProperty.get(pkName);
-			entityProperty.remove(pkName);
-
-			// 生成update语句.
-			Set<Map.Entry<String, Object>> propertyEntrySet = entityProperty.entrySet();
-			StringBuilder SQL = new StringBuilder("UPDATE " + tableName + " SET ");
-			Object value = null;
-			for (Map.Entry<String, Object> propertyEntry : propertyEntrySet) {
-				value = propertyEntry.getValue();
-				SQL.append(propertyEntry.getKey()).append("=");
-				SQL.append(formatValue(value));
-				SQL.append(",");
-			}
-			SQL.deleteCharAt(SQL.length() - 1);
-			SQL.append(" WHERE ").append(pkName).append("=").append(pkValue);
-
-			st.addBatch(SQL.toString());
-
-			debugSQL(SQL.toString());
-		}
-
-		return st;
-	}
-
-	/**
-	 * 根据指定对象创建一个SQL语句.
-	 * 
-	 * @param conn
-	 *            数据库连接引用
-	 * @param entities
-	 *            数据对象
-	 * @param tableIndex
-	 *            分表下标
-	 * 
-	 * @return SQL语句
-	 * 
-	 * @throws 操作失败
+	 * 绑定参数. 与{@link #formatValue(Object)}的转换规则保持一致.
 	 */
-	public static Statement getInsert(Connection conn, List<? extends Object> entities, int tableIndex)
-			throws SQLException {
-		Object entity = entities.get(0);
-		// 获取表名.
-		String tableName = ReflectUtil.getTableName(entity, tableIndex);
-
-		// 批量添加
-		Statement st = conn.createStatement();
-		Map<String, Object> entityProperty = null;
-		for (Object dbEntity : entities) {
-			try {
-				// 获取需要被插入数据库的字段.
-				entityProperty = ReflectUtil.describe(dbEntity, true);
-			} catch (Exception e) {
-				throw new SQLException("解析实体对象失败", e);
-			}
-
-			// 生成insert语句.
-			Set<Map.Entry<String, Object>> propertyEntrySet = entityProperty.entrySet();
-
-			StringBuilder SQL = new StringBuilder("INSERT INTO " + tableName + "(");
-			StringBuilder var = new StringBuilder();
-			Object value = null;
-			for (Map.Entry<String, Object> propertyEntry : propertyEntrySet) {
-				value = propertyEntry.getValue();
-				SQL.append(propertyEntry.getKey()).append(",");
-				var.append(formatValue(value));
-				var.append(",");
-			}
-			SQL.deleteCharAt(SQL.length() - 1);
-			SQL.append(") VALUES (");
-			SQL.append(var.deleteCharAt(var.length() - 1).toString());
-			SQL.append(")");
-
-			st.addBatch(SQL.toString());
-
-			debugSQL(SQL.toString());
+	public static void setParam(PreparedStatement ps, int index, Object value) throws SQLException {
+		if (value instanceof Character) {
+			ps.setString(index, String.valueOf(value));
+		} else if (value instanceof Timestamp) {
+			ps.setTimestamp(index, (Timestamp) value);
+		} else if (value instanceof Date) {
+			// 与formatValue一致, 精确到秒
+			ps.setTimestamp(index, new Timestamp(((Date) value).getTime() / 1000 * 1000));
+		} else {
+			ps.setObject(index, value);
 		}
-		return st;
 	}
 
 	/**
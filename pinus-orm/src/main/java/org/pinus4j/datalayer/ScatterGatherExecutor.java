@@ -0,0 +1,331 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.datalayer;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.pinus4j.constant.Const;
+import org.pinus4j.exceptions.DBOperationException;
+import org.pinus4j.utils.JdbcUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 跨分片并行执行器. 每个集群持有一个有界线程池, 将一次查询或批量写入拆分到各个分片并行执行后再汇总结果,
+ * 整个查询受一个超时时间约束.
+ *
+ * 线程池满时由调用线程执行任务, 此时退化为串行查询.
+ *
+ * 任务中执行的语句通过{@link #track(Statement)}登记. 超时或者失败时取消正在执行的语句, 并且等待任务线程退出之后才返回,
+ * 保证调用者释放数据库资源时没有线程还在使用连接.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class ScatterGatherExecutor {
+
+	public static final Logger LOG = LoggerFactory.getLogger(ScatterGatherExecutor.class);
+
+	/**
+	 * 集群名 -> 执行器.
+	 */
+	private static final ConcurrentMap<String, ScatterGatherExecutor> executors = new ConcurrentHashMap<String, ScatterGatherExecutor>();
+
+	/**
+	 * 当前线程正在执行的跨分片任务.
+	 */
+	private static final ThreadLocal<ScatterTask<?>> currentTask = new ThreadLocal<ScatterTask<?>>();
+
+	private final ThreadPoolExecutor pool;
+
+	/**
+	 * 一次查询的超时时间(毫秒).
+	 */
+	private final long timeout;
+
+	private ScatterGatherExecutor(String clusterName, int maxThread, int queueSize, long timeout) {
+		this.pool = new ThreadPoolExecutor(maxThread, maxThread, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new DaemonThreadFactory(clusterName),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		this.pool.allowCoreThreadTimeOut(true);
+		this.timeout = timeout;
+	}
+
+	/**
+	 * 获取集群对应的执行器.
+	 *
+	 * @param clusterName
+	 *            集群名
+	 */
+	public static ScatterGatherExecutor getInstance(String clusterName) {
+		ScatterGatherExecutor executor = executors.get(clusterName);
+		if (executor == null) {
+			executor = new ScatterGatherExecutor(clusterName, Const.SCATTER_GATHER_MAX_THREAD,
+					Const.SCATTER_GATHER_QUEUE_SIZE, Const.SCATTER_GATHER_TIMEOUT);
+			ScatterGatherExecutor old = executors.putIfAbsent(clusterName, executor);
+			if (old != null) {
+				executor.pool.shutdown();
+				executor = old;
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * 关闭所有集群的执行器.
+	 */
+	public static void shutdownAll() {
+		for (ScatterGatherExecutor executor : executors.values()) {
+			executor.pool.shutdownNow();
+		}
+		executors.clear();
+	}
+
+	/**
+	 * 并行执行任务, 按任务顺序返回每个任务的结果. 任何一个任务失败或者超时, 未完成的任务会被取消.
+	 *
+	 * @param tasks
+	 *            每个分片上的查询任务
+	 * @return 每个任务的结果
+	 * @throws DBOperationException
+	 *             任务执行失败或者超时
+	 */
+	public <V> List<V> invokeAll(List<Callable<V>> tasks) {
+		List<V> results = new ArrayList<V>(tasks.size());
+
+		// 只有一个分片时没有必要切换线程
+		if (tasks.size() == 1) {
+			try {
+				results.add(tasks.get(0).call());
+			} catch (DBOperationException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new DBOperationException(e);
+			}
+			return results;
+		}
+
+		long deadline = System.currentTimeMillis() + this.timeout;
+
+		List<ScatterTask<V>> scatterTasks = new ArrayList<ScatterTask<V>>(tasks.size());
+		List<Future<V>> futures = new ArrayList<Future<V>>(tasks.size());
+		try {
+			for (Callable<V> task : tasks) {
+				ScatterTask<V> scatterTask = new ScatterTask<V>(task);
+				scatterTasks.add(scatterTask);
+				scatterTask.future = this.pool.submit(scatterTask);
+				futures.add(scatterTask.future);
+			}
+
+			for (Future<V> future : futures) {
+				long remain = deadline - System.currentTimeMillis();
+				if (remain <= 0) {
+					throw new TimeoutException();
+				}
+				results.add(future.get(remain, TimeUnit.MILLISECONDS));
+			}
+		} catch (TimeoutException e) {
+			cancel(scatterTasks);
+			throw new DBOperationException("跨分片查询超时, timeout=" + this.timeout + "ms");
+		} catch (ExecutionException e) {
+			cancel(scatterTasks);
+			Throwable cause = e.getCause();
+			if (cause instanceof DBOperationException) {
+				throw (DBOperationException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new DBOperationException((Exception) cause);
+		} catch (InterruptedException e) {
+			cancel(scatterTasks);
+			Thread.currentThread().interrupt();
+			throw new DBOperationException(e);
+		}
+
+		return results;
+	}
+
+	/**
+	 * 取消所有任务并等待正在执行的任务退出.
+	 */
+	private void cancel(List<? extends ScatterTask<?>> scatterTasks) {
+		for (ScatterTask<?> scatterTask : scatterTasks) {
+			scatterTask.cancel();
+		}
+
+		long deadline = System.currentTimeMillis() + Const.SCATTER_GATHER_CANCEL_TIMEOUT;
+		boolean interrupted = false;
+		try {
+			for (ScatterTask<?> scatterTask : scatterTasks) {
+				long remain = deadline - System.currentTimeMillis();
+				try {
+					if (remain <= 0 || !scatterTask.exit.await(remain, TimeUnit.MILLISECONDS)) {
+						LOG.error("跨分片任务取消后没有在" + Const.SCATTER_GATHER_CANCEL_TIMEOUT + "ms内退出");
+						return;
+					}
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * 登记当前线程在跨分片任务中执行的语句, 任务取消时调用{@link Statement#cancel()}. 不在跨分片任务中时什么也不做.
+	 *
+	 * @return 传入的语句
+	 * @throws DBOperationException
+	 *             任务已经取消, 此时语句会被关闭
+	 */
+	public static <S extends Statement> S track(S statement) {
+		ScatterTask<?> scatterTask = currentTask.get();
+		if (scatterTask != null && !scatterTask.add(statement)) {
+			JdbcUtil.close(statement);
+			throw new DBOperationException("跨分片任务已经取消");
+		}
+		return statement;
+	}
+
+	/**
+	 * 语句执行完之后取消登记, 在关闭语句之前调用.
+	 */
+	public static void untrack(Statement statement) {
+		ScatterTask<?> scatterTask = currentTask.get();
+		if (scatterTask != null && statement != null) {
+			scatterTask.remove(statement);
+		}
+	}
+
+	/**
+	 * 一个分片上的任务, 记录任务线程正在执行的语句.
+	 */
+	private static class ScatterTask<V> implements Callable<V> {
+		private final Callable<V> task;
+
+		private Future<V> future;
+
+		private final Set<Statement> statements = new HashSet<Statement>();
+
+		private boolean started;
+
+		private boolean cancelled;
+
+		/**
+		 * 任务退出或者确定不会再执行时计数
+		 */
+		private final CountDownLatch exit = new CountDownLatch(1);
+
+		public ScatterTask(Callable<V> task) {
+			this.task = task;
+		}
+
+		@Override
+		public V call() throws Exception {
+			synchronized (this) {
+				if (this.cancelled) {
+					throw new DBOperationException("跨分片任务已经取消");
+				}
+				this.started = true;
+			}
+
+			ScatterTask<?> outer = currentTask.get();
+			currentTask.set(this);
+			try {
+				return this.task.call();
+			} finally {
+				if (outer != null) {
+					currentTask.set(outer);
+				} else {
+					currentTask.remove();
+				}
+				synchronized (this) {
+					this.statements.clear();
+				}
+				this.exit.countDown();
+			}
+		}
+
+		synchronized boolean add(Statement statement) {
+			if (this.cancelled) {
+				return false;
+			}
+			this.statements.add(statement);
+			return true;
+		}
+
+		synchronized void remove(Statement statement) {
+			this.statements.remove(statement);
+		}
+
+		synchronized void cancel() {
+			this.cancelled = true;
+			if (!this.started) {
+				// 还在队列中的任务不会再执行
+				if (this.future != null) {
+					this.future.cancel(false);
+				}
+				this.exit.countDown();
+				return;
+			}
+			for (Statement statement : this.statements) {
+				try {
+					statement.cancel();
+				} catch (SQLException e) {
+					LOG.warn("cancel statement failure", e);
+				}
+			}
+		}
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger(1);
+		private final String namePrefix;
+
+		public DaemonThreadFactory(String clusterName) {
+			this.namePrefix = "pinus-scatter-" + clusterName + "-";
+		}
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, namePrefix + threadNumber.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.datalayer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.pinus4j.cluster.IDBCluster;
+import org.pinus4j.cluster.resources.IDBResource;
+import org.pinus4j.cluster.resources.ShardingDBResource;
+import org.pinus4j.constant.Const;
+import org.pinus4j.utils.BloomFilter;
+import org.pinus4j.utils.JdbcUtil;
+import org.pinus4j.utils.ReflectUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 分表主键过滤器. 为@Table(pkBloomFilter=true)的每个分表维护一个主键布隆过滤器, 不指定分片因子根据主键查询时先查询可能包含此主键的分表.
+ *
+ * 过滤器在第一次使用时由后台线程从主库分页读取全部主键建立, 建立完成前不过滤任何分表. 本进程保存的记录会加入过滤器,
+ * 删除的记录无法从布隆过滤器中移除, 只会增加误判. 其他进程保存的记录不会加入本进程的过滤器, 因此调用方需要在过滤后没有找到记录时查询其余的分表,
+ * 过滤器只减少存在的记录需要查询的分表数, 不减少不存在的记录的查询.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class ShardingPkFilter {
+
+	public static final Logger LOG = LoggerFactory.getLogger(ShardingPkFilter.class);
+
+	private static final ShardingPkFilter instance = new ShardingPkFilter();
+
+	/**
+	 * 分表 -> 过滤器.
+	 */
+	private final ConcurrentMap<String, Entry> filters = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * 已经开始加载的表. key: clusterName.tableName
+	 */
+	private final ConcurrentMap<String, Boolean> loadedTables = new ConcurrentHashMap<String, Boolean>();
+
+	private final ExecutorService loader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "pinus-pk-filter-loader");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	public static ShardingPkFilter getInstance() {
+		return instance;
+	}
+
+	/**
+	 * 在后台加载一张表所有分表的过滤器. 已经加载过的表直接返回.
+	 *
+	 * @param dbCluster
+	 *            数据库集群
+	 * @param clazz
+	 *            数据对象class
+	 */
+	public void prepare(final IDBCluster dbCluster, final Class<?> clazz) {
+		final String tableKey = ReflectUtil.getClusterName(clazz) + "." + ReflectUtil.getTableName(clazz);
+		if (loadedTables.putIfAbsent(tableKey, Boolean.TRUE) != null) {
+			return;
+		}
+
+		loader.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					_load(dbCluster, clazz);
+				} catch (Exception e) {
+					LOG.warn("加载主键过滤器失败, table=" + tableKey + ", " + e.getMessage());
+					// 下次使用时重新加载
+					loadedTables.remove(tableKey);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 判断分表中是否可能存在此主键. 过滤器没有建立完成时返回true.
+	 */
+	public boolean mightContain(ShardingDBResource db, Number pk) {
+		Entry entry = filters.get(_buildKey(db));
+		if (entry == null || !entry.ready) {
+			return true;
+		}
+		return entry.filter.mightContain(pk.longValue());
+	}
+
+	/**
+	 * 记录保存到分表后加入过滤器.
+	 */
+	public void put(ShardingDBResource db, Number... pks) {
+		Entry entry = filters.get(_buildKey(db));
+		if (entry == null) {
+			return;
+		}
+		for (Number pk : pks) {
+			entry.filter.put(pk.longValue());
+		}
+	}
+
+	/**
+	 * 删除所有过滤器.
+	 */
+	public void clear() {
+		filters.clear();
+		loadedTables.clear();
+	}
+
+	private void _load(IDBCluster dbCluster, Class<?> clazz) throws Exception {
+		List<IDBResource> dbResources = dbCluster.getAllMasterShardingDBResource(clazz);
+		try {
+			for (IDBResource dbResource : dbResources) {
+				_loadShard((ShardingDBResource) dbResource, clazz);
+			}
+		} finally {
+			for (IDBResource dbResource : dbResources) {
+				dbResource.close();
+			}
+		}
+	}
+
+	/**
+	 * 按主键顺序分页读取分表的全部主键.
+	 */
+	private void _loadShard(ShardingDBResource db, Class<?> clazz) throws SQLException {
+		String tableName = ReflectUtil.getTableName(clazz, db.getTableIndex());
+		String pkName = ReflectUtil.getPkName(clazz);
+		Connection conn = db.getConnection();
+
+		long count = 0;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		try {
+			ps = conn.prepareStatement("SELECT COUNT(*) FROM " + tableName);
+			rs = ps.executeQuery();
+			if (rs.next()) {
+				count = rs.getLong(1);
+			}
+		} finally {
+			JdbcUtil.close(ps, rs);
+		}
+
+		// 先放入过滤器, 加载期间保存的记录也会加入
+		Entry entry = new Entry(new BloomFilter(Math.max(count * 2, Const.PK_BLOOM_FILTER_MIN_SIZE),
+				Const.PK_BLOOM_FILTER_FPP));
+		filters.put(_buildKey(db), entry);
+
+		String sql = "SELECT " + pkName + " FROM " + tableName + " WHERE " + pkName + " > ? ORDER BY " + pkName
+				+ " LIMIT " + Const.PK_BLOOM_FILTER_LOAD_BATCH;
+		long last = Long.MIN_VALUE;
+		int rows;
+		do {
+			rows = 0;
+			try {
+				ps = conn.prepareStatement(sql);
+				ps.setLong(1, last);
+				rs = ps.executeQuery();
+				while (rs.next()) {
+					last = rs.getLong(1);
+					entry.filter.put(last);
+					rows++;
+				}
+			} finally {
+				JdbcUtil.close(ps, rs);
+			}
+		} while (rows == Const.PK_BLOOM_FILTER_LOAD_BATCH);
+
+		entry.ready = true;
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("load pk filter done " + db + " count=" + count);
+		}
+	}
+
+	private String _buildKey(ShardingDBResource db) {
+		StringBuilder key = new StringBuilder();
+		key.append(db.getClusterName()).append(db.getDbName());
+		key.append(".");
+		key.append(db.getRegionCapacity());
+		key.append(".");
+		key.append(db.getTableName()).append(db.getTableIndex());
+		return key.toString();
+	}
+
+	private static class Entry {
+		private final BloomFilter filter;
+		private volatile boolean ready;
+
+		Entry(BloomFilter filter) {
+			this.filter = filter;
+		}
+	}
+
+}
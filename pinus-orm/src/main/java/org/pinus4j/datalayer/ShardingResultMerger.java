@@ -0,0 +1,240 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.datalayer;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.pinus4j.api.query.IQuery;
+import org.pinus4j.api.query.Order;
+import org.pinus4j.api.query.OrderBy;
+import org.pinus4j.exceptions.DBOperationException;
+import org.pinus4j.utils.ReflectUtil;
+
+/**
+ * 跨分片查询结果归并. 每个分片的查询被改写为按排序条件返回前start+limit条记录, 归并时使用堆对各分片的有序结果做多路归并,
+ * 输出start+limit条记录后立即停止.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class ShardingResultMerger {
+
+	/**
+	 * 改写在每个分片上执行的查询.
+	 * <ul>
+	 * <li>没有排序条件时按主键升序, 保证分片结果有序</li>
+	 * <li>分页改写为LIMIT 0,start+limit</li>
+	 * <li>指定了查询字段时补充排序字段和主键, 保证归并时可以比较</li>
+	 * </ul>
+	 *
+	 * @param query
+	 *            用户查询
+	 * @param clazz
+	 *            数据对象
+	 * @return 分片查询
+	 */
+	public static IQuery rewrite(IQuery query, Class<?> clazz) {
+		IQuery shardingQuery = query.clone();
+
+		String pkName = ReflectUtil.getPkName(clazz);
+		if (query.getOrderList().isEmpty()) {
+			shardingQuery.orderBy(pkName, Order.ASC);
+		}
+
+		if (query.getLimit() > -1) {
+			shardingQuery.limit(0, _getOffset(query) + query.getLimit());
+		}
+
+		if (query.hasQueryFields()) {
+			Set<String> fields = new LinkedHashSet<String>();
+			for (String field : query.getFields()) {
+				fields.add(field);
+			}
+			for (OrderBy orderBy : shardingQuery.getOrderList()) {
+				fields.add(orderBy.getField());
+			}
+			fields.add(pkName);
+			shardingQuery.setFields(fields.toArray(new String[fields.size()]));
+		}
+
+		return shardingQuery;
+	}
+
+	/**
+	 * 归并各分片的查询结果. 分片结果必须是通过{@link #rewrite(IQuery, Class)}改写后的查询得到的.
+	 *
+	 * @param shardingResults
+	 *            每个分片的有序结果
+	 * @param query
+	 *            用户查询
+	 * @param clazz
+	 *            数据对象
+	 * @return 归并后的一页数据
+	 */
+	public static <T> List<T> merge(List<List<T>> shardingResults, IQuery query, Class<T> clazz) {
+		final Comparator<T> comparator = buildComparator(query, clazz);
+
+		PriorityQueue<Cursor<T>> heap = new PriorityQueue<Cursor<T>>(Math.max(shardingResults.size(), 1),
+				new Comparator<Cursor<T>>() {
+					@Override
+					public int compare(Cursor<T> c1, Cursor<T> c2) {
+						return comparator.compare(c1.head, c2.head);
+					}
+				});
+		for (List<T> shardingResult : shardingResults) {
+			Cursor<T> cursor = new Cursor<T>(shardingResult.iterator());
+			if (cursor.advance()) {
+				heap.add(cursor);
+			}
+		}
+
+		int offset = _getOffset(query);
+		int limit = query.getLimit();
+
+		List<T> result = new ArrayList<T>(limit > -1 ? limit : 16);
+		int skipped = 0;
+		while (!heap.isEmpty()) {
+			if (limit > -1 && result.size() >= limit) {
+				break;
+			}
+
+			Cursor<T> cursor = heap.poll();
+			if (skipped < offset) {
+				skipped++;
+			} else {
+				result.add(cursor.head);
+			}
+
+			if (cursor.advance()) {
+				heap.add(cursor);
+			}
+		}
+
+		// 分片查询补充了排序字段, 输出前按用户指定的字段过滤
+		if (query.hasQueryFields()) {
+			List<T> filteResult = new ArrayList<T>(result.size());
+			try {
+				for (T obj : result) {
+					filteResult.add(clazz.cast(ReflectUtil.cloneWithGivenField(obj, query.getFields())));
+				}
+			} catch (Exception e) {
+				throw new DBOperationException(e);
+			}
+			result = filteResult;
+		}
+
+		return result;
+	}
+
+	/**
+	 * 根据查询的排序条件创建比较器, 排序条件相同时按主键升序.
+	 */
+	public static <T> Comparator<T> buildComparator(IQuery query, Class<T> clazz) {
+		List<OrderBy> orderList = query.getOrderList();
+		final Field[] fields = new Field[orderList.size() + 1];
+		final boolean[] desc = new boolean[orderList.size() + 1];
+		for (int i = 0; i < orderList.size(); i++) {
+			fields[i] = _getField(clazz, orderList.get(i).getField());
+			desc[i] = orderList.get(i).getOrder() == Order.DESC;
+		}
+		fields[orderList.size()] = _getField(clazz, ReflectUtil.getPkName(clazz));
+		desc[orderList.size()] = false;
+
+		return new Comparator<T>() {
+			@Override
+			public int compare(T o1, T o2) {
+				try {
+					for (int i = 0; i < fields.length; i++) {
+						int c = _compareValue(fields[i].get(o1), fields[i].get(o2));
+						if (c != 0) {
+							return desc[i] ? -c : c;
+						}
+					}
+					return 0;
+				} catch (IllegalAccessException e) {
+					throw new DBOperationException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * null值排在最前, 与MySQL升序时的行为一致.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int _compareValue(Object v1, Object v2) {
+		if (v1 == v2) {
+			return 0;
+		}
+		if (v1 == null) {
+			return -1;
+		}
+		if (v2 == null) {
+			return 1;
+		}
+		if (v1 instanceof Number && v2 instanceof Number && v1.getClass() != v2.getClass()) {
+			return Double.compare(((Number) v1).doubleValue(), ((Number) v2).doubleValue());
+		}
+		if (v1 instanceof Comparable) {
+			return ((Comparable) v1).compareTo(v2);
+		}
+		return v1.toString().compareTo(v2.toString());
+	}
+
+	private static Field _getField(Class<?> clazz, String fieldName) {
+		try {
+			Field f = clazz.getDeclaredField(fieldName);
+			f.setAccessible(true);
+			return f;
+		} catch (NoSuchFieldException e) {
+			throw new DBOperationException("排序字段不存在, class=" + clazz.getName() + ", field=" + fieldName);
+		}
+	}
+
+	private static int _getOffset(IQuery query) {
+		return query.getStart() > -1 ? query.getStart() : 0;
+	}
+
+	/**
+	 * 分片结果游标.
+	 */
+	private static class Cursor<T> {
+		private final Iterator<T> it;
+		private T head;
+
+		Cursor(Iterator<T> it) {
+			this.it = it;
+		}
+
+		boolean advance() {
+			if (it.hasNext()) {
+				head = it.next();
+				return true;
+			}
+			head = null;
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.datalayer;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.pinus4j.utils.IOUtil;
+
+/**
+ * 合并相同key的并发加载. 同一个key同时只有一个线程执行加载, 其他线程等待并共享加载结果, 用于避免缓存失效时大量相同的查询同时访问数据库.
+ *
+ * 等待的线程得到的是加载结果序列化后的副本, 与直接读取缓存一样, 修改返回的对象不会影响其他线程.
+ *
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class SingleFlight {
+
+	private final ConcurrentMap<String, Call> calls = new ConcurrentHashMap<String, Call>();
+
+	/**
+	 * 执行加载. 相同key已经有线程在加载时等待其结果.
+	 *
+	 * @param key
+	 *            加载的key
+	 * @param loader
+	 *            加载操作
+	 *
+	 * @return 加载结果
+	 */
+	public <T> T execute(String key, Loader<T> loader) throws SQLException {
+		Call call = new Call();
+		Call inflight = calls.putIfAbsent(key, call);
+		if (inflight != null) {
+			return inflight.await();
+		}
+
+		try {
+			T result = loader.load();
+			call.result = result;
+			return result;
+		} catch (SQLException e) {
+			call.error = e;
+			throw e;
+		} catch (RuntimeException e) {
+			call.error = e;
+			throw e;
+		} finally {
+			calls.remove(key, call);
+			call.latch.countDown();
+		}
+	}
+
+	/**
+	 * 正在加载的key的数量.
+	 */
+	public int inflight() {
+		return calls.size();
+	}
+
+	/**
+	 * 加载操作.
+	 */
+	public interface Loader<T> {
+		T load() throws SQLException;
+	}
+
+	private static class Call {
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private volatile Object result;
+		private volatile Exception error;
+
+		@SuppressWarnings("unchecked")
+		<T> T await() throws SQLException {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("等待加载结果被中断", e);
+			}
+
+			if (error != null) {
+				throw new SQLException("合并的加载执行失败", error);
+			}
+			if (result instanceof Serializable) {
+				return (T) IOUtil.getObject(IOUtil.getBytes(result), Object.class);
+			}
+			return (T) result;
+		}
+	}
+
+}
@@ -83,6 +83,16 @@ public abstract class AbstractRecordIterator<E> extends AbstractJdbcQuery implem
 
 	public abstract long getMaxId();
 
+	@Override
+	public long getLatestId() {
+		return latestId;
+	}
+
+	@Override
+	public void setLatestId(long latestId) {
+		this.latestId = latestId;
+	}
+
 	public int getStep() {
 		return step;
 	}
@@ -0,0 +1,155 @@
+/**
+ * Copyright 2014 Duan Bingnan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *   
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.pinus4j.datalayer.iterator;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pinus4j.api.query.Condition;
+import org.pinus4j.api.query.IQuery;
+import org.pinus4j.api.query.Order;
+import org.pinus4j.api.query.OrderBy;
+import org.pinus4j.api.query.QueryImpl;
+import org.pinus4j.cluster.resources.ShardingDBResource;
+import org.pinus4j.exceptions.DBOperationException;
+import org.pinus4j.utils.ReflectUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按主键分页的分表遍历器. 每次查询主键大于上一页最后一条记录的step条记录(WHERE pk &gt; ? ORDER BY pk LIMIT step),
+ * 主键不连续时也不会产生空查询. 可以通过{@link #setRange(long, long)}只遍历一段主键范围, 用于在一个分表上并行遍历.
+ * 
+ * 遍历时按主键排序分页, 查询条件中的排序和分页会被忽略. <b>需要注意的是此遍历器只能遍历主键是数值型的实体</b>
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public class ShardingKeysetRecordIterator<E> extends AbstractRecordIterator<E> {
+
+	public static final Logger LOG = LoggerFactory.getLogger(ShardingKeysetRecordIterator.class);
+
+	private ShardingDBResource dbResource;
+
+	/**
+	 * 遍历范围的上限(包含), 小于0表示没有上限.
+	 */
+	private long highId = -1;
+
+	/**
+	 * 最后一页不满step条时表示已经遍历完.
+	 */
+	private boolean exhausted;
+
+	public ShardingKeysetRecordIterator(ShardingDBResource dbResource, Class<E> clazz) {
+		super(clazz);
+
+		this.dbResource = dbResource;
+		// 与按主键区间遍历一致, 包含主键为0的记录
+		this.latestId = -1;
+	}
+
+	/**
+	 * 只遍历主键在(lowId, highId]之间的记录.
+	 */
+	public void setRange(long lowId, long highId) {
+		this.latestId = lowId;
+		this.highId = highId;
+	}
+
+	public ShardingDBResource getDBResource() {
+		return this.dbResource;
+	}
+
+	/**
+	 * 分表中最小的主键, 没有记录时返回0.
+	 */
+	public long getMinId() {
+		return _getEdgeId(Order.ASC);
+	}
+
+	@Override
+	public long getMaxId() {
+		return _getEdgeId(Order.DESC);
+	}
+
+	@Override
+	public long getCount() {
+		try {
+			return selectCount(dbResource, clazz, _rangeQuery()).longValue();
+		} catch (SQLException e) {
+			throw new DBOperationException(e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (this.recordQ.isEmpty() && !this.exhausted) {
+			IQuery query = _rangeQuery();
+			query.orderBy(pkName, Order.ASC).limit(step);
+			try {
+				List<E> records = selectByQuery(dbResource, query, clazz);
+				if (records.size() < step) {
+					this.exhausted = true;
+				}
+				if (!records.isEmpty()) {
+					this.latestId = ReflectUtil.getPkValue(records.get(records.size() - 1)).longValue();
+					this.recordQ.addAll(records);
+				}
+			} catch (SQLException e) {
+				throw new DBOperationException(e);
+			}
+		}
+
+		return !this.recordQ.isEmpty();
+	}
+
+	/**
+	 * 当前位置之后的查询条件, 去掉查询条件中的排序和分页.
+	 */
+	private IQuery _rangeQuery() {
+		IQuery query = this.query.clone();
+		if (query instanceof QueryImpl) {
+			((QueryImpl) query).setOrderList(new ArrayList<OrderBy>());
+			((QueryImpl) query).setStart(-1);
+			((QueryImpl) query).setLimit(-1);
+		}
+
+		query.add(Condition.gt(pkName, this.latestId));
+		if (this.highId >= 0) {
+			query.add(Condition.lte(pkName, this.highId));
+		}
+		return query;
+	}
+
+	private long _getEdgeId(Order order) {
+		IQuery query = new QueryImpl();
+		query.limit(1).orderBy(pkName, order);
+		List<E> one;
+		try {
+			one = selectByQuery(dbResource, query, clazz);
+		} catch (SQLException e) {
+			throw new DBOperationException(e);
+		}
+		if (one.isEmpty()) {
+			return 0;
+		}
+		return ReflectUtil.getPkValue(one.get(0)).longValue();
+	}
+
+}
@@ -73,6 +73,11 @@ public class ShardingRecordIterator<E> extends AbstractRecordIterator<E> {
 	@Override
 	public long getCount() {
 		try {
+			IQuery query = this.query.clone();
+			// 从保存的位置继续遍历时只计算剩余的记录
+			if (this.latestId > 0) {
+				query.add(Condition.gte(pkName, this.latestId));
+			}
 			return selectCount(dbResource, clazz, query).longValue();
 		} catch (SQLException e) {
 			throw new DBOperationException(e);
@@ -0,0 +1,199 @@
+package org.pinus4j.datalayer.iterator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.pinus4j.api.query.IQuery;
+import org.pinus4j.cluster.resources.IDBResource;
+import org.pinus4j.cluster.resources.ShardingDBResource;
+import org.pinus4j.constant.Const;
+import org.pinus4j.datalayer.IRecordCursor;
+import org.pinus4j.datalayer.RowMapper;
+import org.pinus4j.datalayer.SQLBuilder;
+import org.pinus4j.exceptions.DBOperationException;
+import org.pinus4j.utils.JdbcUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 流式查询游标. 按顺序依次查询每个表, 同一时刻只打开一个结果集.
+ *
+ * 结果集只向前读取, MySQL上fetchSize设置为Integer.MIN_VALUE逐行从服务端读取, 其它数据库每次读取{@link Const#STREAM_FETCH_SIZE}条.
+ * 分表使用独立的连接查询, 不参与当前事务, 也不会阻塞共享同一个连接的其它分表. 多个表的结果依次返回, 排序和分页只在每个表内有效.
+ *
+ * 游标关闭时同时关闭创建游标时传入的数据库资源. 注意此对象是线程不安全的.
+ *
+ * @author duanbn
+ *
+ * @param <E>
+ */
+public class StreamRecordCursor<E> implements IRecordCursor<E> {
+
+	public static final Logger LOG = LoggerFactory.getLogger(StreamRecordCursor.class);
+
+	private static final String MYSQL = "MySQL";
+
+	private Class<E> clazz;
+
+	private IQuery query;
+
+	/**
+	 * 需要查询的表, 游标关闭时关闭
+	 */
+	private List<IDBResource> dbResources;
+
+	/**
+	 * 下一个需要查询的表
+	 */
+	private int resourceIndex;
+
+	/**
+	 * 当前表的查询
+	 */
+	private IDBResource current;
+	private PreparedStatement ps;
+	private ResultSet rs;
+	private RowMapper<E> mapper;
+
+	/**
+	 * 已经读取但是还没有返回的行
+	 */
+	private E nextRecord;
+
+	private boolean closed;
+
+	/**
+	 * @param dbResources
+	 *            需要查询的表, 分表为{@link ShardingDBResource}
+	 * @param clazz
+	 *            数据对象
+	 * @param query
+	 *            查询条件
+	 */
+	public StreamRecordCursor(List<IDBResource> dbResources, Class<E> clazz, IQuery query) {
+		this.dbResources = new ArrayList<IDBResource>(dbResources);
+		this.clazz = clazz;
+		this.query = query;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (this.nextRecord != null) {
+			return true;
+		}
+		if (this.closed) {
+			return false;
+		}
+
+		try {
+			while (true) {
+				if (this.rs == null) {
+					if (this.resourceIndex >= this.dbResources.size()) {
+						close();
+						return false;
+					}
+					_open(this.dbResources.get(this.resourceIndex++));
+				}
+
+				if (this.rs.next()) {
+					this.nextRecord = this.mapper.mapRow(this.rs);
+					return true;
+				}
+				_closeCurrent(false);
+			}
+		} catch (SQLException e) {
+			close();
+			throw new DBOperationException(e);
+		}
+	}
+
+	@Override
+	public E next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		E record = this.nextRecord;
+		this.nextRecord = null;
+		return record;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+
+		try {
+			_closeCurrent(true);
+		} finally {
+			for (IDBResource dbResource : this.dbResources) {
+				try {
+					dbResource.close();
+				} catch (Exception e) {
+					LOG.warn("close db resource failure " + dbResource, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 打开一个表的结果集.
+	 */
+	private void _open(IDBResource dbResource) throws SQLException {
+		int tableIndex = -1;
+		if (dbResource instanceof ShardingDBResource) {
+			// 流式结果集读完之前连接不能执行其它语句, 分表使用独立的连接
+			ShardingDBResource fork = ((ShardingDBResource) dbResource).fork();
+			tableIndex = fork.getTableIndex();
+			this.current = fork;
+		}
+
+		Connection conn = (this.current != null ? this.current : dbResource).getConnection();
+		String sql = SQLBuilder.buildSelectByQuery(clazz, tableIndex, query);
+		this.ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		if (MYSQL.equals(conn.getMetaData().getDatabaseProductName())) {
+			this.ps.setFetchSize(Integer.MIN_VALUE);
+		} else {
+			this.ps.setFetchSize(Const.STREAM_FETCH_SIZE);
+		}
+		this.rs = this.ps.executeQuery();
+		this.mapper = RowMapper.getMapper(clazz, this.rs.getMetaData());
+	}
+
+	/**
+	 * 关闭当前表的结果集.
+	 *
+	 * @param cancel
+	 *            结果集没有读完时是否取消查询, MySQL关闭流式结果集时会读完剩余的行
+	 */
+	private void _closeCurrent(boolean cancel) {
+		if (cancel && this.ps != null) {
+			try {
+				this.ps.cancel();
+			} catch (SQLException e) {
+				LOG.debug("cancel stream query failure", e);
+			}
+		}
+		JdbcUtil.close(this.ps, this.rs);
+		this.ps = null;
+		this.rs = null;
+		this.mapper = null;
+
+		if (this.current != null) {
+			this.current.close();
+			this.current = null;
+		}
+	}
+
+}
@@ -29,13 +29,17 @@ import javax.transaction.TransactionManager;
 
 import org.pinus4j.api.SQL;
 import org.pinus4j.api.query.IQuery;
+import org.pinus4j.cache.CacheNull;
 import org.pinus4j.cache.IPrimaryCache;
 import org.pinus4j.cache.ISecondCache;
 import org.pinus4j.cluster.IDBCluster;
+import org.pinus4j.cluster.enums.EnumDBMasterSlave;
 import org.pinus4j.cluster.resources.IDBResource;
 import org.pinus4j.cluster.resources.ShardingDBResource;
 import org.pinus4j.constant.Const;
 import org.pinus4j.datalayer.SQLBuilder;
+import org.pinus4j.datalayer.ScatterGatherExecutor;
+import org.pinus4j.datalayer.SingleFlight;
 import org.pinus4j.datalayer.SlowQueryLogger;
 import org.pinus4j.datalayer.query.IDataQuery;
 import org.pinus4j.exceptions.DBOperationException;
@@ -66,6 +70,11 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 
 	protected TransactionManager txManager;
 
+	/**
+	 * 合并缓存没有命中时的并发查询. key中包含集群名, 因此所有集群共用一个实例.
+	 */
+	protected static final SingleFlight singleFlight = new SingleFlight();
+
 	/**
 	 * 判断一级缓存是否可用
 	 * 
@@ -101,7 +110,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
             Connection conn = dbResource.getConnection();
 
 			String sql = SQLBuilder.buildSelectCountGlobalSql(clazz);
-			ps = conn.prepareStatement(sql);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -115,6 +124,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 			}
 			return count;
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 	}
@@ -126,7 +136,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		try {
 			Connection conn = dbResource.getConnection();
 			String sql = SQLBuilder.buildSelectCountGlobalSql(clazz, query);
-			ps = conn.prepareStatement(sql);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -138,6 +148,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 				count = rs.getLong(1);
 			}
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 		return count;
@@ -194,7 +205,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		try {
 			Connection conn = db.getConnection();
 			String sql = SQLBuilder.buildSelectCountSql(clazz, db.getTableIndex());
-			ps = conn.prepareStatement(sql);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -208,6 +219,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 			}
 			return count;
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 	}
@@ -256,7 +268,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		try {
 			Connection conn = db.getConnection();
 			String sql = SQLBuilder.buildSelectCountByQuery(clazz, db.getTableIndex(), query);
-			ps = conn.prepareStatement(sql);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -268,6 +280,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 				return rs.getLong(1);
 			}
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -282,8 +295,9 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		ResultSet rs = null;
 		try {
             Connection conn = dbResource.getConnection();
-			String sql = SQLBuilder.buildSelectByPk(pk, clazz, -1);
-			ps = conn.prepareStatement(sql);
+			String sql = SQLBuilder.buildSelectByPk(clazz, -1);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
+			ps.setLong(1, pk.longValue());
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -296,24 +310,53 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 				return result.get(0);
 			}
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
 		return null;
 	}
 
-	protected <T> T selectByPkWithCache(IDBResource dbResource, String clusterName, Number pk, Class<T> clazz,
-			boolean useCache) throws SQLException {
-		String tableName = ReflectUtil.getTableName(clazz);
+	protected <T> T selectByPkWithCache(final IDBResource dbResource, final String clusterName, final Number pk,
+			final Class<T> clazz, boolean useCache) throws SQLException {
+		return selectByPkWithCache(dbResource, clusterName, pk, clazz, useCache, false);
+	}
+
+	/**
+	 * 全局表根据主键查询, 只有主库上找不到的记录才记录不存在的标记.
+	 * 
+	 * @param ignoreNull
+	 *            是否忽略记录不存在的标记, 从库没有找到再查询主库时为true
+	 */
+	protected <T> T selectByPkWithCache(final IDBResource dbResource, final String clusterName, final Number pk,
+			final Class<T> clazz, boolean useCache, boolean ignoreNull) throws SQLException {
+		final String tableName = ReflectUtil.getTableName(clazz);
 
 		T data = null;
 		if (isCacheAvailable(clazz, useCache)) {
-			data = primaryCache.getGlobal(clusterName, tableName, pk);
-			if (data == null) {
-				data = _selectGlobalByPk(dbResource, pk, clazz);
-				if (data != null) {
-					primaryCache.putGlobal(clusterName, tableName, pk, data);
+			Object cached = primaryCache.lookupGlobal(clusterName, tableName, pk);
+			if (CacheNull.isNull(cached)) {
+				if (!ignoreNull) {
+					return null;
 				}
+				cached = null;
+			}
+			data = (T) cached;
+			if (data == null) {
+				String flightKey = _buildFlightKey(dbResource, clusterName, tableName, pk);
+				data = singleFlight.execute(flightKey, new SingleFlight.Loader<T>() {
+					@Override
+					public T load() throws SQLException {
+						T data = _selectGlobalByPk(dbResource, pk, clazz);
+						if (data != null) {
+							primaryCache.putGlobal(clusterName, tableName, pk, data);
+						} else if (dbResource.getMasterSlave() == EnumDBMasterSlave.MASTER) {
+							// 从库可能有延迟, 从库上找不到不能说明记录不存在
+							primaryCache.putNullGlobal(clusterName, tableName, pk);
+						}
+						return data;
+					}
+				});
 			}
 		} else {
 			data = _selectGlobalByPk(dbResource, pk, clazz);
@@ -342,8 +385,9 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		ResultSet rs = null;
 		try {
 			Connection conn = db.getConnection();
-			String sql = SQLBuilder.buildSelectByPk(pk, clazz, db.getTableIndex());
-			ps = conn.prepareStatement(sql);
+			String sql = SQLBuilder.buildSelectByPk(clazz, db.getTableIndex());
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
+			ps.setLong(1, pk.longValue());
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -356,6 +400,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 				return result.get(0);
 			}
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -371,15 +416,43 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 	 * @return 查询结果
 	 * @throws SQLException
 	 */
-	protected <T> T selectByPkWithCache(ShardingDBResource db, Number pk, Class<T> clazz, boolean useCache) throws SQLException {
+	protected <T> T selectByPkWithCache(final ShardingDBResource db, final Number pk, final Class<T> clazz,
+			boolean useCache) throws SQLException {
+		return selectByPkWithCache(db, pk, clazz, useCache, false);
+	}
+
+	/**
+	 * 分表根据主键查询, 只有主库上找不到的记录才记录不存在的标记.
+	 * 
+	 * @param ignoreNull
+	 *            是否忽略记录不存在的标记, 从库没有找到再查询主库时为true
+	 */
+	protected <T> T selectByPkWithCache(final ShardingDBResource db, final Number pk, final Class<T> clazz,
+			boolean useCache, boolean ignoreNull) throws SQLException {
 		T data = null;
 		if (isCacheAvailable(clazz, useCache)) {
-			data = primaryCache.get(db, pk);
-			if (data == null) {
-				data = _selectByPk(db, pk, clazz);
-				if (data != null) {
-					primaryCache.put(db, pk, data);
+			Object cached = primaryCache.lookup(db, pk);
+			if (CacheNull.isNull(cached)) {
+				if (!ignoreNull) {
+					return null;
 				}
+				cached = null;
+			}
+			data = (T) cached;
+			if (data == null) {
+				data = singleFlight.execute(_buildFlightKey(db, pk), new SingleFlight.Loader<T>() {
+					@Override
+					public T load() throws SQLException {
+						T data = _selectByPk(db, pk, clazz);
+						if (data != null) {
+							primaryCache.put(db, pk, data);
+						} else if (db.getMasterSlave() == EnumDBMasterSlave.MASTER) {
+							// 从库可能有延迟, 从库上找不到不能说明记录不存在
+							primaryCache.putNull(db, pk);
+						}
+						return data;
+					}
+				});
 			}
 		} else {
 			data = _selectByPk(db, pk, clazz);
@@ -398,8 +471,9 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		ResultSet rs = null;
 		try {
             Connection conn = dbResource.getConnection();
-			String sql = SQLBuilder.buildSelectByPks(clazz, -1, pks);
-			ps = conn.prepareStatement(sql);
+			String sql = SQLBuilder.buildSelectByPks(clazz, -1, pks.length);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
+			SQLBuilder.setPksParams(ps, pks);
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -408,6 +482,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 			}
 			result = SQLBuilder.buildResultObject(clazz, rs);
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -421,8 +496,9 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		ResultSet rs = null;
 		try {
             Connection conn = dbResource.getConnection();
-			String sql = SQLBuilder.buildSelectByPks(clazz, -1, pks);
-			ps = conn.prepareStatement(sql);
+			String sql = SQLBuilder.buildSelectByPks(clazz, -1, pks.length);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
+			SQLBuilder.setPksParams(ps, pks);
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -431,6 +507,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 			}
 			result = SQLBuilder.buildResultObjectAsMap(clazz, rs);
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -516,9 +593,10 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		ResultSet rs = null;
 		try {
 			Connection conn = db.getConnection();
-			String sql = SQLBuilder.buildSelectByPks(clazz, db.getTableIndex(), pks);
+			String sql = SQLBuilder.buildSelectByPks(clazz, db.getTableIndex(), pks.length);
 			long begin = System.currentTimeMillis();
-			ps = conn.prepareStatement(sql);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
+			SQLBuilder.setPksParams(ps, pks);
 			long constTime = System.currentTimeMillis() - begin;
 			if (constTime > Const.SLOWQUERY_PKS) {
 				SlowQueryLogger.write(db, sql, constTime);
@@ -526,6 +604,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 			rs = ps.executeQuery();
 			result = SQLBuilder.buildResultObject(clazz, rs);
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -539,8 +618,9 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		ResultSet rs = null;
 		try {
 			Connection conn = db.getConnection();
-			String sql = SQLBuilder.buildSelectByPks(clazz, db.getTableIndex(), pks);
-			ps = conn.prepareStatement(sql);
+			String sql = SQLBuilder.buildSelectByPks(clazz, db.getTableIndex(), pks.length);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
+			SQLBuilder.setPksParams(ps, pks);
 
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
@@ -552,6 +632,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 			result = SQLBuilder.buildResultObjectAsMap(clazz, rs);
 
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -628,7 +709,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		ResultSet rs = null;
 		try {
             Connection conn = dbResource.getConnection();
-			ps = SQLBuilder.buildSelectBySqlGlobal(conn, sql);
+			ps = ScatterGatherExecutor.track(SQLBuilder.buildSelectBySqlGlobal(conn, sql));
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -637,6 +718,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 			}
 			result = (List<Map<String, Object>>) SQLBuilder.buildResultObject(rs);
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -664,7 +746,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		ResultSet rs = null;
 		try {
 			Connection conn = db.getConnection();
-			ps = SQLBuilder.buildSelectBySql(conn, sql, db.getTableIndex());
+			ps = ScatterGatherExecutor.track(SQLBuilder.buildSelectBySql(conn, sql, db.getTableIndex()));
 
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
@@ -675,6 +757,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 
 			result = (List<Map<String, Object>>) SQLBuilder.buildResultObject(rs);
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -692,7 +775,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		try {
             Connection conn = dbResource.getConnection();
 			String sql = SQLBuilder.buildSelectByQuery(clazz, -1, query);
-			ps = conn.prepareStatement(sql);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
 
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
@@ -704,6 +787,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 
 			result = (List<T>) SQLBuilder.buildResultObject(clazz, rs);
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -733,7 +817,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		try {
 			Connection conn = db.getConnection();
 			String sql = SQLBuilder.buildSelectByQuery(clazz, db.getTableIndex(), query);
-			ps = conn.prepareStatement(sql);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
 
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
@@ -745,12 +829,112 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 
 			result = (List<T>) SQLBuilder.buildResultObject(clazz, rs);
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
 		return result;
 	}
 
+	/**
+	 * 根据查询条件查询全局表, 使用一级缓存和二级缓存. 二级缓存没有命中时, 相同条件的并发查询只有一个访问数据库.
+	 */
+	protected <T> List<T> selectGlobalByQueryWithCache(final IDBResource dbResource, final String clusterName,
+			final IQuery query, final Class<T> clazz, final boolean useCache) throws SQLException {
+		if (!isSecondCacheAvailable(clazz, useCache)) {
+			return _selectGlobalByQueryWithPrimaryCache(dbResource, clusterName, query, clazz, useCache);
+		}
+
+		final String tableName = ReflectUtil.getTableName(clazz);
+		List<T> result = (List<T>) secondCache.getGlobal(query.getWhereSql(), clusterName, tableName);
+		if (result != null && !result.isEmpty()) {
+			return result;
+		}
+
+		// 主库查询不能复用从库的加载结果
+		String key = "sec." + dbResource.getMasterSlave() + "." + clusterName + "." + tableName + "."
+				+ query.getWhereSql();
+		return singleFlight.execute(key, new SingleFlight.Loader<List<T>>() {
+			@Override
+			public List<T> load() throws SQLException {
+				List<T> result = _selectGlobalByQueryWithPrimaryCache(dbResource, clusterName, query, clazz, useCache);
+				if (result != null) {
+					secondCache.putGlobal(query.getWhereSql(), clusterName, tableName, result);
+				}
+				return result;
+			}
+		});
+	}
+
+	private <T> List<T> _selectGlobalByQueryWithPrimaryCache(IDBResource dbResource, String clusterName, IQuery query,
+			Class<T> clazz, boolean useCache) throws SQLException {
+		if (isCacheAvailable(clazz, useCache)) {
+			Number[] pkValues = selectGlobalPksByQuery(dbResource, query, clazz);
+			return selectGlobalByPksWithCache(dbResource, clusterName, clazz, pkValues, useCache);
+		}
+		return selectGlobalByQuery(dbResource, query, clazz);
+	}
+
+	/**
+	 * 根据查询条件查询分表, 使用一级缓存和二级缓存. 二级缓存没有命中时, 相同条件的并发查询只有一个访问数据库.
+	 */
+	protected <T> List<T> selectByQueryWithCache(final ShardingDBResource db, final IQuery query, final Class<T> clazz,
+			final boolean useCache) throws SQLException {
+		if (!isSecondCacheAvailable(clazz, useCache)) {
+			return _selectByQueryWithPrimaryCache(db, query, clazz, useCache);
+		}
+
+		List<T> result = (List<T>) secondCache.get(query.getWhereSql(), db);
+		if (result != null && !result.isEmpty()) {
+			return result;
+		}
+
+		String key = "sec." + db.getMasterSlave() + "." + _buildResourceKey(db) + "." + query.getWhereSql();
+		return singleFlight.execute(key, new SingleFlight.Loader<List<T>>() {
+			@Override
+			public List<T> load() throws SQLException {
+				List<T> result = _selectByQueryWithPrimaryCache(db, query, clazz, useCache);
+				if (result != null) {
+					secondCache.put(query.getWhereSql(), db, result);
+				}
+				return result;
+			}
+		});
+	}
+
+	private <T> List<T> _selectByQueryWithPrimaryCache(ShardingDBResource db, IQuery query, Class<T> clazz,
+			boolean useCache) throws SQLException {
+		if (isCacheAvailable(clazz, useCache)) {
+			Number[] pkValues = selectPksByQuery(db, query, clazz);
+			return selectByPksWithCache(db, clazz, pkValues, useCache);
+		}
+		return selectByQuery(db, query, clazz);
+	}
+
+	/**
+	 * 合并查询的key. pk.[masterSlave].[clusterName].[tableName].[id]. 主库和从库的查询不能合并
+	 */
+	private String _buildFlightKey(IDBResource dbResource, String clusterName, String tableName, Number pk) {
+		return "pk." + dbResource.getMasterSlave() + "." + clusterName + "." + tableName + "." + pk.longValue();
+	}
+
+	/**
+	 * 合并查询的key. pk.[masterSlave].[clusterName + dbName].[start + end].[tableName + tableIndex].[id]
+	 */
+	private String _buildFlightKey(ShardingDBResource db, Number pk) {
+		return "pk." + db.getMasterSlave() + "." + _buildResourceKey(db) + "." + pk.longValue();
+	}
+
+	private String _buildResourceKey(ShardingDBResource db) {
+		StringBuilder key = new StringBuilder();
+		key.append(db.getClusterName()).append(db.getDbName());
+		key.append(".");
+		key.append(db.getRegionCapacity());
+		key.append(".");
+		key.append(db.getTableName()).append(db.getTableIndex());
+		return key.toString();
+	}
+
 	// //////////////////////////////////////////////////////////////////////////////////////
 	// getPk相关
 	// //////////////////////////////////////////////////////////////////////////////////////
@@ -762,7 +946,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 		try {
             Connection conn = dbResource.getConnection();
 			String sql = SQLBuilder.buildSelectPkByQuery(clazz, -1, query);
-			ps = conn.prepareStatement(sql);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
 
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
@@ -776,6 +960,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 				result.add((Number) rs.getObject(1));
 			}
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -799,7 +984,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 			Connection conn = db.getConnection();
 
 			String sql = SQLBuilder.buildSelectPkByQuery(clazz, db.getTableIndex(), query);
-			ps = conn.prepareStatement(sql);
+			ps = ScatterGatherExecutor.track(conn.prepareStatement(sql));
 			long begin = System.currentTimeMillis();
 			rs = ps.executeQuery();
 			long constTime = System.currentTimeMillis() - begin;
@@ -810,6 +995,7 @@ public abstract class AbstractJdbcQuery implements IDataQuery {
 				result.add((Number) rs.getObject(1));
 			}
 		} finally {
+			ScatterGatherExecutor.untrack(ps);
 			JdbcUtil.close(ps, rs);
 		}
 
@@ -268,25 +268,7 @@ public class GlobalJdbcMasterQueryImpl extends AbstractJdbcQuery implements IGlo
 				tx.enlistResource((XAResource) dbResource);
 			}
 
-			List<T> result = null;
-
-			String tableName = ReflectUtil.getTableName(clazz);
-			if (isSecondCacheAvailable(clazz, useCache)) {
-				result = (List<T>) secondCache.getGlobal(query.getWhereSql(), clusterName, tableName);
-			}
-
-			if (result == null || result.isEmpty()) {
-				if (isCacheAvailable(clazz, useCache)) {
-					Number[] pkValues = selectGlobalPksByQuery(dbResource, query, clazz);
-					result = selectGlobalByPksWithCache(dbResource, clusterName, clazz, pkValues, useCache);
-				} else {
-					result = selectGlobalByQuery(dbResource, query, clazz);
-				}
-
-				if (isSecondCacheAvailable(clazz, useCache)) {
-					secondCache.putGlobal(query.getWhereSql(), clusterName, tableName, result);
-				}
-			}
+			List<T> result = selectGlobalByQueryWithCache(dbResource, clusterName, query, clazz, useCache);
 
 			// 过滤从缓存结果, 将没有指定的字段设置为默认值.
 			List<T> filteResult = new ArrayList<T>(result.size());
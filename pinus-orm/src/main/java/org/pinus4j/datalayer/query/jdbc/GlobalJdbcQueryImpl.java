@@ -169,6 +169,7 @@ public class GlobalJdbcQueryImpl extends AbstractJdbcQuery implements IGlobalQue
 
 		Transaction tx = null;
 		IDBResource dbResource = null;
+		IDBResource masterResource = null;
 		try {
 
 			tx = txManager.getTransaction();
@@ -184,9 +185,13 @@ public class GlobalJdbcQueryImpl extends AbstractJdbcQuery implements IGlobalQue
 			}
 
 			T data = selectByPkWithCache(dbResource, clusterName, pk, clazz, useCache);
-			if (data == null) {
-				dbResource = this.dbCluster.getMasterGlobalDBResource(clusterName, tableName);
-				data = selectByPkWithCache(dbResource, clusterName, pk, clazz, useCache);
+			// 从库可能有延迟, 忽略从库查询留下的记录不存在的标记
+			if (data == null && dbResource.getMasterSlave() != EnumDBMasterSlave.MASTER) {
+				masterResource = this.dbCluster.getMasterGlobalDBResource(clusterName, tableName);
+				if (tx != null) {
+					tx.enlistResource((XAResource) masterResource);
+				}
+				data = selectByPkWithCache(masterResource, clusterName, pk, clazz, useCache, true);
 			}
 
 			return data;
@@ -200,8 +205,13 @@ public class GlobalJdbcQueryImpl extends AbstractJdbcQuery implements IGlobalQue
 			}
 			throw new DBOperationException(e);
 		} finally {
-			if (tx == null && dbResource != null) {
-				dbResource.close();
+			if (tx == null) {
+				if (dbResource != null) {
+					dbResource.close();
+				}
+				if (masterResource != null) {
+					masterResource.close();
+				}
 			}
 		}
 	}
@@ -314,32 +324,10 @@ public class GlobalJdbcQueryImpl extends AbstractJdbcQuery implements IGlobalQue
 				tx.enlistResource((XAResource) dbResource);
 			}
 
-			List<T> result = null;
-
-			if (isSecondCacheAvailable(clazz, useCache)) {
-				result = (List<T>) secondCache.getGlobal(query.getWhereSql(), clusterName, tableName);
-			}
-
-			if (result == null || result.isEmpty()) {
-				if (isCacheAvailable(clazz, useCache)) {
-					Number[] pkValues = selectGlobalPksByQuery(dbResource, query, clazz);
-					result = selectGlobalByPksWithCache(dbResource, clusterName, clazz, pkValues, useCache);
-
-					if (result == null) {
-						dbResource = this.dbCluster.getMasterGlobalDBResource(clusterName, tableName);
-						result = selectGlobalByPksWithCache(dbResource, clusterName, clazz, pkValues, useCache);
-					}
-				} else {
-					result = selectGlobalByQuery(dbResource, query, clazz);
-					if (result == null) {
-						dbResource = this.dbCluster.getMasterGlobalDBResource(clusterName, tableName);
-						result = selectGlobalByQuery(dbResource, query, clazz);
-					}
-				}
-
-				if (isSecondCacheAvailable(clazz, useCache)) {
-					secondCache.putGlobal(query.getWhereSql(), clusterName, tableName, result);
-				}
+			List<T> result = selectGlobalByQueryWithCache(dbResource, clusterName, query, clazz, useCache);
+			if (result == null) {
+				dbResource = this.dbCluster.getMasterGlobalDBResource(clusterName, tableName);
+				result = selectGlobalByQueryWithCache(dbResource, clusterName, query, clazz, useCache);
 			}
 
 			// 过滤从缓存结果, 将没有指定的字段设置为默认值.
@@ -17,10 +17,11 @@
 package org.pinus4j.datalayer.query.jdbc;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.transaction.Transaction;
 import javax.transaction.xa.XAResource;
@@ -29,8 +30,12 @@ import org.pinus4j.api.SQL;
 import org.pinus4j.api.query.IQuery;
 import org.pinus4j.cluster.beans.IShardingKey;
 import org.pinus4j.cluster.enums.EnumDBMasterSlave;
+import org.pinus4j.cluster.resources.DBConnectionLease;
 import org.pinus4j.cluster.resources.IDBResource;
 import org.pinus4j.cluster.resources.ShardingDBResource;
+import org.pinus4j.datalayer.ScatterGatherExecutor;
+import org.pinus4j.datalayer.ShardingPkFilter;
+import org.pinus4j.datalayer.ShardingResultMerger;
 import org.pinus4j.datalayer.query.IShardingQuery;
 import org.pinus4j.exceptions.DBClusterException;
 import org.pinus4j.exceptions.DBOperationException;
@@ -54,7 +59,7 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 	}
 
 	@Override
-	public Number getCount(Class<?> clazz, boolean useCache, EnumDBMasterSlave masterSlave) {
+	public Number getCount(final Class<?> clazz, final boolean useCache, EnumDBMasterSlave masterSlave) {
 		Transaction tx = null;
 		List<IDBResource> dbResources = null;
 		try {
@@ -68,22 +73,23 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 				dbResources = this.dbCluster.getAllSlaveShardingDBResource(clazz, masterSlave);
 			}
 
-			long count = 0;
-			for (IDBResource dbResource : dbResources) {
-				if (tx != null) {
-					tx.enlistResource((ShardingDBResource) dbResource);
+			ShardingCall<Number> countCall = new ShardingCall<Number>() {
+				@Override
+				public Number call(ShardingDBResource dbResource) throws Exception {
+					return selectCountWithCache(dbResource, clazz, useCache);
 				}
-				count += selectCountWithCache((ShardingDBResource) dbResource, clazz, useCache).longValue();
+			};
+
+			long count = 0;
+			for (Number shardingCount : _scatterGather(tx, dbResources, countCall)) {
+				count += shardingCount.longValue();
 			}
 
 			// query from master again
 			if (count == 0) {
 				dbResources = this.dbCluster.getAllMasterShardingDBResource(clazz);
-				for (IDBResource dbResource : dbResources) {
-					if (tx != null) {
-						tx.enlistResource((ShardingDBResource) dbResource);
-					}
-					count += selectCountWithCache((ShardingDBResource) dbResource, clazz, useCache).longValue();
+				for (Number shardingCount : _scatterGather(tx, dbResources, countCall)) {
+					count += shardingCount.longValue();
 				}
 			}
 
@@ -162,7 +168,8 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 	}
 
 	@Override
-	public Number getCountByQuery(IQuery query, Class<?> clazz, boolean useCache, EnumDBMasterSlave masterSlave) {
+	public Number getCountByQuery(final IQuery query, final Class<?> clazz, boolean useCache,
+			EnumDBMasterSlave masterSlave) {
 		Transaction tx = null;
 		List<IDBResource> dbResources = null;
 		try {
@@ -175,22 +182,23 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 				dbResources = this.dbCluster.getAllSlaveShardingDBResource(clazz, masterSlave);
 			}
 
-			long count = 0;
-			for (IDBResource dbResource : dbResources) {
-				if (tx != null) {
-					tx.enlistResource((ShardingDBResource) dbResource);
+			ShardingCall<Number> countCall = new ShardingCall<Number>() {
+				@Override
+				public Number call(ShardingDBResource dbResource) throws Exception {
+					return selectCount(dbResource, clazz, query);
 				}
-				count += selectCount((ShardingDBResource) dbResource, clazz, query).longValue();
+			};
+
+			long count = 0;
+			for (Number shardingCount : _scatterGather(tx, dbResources, countCall)) {
+				count += shardingCount.longValue();
 			}
 
 			// query from master again
 			if (count == 0) {
 				dbResources = this.dbCluster.getAllMasterShardingDBResource(clazz);
-				for (IDBResource dbResource : dbResources) {
-					if (tx != null) {
-						tx.enlistResource((ShardingDBResource) dbResource);
-					}
-					count += selectCount((ShardingDBResource) dbResource, clazz, query).longValue();
+				for (Number shardingCount : _scatterGather(tx, dbResources, countCall)) {
+					count += shardingCount.longValue();
 				}
 			}
 
@@ -274,6 +282,7 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 	public <T> T findByPk(Number pk, Class<T> clazz, boolean useCache, EnumDBMasterSlave masterSlave) {
 		Transaction tx = null;
 		List<IDBResource> dbResources = null;
+		List<IDBResource> masterResources = null;
 		try {
 
 			tx = txManager.getTransaction();
@@ -285,31 +294,13 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 				dbResources = this.dbCluster.getAllSlaveShardingDBResource(clazz, masterSlave);
 			}
 
-			T data = null;
-			for (IDBResource dbResource : dbResources) {
-				if (tx != null) {
-					tx.enlistResource((ShardingDBResource) dbResource);
-				}
-
-				data = selectByPkWithCache((ShardingDBResource) dbResource, pk, clazz, useCache);
-				if (data != null) {
-					break;
-				}
-			}
-
-			// query from master again
-			if (data == null) {
-				dbResources = this.dbCluster.getAllMasterShardingDBResource(clazz);
-				for (IDBResource dbResource : dbResources) {
-					if (tx != null) {
-						tx.enlistResource((ShardingDBResource) dbResource);
-					}
+			T data = _selectByPkInShards(dbResources, pk, clazz, useCache, false, tx);
 
-					data = selectByPkWithCache((ShardingDBResource) dbResource, pk, clazz, useCache);
-					if (data != null) {
-						break;
-					}
-				}
+			// query from master again. 从库可能有延迟, 忽略从库查询留下的记录不存在的标记
+			if (data == null && !dbResources.isEmpty()
+					&& dbResources.get(0).getMasterSlave() != EnumDBMasterSlave.MASTER) {
+				masterResources = this.dbCluster.getAllMasterShardingDBResource(clazz);
+				data = _selectByPkInShards(masterResources, pk, clazz, useCache, true, tx);
 			}
 
 			return data;
@@ -324,10 +315,61 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 
 			throw new DBOperationException(e);
 		} finally {
-			if (tx == null && dbResources != null) {
-				for (IDBResource dbResource : dbResources) {
-					dbResource.close();
-				}
+			if (tx == null) {
+				_close(dbResources);
+				_close(masterResources);
+			}
+		}
+	}
+
+	/**
+	 * 依次在每个分表中根据主键查询. 使用主键过滤器时先查询可能包含此主键的分表, 过滤器不包含其他进程保存的记录,
+	 * 因此没有找到时仍然需要查询其余的分表, 过滤器只减少找到记录之前查询的分表数.
+	 */
+	private <T> T _selectByPkInShards(List<IDBResource> dbResources, Number pk, Class<T> clazz, boolean useCache,
+			boolean ignoreNull, Transaction tx) throws Exception {
+		ShardingPkFilter pkFilter = null;
+		if (ReflectUtil.isPkBloomFilter(clazz)) {
+			pkFilter = ShardingPkFilter.getInstance();
+			pkFilter.prepare(this.dbCluster, clazz);
+		}
+
+		List<ShardingDBResource> skipped = new ArrayList<ShardingDBResource>();
+		for (IDBResource dbResource : dbResources) {
+			ShardingDBResource shardingResource = (ShardingDBResource) dbResource;
+			if (pkFilter != null && !pkFilter.mightContain(shardingResource, pk)) {
+				skipped.add(shardingResource);
+				continue;
+			}
+
+			T data = _selectByPkInShard(shardingResource, pk, clazz, useCache, ignoreNull, tx);
+			if (data != null) {
+				return data;
+			}
+		}
+
+		for (ShardingDBResource shardingResource : skipped) {
+			T data = _selectByPkInShard(shardingResource, pk, clazz, useCache, ignoreNull, tx);
+			if (data != null) {
+				return data;
+			}
+		}
+
+		return null;
+	}
+
+	private <T> T _selectByPkInShard(ShardingDBResource dbResource, Number pk, Class<T> clazz, boolean useCache,
+			boolean ignoreNull, Transaction tx) throws Exception {
+		if (tx != null) {
+			tx.enlistResource(dbResource);
+		}
+		return selectByPkWithCache(dbResource, pk, clazz, useCache, ignoreNull);
+	}
+
+	private void _close(List<IDBResource> dbResources) {
+		if (dbResources != null) {
+			for (IDBResource dbResource : dbResources) {
+				dbResource.close();
 			}
 		}
 	}
@@ -342,6 +384,7 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 			EnumDBMasterSlave masterSlave) {
 		Transaction tx = null;
 		ShardingDBResource dbResource = null;
+		ShardingDBResource masterResource = null;
 		try {
 
 			tx = txManager.getTransaction();
@@ -359,10 +402,13 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 
 			T data = selectByPkWithCache(dbResource, pk, clazz, useCache);
 
-			// query from master again
-			if (data == null) {
-				dbResource = _getDbFromMaster(clazz, shardingKey);
-				selectByPkWithCache(dbResource, pk, clazz, useCache);
+			// query from master again. 从库可能有延迟, 忽略从库查询留下的记录不存在的标记
+			if (data == null && dbResource.getMasterSlave() != EnumDBMasterSlave.MASTER) {
+				masterResource = _getDbFromMaster(clazz, shardingKey);
+				if (tx != null) {
+					tx.enlistResource(masterResource);
+				}
+				data = selectByPkWithCache(masterResource, pk, clazz, useCache, true);
 			}
 
 			return data;
@@ -377,8 +423,13 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 
 			throw new DBOperationException(e);
 		} finally {
-			if (tx == null && dbResource != null) {
-				dbResource.close();
+			if (tx == null) {
+				if (dbResource != null) {
+					dbResource.close();
+				}
+				if (masterResource != null) {
+					masterResource.close();
+				}
 			}
 		}
 	}
@@ -389,7 +440,7 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 	}
 
 	@Override
-	public <T> List<T> findByPkList(List<? extends Number> pkList, Class<T> clazz, boolean useCache,
+	public <T> List<T> findByPkList(List<? extends Number> pkList, final Class<T> clazz, final boolean useCache,
 			EnumDBMasterSlave masterSlave) {
 		Transaction tx = null;
 		List<IDBResource> dbResources = null;
@@ -404,26 +455,24 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 				dbResources = this.dbCluster.getAllSlaveShardingDBResource(clazz, masterSlave);
 			}
 
-			List<T> data = new ArrayList<T>();
-			for (IDBResource dbResource : dbResources) {
-				if (tx != null) {
-					tx.enlistResource((ShardingDBResource) dbResource);
+			final Number[] pks = pkList.toArray(new Number[pkList.size()]);
+			ShardingCall<List<T>> pksCall = new ShardingCall<List<T>>() {
+				@Override
+				public List<T> call(ShardingDBResource dbResource) throws Exception {
+					return selectByPksWithCache(dbResource, clazz, pks, useCache);
 				}
+			};
 
-				data.addAll(selectByPksWithCache((ShardingDBResource) dbResource, clazz,
-						pkList.toArray(new Number[pkList.size()]), useCache));
+			List<T> data = new ArrayList<T>();
+			for (List<T> shardingData : _scatterGather(tx, dbResources, pksCall)) {
+				data.addAll(shardingData);
 			}
 
 			// query from master again
 			if (data.isEmpty()) {
 				dbResources = this.dbCluster.getAllMasterShardingDBResource(clazz);
-				for (IDBResource dbResource : dbResources) {
-					if (tx != null) {
-						tx.enlistResource((ShardingDBResource) dbResource);
-					}
-
-					data.addAll(selectByPksWithCache((ShardingDBResource) dbResource, clazz,
-							pkList.toArray(new Number[pkList.size()]), useCache));
+				for (List<T> shardingData : _scatterGather(tx, dbResources, pksCall)) {
+					data.addAll(shardingData);
 				}
 			}
 
@@ -537,11 +586,14 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 	}
 
 	@Override
-	public <T> List<T> findByQuery(IQuery query, Class<T> clazz, boolean useCache, EnumDBMasterSlave masterSlave) {
+	public <T> List<T> findByQuery(final IQuery query, final Class<T> clazz, final boolean useCache,
+			final EnumDBMasterSlave masterSlave) {
 
 		List<IDBResource> dbResources = null;
 
 		try {
+			Transaction tx = txManager.getTransaction();
+
 			String clusterName = ReflectUtil.getClusterName(clazz);
 			if (EnumDBMasterSlave.MASTER == masterSlave || this.dbCluster.isShardingSlaveExist(clusterName)) {
 				dbResources = this.dbCluster.getAllMasterShardingDBResource(clazz);
@@ -549,39 +601,24 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 				dbResources = this.dbCluster.getAllSlaveShardingDBResource(clazz, masterSlave);
 			}
 
-			List<T> mergeResult = new ArrayList<T>();
-			for (IDBResource dbResource : dbResources) {
-				mergeResult.addAll(findByQuery(query, dbResource, clazz, useCache, masterSlave));
-			}
-
-			// query from master again
-			if (mergeResult.isEmpty()) {
-				dbResources = this.dbCluster.getAllMasterShardingDBResource(clazz);
-				for (IDBResource dbResource : dbResources) {
-					mergeResult.addAll(findByQuery(query, dbResource, clazz, useCache, masterSlave));
-				}
-			}
-
-			// sort by pk
-			Collections.sort(mergeResult, new Comparator<T>() {
+			// 每个分片只取排序后的前start+limit条记录, 再做多路归并
+			final IQuery shardingQuery = ShardingResultMerger.rewrite(query, clazz);
+			ShardingCall<List<T>> queryCall = new ShardingCall<List<T>>() {
 				@Override
-				public int compare(T o1, T o2) {
-					long pk1 = ReflectUtil.getPkValue(o1).longValue();
-					long pk2 = ReflectUtil.getPkValue(o2).longValue();
-					return (int) (pk1 - pk2);
+				public List<T> call(ShardingDBResource dbResource) throws Exception {
+					return findByQuery(shardingQuery, dbResource, clazz, useCache, masterSlave);
 				}
-			});
+			};
 
-			List<T> result = null;
-			if (query.getStart() > -1 && query.getLimit() > -1) {
-				result = mergeResult.subList(query.getStart(), query.getStart() + query.getLimit());
-			} else if (query.getLimit() > -1) {
-				result = mergeResult.subList(0, query.getLimit());
-			} else {
-				result = mergeResult;
+			List<List<T>> shardingResults = _scatterGather(tx, dbResources, queryCall);
+
+			// query from master again
+			if (_isAllEmpty(shardingResults)) {
+				dbResources = this.dbCluster.getAllMasterShardingDBResource(clazz);
+				shardingResults = _scatterGather(tx, dbResources, queryCall);
 			}
 
-			return result;
+			return ShardingResultMerger.merge(shardingResults, query, clazz);
 		} catch (Exception e) {
 			throw new DBOperationException(e);
 		}
@@ -629,24 +666,7 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 				tx.enlistResource((XAResource) dbResource);
 			}
 
-			List<T> result = null;
-
-			if (isSecondCacheAvailable(clazz, useCache)) {
-				result = (List<T>) secondCache.get(query.getWhereSql(), (ShardingDBResource) dbResource);
-			}
-
-			if (result == null || result.isEmpty()) {
-				if (isCacheAvailable(clazz, useCache)) {
-					Number[] pkValues = selectPksByQuery((ShardingDBResource) dbResource, query, clazz);
-					result = selectByPksWithCache((ShardingDBResource) dbResource, clazz, pkValues, useCache);
-				} else {
-					result = selectByQuery((ShardingDBResource) dbResource, query, clazz);
-				}
-
-				if (isSecondCacheAvailable(clazz, useCache)) {
-					secondCache.put(query.getWhereSql(), (ShardingDBResource) dbResource, result);
-				}
-			}
+			List<T> result = selectByQueryWithCache((ShardingDBResource) dbResource, query, clazz, useCache);
 			// 过滤从缓存结果, 将没有指定的字段设置为默认值.
 			List<T> filteResult = new ArrayList<T>(result.size());
 			if (query.hasQueryFields()) {
@@ -752,6 +772,92 @@ public class ShardingJdbcQueryImpl extends AbstractJdbcQuery implements IShardin
 		return next;
 	}
 
+	/**
+	 * 在多个分片上执行同一个查询并按分片顺序返回结果. 存在事务时资源需要在当前线程中登记, 因此串行执行;
+	 * 否则交给集群的并行执行器, 查询耗时约等于最慢的一个分片. 共享同一个数据库连接的分片在一个任务中串行执行,
+	 * 不同库之间并行.
+	 * 
+	 * @param tx
+	 *            当前线程的事务, 可以为null
+	 * @param dbResources
+	 *            分片资源
+	 * @param call
+	 *            在单个分片上执行的查询
+	 */
+	private <V> List<V> _scatterGather(Transaction tx, List<IDBResource> dbResources, final ShardingCall<V> call)
+			throws Exception {
+		List<V> results = new ArrayList<V>(dbResources.size());
+		if (dbResources.isEmpty()) {
+			return results;
+		}
+
+		if (tx != null) {
+			for (IDBResource dbResource : dbResources) {
+				tx.enlistResource((ShardingDBResource) dbResource);
+				results.add(call.call((ShardingDBResource) dbResource));
+			}
+			return results;
+		}
+
+		// 按连接租约分组, 保持每组内的分片顺序
+		Map<DBConnectionLease, List<ShardingDBResource>> groups = new LinkedHashMap<DBConnectionLease, List<ShardingDBResource>>();
+		for (IDBResource dbResource : dbResources) {
+			ShardingDBResource shardingDBResource = (ShardingDBResource) dbResource;
+			List<ShardingDBResource> group = groups.get(shardingDBResource.getLease());
+			if (group == null) {
+				group = new ArrayList<ShardingDBResource>();
+				groups.put(shardingDBResource.getLease(), group);
+			}
+			group.add(shardingDBResource);
+		}
+
+		List<Callable<List<V>>> tasks = new ArrayList<Callable<List<V>>>(groups.size());
+		for (final List<ShardingDBResource> group : groups.values()) {
+			tasks.add(new Callable<List<V>>() {
+				@Override
+				public List<V> call() throws Exception {
+					List<V> groupResults = new ArrayList<V>(group.size());
+					for (ShardingDBResource dbResource : group) {
+						groupResults.add(call.call(dbResource));
+					}
+					return groupResults;
+				}
+			});
+		}
+		List<List<V>> groupResults = ScatterGatherExecutor.getInstance(dbResources.get(0).getClusterName()).invokeAll(
+				tasks);
+
+		// 还原为分片顺序
+		Map<IDBResource, V> resultMap = new IdentityHashMap<IDBResource, V>(dbResources.size());
+		int i = 0;
+		for (List<ShardingDBResource> group : groups.values()) {
+			List<V> one = groupResults.get(i++);
+			for (int j = 0; j < group.size(); j++) {
+				resultMap.put(group.get(j), one.get(j));
+			}
+		}
+		for (IDBResource dbResource : dbResources) {
+			results.add(resultMap.get(dbResource));
+		}
+		return results;
+	}
+
+	private <T> boolean _isAllEmpty(List<List<T>> shardingResults) {
+		for (List<T> shardingResult : shardingResults) {
+			if (!shardingResult.isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 单个分片上的查询.
+	 */
+	private interface ShardingCall<V> {
+		V call(ShardingDBResource dbResource) throws Exception;
+	}
+
 	/**
 	 * 路由选择.
 	 * 
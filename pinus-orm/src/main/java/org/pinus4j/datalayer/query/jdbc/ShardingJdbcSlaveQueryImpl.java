@@ -234,24 +234,7 @@ public class ShardingJdbcSlaveQueryImpl extends AbstractJdbcQuery implements ISh
 			if (tx != null)
 				tx.enlistResource(dbResource);
 
-			List<T> result = null;
-
-			if (isSecondCacheAvailable(clazz, useCache)) {
-				result = (List<T>) secondCache.get(query.getWhereSql(), dbResource);
-			}
-
-			if (result == null || result.isEmpty()) {
-				if (isCacheAvailable(clazz, useCache)) {
-					Number[] pkValues = selectPksByQuery(dbResource, query, clazz);
-					result = selectByPksWithCache(dbResource, clazz, pkValues, useCache);
-				} else {
-					result = selectByQuery(dbResource, query, clazz);
-				}
-
-				if (isSecondCacheAvailable(clazz, useCache)) {
-					secondCache.put(query.getWhereSql(), dbResource, result);
-				}
-			}
+			List<T> result = selectByQueryWithCache(dbResource, query, clazz, useCache);
 
 			// 过滤从缓存结果, 将没有指定的字段设置为默认值.
 			List<T> filteResult = new ArrayList<T>(result.size());
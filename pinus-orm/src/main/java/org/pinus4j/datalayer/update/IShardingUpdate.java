@@ -62,6 +62,20 @@ public interface IShardingUpdate extends IDataUpdate {
 	 */
 	public Number[] saveBatch(List<? extends Object> entities, IShardingKey<?> shardingValue);
 
+	/**
+	 * 批量保存数据. 根据每个数据对象的分片字段计算路由, 按分库分表分组后各组并行写入. 整批数据只调用一次ID生成器.
+	 * 没有事务时每个分片独立提交.
+	 * 
+	 * @param entities
+	 *            批量数据对象
+	 * 
+	 * @return 主键
+	 * 
+	 * @throws DBOperationException
+	 *             操作失败
+	 */
+	public Number[] saveBatch(List<? extends Object> entities);
+
 	/**
 	 * 更新数据. <b>忽略空值的更新</b>
 	 * 
@@ -19,7 +19,6 @@ package org.pinus4j.datalayer.update.jdbc;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.List;
 
 import javax.transaction.TransactionManager;
@@ -27,6 +26,9 @@ import javax.transaction.TransactionManager;
 import org.pinus4j.cache.IPrimaryCache;
 import org.pinus4j.cache.ISecondCache;
 import org.pinus4j.cluster.IDBCluster;
+import org.pinus4j.cluster.enums.EnumIdGenerator;
+import org.pinus4j.constant.Const;
+import org.pinus4j.datalayer.BatchWriter;
 import org.pinus4j.datalayer.SQLBuilder;
 import org.pinus4j.datalayer.update.IDataUpdate;
 import org.pinus4j.exceptions.DBOperationException;
@@ -69,7 +71,12 @@ public abstract class AbstractJdbcUpdate implements IDataUpdate {
 	protected TransactionManager txManager;
 
 	/**
-	 * 执行保存数据操作.
+	 * 批量写入, 将一批数据合并为少量的多行语句.
+	 */
+	protected BatchWriter batchWriter = BatchWriter.getDefault();
+
+	/**
+	 * 执行保存数据操作. 数据被合并为多行INSERT语句执行.
 	 *
 	 * @param conn
 	 *            数据库连接
@@ -79,10 +86,8 @@ public abstract class AbstractJdbcUpdate implements IDataUpdate {
 	 *            分片表下标. 当-1时忽略下标
 	 */
 	protected void _saveBatch(Connection conn, List<? extends Object> entities, int tableIndex) {
-		Statement st = null;
 		try {
-			st = SQLBuilder.getInsert(conn, entities, tableIndex);
-			st.executeBatch();
+			batchWriter.insert(conn, entities, tableIndex);
 		} catch (SQLException e) {
 			try {
 				conn.rollback();
@@ -90,8 +95,6 @@ public abstract class AbstractJdbcUpdate implements IDataUpdate {
 				LOG.error(e1.getMessage());
 			}
 			throw new DBOperationException(e);
-		} finally {
-			JdbcUtil.close(st);
 		}
 	}
 
@@ -120,10 +123,8 @@ public abstract class AbstractJdbcUpdate implements IDataUpdate {
 	 *            等于-1时会被忽略.
 	 */
 	protected void _updateBatch(Connection conn, List<? extends Object> entities, int tableIndex) {
-		Statement st = null;
 		try {
-			st = SQLBuilder.getUpdate(conn, entities, tableIndex);
-			st.executeBatch();
+			batchWriter.update(conn, entities, tableIndex);
 		} catch (SQLException e) {
 			try {
 				conn.rollback();
@@ -131,11 +132,44 @@ public abstract class AbstractJdbcUpdate implements IDataUpdate {
 				LOG.error(e1.getMessage());
 			}
 			throw new DBOperationException(e);
-		} finally {
-			JdbcUtil.close(st);
 		}
 	}
 
+	/**
+	 * 获取数据对象使用的id生成器.
+	 */
+	protected IIdGenerator getIdGenerator(Class<?> clazz) {
+		if (ReflectUtil.getIdGenerator(clazz) == EnumIdGenerator.SNOWFLAKE) {
+			return this.dbCluster.getIdGenerator(EnumIdGenerator.SNOWFLAKE);
+		}
+		return this.idGenerator;
+	}
+
+	/**
+	 * 给一批数据对象生成主键. snowflake方式生成long型主键, 序列方式生成int型主键.
+	 * 
+	 * @param seed
+	 *            当seed大于当前值则使用seed作为起点
+	 */
+	protected Number[] genPkBatch(Class<?> clazz, String clusterName, String tableName, int batchSize, long seed) {
+		IIdGenerator idGen = getIdGenerator(clazz);
+		String zkPath = Const.ZK_PRIMARYKEY + "/" + clusterName;
+
+		Number[] pks = new Number[batchSize];
+		if (ReflectUtil.getIdGenerator(clazz) == EnumIdGenerator.SNOWFLAKE) {
+			long[] newPks = idGen.genClusterUniqueLongIdBatch(zkPath, tableName, batchSize, seed);
+			for (int i = 0; i < batchSize; i++) {
+				pks[i] = newPks[i];
+			}
+		} else {
+			int[] newPks = idGen.genClusterUniqueIntIdBatch(zkPath, tableName, batchSize, seed);
+			for (int i = 0; i < batchSize; i++) {
+				pks[i] = newPks[i];
+			}
+		}
+		return pks;
+	}
+
 	/**
 	 * 判断一级缓存是否可用
 	 * 
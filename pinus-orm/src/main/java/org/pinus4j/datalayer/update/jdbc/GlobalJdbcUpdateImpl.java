@@ -18,6 +18,7 @@ package org.pinus4j.datalayer.update.jdbc;
 
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,7 +27,6 @@ import javax.transaction.Transaction;
 import javax.transaction.xa.XAResource;
 
 import org.pinus4j.cluster.resources.IDBResource;
-import org.pinus4j.constant.Const;
 import org.pinus4j.datalayer.update.IGlobalUpdate;
 import org.pinus4j.exceptions.DBOperationException;
 import org.pinus4j.utils.ReflectUtil;
@@ -60,18 +60,17 @@ public class GlobalJdbcUpdateImpl extends AbstractJdbcUpdate implements IGlobalU
 		for (int i = 0; i < entitySize; i++) {
 			entity = entities.get(i);
 			pk = ReflectUtil.getPkValue(entity);
-			if (pk == null || pk.intValue() == 0) {
+			if (pk == null || pk.longValue() == 0) {
 				map.put(i, entity);
 			} else {
 				pks[i] = pk;
-				maxPk = pk.intValue() > maxPk.intValue() ? pk : maxPk;
+				maxPk = pk.longValue() > maxPk.longValue() ? pk : maxPk;
 			}
 		}
 		// 如果主键为0，则设置主键
 		if (!map.isEmpty()) {
 			isCheckPrimaryKey = false;
-			int[] newPks = this.idGenerator.genClusterUniqueIntIdBatch(Const.ZK_PRIMARYKEY + "/" + clusterName,
-					tableName, map.size(), maxPk.longValue());
+			Number[] newPks = genPkBatch(clazz, clusterName, tableName, map.size(), maxPk.longValue());
 			int i = 0;
 			for (Map.Entry<Number, Object> entry : map.entrySet()) {
 				int pos = entry.getKey().intValue();
@@ -86,7 +85,7 @@ public class GlobalJdbcUpdateImpl extends AbstractJdbcUpdate implements IGlobalU
 		}
 
 		if (isCheckPrimaryKey)
-			this.idGenerator.checkAndSetPrimaryKey(maxPk.longValue(), clusterName, tableName);
+			getIdGenerator(clazz).checkAndSetPrimaryKey(maxPk.longValue(), clusterName, tableName);
 
 		Transaction tx = null;
 		IDBResource dbResource = null;
@@ -105,6 +104,8 @@ public class GlobalJdbcUpdateImpl extends AbstractJdbcUpdate implements IGlobalU
 
 			if (isCacheAvailable(clazz)) {
 				primaryCache.incrCountGlobal(clusterName, tableName, entities.size());
+				// 删除记录不存在的标记
+				primaryCache.removeGlobal(clusterName, tableName, Arrays.asList(pks));
 			}
 
 			if (isSecondCacheAvailable(clazz)) {
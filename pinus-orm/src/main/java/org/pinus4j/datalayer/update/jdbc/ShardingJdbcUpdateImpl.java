@@ -18,15 +18,22 @@ package org.pinus4j.datalayer.update.jdbc;
 
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.transaction.Transaction;
 
+import org.pinus4j.cluster.beans.DBInfo;
 import org.pinus4j.cluster.beans.IShardingKey;
+import org.pinus4j.cluster.beans.ShardingKey;
 import org.pinus4j.cluster.resources.ShardingDBResource;
+import org.pinus4j.cluster.router.RouteInfo;
 import org.pinus4j.constant.Const;
+import org.pinus4j.datalayer.ScatterGatherExecutor;
+import org.pinus4j.datalayer.ShardingPkFilter;
 import org.pinus4j.datalayer.update.IShardingUpdate;
 import org.pinus4j.exceptions.DBClusterException;
 import org.pinus4j.exceptions.DBOperationException;
@@ -55,9 +62,9 @@ public class ShardingJdbcUpdateImpl extends AbstractJdbcUpdate implements IShard
 		boolean isCheckPrimaryKey = true;
 		// set primary key.
 		Number pk = ReflectUtil.getPkValue(entity);
-		if (pk == null || pk.intValue() == 0) {
+		if (pk == null || pk.longValue() == 0) {
 			isCheckPrimaryKey = false;
-			pk = this.idGenerator.genClusterUniqueLongId(Const.ZK_PRIMARYKEY + "/" + shardingKey.getClusterName(),
+			pk = getIdGenerator(clazz).genClusterUniqueLongId(Const.ZK_PRIMARYKEY + "/" + shardingKey.getClusterName(),
 					tableName);
 			try {
 				ReflectUtil.setPkValue(entity, pk);
@@ -67,7 +74,7 @@ public class ShardingJdbcUpdateImpl extends AbstractJdbcUpdate implements IShard
 		}
 
 		if (isCheckPrimaryKey)
-			this.idGenerator.checkAndSetPrimaryKey(pk.longValue(), shardingKey.getClusterName(), tableName);
+			getIdGenerator(clazz).checkAndSetPrimaryKey(pk.longValue(), shardingKey.getClusterName(), tableName);
 
 		List<Object> entities = new ArrayList<Object>(1);
 		entities.add(entity);
@@ -89,6 +96,11 @@ public class ShardingJdbcUpdateImpl extends AbstractJdbcUpdate implements IShard
 
 			if (isCacheAvailable(clazz)) {
 				primaryCache.incrCount(dbResource, 1);
+				// 删除记录不存在的标记
+				primaryCache.remove(dbResource, pk);
+			}
+			if (ReflectUtil.isPkBloomFilter(clazz)) {
+				ShardingPkFilter.getInstance().put(dbResource, pk);
 			}
 			if (isSecondCacheAvailable(clazz)) {
 				secondCache.remove(dbResource);
@@ -121,43 +133,7 @@ public class ShardingJdbcUpdateImpl extends AbstractJdbcUpdate implements IShard
 		Class<?> clazz = entities.get(0).getClass();
 		String tableName = ReflectUtil.getTableName(clazz);
 
-		int entitySize = entities.size();
-		Number[] pks = new Number[entitySize];
-		boolean isCheckPrimaryKey = true;
-
-		// 如果主键为0，则设置主键
-		Map<Number, Object> map = new LinkedHashMap<Number, Object>(entitySize);
-		Number pk = null, maxPk = 0;
-		Object entity = null;
-		for (int i = 0; i < entitySize; i++) {
-			entity = entities.get(i);
-			pk = ReflectUtil.getPkValue(entity);
-			if (pk == null || pk.longValue() == 0) {
-				map.put(i, entity);
-			} else {
-				pks[i] = pk;
-				maxPk = pk.intValue() > maxPk.intValue() ? pk : maxPk;
-			}
-		}
-		if (!map.isEmpty()) {
-			isCheckPrimaryKey = false;
-			int[] newPks = this.idGenerator.genClusterUniqueIntIdBatch(
-					Const.ZK_PRIMARYKEY + "/" + shardingKey.getClusterName(), tableName, map.size(), maxPk.longValue());
-			int i = 0;
-			for (Map.Entry<Number, Object> entry : map.entrySet()) {
-				int pos = entry.getKey().intValue();
-				try {
-					ReflectUtil.setPkValue(entities.get(pos), newPks[i]);
-				} catch (Exception e) {
-					throw new DBOperationException(e);
-				}
-				pks[pos] = newPks[i];
-				i++;
-			}
-		}
-
-		if (isCheckPrimaryKey)
-			this.idGenerator.checkAndSetPrimaryKey(maxPk.longValue(), shardingKey.getClusterName(), tableName);
+		Number[] pks = _setPkBatch(entities, shardingKey.getClusterName(), tableName);
 
 		Transaction tx = null;
 		ShardingDBResource dbResource = null;
@@ -176,6 +152,11 @@ public class ShardingJdbcUpdateImpl extends AbstractJdbcUpdate implements IShard
 
 			if (isCacheAvailable(clazz)) {
 				primaryCache.incrCount(dbResource, pks.length);
+				// 删除记录不存在的标记
+				primaryCache.remove(dbResource, Arrays.asList(pks));
+			}
+			if (ReflectUtil.isPkBloomFilter(clazz)) {
+				ShardingPkFilter.getInstance().put(dbResource, pks);
 			}
 			if (isSecondCacheAvailable(clazz)) {
 				secondCache.remove(dbResource);
@@ -203,6 +184,128 @@ public class ShardingJdbcUpdateImpl extends AbstractJdbcUpdate implements IShard
 		return pks;
 	}
 
+	@Override
+	public Number[] saveBatch(List<? extends Object> entities) {
+		final Class<?> clazz = entities.get(0).getClass();
+		final String tableName = ReflectUtil.getTableName(clazz);
+		String clusterName = ReflectUtil.getClusterName(clazz);
+
+		Number[] pks = _setPkBatch(entities, clusterName, tableName);
+
+		// 按路由分组, 同一个分库分表的数据合并到一次批量写入
+		Map<DBInfo, Map<Integer, ShardingGroup>> groupMap = new LinkedHashMap<DBInfo, Map<Integer, ShardingGroup>>();
+		List<ShardingGroup> groups = new ArrayList<ShardingGroup>();
+		for (Object entity : entities) {
+			IShardingKey<Object> shardingKey = new ShardingKey<Object>(clusterName,
+					ReflectUtil.getShardingValue(entity));
+			RouteInfo routeInfo;
+			try {
+				routeInfo = this.dbCluster.selectRouteInfoFromMaster(tableName, shardingKey);
+			} catch (DBClusterException e) {
+				throw new DBOperationException(e);
+			}
+
+			Map<Integer, ShardingGroup> tableGroups = groupMap.get(routeInfo.getDbInfo());
+			if (tableGroups == null) {
+				tableGroups = new LinkedHashMap<Integer, ShardingGroup>();
+				groupMap.put(routeInfo.getDbInfo(), tableGroups);
+			}
+			ShardingGroup group = tableGroups.get(routeInfo.getTableIndex());
+			if (group == null) {
+				group = new ShardingGroup(routeInfo);
+				tableGroups.put(routeInfo.getTableIndex(), group);
+				groups.add(group);
+			}
+			group.entities.add(entity);
+		}
+
+		Transaction tx = null;
+		try {
+			tx = txManager.getTransaction();
+		} catch (Exception e) {
+			throw new DBOperationException(e);
+		}
+
+		if (tx != null) {
+			// 事务中的写入需要登记到当前线程的事务, 因此串行执行
+			try {
+				for (ShardingGroup group : groups) {
+					ShardingDBResource dbResource = _getDbFromMaster(group.routeInfo, tableName);
+					tx.enlistResource(dbResource);
+					_saveGroup(dbResource, group);
+					_afterSaveGroup(dbResource, group, clazz);
+				}
+			} catch (Exception e) {
+				try {
+					tx.rollback();
+				} catch (Exception e1) {
+					throw new DBOperationException(e1);
+				}
+				throw new DBOperationException(e);
+			}
+			return pks;
+		}
+
+		// 没有事务时各个分片并行写入, 每个分片独立提交
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(groups.size());
+		for (final ShardingGroup group : groups) {
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					ShardingDBResource dbResource = null;
+					try {
+						dbResource = _getDbFromMaster(group.routeInfo, tableName);
+						_saveGroup(dbResource, group);
+						dbResource.commit();
+						// 提交之后再更新缓存, 避免并发的查询读到未提交的状态
+						_afterSaveGroup(dbResource, group, clazz);
+					} catch (Exception e) {
+						if (dbResource != null) {
+							dbResource.rollback();
+						}
+						throw e;
+					} finally {
+						if (dbResource != null) {
+							dbResource.close();
+						}
+					}
+					return null;
+				}
+			});
+		}
+		ScatterGatherExecutor.getInstance(clusterName).invokeAll(tasks);
+
+		return pks;
+	}
+
+	/**
+	 * 写入一个分库分表的数据, 不提交.
+	 */
+	private void _saveGroup(ShardingDBResource dbResource, ShardingGroup group) {
+		_saveBatch(dbResource.getConnection(), group.entities, dbResource.getTableIndex());
+	}
+
+	/**
+	 * 写入一个分库分表的数据之后更新缓存和主键过滤器.
+	 */
+	private void _afterSaveGroup(ShardingDBResource dbResource, ShardingGroup group, Class<?> clazz) {
+		Number[] pks = new Number[group.entities.size()];
+		for (int i = 0; i < pks.length; i++) {
+			pks[i] = ReflectUtil.getPkValue(group.entities.get(i));
+		}
+		if (isCacheAvailable(clazz)) {
+			primaryCache.incrCount(dbResource, pks.length);
+			// 删除记录不存在的标记
+			primaryCache.remove(dbResource, Arrays.asList(pks));
+		}
+		if (ReflectUtil.isPkBloomFilter(clazz)) {
+			ShardingPkFilter.getInstance().put(dbResource, pks);
+		}
+		if (isSecondCacheAvailable(clazz)) {
+			secondCache.remove(dbResource);
+		}
+	}
+
 	@Override
 	public void update(Object entity, IShardingKey<?> shardingKey) {
 		List<Object> entities = new ArrayList<Object>();
@@ -322,6 +425,53 @@ public class ShardingJdbcUpdateImpl extends AbstractJdbcUpdate implements IShard
 
 	}
 
+	/**
+	 * 给主键为0的数据对象设置主键, 整批数据只调用一次ID生成器. 主键都有值时检查并设置ID生成器的当前值.
+	 * 
+	 * @return 每个数据对象的主键
+	 */
+	private Number[] _setPkBatch(List<? extends Object> entities, String clusterName, String tableName) {
+		Class<?> clazz = entities.get(0).getClass();
+		int entitySize = entities.size();
+		Number[] pks = new Number[entitySize];
+		boolean isCheckPrimaryKey = true;
+
+		// 如果主键为0，则设置主键
+		Map<Number, Object> map = new LinkedHashMap<Number, Object>(entitySize);
+		Number pk = null, maxPk = 0;
+		Object entity = null;
+		for (int i = 0; i < entitySize; i++) {
+			entity = entities.get(i);
+			pk = ReflectUtil.getPkValue(entity);
+			if (pk == null || pk.longValue() == 0) {
+				map.put(i, entity);
+			} else {
+				pks[i] = pk;
+				maxPk = pk.longValue() > maxPk.longValue() ? pk : maxPk;
+			}
+		}
+		if (!map.isEmpty()) {
+			isCheckPrimaryKey = false;
+			Number[] newPks = genPkBatch(clazz, clusterName, tableName, map.size(), maxPk.longValue());
+			int i = 0;
+			for (Map.Entry<Number, Object> entry : map.entrySet()) {
+				int pos = entry.getKey().intValue();
+				try {
+					ReflectUtil.setPkValue(entities.get(pos), newPks[i]);
+				} catch (Exception e) {
+					throw new DBOperationException(e);
+				}
+				pks[pos] = newPks[i];
+				i++;
+			}
+		}
+
+		if (isCheckPrimaryKey)
+			getIdGenerator(clazz).checkAndSetPrimaryKey(maxPk.longValue(), clusterName, tableName);
+
+		return pks;
+	}
+
 	/**
 	 * 路由选择.
 	 * 
@@ -343,4 +493,24 @@ public class ShardingJdbcUpdateImpl extends AbstractJdbcUpdate implements IShard
 		return shardingDBResource;
 	}
 
+	private ShardingDBResource _getDbFromMaster(RouteInfo routeInfo, String tableName) {
+		try {
+			return (ShardingDBResource) this.dbCluster.getMasterShardingDBResource(routeInfo, tableName);
+		} catch (DBClusterException e) {
+			throw new DBOperationException(e);
+		}
+	}
+
+	/**
+	 * 路由到同一个分库分表的数据.
+	 */
+	private static class ShardingGroup {
+		private final RouteInfo routeInfo;
+		private final List<Object> entities = new ArrayList<Object>();
+
+		ShardingGroup(RouteInfo routeInfo) {
+			this.routeInfo = routeInfo;
+		}
+	}
+
 }
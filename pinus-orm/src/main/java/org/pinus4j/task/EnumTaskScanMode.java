@@ -0,0 +1,20 @@
+package org.pinus4j.task;
+
+/**
+ * 数据处理任务遍历分表的方式.
+ * 
+ * @author duanbn
+ * @since 1.1.1
+ */
+public enum EnumTaskScanMode {
+
+	/**
+	 * 按固定长度的主键区间遍历(pk &gt;= ? AND pk &lt; ? + step). 主键不连续时会有空的查询.
+	 */
+	PK_RANGE,
+	/**
+	 * 按主键分页遍历(pk &gt; ? ORDER BY pk LIMIT step), 记录较多的分表拆分为多个主键范围并行遍历.
+	 */
+	KEYSET;
+
+}
@@ -40,4 +40,39 @@ public interface ITask<T> {
 	 */
 	public int taskBuffer();
 
+	/**
+	 * 设置读取线程数, 小于等于0时使用默认值
+	 * 
+	 * @return
+	 */
+	public int readerThread();
+
+	/**
+	 * 设置处理线程数, 小于等于0时使用默认值
+	 * 
+	 * @return
+	 */
+	public int workerThread();
+
+	/**
+	 * 设置每个表已经读取但是没有处理完的最大批次数, 小于等于0时使用默认值
+	 * 
+	 * @return
+	 */
+	public int inflightBatch();
+
+	/**
+	 * 设置保存任务进度时每处理完多少批记录保存一次, 小于等于0时使用默认值
+	 * 
+	 * @return
+	 */
+	public int checkpointInterval();
+
+	/**
+	 * 遍历分表的方式.
+	 * 
+	 * @return
+	 */
+	public EnumTaskScanMode scanMode();
+
 }
@@ -0,0 +1,27 @@
+package org.pinus4j.task;
+
+/**
+ * 数据处理任务进度监听器. 在处理线程中被调用, 实现需要尽快返回.
+ * 
+ * @author duanbn
+ *
+ */
+public interface ITaskListener {
+
+	/**
+	 * 处理完一批记录后会调用此方法, 两次调用的间隔不小于设置监听器时指定的间隔.
+	 * 
+	 * @param progress
+	 *            当前进度
+	 */
+	public void onProgress(TaskProgress progress);
+
+	/**
+	 * 任务完成时会调用此方法.
+	 * 
+	 * @param progress
+	 *            最终进度
+	 */
+	public void onFinish(TaskProgress progress);
+
+}
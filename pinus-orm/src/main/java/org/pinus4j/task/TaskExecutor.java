@@ -2,27 +2,34 @@ package org.pinus4j.task;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.pinus4j.api.query.IQuery;
+import org.pinus4j.checkpoint.ICheckpointStore;
 import org.pinus4j.cluster.IDBCluster;
 import org.pinus4j.cluster.resources.GlobalDBResource;
 import org.pinus4j.cluster.resources.IDBResource;
 import org.pinus4j.cluster.resources.ShardingDBResource;
 import org.pinus4j.datalayer.IRecordIterator;
+import org.pinus4j.constant.Const;
 import org.pinus4j.datalayer.iterator.GlobalRecordIterator;
+import org.pinus4j.datalayer.iterator.ShardingKeysetRecordIterator;
 import org.pinus4j.datalayer.iterator.ShardingRecordIterator;
 import org.pinus4j.exceptions.DBClusterException;
 import org.pinus4j.exceptions.DBOperationException;
 import org.pinus4j.exceptions.TaskException;
 import org.pinus4j.utils.ReflectUtil;
-import org.pinus4j.utils.ThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * 数据处理执行器.
- * 
+ *
+ * 执行时可以指定一个进度存储, 此时定期保存每个遍历器的位置. 使用保存了进度的存储再次执行时, 每个遍历器从保存的位置继续遍历,
+ * 按主键分页遍历时拆分的主键范围也从存储中恢复.
+ *
  * @author duanbn
  *
  */
@@ -31,9 +38,9 @@ public class TaskExecutor<E> {
 	public static final Logger LOG = LoggerFactory.getLogger(TaskExecutor.class);
 
 	/**
-	 * 处理线程池名称.
+	 * 进度名中主键范围序号的分隔符.
 	 */
-	private static final String THREADPOOL_NAME = "pinus";
+	private static final String RANGE_SEPARATOR = "#";
 
 	/**
 	 * 本次处理的数据对象
@@ -56,6 +63,20 @@ public class TaskExecutor<E> {
 	}
 
 	public TaskFuture execute(ITask<E> task, IQuery query) {
+		return execute(task, query, null);
+	}
+
+	/**
+	 * 执行任务并保存进度.
+	 *
+	 * @param task
+	 *            处理任务
+	 * @param query
+	 *            查询条件, 可以为null
+	 * @param checkpointStore
+	 *            进度存储, 为null时不保存进度. 存储中已经有进度时从保存的位置继续执行, 任务完成后删除保存的进度
+	 */
+	public TaskFuture execute(ITask<E> task, IQuery query, ICheckpointStore checkpointStore) {
 		// 初始化任务.
 		try {
 			task.init();
@@ -63,10 +84,17 @@ public class TaskExecutor<E> {
 			throw new TaskException(e);
 		}
 
-		// 创建线程池.
-		ThreadPool threadPool = ThreadPool.newInstance(THREADPOOL_NAME);
+		Map<String, String> checkpoints = Collections.emptyMap();
+		if (checkpointStore != null) {
+			checkpoints = checkpointStore.load();
+			if (!checkpoints.isEmpty()) {
+				LOG.info("resume task " + task + " from " + checkpoints.size() + " checkpoints");
+			}
+		}
 
-		TaskFuture future = null;
+		TaskFuture future = new TaskFuture(task);
+		List<IRecordIterator<E>> readers = new ArrayList<IRecordIterator<E>>();
+		List<String> checkpointKeys = new ArrayList<String>();
 
 		String clusterName = ReflectUtil.getClusterName(clazz);
 
@@ -78,127 +106,179 @@ public class TaskExecutor<E> {
 			} catch (Exception e) {
 				throw new DBOperationException(e);
 			}
-			List<IRecordIterator<E>> readers = new ArrayList<IRecordIterator<E>>(dbResources.size());
+			// 并行遍历一个分表时另外创建的连接
+			List<IDBResource> forkResources = new ArrayList<IDBResource>();
 
-			// 计算总数
-			long total = 0;
 			for (IDBResource dbResource : dbResources) {
-				reader = new ShardingRecordIterator<E>((ShardingDBResource) dbResource, clazz);
+				ShardingDBResource shardingResource = (ShardingDBResource) dbResource;
+				String checkpointKey = shardingResource.getDbName() + "." + shardingResource.getTableName()
+						+ shardingResource.getTableIndex();
+
+				if (task.scanMode() == EnumTaskScanMode.KEYSET) {
+					_createKeysetReaders(shardingResource, task, query, checkpointStore, checkpoints, checkpointKey,
+							readers, checkpointKeys, forkResources, future);
+					continue;
+				}
+
+				reader = new ShardingRecordIterator<E>(shardingResource, clazz);
 				if (task.taskBuffer() > 0) {
 					reader.setStep(task.taskBuffer());
 				}
 				reader.setQuery(query);
+				_resume(reader, checkpoints, checkpointKey);
 				readers.add(reader);
-				total += reader.getCount();
+				checkpointKeys.add(checkpointKey);
+				future.addShard(checkpointKey, reader.getCount());
 			}
 
-			future = new TaskFuture(total, threadPool, task);
 			future.addDBResource(dbResources);
-
-			for (IRecordIterator<E> r : readers) {
-				threadPool.submit(new RecrodReaderThread<E>(r, threadPool, task, future));
-			}
+			future.addDBResource(forkResources);
 		} else { // 全局情况
-			RecrodThread<E> rt = null;
-
 			IDBResource dbResource;
 			try {
 				dbResource = this.dbCluster.getMasterGlobalDBResource(clusterName, ReflectUtil.getTableName(clazz));
 			} catch (DBClusterException e) {
 				throw new DBOperationException(e);
 			}
+			String checkpointKey = ((GlobalDBResource) dbResource).getDbName() + "." + ReflectUtil.getTableName(clazz);
+
 			reader = new GlobalRecordIterator<E>((GlobalDBResource) dbResource, clazz);
 			if (task.taskBuffer() > 0) {
 				reader.setStep(task.taskBuffer());
 			}
 			reader.setQuery(query);
+			_resume(reader, checkpoints, checkpointKey);
+			readers.add(reader);
+			checkpointKeys.add(checkpointKey);
+			future.addShard(checkpointKey, reader.getCount());
 
-			future = new TaskFuture(reader.getCount(), threadPool, task);
 			future.addDBResource(dbResource);
-
-			while (reader.hasNext()) {
-				List<E> record = reader.nextMore();
-				rt = new RecrodThread<E>(record, task, future);
-				threadPool.submit(rt);
-			}
 		}
+		future.setCheckpointStore(checkpointStore);
+
+		new TaskPipeline<E>(task).start(readers, checkpointKeys, checkpointStore, future);
 
 		return future;
 	}
 
 	/**
-	 * 只是在数据分片情况下会被使用.
-	 * 
-	 * @author duanbn
-	 *
-	 * @param <E>
+	 * 从保存的位置继续遍历.
 	 */
-	public static class RecrodReaderThread<E> implements Runnable {
-
-		private IRecordIterator<E> recordReader;
-
-		private ThreadPool threadPool;
+	private void _resume(IRecordIterator<E> reader, Map<String, String> checkpoints, String checkpointKey) {
+		String latestId = checkpoints.get(checkpointKey);
+		if (latestId != null) {
+			reader.setLatestId(Long.parseLong(latestId));
+		}
+	}
 
-		private ITask<E> task;
+	/**
+	 * 创建一个分表的按主键分页遍历器. 保存进度时分表的主键范围保存在以分表命名的进度中, 每个范围的位置保存在"分表#序号"的进度中.
+	 */
+	private void _createKeysetReaders(ShardingDBResource dbResource, ITask<E> task, IQuery query,
+			ICheckpointStore checkpointStore, Map<String, String> checkpoints, String checkpointKey,
+			List<IRecordIterator<E>> readers, List<String> checkpointKeys, List<IDBResource> forkResources,
+			TaskFuture future) {
+		ShardingKeysetRecordIterator<E> reader = _createKeysetReader(dbResource, task, query);
+
+		long count = -1;
+		long[][] ranges;
+		String savedRanges = checkpoints.get(checkpointKey);
+		if (savedRanges != null) {
+			ranges = _parseRanges(savedRanges);
+		} else {
+			count = reader.getCount();
+			ranges = _splitRange(reader, count);
+			if (checkpointStore != null) {
+				// 范围在开始处理前一次保存, 继续执行时使用相同的范围
+				checkpointStore.save(checkpointKey, _formatRanges(ranges));
+			}
+		}
 
-		private TaskFuture future;
+		for (int i = 0; i < ranges.length; i++) {
+			ShardingKeysetRecordIterator<E> rangeReader;
+			if (i == 0) {
+				rangeReader = reader;
+			} else {
+				ShardingDBResource fork = dbResource.fork();
+				forkResources.add(fork);
+				rangeReader = _createKeysetReader(fork, task, query);
+			}
+			rangeReader.setRange(ranges[i][0], ranges[i][1]);
 
-		public RecrodReaderThread(IRecordIterator<E> recordReader, ThreadPool threadPool, ITask<E> task,
-				TaskFuture future) {
-			this.recordReader = recordReader;
-			this.threadPool = threadPool;
-			this.task = task;
-			this.future = future;
-		}
+			String rangeKey = checkpointKey + RANGE_SEPARATOR + i;
+			_resume(rangeReader, checkpoints, rangeKey);
+			readers.add(rangeReader);
+			checkpointKeys.add(rangeKey);
 
-		@Override
-		public void run() {
-			RecrodThread<E> rt = null;
-			while (recordReader.hasNext()) {
-				List<E> record = recordReader.nextMore();
-				rt = new RecrodThread<E>(record, task, future);
-				threadPool.submit(rt);
+			if (ranges.length == 1 && count >= 0) {
+				future.addShard(rangeKey, count);
+			} else {
+				future.addShard(rangeKey, rangeReader.getCount());
 			}
 		}
+	}
 
+	private ShardingKeysetRecordIterator<E> _createKeysetReader(ShardingDBResource dbResource, ITask<E> task,
+			IQuery query) {
+		ShardingKeysetRecordIterator<E> reader = new ShardingKeysetRecordIterator<E>(dbResource, clazz);
+		if (task.taskBuffer() > 0) {
+			reader.setStep(task.taskBuffer());
+		}
+		reader.setQuery(query);
+		return reader;
 	}
 
 	/**
-	 * 具体执行任务方法.
-	 * 
-	 * @author duanbn
-	 *
-	 * @param <E>
+	 * 记录数超过{@link Const#TASK_SCAN_SPLIT_SIZE}的分表按主键平均拆分为多个范围(lowId, highId], 每个范围使用独立的连接并行遍历.
+	 * 最后一个范围没有上限, 包含遍历过程中新增的记录.
 	 */
-	public static class RecrodThread<E> implements Runnable {
-
-		public static final Logger LOG = LoggerFactory.getLogger(RecrodThread.class);
-
-		private List<E> record;
-
-		private ITask<E> task;
+	private long[][] _splitRange(ShardingKeysetRecordIterator<E> reader, long count) {
+		int splitNum = (int) Math.min(Const.TASK_SCAN_MAX_SPLIT, count / Const.TASK_SCAN_SPLIT_SIZE);
+		if (splitNum <= 1) {
+			return new long[][] { { -1, -1 } };
+		}
 
-		private TaskFuture future;
+		long minId = reader.getMinId();
+		long maxId = reader.getMaxId();
+		long rangeSize = (maxId - minId) / splitNum + 1;
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("split " + reader.getDBResource() + " into " + splitNum + " ranges, minId=" + minId + ", maxId="
+					+ maxId);
+		}
 
-		public RecrodThread(List<E> record, ITask<E> task, TaskFuture future) {
-			this.record = record;
-			this.task = task;
-			this.future = future;
+		long[][] ranges = new long[splitNum][];
+		long lowId = minId - 1;
+		for (int i = 0; i < splitNum; i++) {
+			long highId = (i == splitNum - 1) ? -1 : lowId + rangeSize;
+			ranges[i] = new long[] { lowId, highId };
+			lowId = highId;
 		}
+		return ranges;
+	}
 
-		@Override
-		public void run() {
-			try {
-				this.task.batchRecord(record);
-				this.task.afterBatch();
-			} catch (Exception e) {
-				LOG.warn("do task failure " + record, e);
-			} finally {
-				this.future.down(record.size());
-				this.future.incrCount(record.size());
+	/**
+	 * 主键范围保存为"lowId:highId,lowId:highId".
+	 */
+	private String _formatRanges(long[][] ranges) {
+		StringBuilder value = new StringBuilder();
+		for (long[] range : ranges) {
+			if (value.length() > 0) {
+				value.append(',');
 			}
+			value.append(range[0]).append(':').append(range[1]);
 		}
+		return value.toString();
+	}
 
+	private long[][] _parseRanges(String value) {
+		String[] items = value.split(",");
+		long[][] ranges = new long[items.length][];
+		for (int i = 0; i < items.length; i++) {
+			int index = items[i].indexOf(':');
+			ranges[i] = new long[] { Long.parseLong(items[i].substring(0, index)),
+					Long.parseLong(items[i].substring(index + 1)) };
+		}
+		return ranges;
 	}
 
 }
@@ -1,42 +1,68 @@
 package org.pinus4j.task;
 
-import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.pinus4j.checkpoint.ICheckpointStore;
 import org.pinus4j.cluster.resources.IDBResource;
+import org.pinus4j.constant.Const;
 import org.pinus4j.exceptions.TaskException;
-import org.pinus4j.utils.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * 数据处理任务进度.
- * 
+ *
+ * 每个遍历器使用独立的计数器, 处理线程之间只在同一个遍历器上竞争. 任务在所有遍历器读取完成并且读取的记录都处理完后结束,
+ * 与开始时统计的总数无关.
+ *
+ * 处理一批记录的耗时按2的幂分段统计, 分位数是所在分段的上限.
+ *
+ * 读取或者处理记录失败时任务仍然会结束, 此时{@link #isFailed()}返回true, 保存的进度不会被删除,
+ * 使用同一个进度存储再次执行时从失败的位置继续.
+ *
  * @author duanbn
  *
  */
 public class TaskFuture {
 
+	public static final Logger LOG = LoggerFactory.getLogger(TaskFuture.class);
+
+	/**
+	 * 批次耗时统计的分段数
+	 */
+	private static final int LATENCY_BUCKETS = 64;
+
 	/**
 	 * 需要处理的总记录数
 	 */
-	private long total;
+	private AtomicLong total = new AtomicLong(0);
 
 	/**
-	 * 阻塞调用线程.
+	 * 每个遍历器的进度, 按加入顺序保存
 	 */
-	private CountDownLatch cdl;
+	private Map<String, Shard> shards = new LinkedHashMap<String, Shard>();
 
 	/**
-	 * 已经处理的记录数
+	 * 阻塞调用线程, 任务完成时释放.
 	 */
-	private AtomicLong count = new AtomicLong(0);
+	private CountDownLatch doneLatch = new CountDownLatch(1);
+
+	private long startTime = System.currentTimeMillis();
+
+	private volatile long finishTime;
 
 	/**
-	 * 执行处理的线程池
+	 * 处理耗时落在[2^(i-1), 2^i)毫秒的批次数
 	 */
-	private ThreadPool threadPool;
+	private AtomicLongArray batchLatency = new AtomicLongArray(LATENCY_BUCKETS);
 
 	/**
 	 * 被执行的任务
@@ -45,71 +71,211 @@ public class TaskFuture {
 
 	private List<IDBResource> dbResources = new ArrayList<IDBResource>();
 
-	public TaskFuture(long total, ThreadPool threadPool, ITask<?> task) {
-		this.total = total;
+	/**
+	 * 任务进度存储, 任务完成时删除保存的进度
+	 */
+	private ICheckpointStore checkpointStore;
+
+	private volatile ITaskListener listener;
 
-		this.cdl = new CountDownLatch((int) total);
+	private volatile long listenerInterval;
 
-		this.threadPool = threadPool;
+	private AtomicLong lastNotify = new AtomicLong(0);
 
+	/**
+	 * 第一个读取或者处理失败的原因
+	 */
+	private AtomicReference<Throwable> cause = new AtomicReference<Throwable>();
+
+	public TaskFuture(ITask<?> task) {
 		// 当前执行的任务引用.
 		this.task = task;
 	}
 
+	/**
+	 * 增加一个遍历器.
+	 *
+	 * @param name
+	 *            遍历器名称
+	 * @param total
+	 *            遍历器需要处理的记录数
+	 */
+	public synchronized void addShard(String name, long total) {
+		if (this.shards.containsKey(name)) {
+			throw new IllegalArgumentException("遍历器名称重复, name=" + name);
+		}
+		this.shards.put(name, new Shard(name, total));
+		this.total.addAndGet(total);
+	}
+
+	synchronized Shard getShard(String name) {
+		return this.shards.get(name);
+	}
+
+	/**
+	 * 设置进度监听器, 使用默认的通知间隔.
+	 */
+	public void setListener(ITaskListener listener) {
+		setListener(listener, Const.TASK_PROGRESS_INTERVAL);
+	}
+
+	/**
+	 * 设置进度监听器.
+	 *
+	 * @param listener
+	 *            监听器
+	 * @param interval
+	 *            两次通知的最小间隔(毫秒)
+	 */
+	public void setListener(ITaskListener listener, long interval) {
+		this.listenerInterval = interval;
+		this.listener = listener;
+	}
+
 	public String getProgress() {
-		double val = new Long(this.count.get()).doubleValue() / new Long(this.total).doubleValue();
-		DecimalFormat df = new DecimalFormat("0.00");
-		return df.format(val);
+		long total = getTotal();
+		long percent = total > 0 ? Math.min(getCount() * 100 / total, 100) : 100;
+		return (percent / 100) + "." + (percent % 100 < 10 ? "0" : "") + (percent % 100);
+	}
+
+	/**
+	 * 获取当前进度的快照.
+	 *
+	 * @return
+	 */
+	public TaskProgress getTaskProgress() {
+		Map<String, Long> shardTotal = new LinkedHashMap<String, Long>();
+		Map<String, Long> shardCount = new LinkedHashMap<String, Long>();
+		long count = 0;
+		synchronized (this) {
+			for (Shard shard : this.shards.values()) {
+				long c = shard.count.get();
+				shardTotal.put(shard.name, shard.total);
+				shardCount.put(shard.name, c);
+				count += c;
+			}
+		}
+
+		long end = this.finishTime > 0 ? this.finishTime : System.currentTimeMillis();
+		return new TaskProgress(getTotal(), count, end - this.startTime, shardTotal, shardCount, _latencyPercentiles());
 	}
 
 	/**
 	 * 当然任务是否已经完成
-	 * 
+	 *
 	 * @return
 	 */
 	public boolean isDone() {
-		return this.count.get() == this.total;
+		return this.doneLatch.getCount() == 0;
+	}
+
+	/**
+	 * 任务是否有记录读取或者处理失败.
+	 *
+	 * @return
+	 */
+	public boolean isFailed() {
+		return this.cause.get() != null;
+	}
+
+	/**
+	 * 第一个读取或者处理失败的原因, 没有失败时返回null.
+	 *
+	 * @return
+	 */
+	public Throwable getCause() {
+		return this.cause.get();
 	}
 
 	public void await() throws InterruptedException {
-		try {
-			// 线程阻塞，当本次处理完成之后会取消阻塞
-			this.cdl.await();
-		} catch (Exception e) {
-			throw new TaskException(e);
-		}
+		this.doneLatch.await();
+	}
+
+	/**
+	 * 等待任务完成.
+	 *
+	 * @return 超时返回false
+	 */
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.doneLatch.await(timeout, unit);
 	}
 
-	public void down(int count) {
-		for (int i = 0; i < count; i++)
-			this.cdl.countDown();
-		if (isDone()) {
-			try {
-				this.task.finish();
-			} catch (Exception e) {
-				throw new TaskException(e);
-			} finally {
-				// 关闭线程池
-				this.threadPool.shutdown();
-				// release db connection
-				for (IDBResource dbResource : dbResources) {
-					dbResource.close();
+	/**
+	 * 一批记录处理完成.
+	 */
+	void batchDone(Shard shard, int size, long latency) {
+		shard.count.addAndGet(size);
+
+		int bucket = LATENCY_BUCKETS - Long.numberOfLeadingZeros(Math.max(latency, 0));
+		this.batchLatency.incrementAndGet(Math.min(bucket, LATENCY_BUCKETS - 1));
+
+		ITaskListener listener = this.listener;
+		if (listener != null) {
+			long now = System.currentTimeMillis();
+			long last = this.lastNotify.get();
+			if (now - last >= this.listenerInterval && this.lastNotify.compareAndSet(last, now)) {
+				try {
+					listener.onProgress(getTaskProgress());
+				} catch (Exception e) {
+					LOG.warn("notify task progress failure", e);
 				}
 			}
 		}
 	}
 
-	public void incrCount(int count) {
-		if (this.count.get() < this.total)
-			this.count.addAndGet(count);
+	/**
+	 * 读取或者处理记录失败.
+	 */
+	void fail(Throwable e) {
+		this.cause.compareAndSet(null, e);
+	}
+
+	/**
+	 * 所有记录处理完成, 只会被调用一次.
+	 */
+	void done() {
+		this.finishTime = System.currentTimeMillis();
+		try {
+			this.task.finish();
+			if (this.checkpointStore != null) {
+				if (isFailed()) {
+					LOG.warn("task failure, keep checkpoint for resume", this.cause.get());
+				} else {
+					this.checkpointStore.clear();
+				}
+			}
+		} catch (Exception e) {
+			throw new TaskException(e);
+		} finally {
+			// release db connection
+			for (IDBResource dbResource : dbResources) {
+				dbResource.close();
+			}
+			this.doneLatch.countDown();
+
+			ITaskListener listener = this.listener;
+			if (listener != null) {
+				try {
+					listener.onFinish(getTaskProgress());
+				} catch (Exception e) {
+					LOG.warn("notify task finish failure", e);
+				}
+			}
+		}
 	}
 
 	public long getTotal() {
-		return total;
+		return this.total.get();
 	}
 
 	public long getCount() {
-		return this.count.get();
+		long count = 0;
+		synchronized (this) {
+			for (Shard shard : this.shards.values()) {
+				count += shard.count.get();
+			}
+		}
+		return count;
 	}
 
 	public void addDBResource(IDBResource dbResource) {
@@ -120,9 +286,59 @@ public class TaskFuture {
 		this.dbResources.addAll(dbResources);
 	}
 
+	public void setCheckpointStore(ICheckpointStore checkpointStore) {
+		this.checkpointStore = checkpointStore;
+	}
+
+	/**
+	 * 50%, 95%, 99%分位数所在分段的上限.
+	 */
+	private long[] _latencyPercentiles() {
+		long[] buckets = new long[LATENCY_BUCKETS];
+		long sum = 0;
+		for (int i = 0; i < LATENCY_BUCKETS; i++) {
+			buckets[i] = this.batchLatency.get(i);
+			sum += buckets[i];
+		}
+
+		double[] percents = new double[] { 0.5, 0.95, 0.99 };
+		long[] result = new long[percents.length];
+		if (sum == 0) {
+			return result;
+		}
+		int p = 0;
+		long cumulative = 0;
+		for (int i = 0; i < LATENCY_BUCKETS && p < percents.length; i++) {
+			cumulative += buckets[i];
+			while (p < percents.length && cumulative >= Math.ceil(sum * percents[p])) {
+				result[p++] = i == 0 ? 0 : (1L << i) - 1;
+			}
+		}
+		return result;
+	}
+
 	@Override
 	public String toString() {
-		return "TaskFuture [total=" + total + ", cdl=" + cdl + ", count=" + count + "]";
+		return "TaskFuture [total=" + getTotal() + ", count=" + getCount() + ", done=" + isDone() + ", failed="
+				+ isFailed() + "]";
+	}
+
+	/**
+	 * 一个遍历器的进度.
+	 */
+	static class Shard {
+
+		private final String name;
+
+		private final long total;
+
+		private final AtomicLong count = new AtomicLong(0);
+
+		Shard(String name, long total) {
+			this.name = name;
+			this.total = total;
+		}
+
 	}
 
 }
@@ -0,0 +1,327 @@
+package org.pinus4j.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pinus4j.checkpoint.ICheckpointStore;
+import org.pinus4j.constant.Const;
+import org.pinus4j.datalayer.IRecordIterator;
+import org.pinus4j.utils.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 数据处理流水线. 读取线程遍历表, 每读取一批记录交给处理线程执行.
+ *
+ * 每个表同时最多有{@link ITask#inflightBatch()}批记录已经读取但是没有处理完, 达到上限时读取线程阻塞等待,
+ * 内存中的记录数只和表的个数有关. 读取线程不执行处理逻辑, 在处理线程执行前一批记录时读取下一批.
+ *
+ * 设置了进度存储时, 每个遍历器每连续处理完{@link ITask#checkpointInterval()}批记录保存一次遍历位置.
+ * 批次可能乱序处理完成, 保存的是之前的批次都已经处理完的位置, 从保存的位置继续执行时最多重复处理这些批次.
+ * 读取或者处理失败时任务标记为失败, 失败的遍历器不再保存位置, 任务结束后保留进度用于继续执行.
+ *
+ * 所有表读取完成并且读取的记录都处理完后任务结束, 线程池自动关闭.
+ *
+ * @author duanbn
+ *
+ * @param <E>
+ */
+public class TaskPipeline<E> {
+
+	public static final Logger LOG = LoggerFactory.getLogger(TaskPipeline.class);
+
+	/**
+	 * 读取线程池名称.
+	 */
+	private static final String READER_POOL_NAME = "pinus-reader";
+
+	/**
+	 * 处理线程池名称.
+	 */
+	private static final String WORKER_POOL_NAME = "pinus-worker";
+
+	private ITask<E> task;
+
+	private int readerThread;
+
+	private int workerThread;
+
+	private int inflightBatch;
+
+	private int checkpointInterval;
+
+	/**
+	 * 没有读取完成的表的个数
+	 */
+	private AtomicInteger runningReader = new AtomicInteger(0);
+
+	/**
+	 * 没有读取完成的表和没有处理完的批次的个数, 为0时任务结束
+	 */
+	private AtomicLong pending = new AtomicLong(0);
+
+	private TaskFuture future;
+
+	private ThreadPool workerPool;
+
+	public TaskPipeline(ITask<E> task) {
+		this.task = task;
+
+		this.readerThread = task.readerThread() > 0 ? task.readerThread() : Const.TASK_READER_THREAD;
+		this.workerThread = task.workerThread() > 0 ? task.workerThread() : Const.TASK_WORKER_THREAD;
+		this.inflightBatch = task.inflightBatch() > 0 ? task.inflightBatch() : Const.TASK_INFLIGHT_BATCH;
+		this.checkpointInterval = task.checkpointInterval() > 0 ? task.checkpointInterval()
+				: Const.TASK_CHECKPOINT_INTERVAL;
+	}
+
+	/**
+	 * 开始读取并处理记录.
+	 *
+	 * @param readers
+	 *            每个表的读取器
+	 * @param names
+	 *            每个读取器的名称, 与readers一一对应. 需要已经通过{@link TaskFuture#addShard(String, long)}加入任务进度,
+	 *            同时也是保存遍历位置时的进度名
+	 * @param checkpointStore
+	 *            进度存储, 为null时不保存进度
+	 * @param future
+	 *            任务进度
+	 */
+	public void start(List<IRecordIterator<E>> readers, List<String> names, ICheckpointStore checkpointStore,
+			TaskFuture future) {
+		this.future = future;
+		if (readers.isEmpty()) {
+			future.done();
+			return;
+		}
+
+		this.workerPool = ThreadPool.newFixedInstance(WORKER_POOL_NAME, this.workerThread);
+		ThreadPool readerPool = ThreadPool.newFixedInstance(READER_POOL_NAME,
+				Math.min(this.readerThread, readers.size()));
+
+		this.runningReader.set(readers.size());
+		this.pending.set(readers.size());
+		for (int i = 0; i < readers.size(); i++) {
+			Checkpoint checkpoint = null;
+			if (checkpointStore != null) {
+				checkpoint = new Checkpoint(checkpointStore, names.get(i), this.checkpointInterval);
+			}
+			TaskFuture.Shard shard = future.getShard(names.get(i));
+			if (shard == null) {
+				throw new IllegalArgumentException("遍历器没有加入任务进度, name=" + names.get(i));
+			}
+			readerPool.execute(new RecordReaderThread(readers.get(i), shard, checkpoint));
+		}
+		// 已经提交的读取任务会继续执行
+		readerPool.shutdown();
+	}
+
+	private void _readerDone() {
+		if (this.runningReader.decrementAndGet() == 0) {
+			// 已经提交的处理任务会继续执行
+			this.workerPool.shutdown();
+		}
+		_release();
+	}
+
+	private void _release() {
+		if (this.pending.decrementAndGet() == 0) {
+			this.future.done();
+		}
+	}
+
+	/**
+	 * 遍历一个表, 已经读取但是没有处理完的批次达到上限时阻塞.
+	 */
+	private class RecordReaderThread implements Runnable {
+
+		private IRecordIterator<E> recordReader;
+
+		private TaskFuture.Shard shard;
+
+		private Semaphore inflight;
+
+		private Checkpoint checkpoint;
+
+		public RecordReaderThread(IRecordIterator<E> recordReader, TaskFuture.Shard shard, Checkpoint checkpoint) {
+			this.recordReader = recordReader;
+			this.shard = shard;
+			this.checkpoint = checkpoint;
+			this.inflight = new Semaphore(inflightBatch);
+		}
+
+		@Override
+		public void run() {
+			try {
+				long seq = 0;
+				while (true) {
+					// 先获取许可再读取, 正在读取的批次也计算在内
+					this.inflight.acquire();
+					if (!recordReader.hasNext()) {
+						break;
+					}
+					List<E> record = recordReader.nextMore();
+					seq++;
+					pending.incrementAndGet();
+					workerPool.execute(new RecordThread(record, shard, inflight, checkpoint, seq,
+							recordReader.getLatestId()));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				LOG.warn("read record interrupted");
+				future.fail(e);
+			} catch (Exception e) {
+				LOG.warn("read record failure", e);
+				future.fail(e);
+			} finally {
+				_readerDone();
+			}
+		}
+
+	}
+
+	/**
+	 * 一个遍历器的进度. 批次按读取顺序编号, 只保存之前的批次都已经处理完的位置.
+	 */
+	private static class Checkpoint {
+
+		private ICheckpointStore store;
+
+		private String key;
+
+		private int interval;
+
+		/**
+		 * 已经处理完但是之前还有批次没有处理完的批次, 批次号 -> 遍历位置
+		 */
+		private TreeMap<Long, Long> pending = new TreeMap<Long, Long>();
+
+		/**
+		 * 连续处理完的最后一个批次
+		 */
+		private long doneSeq;
+
+		private long doneLatestId;
+
+		private long savedSeq;
+
+		/**
+		 * 处理失败的第一个批次, 之后的批次不再保存位置
+		 */
+		private long failedSeq = Long.MAX_VALUE;
+
+		public Checkpoint(ICheckpointStore store, String key, int interval) {
+			this.store = store;
+			this.key = key;
+			this.interval = interval;
+		}
+
+		public synchronized void batchDone(long seq, long latestId) {
+			if (seq > this.failedSeq) {
+				return;
+			}
+			this.pending.put(seq, latestId);
+
+			Long next;
+			while ((next = this.pending.remove(this.doneSeq + 1)) != null) {
+				this.doneSeq++;
+				this.doneLatestId = next;
+			}
+
+			_saveIfNecessary();
+		}
+
+		/**
+		 * 一个批次处理失败, 保存的位置停留在此批次之前.
+		 */
+		public synchronized void batchFailed(long seq) {
+			if (seq >= this.failedSeq) {
+				return;
+			}
+			this.failedSeq = seq;
+			this.pending.keySet().removeAll(new ArrayList<Long>(this.pending.tailMap(seq).keySet()));
+
+			_saveIfNecessary();
+		}
+
+		private void _saveIfNecessary() {
+			// 失败的批次之前的批次都处理完时保存最终的位置
+			if (this.doneSeq - this.savedSeq >= this.interval
+					|| (this.doneSeq == this.failedSeq - 1 && this.doneSeq > this.savedSeq)) {
+				_save();
+			}
+		}
+
+		private void _save() {
+			try {
+				this.store.save(this.key, String.valueOf(this.doneLatestId));
+				this.savedSeq = this.doneSeq;
+			} catch (Exception e) {
+				LOG.warn("save checkpoint failure, key=" + this.key, e);
+			}
+		}
+
+	}
+
+	/**
+	 * 具体执行任务方法.
+	 *
+	 * @author duanbn
+	 *
+	 */
+	private class RecordThread implements Runnable {
+
+		private List<E> record;
+
+		private TaskFuture.Shard shard;
+
+		private Semaphore inflight;
+
+		private Checkpoint checkpoint;
+
+		private long seq;
+
+		private long latestId;
+
+		public RecordThread(List<E> record, TaskFuture.Shard shard, Semaphore inflight, Checkpoint checkpoint,
+				long seq, long latestId) {
+			this.record = record;
+			this.shard = shard;
+			this.inflight = inflight;
+			this.checkpoint = checkpoint;
+			this.seq = seq;
+			this.latestId = latestId;
+		}
+
+		@Override
+		public void run() {
+			long start = System.currentTimeMillis();
+			boolean success = false;
+			try {
+				task.batchRecord(record);
+				task.afterBatch();
+				success = true;
+			} catch (Exception e) {
+				LOG.warn("do task failure " + record, e);
+				future.fail(e);
+			} finally {
+				if (this.checkpoint != null) {
+					if (success) {
+						this.checkpoint.batchDone(seq, latestId);
+					} else {
+						this.checkpoint.batchFailed(seq);
+					}
+				}
+				this.inflight.release();
+				future.batchDone(shard, record.size(), System.currentTimeMillis() - start);
+				_release();
+			}
+		}
+
+	}
+
+}
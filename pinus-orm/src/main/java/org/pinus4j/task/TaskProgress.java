@@ -0,0 +1,126 @@
+package org.pinus4j.task;
+
+import java.util.Map;
+
+/**
+ * 数据处理任务某一时刻的进度.
+ *
+ * @author duanbn
+ *
+ */
+public class TaskProgress {
+
+	/**
+	 * 需要处理的总记录数
+	 */
+	private long total;
+
+	/**
+	 * 已经处理的记录数
+	 */
+	private long count;
+
+	/**
+	 * 已经执行的时间(毫秒)
+	 */
+	private long elapsed;
+
+	/**
+	 * 每个遍历器需要处理的记录数
+	 */
+	private Map<String, Long> shardTotal;
+
+	/**
+	 * 每个遍历器已经处理的记录数
+	 */
+	private Map<String, Long> shardCount;
+
+	/**
+	 * 处理一批记录的耗时分位数(毫秒), 分别是50%, 95%, 99%
+	 */
+	private long[] batchLatency;
+
+	public TaskProgress(long total, long count, long elapsed, Map<String, Long> shardTotal,
+			Map<String, Long> shardCount, long[] batchLatency) {
+		this.total = total;
+		this.count = count;
+		this.elapsed = elapsed;
+		this.shardTotal = shardTotal;
+		this.shardCount = shardCount;
+		this.batchLatency = batchLatency;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	/**
+	 * 每秒处理的记录数.
+	 *
+	 * @return
+	 */
+	public long getRowsPerSecond() {
+		if (elapsed <= 0) {
+			return 0;
+		}
+		return count * 1000 / elapsed;
+	}
+
+	/**
+	 * 按照当前速度预计剩余的时间(毫秒), 还没有处理任何记录时返回-1.
+	 *
+	 * @return
+	 */
+	public long getEta() {
+		if (count <= 0) {
+			return -1;
+		}
+		long remain = Math.max(total - count, 0);
+		return (long) ((double) remain * elapsed / count);
+	}
+
+	public Map<String, Long> getShardTotal() {
+		return shardTotal;
+	}
+
+	public Map<String, Long> getShardCount() {
+		return shardCount;
+	}
+
+	/**
+	 * 50%的批次处理耗时不超过此值(毫秒).
+	 */
+	public long getBatchLatencyP50() {
+		return batchLatency[0];
+	}
+
+	/**
+	 * 95%的批次处理耗时不超过此值(毫秒).
+	 */
+	public long getBatchLatencyP95() {
+		return batchLatency[1];
+	}
+
+	/**
+	 * 99%的批次处理耗时不超过此值(毫秒).
+	 */
+	public long getBatchLatencyP99() {
+		return batchLatency[2];
+	}
+
+	@Override
+	public String toString() {
+		return "TaskProgress [total=" + total + ", count=" + count + ", elapsed=" + elapsed + "ms, rowsPerSecond="
+				+ getRowsPerSecond() + ", eta=" + getEta() + "ms, batchLatencyP50=" + batchLatency[0]
+				+ "ms, batchLatencyP95=" + batchLatency[1] + "ms, batchLatencyP99=" + batchLatency[2] + "ms]";
+	}
+
+}
@@ -14,6 +14,7 @@ import org.pinus4j.api.query.Condition;
 import org.pinus4j.api.query.IQuery;
 import org.pinus4j.cluster.beans.IShardingKey;
 import org.pinus4j.cluster.beans.ShardingKey;
+import org.pinus4j.datalayer.IRecordCursor;
 import org.pinus4j.entity.TestEntity;
 import org.pinus4j.entity.TestGlobalEntity;
 
@@ -129,6 +130,25 @@ public class ShardingStorageClientTest extends BaseTest {
 		storageClient.destroy();
 	}
 
+	@Test
+	public void testSaveBatchWithoutShardingKey() {
+		List<TestEntity> entities = new ArrayList<TestEntity>();
+		for (int i = 0; i < 10; i++) {
+			TestEntity entity = createEntity();
+			entity.setTestInt(i);
+			entities.add(entity);
+		}
+		Number[] pks = storageClient.saveBatch(entities);
+		Assert.assertEquals(10, pks.length);
+
+		for (TestEntity entity : entities) {
+			IShardingKey<Number> key = new ShardingKey<Number>(CLUSTER_KLSTORAGE, entity.getTestInt());
+			TestEntity one = storageClient.findByPk(entity.getId(), key, TestEntity.class);
+			Assert.assertEquals(entity.getTestInt(), one.getTestInt());
+			storageClient.removeByPk(entity.getId(), key, TestEntity.class);
+		}
+	}
+
 	@Test
 	public void testGetCountClassOfQ() {
 		// global
@@ -597,4 +617,51 @@ public class ShardingStorageClientTest extends BaseTest {
 		// TODO
 	}
 
+	@Test
+	public void testStreamIQueryClassOfT() {
+		List<TestGlobalEntity> globalEntities = new ArrayList<TestGlobalEntity>();
+		IRecordCursor<TestGlobalEntity> globalCursor = storageClient.stream(globalQuery, TestGlobalEntity.class);
+		try {
+			while (globalCursor.hasNext()) {
+				globalEntities.add(globalCursor.next());
+			}
+		} finally {
+			globalCursor.close();
+		}
+		Assert.assertEquals(storageClient.findByQuery(globalQuery, TestGlobalEntity.class, false), globalEntities);
+
+		List<TestEntity> shardingEntities = new ArrayList<TestEntity>();
+		IRecordCursor<TestEntity> shardingCursor = storageClient.stream(shardingQuery, TestEntity.class);
+		try {
+			while (shardingCursor.hasNext()) {
+				shardingEntities.add(shardingCursor.next());
+			}
+		} finally {
+			shardingCursor.close();
+		}
+		Assert.assertEquals(ShardingStorageClientTest.shardingEntities.size(), shardingEntities.size());
+		Assert.assertTrue(shardingEntities.containsAll(ShardingStorageClientTest.shardingEntities));
+	}
+
+	@Test
+	public void testStreamIQueryIShardingKeyOfQClassOfT() {
+		IRecordCursor<TestEntity> cursor = storageClient.stream(shardingQuery, manyKey, TestEntity.class);
+		try {
+			for (int i = 0; i < ShardingStorageClientTest.shardingEntities.size(); i++) {
+				Assert.assertTrue(cursor.hasNext());
+				Assert.assertEquals(ShardingStorageClientTest.shardingEntities.get(i), cursor.next());
+			}
+			Assert.assertFalse(cursor.hasNext());
+		} finally {
+			cursor.close();
+		}
+
+		// 没有读完时关闭
+		cursor = storageClient.stream(shardingQuery, manyKey, TestEntity.class);
+		Assert.assertTrue(cursor.hasNext());
+		cursor.next();
+		cursor.close();
+		Assert.assertFalse(cursor.hasNext());
+	}
+
 }
@@ -3,6 +3,7 @@ package org.pinus4j.api;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import junit.framework.Assert;
 
@@ -15,6 +16,7 @@ import org.pinus4j.api.query.IQuery;
 import org.pinus4j.cluster.beans.IShardingKey;
 import org.pinus4j.cluster.beans.ShardingKey;
 import org.pinus4j.entity.TestEntity;
+import org.pinus4j.task.EnumTaskScanMode;
 import org.pinus4j.task.ITask;
 import org.pinus4j.task.TaskFuture;
 
@@ -82,6 +84,75 @@ public class ShardingTaskTest extends BaseTest {
 		System.out.println(future);
 	}
 
+	@Test
+	public void testSubmitKeyset() throws InterruptedException {
+		KeysetShardingTask task = new KeysetShardingTask();
+
+		TaskFuture future = storageClient.submit(task, TestEntity.class);
+		future.await();
+
+		Assert.assertEquals(future.getTotal(), task.num.get());
+		System.out.println(future);
+	}
+
+	@Test
+	public void testSubmitResume() throws InterruptedException {
+		// 第一次处理到一半失败, 保留任务进度
+		KeysetShardingTask task = new KeysetShardingTask();
+		task.failAt = 1000;
+		TaskFuture future = storageClient.submit(task, TestEntity.class, null, "sharding_task_test");
+		future.await();
+
+		Assert.assertTrue(future.isFailed());
+		Assert.assertNotNull(future.getCause());
+		long total = future.getTotal();
+		Assert.assertTrue(task.num.get() < total);
+		System.out.println(future);
+
+		// 第二次从保存的进度继续处理, 完成后清除进度
+		KeysetShardingTask resumeTask = new KeysetShardingTask();
+		TaskFuture resumeFuture = storageClient.submit(resumeTask, TestEntity.class, null, "sharding_task_test");
+		resumeFuture.await();
+
+		Assert.assertFalse(resumeFuture.isFailed());
+		Assert.assertTrue(resumeTask.num.get() < total);
+		Assert.assertTrue(task.num.get() + resumeTask.num.get() >= total);
+		System.out.println(resumeFuture);
+	}
+
+	public static class KeysetShardingTask extends AbstractTask<TestEntity> {
+		private final AtomicLong num = new AtomicLong();
+
+		/**
+		 * 处理的记录数达到此值后处理失败一次
+		 */
+		private volatile long failAt = -1;
+
+		@Override
+		public void batchRecord(List<TestEntity> entity) {
+			if (failAt >= 0 && num.get() >= failAt) {
+				failAt = -1;
+				throw new IllegalStateException("batch failure");
+			}
+			num.addAndGet(entity.size());
+		}
+
+		@Override
+		public int taskBuffer() {
+			return 10;
+		}
+
+		@Override
+		public int checkpointInterval() {
+			return 1;
+		}
+
+		@Override
+		public EnumTaskScanMode scanMode() {
+			return EnumTaskScanMode.KEYSET;
+		}
+	}
+
 	public static class SimpleShardingTask extends AbstractTask<TestEntity> {
 		@Override
 		public void batchRecord(List<TestEntity> entity) {
@@ -0,0 +1,82 @@
+package org.pinus4j.datalayer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pinus4j.datalayer.BatchWriter.BatchStatement;
+import org.pinus4j.entity.TestEntity;
+
+public class BatchWriterTest {
+
+	@Test
+	public void testBuildInsert() throws Exception {
+		List<TestEntity> entities = new ArrayList<TestEntity>();
+		for (int i = 0; i < 10; i++) {
+			entities.add(_create(i, i % 2 == 0 ? "test" + i : null));
+		}
+
+		List<BatchStatement> statements = new BatchWriter(1024 * 1024).buildInsert(entities, 1);
+		// 按字段分组, 有testString和没有testString各一组
+		Assert.assertEquals(2, statements.size());
+		for (BatchStatement statement : statements) {
+			Assert.assertTrue(statement.getSql().startsWith("INSERT INTO test_entity1("));
+			Assert.assertEquals(_count(statement.getSql(), '?'), statement.getParams().size());
+		}
+		Assert.assertEquals(5 * 11, statements.get(0).getParams().size());
+		Assert.assertEquals(5 * 10, statements.get(1).getParams().size());
+
+		// 超过最大长度时拆分为多条语句
+		statements = new BatchWriter(500).buildInsert(entities, 1);
+		int paramNum = 0;
+		for (BatchStatement statement : statements) {
+			Assert.assertTrue(statement.getSql().length() < 500);
+			paramNum += statement.getParams().size();
+		}
+		Assert.assertTrue(statements.size() > 2);
+		Assert.assertEquals(5 * 11 + 5 * 10, paramNum);
+	}
+
+	@Test
+	public void testBuildUpdate() throws Exception {
+		List<TestEntity> entities = new ArrayList<TestEntity>();
+		entities.add(_create(1, "a"));
+		entities.add(_create(2, "b"));
+		entities.add(_create(1, "c"));
+
+		List<BatchStatement> statements = new BatchWriter(1024 * 1024).buildUpdate(entities, 1);
+		// 主键重复时拆分, 保证后面的更新生效
+		Assert.assertEquals(2, statements.size());
+
+		BatchStatement first = statements.get(0);
+		Assert.assertTrue(first.getSql().startsWith("UPDATE test_entity1 SET "));
+		Assert.assertTrue(first.getSql().contains("testString=CASE id WHEN ? THEN ? WHEN ? THEN ? END"));
+		Assert.assertTrue(first.getSql().endsWith(" WHERE id IN (?,?)"));
+		Assert.assertEquals(_count(first.getSql(), '?'), first.getParams().size());
+		Assert.assertEquals(2l, first.getParams().get(first.getParams().size() - 1));
+
+		BatchStatement second = statements.get(1);
+		Assert.assertTrue(second.getSql().endsWith(" WHERE id IN (?)"));
+		Assert.assertTrue(second.getParams().contains("c"));
+	}
+
+	private TestEntity _create(long id, String testString) {
+		TestEntity entity = new TestEntity();
+		entity.setId(id);
+		entity.setTestInt((int) id);
+		entity.setTestString(testString);
+		return entity;
+	}
+
+	private int _count(String s, char c) {
+		int count = 0;
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == c) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,109 @@
+package org.pinus4j.datalayer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pinus4j.entity.TestEntity;
+
+public class RowMapperTest {
+
+	private static final String[] COLUMNS = new String[] { "id", "testBool", "oTestBool", "testChar", "testInt",
+			"oTestInt", "testString", "notExists" };
+
+	private static final Object[][] ROWS = new Object[][] { { 1l, "1", null, "a", 5, null, "hello", "x" },
+			{ 2l, "0", "1", "", 6, 7, null, "y" } };
+
+	@Test
+	public void testMapAll() throws Exception {
+		List<TestEntity> entities = SQLBuilder.buildResultObject(TestEntity.class, _createResultSet());
+		Assert.assertEquals(2, entities.size());
+
+		TestEntity one = entities.get(0);
+		Assert.assertEquals(1l, one.getId());
+		Assert.assertTrue(one.getTestBool());
+		Assert.assertNull(one.getOTestBool());
+		Assert.assertEquals('a', one.getTestChar());
+		Assert.assertEquals(5, one.getTestInt());
+		Assert.assertNull(one.getOTestInt());
+		Assert.assertEquals("hello", one.getTestString());
+
+		TestEntity two = entities.get(1);
+		Assert.assertFalse(two.getTestBool());
+		Assert.assertTrue(two.getOTestBool());
+		Assert.assertEquals('\u0000', two.getTestChar());
+		Assert.assertEquals(7, two.getOTestInt().intValue());
+		Assert.assertNull(two.getTestString());
+
+		Assert.assertSame(RowMapper.getMapper(TestEntity.class, _createResultSet().getMetaData()),
+				RowMapper.getMapper(TestEntity.class, _createResultSet().getMetaData()));
+	}
+
+	@Test
+	public void testMapAllAsMap() throws Exception {
+		Map<Number, TestEntity> entities = SQLBuilder.buildResultObjectAsMap(TestEntity.class, _createResultSet());
+		Assert.assertEquals(2, entities.size());
+		Assert.assertEquals(6, entities.get(2l).getTestInt());
+	}
+
+	/**
+	 * 基于内存数据的结果集.
+	 */
+	private ResultSet _createResultSet() {
+		final ResultSetMetaData rsmd = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ResultSetMetaData.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("getColumnCount")) {
+							return COLUMNS.length;
+						}
+						if (method.getName().equals("getColumnName")) {
+							return COLUMNS[(Integer) args[0] - 1];
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+
+		return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+				new InvocationHandler() {
+					private int row = -1;
+					private boolean wasNull;
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.equals("getMetaData")) {
+							return rsmd;
+						}
+						if (name.equals("next")) {
+							return ++row < ROWS.length;
+						}
+						if (name.equals("wasNull")) {
+							return wasNull;
+						}
+						if (name.startsWith("get")) {
+							Object value = ROWS[row][(Integer) args[0] - 1];
+							wasNull = value == null;
+							if (name.equals("getString")) {
+								return value == null ? null : value.toString();
+							}
+							if (name.equals("getInt")) {
+								return value == null ? 0 : ((Number) value).intValue();
+							}
+							if (name.equals("getLong")) {
+								return value == null ? 0l : ((Number) value).longValue();
+							}
+							return value;
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+
+}
@@ -21,4 +21,16 @@ public class SQLBuilderTest {
 		sql = SQLBuilder.buildSelectByQuery(TestEntity.class, 0, query);
 		Assert.assertEquals("SELECT * FROM test_entity0", sql);
 	}
+
+	@Test
+	public void testBuildSelectByPks() {
+		String sql = SQLBuilder.buildSelectByPks(TestEntity.class, 1, 3);
+		Assert.assertTrue(sql.startsWith("SELECT "));
+		Assert.assertTrue(sql.endsWith(" FROM test_entity1 WHERE id in (?,?,?) order by field(id,?,?,?)"));
+		Assert.assertSame(sql, SQLBuilder.buildSelectByPks(TestEntity.class, 1, 3));
+
+		sql = SQLBuilder.buildSelectByPk(TestEntity.class, 1);
+		Assert.assertTrue(sql.endsWith(" FROM test_entity1 WHERE id=?"));
+	}
+
 }
@@ -0,0 +1,120 @@
+package org.pinus4j.datalayer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pinus4j.exceptions.DBOperationException;
+
+public class ScatterGatherExecutorTest {
+
+	@Test
+	public void testInvokeAll() {
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < 8; i++) {
+			final int index = i;
+			tasks.add(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					Thread.sleep(100);
+					return index;
+				}
+			});
+		}
+
+		long begin = System.currentTimeMillis();
+		List<Integer> results = ScatterGatherExecutor.getInstance("test").invokeAll(tasks);
+		long constTime = System.currentTimeMillis() - begin;
+
+		Assert.assertEquals(8, results.size());
+		for (int i = 0; i < 8; i++) {
+			Assert.assertEquals(i, results.get(i).intValue());
+		}
+		Assert.assertTrue(constTime < 800);
+	}
+
+	@Test(expected = DBOperationException.class)
+	public void testInvokeAllFail() {
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		tasks.add(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return 1;
+			}
+		});
+		tasks.add(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				throw new IllegalStateException("shard down");
+			}
+		});
+
+		ScatterGatherExecutor.getInstance("test").invokeAll(tasks);
+	}
+
+	@Test
+	public void testCancelStatement() throws Exception {
+		// 模拟执行中的语句, cancel之后执行才返回
+		final CountDownLatch running = new CountDownLatch(1);
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		final Statement statement = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { Statement.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("cancel")) {
+							cancelled.countDown();
+						} else if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						} else if (method.getName().equals("equals")) {
+							return proxy == args[0];
+						}
+						return null;
+					}
+				});
+		final AtomicBoolean exited = new AtomicBoolean();
+
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		tasks.add(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				running.await(5, TimeUnit.SECONDS);
+				throw new IllegalStateException("shard down");
+			}
+		});
+		tasks.add(new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				try {
+					ScatterGatherExecutor.track(statement);
+					running.countDown();
+					cancelled.await(5, TimeUnit.SECONDS);
+					Thread.sleep(100);
+					return 1;
+				} finally {
+					ScatterGatherExecutor.untrack(statement);
+					exited.set(true);
+				}
+			}
+		});
+
+		try {
+			ScatterGatherExecutor.getInstance("test").invokeAll(tasks);
+			Assert.fail();
+		} catch (DBOperationException e) {
+		}
+
+		// 返回之前语句已经取消, 任务线程已经退出
+		Assert.assertEquals(0, cancelled.getCount());
+		Assert.assertTrue(exited.get());
+	}
+
+}
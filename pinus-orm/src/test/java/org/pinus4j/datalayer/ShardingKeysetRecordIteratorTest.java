@@ -0,0 +1,115 @@
+package org.pinus4j.datalayer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pinus4j.BaseTest;
+import org.pinus4j.api.IShardingStorageClient;
+import org.pinus4j.cluster.IDBCluster;
+import org.pinus4j.cluster.beans.IShardingKey;
+import org.pinus4j.cluster.beans.ShardingKey;
+import org.pinus4j.cluster.resources.ShardingDBResource;
+import org.pinus4j.datalayer.iterator.ShardingKeysetRecordIterator;
+import org.pinus4j.entity.TestEntity;
+import org.pinus4j.exceptions.DBClusterException;
+
+public class ShardingKeysetRecordIteratorTest extends BaseTest {
+
+	private static Number[] pks;
+
+	private static IShardingKey<Integer> moreKey = new ShardingKey<Integer>(CLUSTER_KLSTORAGE, 1);
+
+	private static IRecordIterator<TestEntity> reader;
+
+	private static List<TestEntity> entities;
+
+	private static final int SIZE = 2100;
+
+	private static ShardingDBResource dbResource;
+
+	private static IShardingStorageClient storageClient;
+
+	@BeforeClass
+	public static void before() {
+		storageClient = getStorageClient();
+
+		// save more
+		entities = new ArrayList<TestEntity>(SIZE);
+		TestEntity entity = null;
+		for (int i = 0; i < SIZE; i++) {
+			entity = createEntity();
+			entity.setTestString("i am pinus");
+			entities.add(entity);
+		}
+		pks = storageClient.saveBatch(entities, moreKey);
+		// check save more
+		entities = storageClient.findByPkList(Arrays.asList(pks), moreKey, TestEntity.class);
+		Assert.assertEquals(SIZE, entities.size());
+
+		IDBCluster dbCluster = storageClient.getDBCluster();
+		try {
+			dbResource = (ShardingDBResource) dbCluster.selectDBResourceFromMaster("test_entity", moreKey);
+		} catch (DBClusterException e) {
+			e.printStackTrace();
+		}
+		reader = new ShardingKeysetRecordIterator<TestEntity>(dbResource, TestEntity.class);
+		// 每页的记录数不能整除总数
+		reader.setStep(1000);
+	}
+
+	@AfterClass
+	public static void after() {
+		// remove more
+		storageClient.removeByPks(moreKey, TestEntity.class, pks);
+		dbResource.close();
+
+		storageClient.destroy();
+	}
+
+	@Test
+	public void testCount() {
+		Assert.assertEquals(SIZE, reader.getCount());
+	}
+
+	@Test
+	public void testIt() {
+		TestEntity entity = null;
+		int i = 0;
+		while (reader.hasNext()) {
+			entity = reader.next();
+			Assert.assertEquals(entities.get(i++), entity);
+		}
+		Assert.assertEquals(SIZE, i);
+	}
+
+	@Test
+	public void testRange() {
+		ShardingKeysetRecordIterator<TestEntity> first = new ShardingKeysetRecordIterator<TestEntity>(dbResource,
+				TestEntity.class);
+		ShardingKeysetRecordIterator<TestEntity> second = new ShardingKeysetRecordIterator<TestEntity>(dbResource,
+				TestEntity.class);
+		long minId = first.getMinId();
+		long maxId = first.getMaxId();
+		long midId = minId + (maxId - minId) / 2;
+		first.setRange(minId - 1, midId);
+		second.setRange(midId, maxId);
+
+		// 两个范围不重叠并且覆盖所有记录
+		Assert.assertEquals(SIZE, first.getCount() + second.getCount());
+		int num = 0;
+		while (first.hasNext()) {
+			num += first.nextMore().size();
+		}
+		while (second.hasNext()) {
+			num += second.nextMore().size();
+		}
+		Assert.assertEquals(SIZE, num);
+	}
+
+}
@@ -0,0 +1,60 @@
+package org.pinus4j.datalayer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.pinus4j.api.query.IQuery;
+import org.pinus4j.api.query.Order;
+import org.pinus4j.api.query.QueryImpl;
+import org.pinus4j.entity.TestEntity;
+
+public class ShardingResultMergerTest {
+
+	@Test
+	public void testRewrite() {
+		IQuery query = new QueryImpl();
+		query.orderBy("testInt", Order.DESC).limit(10, 20);
+
+		IQuery shardingQuery = ShardingResultMerger.rewrite(query, TestEntity.class);
+		Assert.assertEquals(" ORDER BY testInt desc LIMIT 0,30", shardingQuery.getWhereSql());
+		Assert.assertEquals(" ORDER BY testInt desc LIMIT 10,20", query.getWhereSql());
+
+		query = new QueryImpl();
+		query.limit(5);
+		shardingQuery = ShardingResultMerger.rewrite(query, TestEntity.class);
+		Assert.assertEquals(" ORDER BY id asc LIMIT 0,5", shardingQuery.getWhereSql());
+	}
+
+	@Test
+	public void testMerge() {
+		List<List<TestEntity>> shardingResults = new ArrayList<List<TestEntity>>();
+		shardingResults.add(_build(new int[] { 9, 6, 3 }, 0));
+		shardingResults.add(_build(new int[] { 8, 5, 2 }, 10));
+		shardingResults.add(_build(new int[] { 7, 4, 1 }, 20));
+		shardingResults.add(new ArrayList<TestEntity>());
+
+		IQuery query = new QueryImpl();
+		query.orderBy("testInt", Order.DESC).limit(2, 4);
+
+		List<TestEntity> result = ShardingResultMerger.merge(shardingResults, query, TestEntity.class);
+		Assert.assertEquals(4, result.size());
+		Assert.assertEquals(7, result.get(0).getTestInt());
+		Assert.assertEquals(6, result.get(1).getTestInt());
+		Assert.assertEquals(5, result.get(2).getTestInt());
+		Assert.assertEquals(4, result.get(3).getTestInt());
+	}
+
+	private List<TestEntity> _build(int[] values, long idBase) {
+		List<TestEntity> entities = new ArrayList<TestEntity>();
+		for (int i = 0; i < values.length; i++) {
+			TestEntity entity = new TestEntity();
+			entity.setId(idBase + i);
+			entity.setTestInt(values[i]);
+			entities.add(entity);
+		}
+		return entities;
+	}
+
+}
@@ -0,0 +1,98 @@
+package org.pinus4j.datalayer;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+	private final SingleFlight singleFlight = new SingleFlight();
+
+	@Test
+	public void testExecute() throws Exception {
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		final SingleFlight.Loader<ArrayList<String>> loader = new SingleFlight.Loader<ArrayList<String>>() {
+			@Override
+			public ArrayList<String> load() throws SQLException {
+				loads.incrementAndGet();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new SQLException(e);
+				}
+				ArrayList<String> result = new ArrayList<String>();
+				result.add("a");
+				return result;
+			}
+		};
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<ArrayList<String>>> futures = new ArrayList<Future<ArrayList<String>>>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(threadPool.submit(new Callable<ArrayList<String>>() {
+					@Override
+					public ArrayList<String> call() throws Exception {
+						return singleFlight.execute("pk.1", loader);
+					}
+				}));
+			}
+
+			// 等待所有线程进入等待
+			while (loads.get() == 0) {
+				Thread.sleep(10);
+			}
+			Thread.sleep(100);
+			release.countDown();
+
+			List<ArrayList<String>> results = new ArrayList<ArrayList<String>>();
+			for (Future<ArrayList<String>> future : futures) {
+				ArrayList<String> result = future.get();
+				Assert.assertEquals("a", result.get(0));
+				for (ArrayList<String> other : results) {
+					// 每个线程得到独立的对象
+					Assert.assertNotSame(other, result);
+				}
+				results.add(result);
+			}
+			Assert.assertEquals(1, loads.get());
+			Assert.assertEquals(0, singleFlight.inflight());
+		} finally {
+			threadPool.shutdown();
+		}
+	}
+
+	@Test
+	public void testExecuteFail() throws Exception {
+		try {
+			singleFlight.execute("pk.2", new SingleFlight.Loader<String>() {
+				@Override
+				public String load() throws SQLException {
+					throw new SQLException("fail");
+				}
+			});
+			Assert.fail();
+		} catch (SQLException e) {
+			Assert.assertEquals("fail", e.getMessage());
+		}
+
+		// 失败后不影响下一次加载
+		Assert.assertEquals("b", singleFlight.execute("pk.2", new SingleFlight.Loader<String>() {
+			@Override
+			public String load() throws SQLException {
+				return "b";
+			}
+		}));
+	}
+
+}
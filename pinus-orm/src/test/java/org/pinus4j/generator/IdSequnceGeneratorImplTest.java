@@ -5,6 +5,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import junit.framework.Assert;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -60,6 +62,32 @@ public class IdSequnceGeneratorImplTest extends BaseTest {
 		}
 	}
 
+	@Test
+	public void testCheckAndSetPrimaryKey() throws Exception {
+		IIdGenerator idGenerator = storageClient.getIdGenerator();
+
+		long id = idGenerator.genClusterUniqueLongId(Const.ZK_PRIMARYKEY + "/" + CLUSTER_KLSTORAGE, TABLE_NAME);
+		// 不大于已经生成的id时不访问zookeeper
+		idGenerator.checkAndSetPrimaryKey(id, CLUSTER_KLSTORAGE, TABLE_NAME);
+
+		idGenerator.checkAndSetPrimaryKey(id + 1000, CLUSTER_KLSTORAGE, TABLE_NAME);
+		Assert.assertTrue(idGenerator.genClusterUniqueLongId(Const.ZK_PRIMARYKEY + "/" + CLUSTER_KLSTORAGE,
+				TABLE_NAME) > id + 1000);
+	}
+
+	@Test
+	public void testCheckAndSetPrimaryKeyInSegment() throws Exception {
+		IIdGenerator idGenerator = storageClient.getIdGenerator();
+
+		long firstId = idGenerator.genClusterUniqueLongId(Const.ZK_PRIMARYKEY + "/" + CLUSTER_KLSTORAGE, TABLE_NAME);
+		// 本地号段中还没有分配的id被直接使用
+		idGenerator.checkAndSetPrimaryKey(firstId + 2, CLUSTER_KLSTORAGE, TABLE_NAME);
+		for (int i = 0; i < 100; i++) {
+			long id = idGenerator.genClusterUniqueLongId(Const.ZK_PRIMARYKEY + "/" + CLUSTER_KLSTORAGE, TABLE_NAME);
+			Assert.assertTrue(id != firstId + 2);
+		}
+	}
+
 	@Test
 	public void testConcurrent() throws Exception {
 		IIdGenerator idGenerator = storageClient.getIdGenerator();
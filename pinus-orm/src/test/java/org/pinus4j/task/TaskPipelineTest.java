@@ -0,0 +1,314 @@
+package org.pinus4j.task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pinus4j.api.AbstractTask;
+import org.pinus4j.api.query.IQuery;
+import org.pinus4j.checkpoint.impl.FileCheckpointStore;
+import org.pinus4j.datalayer.IRecordIterator;
+
+public class TaskPipelineTest {
+
+	private static final int INFLIGHT = 3;
+
+	/**
+	 * 在内存中遍历, 记录的值是表号 * 1000000 + 序号. 同时记录已经读取但是没有处理完的批次数.
+	 */
+	private static class MemoryRecordIterator implements IRecordIterator<Integer> {
+		final int no;
+		final int size;
+		int latest;
+		final AtomicInteger inflight = new AtomicInteger();
+		volatile int maxInflight;
+		volatile boolean readInWorker;
+		/**
+		 * 读取到此位置时失败, -1为不失败
+		 */
+		int failAt = -1;
+
+		MemoryRecordIterator(int no, int size) {
+			this.no = no;
+			this.size = size;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return latest < size;
+		}
+
+		@Override
+		public List<Integer> nextMore() {
+			if (!Thread.currentThread().getName().contains("reader")) {
+				readInWorker = true;
+			}
+			if (failAt >= 0 && latest >= failAt) {
+				throw new IllegalStateException("lost connection");
+			}
+			List<Integer> record = new ArrayList<Integer>(10);
+			for (int i = 0; i < 10 && latest < size; i++) {
+				record.add(no * 1000000 + latest++);
+			}
+			maxInflight = Math.max(maxInflight, inflight.incrementAndGet());
+			return record;
+		}
+
+		@Override
+		public Integer next() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public long getCount() {
+			return size;
+		}
+
+		@Override
+		public void setQuery(IQuery query) {
+		}
+
+		@Override
+		public void setStep(int step) {
+		}
+
+		@Override
+		public long getLatestId() {
+			return latest;
+		}
+
+		@Override
+		public void setLatestId(long latestId) {
+			this.latest = (int) latestId;
+		}
+	}
+
+	@Test
+	public void testPipeline() throws Exception {
+		final MemoryRecordIterator[] readers = new MemoryRecordIterator[] { new MemoryRecordIterator(0, 1000),
+				new MemoryRecordIterator(1, 2000), new MemoryRecordIterator(2, 55) };
+		final AtomicLong num = new AtomicLong();
+		final AtomicInteger processInReader = new AtomicInteger();
+		ITask<Integer> task = new AbstractTask<Integer>() {
+			@Override
+			public void batchRecord(List<Integer> entity) {
+				if (!Thread.currentThread().getName().contains("worker")) {
+					processInReader.incrementAndGet();
+				}
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+				}
+				num.addAndGet(entity.size());
+				readers[entity.get(0) / 1000000].inflight.decrementAndGet();
+			}
+
+			@Override
+			public int readerThread() {
+				return 2;
+			}
+
+			@Override
+			public int workerThread() {
+				return 8;
+			}
+
+			@Override
+			public int inflightBatch() {
+				return INFLIGHT;
+			}
+		};
+
+		List<IRecordIterator<Integer>> list = new ArrayList<IRecordIterator<Integer>>();
+		List<String> names = new ArrayList<String>();
+		TaskFuture future = new TaskFuture(task);
+		for (MemoryRecordIterator reader : readers) {
+			list.add(reader);
+			names.add("t" + reader.no);
+			future.addShard("t" + reader.no, reader.size);
+		}
+		final List<TaskProgress> progresses = Collections.synchronizedList(new ArrayList<TaskProgress>());
+		final AtomicReference<TaskProgress> finish = new AtomicReference<TaskProgress>();
+		future.setListener(new ITaskListener() {
+			@Override
+			public void onProgress(TaskProgress progress) {
+				progresses.add(progress);
+			}
+
+			@Override
+			public void onFinish(TaskProgress progress) {
+				finish.set(progress);
+			}
+		}, 10);
+		new TaskPipeline<Integer>(task).start(list, names, null, future);
+		future.await();
+
+		Assert.assertEquals(3055, num.get());
+		Assert.assertTrue(future.isDone());
+		Assert.assertEquals("1.00", future.getProgress());
+		Assert.assertEquals(0, processInReader.get());
+		for (MemoryRecordIterator reader : readers) {
+			Assert.assertFalse(reader.readInWorker);
+			Assert.assertTrue("maxInflight=" + reader.maxInflight, reader.maxInflight <= INFLIGHT);
+		}
+
+		// 进度监听
+		Assert.assertFalse(progresses.isEmpty());
+		TaskProgress progress = finish.get();
+		Assert.assertEquals(3055, progress.getTotal());
+		Assert.assertEquals(3055, progress.getCount());
+		Assert.assertEquals(Long.valueOf(2000), progress.getShardCount().get("t1"));
+		Assert.assertEquals(Long.valueOf(55), progress.getShardTotal().get("t2"));
+		Assert.assertEquals(0, progress.getEta());
+		Assert.assertTrue(progress.getRowsPerSecond() > 0);
+		Assert.assertTrue(progress.getBatchLatencyP50() >= 1);
+		Assert.assertTrue(progress.getBatchLatencyP99() >= progress.getBatchLatencyP50());
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		ITask<Integer> task = new AbstractTask<Integer>() {
+			@Override
+			public void batchRecord(List<Integer> entity) {
+			}
+		};
+		TaskFuture future = new TaskFuture(task);
+		new TaskPipeline<Integer>(task).start(new ArrayList<IRecordIterator<Integer>>(), new ArrayList<String>(),
+				null, future);
+		Assert.assertTrue(future.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		File file = File.createTempFile("pinus-checkpoint", ".properties");
+		file.delete();
+		FileCheckpointStore store = new FileCheckpointStore(file);
+
+		final MemoryRecordIterator[] readers = new MemoryRecordIterator[] { new MemoryRecordIterator(0, 1000),
+				new MemoryRecordIterator(1, 1000), new MemoryRecordIterator(2, 1000) };
+		// 第一个表读取失败, 第二个表处理失败
+		readers[0].failAt = 500;
+		final AtomicLong num = new AtomicLong();
+		ITask<Integer> task = new AbstractTask<Integer>() {
+			@Override
+			public void batchRecord(List<Integer> entity) {
+				if (entity.get(0) == 1000000 + 300) {
+					throw new IllegalStateException("deadlock");
+				}
+				num.addAndGet(entity.size());
+			}
+
+			@Override
+			public int checkpointInterval() {
+				return 1;
+			}
+		};
+
+		List<IRecordIterator<Integer>> list = new ArrayList<IRecordIterator<Integer>>();
+		List<String> keys = new ArrayList<String>();
+		TaskFuture future = new TaskFuture(task);
+		for (MemoryRecordIterator reader : readers) {
+			list.add(reader);
+			keys.add("t" + reader.no);
+			future.addShard("t" + reader.no, reader.size);
+		}
+		future.setCheckpointStore(store);
+		new TaskPipeline<Integer>(task).start(list, keys, store, future);
+		future.await();
+
+		Assert.assertTrue(future.isFailed());
+		Assert.assertNotNull(future.getCause());
+		Assert.assertEquals(500 + 990 + 1000, num.get());
+
+		// 保留进度, 失败的位置之后的批次不再保存
+		Map<String, String> checkpoints = new FileCheckpointStore(file).load();
+		Assert.assertEquals("500", checkpoints.get("t0"));
+		Assert.assertEquals("300", checkpoints.get("t1"));
+		Assert.assertEquals("1000", checkpoints.get("t2"));
+
+		store.clear();
+	}
+
+	@Test
+	public void testCheckpoint() throws Exception {
+		File file = File.createTempFile("pinus-checkpoint", ".properties");
+		file.delete();
+
+		final MemoryRecordIterator[] readers = new MemoryRecordIterator[] { new MemoryRecordIterator(0, 1000),
+				new MemoryRecordIterator(1, 505) };
+		// 第二个表已经处理到300
+		FileCheckpointStore store = new FileCheckpointStore(file);
+		store.save("t1", "300");
+		readers[1].setLatestId(Long.parseLong(new FileCheckpointStore(file).load().get("t1")));
+
+		final AtomicLong num = new AtomicLong();
+		final Random random = new Random();
+		ITask<Integer> task = new AbstractTask<Integer>() {
+			@Override
+			public void batchRecord(List<Integer> entity) {
+				// 批次乱序完成
+				try {
+					Thread.sleep(random.nextInt(3));
+				} catch (InterruptedException e) {
+				}
+				num.addAndGet(entity.size());
+				readers[entity.get(0) / 1000000].inflight.decrementAndGet();
+			}
+
+			@Override
+			public int workerThread() {
+				return 8;
+			}
+
+			@Override
+			public int inflightBatch() {
+				return 4;
+			}
+
+			@Override
+			public int checkpointInterval() {
+				return 5;
+			}
+		};
+
+		List<IRecordIterator<Integer>> list = new ArrayList<IRecordIterator<Integer>>();
+		List<String> keys = new ArrayList<String>();
+		for (MemoryRecordIterator reader : readers) {
+			list.add(reader);
+			keys.add("t" + reader.no);
+		}
+		TaskFuture future = new TaskFuture(task);
+		future.addShard("t0", 1000);
+		future.addShard("t1", 205);
+		new TaskPipeline<Integer>(task).start(list, keys, store, future);
+		future.await();
+
+		Assert.assertEquals(1205, num.get());
+		// 保存的位置最多落后5批
+		Map<String, String> checkpoints = new FileCheckpointStore(file).load();
+		long t0 = Long.parseLong(checkpoints.get("t0"));
+		Assert.assertTrue("t0=" + t0, t0 > 1000 - 5 * 10 && t0 <= 1000);
+		long t1 = Long.parseLong(checkpoints.get("t1"));
+		Assert.assertTrue("t1=" + t1, t1 > 505 - 5 * 10 && t1 <= 505);
+
+		store.clear();
+		Assert.assertFalse(file.exists());
+		Assert.assertTrue(new FileCheckpointStore(file).load().isEmpty());
+	}
+
+}
@@ -51,6 +51,31 @@ public class BestEffortsTransactionTest extends BaseTest {
 		}
 	}
 
+	@Test
+	public void testCommitSameShard() {
+		TestEntity testEntity1 = createEntity();
+		TestEntity testEntity2 = createEntity();
+		testEntity2.setTestInt(testEntity1.getTestInt());
+		IShardingKey<Integer> sk = new ShardingKey<Integer>(CLUSTER_KLSTORAGE, testEntity1.getTestInt());
+
+		storageClient.beginTransaction();
+		long id1, id2;
+		try {
+			id1 = storageClient.save(testEntity1).longValue();
+			id2 = storageClient.save(testEntity2).longValue();
+			storageClient.commit();
+		} catch (RuntimeException e) {
+			storageClient.rollback();
+			throw e;
+		}
+
+		Assert.assertEquals(testEntity1, storageClient.findByPk(id1, sk, TestEntity.class, false));
+		Assert.assertEquals(testEntity2, storageClient.findByPk(id2, sk, TestEntity.class, false));
+
+		storageClient.removeByPk(id1, sk, TestEntity.class);
+		storageClient.removeByPk(id2, sk, TestEntity.class);
+	}
+
 	@Test
 	public void testRollback() {
 		long globalId = 1;
@@ -0,0 +1,35 @@
+package org.pinus4j.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+	@Test
+	public void testMightContain() {
+		BloomFilter filter = new BloomFilter(10000, 0.01);
+		for (long i = 0; i < 10000; i++) {
+			filter.put(i * 2);
+		}
+
+		// 加入的值一定存在
+		for (long i = 0; i < 10000; i++) {
+			Assert.assertTrue(filter.mightContain(i * 2));
+		}
+
+		// 误判率接近设置的值
+		int falsePositive = 0;
+		for (long i = 0; i < 10000; i++) {
+			if (filter.mightContain(i * 2 + 1)) {
+				falsePositive++;
+			}
+		}
+		Assert.assertTrue("false positive " + falsePositive, falsePositive < 300);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIllegalArgument() {
+		new BloomFilter(0, 0.01);
+	}
+
+}
@@ -0,0 +1,59 @@
+package org.pinus4j.utils;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.pinus4j.cluster.enums.HashAlgoEnum;
+
+public class HashUtilTest {
+
+	@Test
+	public void testMurmur3() {
+		Assert.assertEquals(0L, HashUtil.murmur3(""));
+		Assert.assertEquals(0xcbd8a7b341bd9b02L, HashUtil.murmur3("hello"));
+		Assert.assertEquals(0xe34bbc7bbc071b6cL, HashUtil.murmur3("The quick brown fox jumps over the lazy dog"));
+		Assert.assertEquals(0x7296f477d4a9c118L, HashUtil.murmur3("分库分表"));
+	}
+
+	@Test
+	public void testXxHash64() {
+		Assert.assertEquals(0xef46db3751d8e999L, HashUtil.xxHash64(""));
+		Assert.assertEquals(0xd24ec4f1a98c6e5bL, HashUtil.xxHash64("a"));
+		Assert.assertEquals(0x44bc2cf5ad770999L, HashUtil.xxHash64("abc"));
+		Assert.assertEquals(0xfbcea83c8a378bf1L, HashUtil.xxHash64("Nobody inspects the spammish repetition"));
+	}
+
+	@Test
+	public void testCityHash64() {
+		Assert.assertEquals(0x9ae16a3b2f90404fL, HashUtil.cityHash64(""));
+		Assert.assertEquals(0xb48be5a931380ce8L, HashUtil.cityHash64("hello"));
+		Assert.assertEquals(0xfbe52d0ecbffa6f0L, HashUtil.cityHash64("分库分表"));
+	}
+
+	@Test
+	public void testUtf8() throws Exception {
+		// 代理对, 不成对的代理字符, 超过线程缓冲区的长字符串
+		StringBuilder longStr = new StringBuilder();
+		for (int i = 0; i < 30000; i++) {
+			longStr.append((char) ('一' + i % 100));
+		}
+		String[] strs = new String[] { "a😀b", "a\uD800b\uDC00", longStr.toString() };
+		for (String str : strs) {
+			byte[] b = str.getBytes("UTF-8");
+			Assert.assertEquals(HashUtil.murmur3(b, 0, b.length, 0), HashUtil.murmur3(str));
+			Assert.assertEquals(HashUtil.xxHash64(b, 0, b.length, 0), HashUtil.xxHash64(str));
+			Assert.assertEquals(HashUtil.cityHash64(b, 0, b.length), HashUtil.cityHash64(str));
+		}
+	}
+
+	@Test
+	public void testHashAlgoEnum() {
+		for (HashAlgoEnum algo : HashAlgoEnum.values()) {
+			for (int i = 0; i < 1000; i++) {
+				Assert.assertTrue(algo.hash("key" + i) >= 0);
+			}
+		}
+		Assert.assertEquals(HashAlgoEnum.XXHASH64, HashAlgoEnum.getEnum("xxhash64"));
+	}
+
+}